@@ -26,6 +26,9 @@ package network.nerve;
 
 import network.nerve.core.model.StringUtils;
 import network.nerve.core.parse.I18nUtils;
+import network.nerve.kit.util.WalletNodePool;
+
+import java.util.List;
 
 /**
  * @author: Loki
@@ -68,17 +71,34 @@ public class NerveSDKBootStrap {
      */
     public static void init(int chainId, int nulsChainId, String addressPrefix, String addressPrefixNuls, String httpUrl) {
         initChainId(chainId);
-        if (httpUrl != null && !httpUrl.endsWith("/")) {
-            httpUrl += "/";
-        }
-        if (StringUtils.isNotBlank(httpUrl)) {
-            SDKContext.wallet_url = httpUrl;
-        }
+        initWalletUrl(httpUrl);
         SDKContext.nuls_chain_id = nulsChainId;
         SDKContext.addressPrefix = addressPrefix;
         SDKContext.addressPrefixNuls = addressPrefixNuls;
     }
 
+    /**
+     * 初始化为 nerve 与 nuls 对接跨链关系的工具包, 并连接多个钱包节点
+     * 读请求路由到延迟最低的健康节点, 广播交易固定路由到第一个健康节点, 见 {@link WalletNodePool}
+     *
+     * @param chainId           当前链Id
+     * @param nulsChainId       nuls网链id
+     * @param addressPrefix
+     * @param addressPrefixNuls
+     * @param httpUrls          钱包url访问地址列表(ip + port)
+     */
+    public static void init(int chainId, int nulsChainId, String addressPrefix, String addressPrefixNuls, List<String> httpUrls) {
+        if (httpUrls == null || httpUrls.isEmpty()) {
+            throw new IllegalArgumentException("httpUrls is empty");
+        }
+        init(chainId, nulsChainId, addressPrefix, addressPrefixNuls, httpUrls.get(0));
+        WalletNodePool previous = SDKContext.wallet_node_pool;
+        SDKContext.wallet_node_pool = httpUrls.size() > 1 ? new WalletNodePool(httpUrls) : null;
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+
     /**
      * SDK工具连接测试网钱包初始化
      *
@@ -86,12 +106,7 @@ public class NerveSDKBootStrap {
      */
     public static void initTest(String httpUrl) {
         initChainId(5);
-        if (httpUrl != null && !httpUrl.endsWith("/")) {
-            httpUrl += "/";
-        }
-        if (StringUtils.isNotBlank(httpUrl)) {
-            SDKContext.wallet_url = httpUrl;
-        }
+        initWalletUrl(httpUrl);
         SDKContext.nuls_chain_id = 2;
         SDKContext.addressPrefixNuls = "tNULS";
         SDKContext.addressPrefix = "TNVT";
@@ -104,17 +119,23 @@ public class NerveSDKBootStrap {
      */
     public static void initMain(String httpUrl) {
         initChainId(9);
-        if (httpUrl != null && !httpUrl.endsWith("/")) {
-            httpUrl += "/";
-        }
-        if (StringUtils.isNotBlank(httpUrl)) {
-            SDKContext.wallet_url = httpUrl;
-        }
+        initWalletUrl(httpUrl);
         SDKContext.nuls_chain_id = 1;
         SDKContext.addressPrefixNuls = "NULS";
         SDKContext.addressPrefix = "NERVE";
     }
 
+    private static void initWalletUrl(String httpUrl) {
+        httpUrl = WalletNodePool.normalize(httpUrl);
+        if (StringUtils.isNotBlank(httpUrl)) {
+            SDKContext.wallet_url = httpUrl;
+        }
+        if (SDKContext.wallet_node_pool != null) {
+            SDKContext.wallet_node_pool.shutdown();
+            SDKContext.wallet_node_pool = null;
+        }
+    }
+
     /**
      * nuls sdk init
      *
@@ -1,5 +1,12 @@
 package network.nerve;
 
+import network.nerve.kit.util.NerveClient;
+import network.nerve.kit.util.WalletNodePool;
+
+/**
+ * 默认实例的配置
+ * SDK内部通过getter读取配置: 当前线程绑定了 {@link NerveClient} 时返回该实例的配置, 否则返回这里的静态字段
+ */
 public class SDKContext {
 
     public static String default_encoding = "UTF-8";
@@ -38,5 +45,48 @@ public class SDKContext {
      * 访问钱包的http接口url地址
      */
     public static String wallet_url = "https://api.nerve.network/";
+    /**
+     * 多钱包节点池, 为空时所有请求访问wallet_url
+     */
+    public static WalletNodePool wallet_node_pool;
+
+    public static int getMainChainId() {
+        NerveClient client = NerveClient.current();
+        return client == null ? main_chain_id : client.getChainId();
+    }
+
+    public static int getMainAssetId() {
+        NerveClient client = NerveClient.current();
+        return client == null ? main_asset_id : client.getAssetId();
+    }
+
+    public static int getNulsChainId() {
+        NerveClient client = NerveClient.current();
+        return client == null ? nuls_chain_id : client.getNulsChainId();
+    }
+
+    public static int getNulsAssetId() {
+        NerveClient client = NerveClient.current();
+        return client == null ? nuls_asset_id : client.getNulsAssetId();
+    }
+
+    public static String getAddressPrefix() {
+        NerveClient client = NerveClient.current();
+        return client == null ? addressPrefix : client.getAddressPrefix();
+    }
+
+    public static String getAddressPrefixNuls() {
+        NerveClient client = NerveClient.current();
+        return client == null ? addressPrefixNuls : client.getAddressPrefixNuls();
+    }
+
+    public static String getWalletUrl() {
+        NerveClient client = NerveClient.current();
+        return client == null ? wallet_url : client.getWalletUrl();
+    }
 
+    public static WalletNodePool getWalletNodePool() {
+        NerveClient client = NerveClient.current();
+        return client == null ? wallet_node_pool : client.getWalletNodePool();
+    }
 }
@@ -33,7 +33,10 @@ import network.nerve.core.exception.NulsException;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
@@ -53,12 +56,52 @@ public abstract class BaseNulsData implements NulsData, Serializable, Cloneable
             }
             byte[] bytes = bos.toByteArray();
             if (bytes.length != size) {
-                throw new RuntimeException();
+                throw sizeMismatch(size, bytes.length);
             }
             return bytes;
         }
     }
 
+    /**
+     * 序列化到调用方提供的缓冲区, 从buffer的当前位置开始写入, 不生成中间数组
+     *
+     * @return 写入的字节数
+     * @throws BufferOverflowException 剩余空间不足时抛出, 此时buffer不被修改
+     * @throws IOException             写入的字节数与size()不一致时抛出, 此时buffer的位置恢复到写入前
+     */
+    public final int serialize(ByteBuffer buffer) throws IOException {
+        int size = size();
+        if (buffer.remaining() < Math.max(size, ToolsConstant.PLACE_HOLDER.length)) {
+            throw new BufferOverflowException();
+        }
+        if (size == 0) {
+            buffer.put(ToolsConstant.PLACE_HOLDER);
+            return ToolsConstant.PLACE_HOLDER.length;
+        }
+        int start = buffer.position();
+        serializeToStream(new NulsOutputStreamBuffer(new OutputStream() {
+            @Override
+            public void write(int b) {
+                buffer.put((byte) b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                buffer.put(b, off, len);
+            }
+        }));
+        int written = buffer.position() - start;
+        if (written != size) {
+            buffer.position(start);
+            throw sizeMismatch(size, written);
+        }
+        return size;
+    }
+
+    private IOException sizeMismatch(int expected, int actual) {
+        return new IOException(getClass().getName() + " serialized size mismatch, expected: " + expected + ", actual: " + actual);
+    }
+
     protected abstract void serializeToStream(NulsOutputStreamBuffer stream) throws IOException;
 
 
@@ -0,0 +1,90 @@
+package network.nerve.kit.metrics;
+
+import network.nerve.kit.metrics.MetricsRegistry.Phase;
+import okhttp3.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+
+/**
+ * 基于OkHttp事件回调采集单个请求的各阶段耗时、字节数与错误
+ * 每个请求一个实例; 未注册 {@link MetricsRegistry} 时工厂返回 {@link EventListener#NONE}
+ */
+public class HttpMetricsListener extends EventListener {
+
+    public static final EventListener.Factory FACTORY = call -> {
+        MetricsRegistry registry = Metrics.getRegistry();
+        if (registry == null) {
+            return EventListener.NONE;
+        }
+        return new HttpMetricsListener(registry, Metrics.name(call.request()));
+    };
+
+    private final MetricsRegistry registry;
+    private final String name;
+    private long callStart;
+    private long connectStart;
+    private long headersEnd;
+    private long sentBytes;
+    private long receivedBytes;
+
+    private HttpMetricsListener(MetricsRegistry registry, String name) {
+        this.registry = registry;
+        this.name = name;
+    }
+
+    @Override
+    public void callStart(Call call) {
+        callStart = System.nanoTime();
+        registry.inFlight(name, 1);
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        connectStart = System.nanoTime();
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+        registry.recordLatency(name, Phase.CONNECT, System.nanoTime() - connectStart);
+    }
+
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+        sentBytes += byteCount;
+    }
+
+    @Override
+    public void responseHeadersStart(Call call) {
+        registry.recordLatency(name, Phase.TTFB, System.nanoTime() - callStart);
+    }
+
+    @Override
+    public void responseHeadersEnd(Call call, Response response) {
+        headersEnd = System.nanoTime();
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        receivedBytes += byteCount;
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        long now = System.nanoTime();
+        if (headersEnd > 0) {
+            registry.recordLatency(name, Phase.DECODE, now - headersEnd);
+        }
+        registry.recordLatency(name, Phase.TOTAL, now - callStart);
+        registry.recordBytes(name, sentBytes, receivedBytes);
+        registry.inFlight(name, -1);
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        registry.recordError(name, call.isCanceled() ? "canceled" : ioe.getClass().getSimpleName());
+        registry.recordBytes(name, sentBytes, receivedBytes);
+        registry.inFlight(name, -1);
+    }
+}
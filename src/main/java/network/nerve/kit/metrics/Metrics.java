@@ -0,0 +1,89 @@
+package network.nerve.kit.metrics;
+
+import network.nerve.kit.util.NerveClient;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+
+import java.util.List;
+
+/**
+ * 指标采集入口
+ */
+public class Metrics {
+
+    private static volatile MetricsRegistry registry;
+
+    /**
+     * 注册采集实现, 传入null关闭采集
+     */
+    public static void setRegistry(MetricsRegistry metricsRegistry) {
+        registry = metricsRegistry;
+    }
+
+    /**
+     * @return 当前的采集实现, 未开启时为null; 当前线程绑定的 {@link NerveClient} 设置了采集实现时返回该实现
+     */
+    public static MetricsRegistry getRegistry() {
+        NerveClient client = NerveClient.current();
+        if (client != null && client.getMetricsRegistry() != null) {
+            return client.getMetricsRegistry();
+        }
+        return registry;
+    }
+
+    /**
+     * 请求对应的接口名, 优先使用请求上的 {@link Name} 标签
+     */
+    public static String name(Request request) {
+        Name name = request.tag(Name.class);
+        return name != null ? name.value : endpoint(request.url());
+    }
+
+    /**
+     * 将请求路径归一化为接口名, 高度等数字段替换为{n}, hash、地址等长字段替换为{id}, 避免指标数量随参数无限增长
+     */
+    public static String endpoint(HttpUrl url) {
+        List<String> segments = url.pathSegments();
+        StringBuilder builder = new StringBuilder();
+        for (String segment : segments) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            if (builder.length() > 0) {
+                builder.append('/');
+            }
+            if (isNumber(segment)) {
+                builder.append("{n}");
+            } else if (segment.length() >= 20) {
+                builder.append("{id}");
+            } else {
+                builder.append(segment);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static boolean isNumber(String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            if (!Character.isDigit(segment.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 附加在OkHttp请求上的接口名标签
+     */
+    public static final class Name {
+        private final String value;
+
+        public Name(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package network.nerve.kit.metrics;
+
+/**
+ * http调用指标的采集接口
+ * 通过 {@link Metrics#setRegistry(MetricsRegistry)} 注册实现; 未注册时不产生任何采集开销
+ * 实现需要线程安全, 且不应阻塞调用线程
+ */
+public interface MetricsRegistry {
+
+    /**
+     * 延迟阶段
+     */
+    enum Phase {
+        /**
+         * 建立新连接(含TLS握手), 复用连接的请求没有该阶段
+         */
+        CONNECT,
+        /**
+         * 从请求开始到收到响应头
+         */
+        TTFB,
+        /**
+         * 从收到响应头到响应体读取、解码完成
+         */
+        DECODE,
+        /**
+         * 整个请求
+         */
+        TOTAL
+    }
+
+    /**
+     * @param name  接口名: 归一化后的请求路径, JSON-RPC请求为 jsonrpc/方法名
+     * @param phase 阶段
+     * @param nanos 耗时
+     */
+    void recordLatency(String name, Phase phase, long nanos);
+
+    void recordBytes(String name, long sentBytes, long receivedBytes);
+
+    /**
+     * @param errorType 错误类型, 如异常类名、http_状态码、decode
+     */
+    void recordError(String name, String errorType);
+
+    /**
+     * 进行中的请求数变化
+     */
+    void inFlight(String name, int delta);
+}
@@ -0,0 +1,138 @@
+package network.nerve.kit.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 内存中的指标实现, 可通过 {@link #scrape()} 导出为Prometheus文本格式
+ */
+public class SimpleMetricsRegistry implements MetricsRegistry {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    public static class EndpointMetrics {
+        private final Map<Phase, LatencyHistogram> latencies = new EnumMap<>(Phase.class);
+        private final AtomicLong sentBytes = new AtomicLong();
+        private final AtomicLong receivedBytes = new AtomicLong();
+        private final Map<String, AtomicLong> errors = new ConcurrentHashMap<>();
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        EndpointMetrics() {
+            for (Phase phase : Phase.values()) {
+                latencies.put(phase, new LatencyHistogram());
+            }
+        }
+
+        public LatencyHistogram getLatency(Phase phase) {
+            return latencies.get(phase);
+        }
+
+        public long getSentBytes() {
+            return sentBytes.get();
+        }
+
+        public long getReceivedBytes() {
+            return receivedBytes.get();
+        }
+
+        public Map<String, AtomicLong> getErrors() {
+            return errors;
+        }
+
+        public long getErrorCount() {
+            long total = 0;
+            for (AtomicLong count : errors.values()) {
+                total += count.get();
+            }
+            return total;
+        }
+
+        public int getInFlight() {
+            return inFlight.get();
+        }
+    }
+
+    private final Map<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+
+    private EndpointMetrics endpoint(String name) {
+        EndpointMetrics metrics = endpoints.get(name);
+        if (metrics == null) {
+            metrics = endpoints.computeIfAbsent(name, k -> new EndpointMetrics());
+        }
+        return metrics;
+    }
+
+    @Override
+    public void recordLatency(String name, Phase phase, long nanos) {
+        endpoint(name).latencies.get(phase).record(nanos);
+    }
+
+    @Override
+    public void recordBytes(String name, long sentBytes, long receivedBytes) {
+        EndpointMetrics metrics = endpoint(name);
+        metrics.sentBytes.addAndGet(sentBytes);
+        metrics.receivedBytes.addAndGet(receivedBytes);
+    }
+
+    @Override
+    public void recordError(String name, String errorType) {
+        endpoint(name).errors.computeIfAbsent(errorType, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    @Override
+    public void inFlight(String name, int delta) {
+        endpoint(name).inFlight.addAndGet(delta);
+    }
+
+    public EndpointMetrics get(String name) {
+        return endpoints.get(name);
+    }
+
+    public Map<String, EndpointMetrics> getEndpoints() {
+        return new TreeMap<>(endpoints);
+    }
+
+    public void reset() {
+        endpoints.clear();
+    }
+
+    /**
+     * 导出为Prometheus文本格式, 延迟单位为秒
+     */
+    public String scrape() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, EndpointMetrics> entry : getEndpoints().entrySet()) {
+            String endpoint = entry.getKey().replace("\"", "\\\"");
+            EndpointMetrics metrics = entry.getValue();
+            for (Phase phase : Phase.values()) {
+                LatencyHistogram histogram = metrics.getLatency(phase);
+                if (histogram.getCount() == 0) {
+                    continue;
+                }
+                String labels = "endpoint=\"" + endpoint + "\",phase=\"" + phase.name().toLowerCase() + "\"";
+                for (double quantile : QUANTILES) {
+                    line(builder, "nerve_sdk_http_latency_seconds{" + labels + ",quantile=\"" + quantile + "\"}",
+                            histogram.getValueAtPercentile(quantile * 100) / 1e9);
+                }
+                line(builder, "nerve_sdk_http_latency_seconds_count{" + labels + "}", histogram.getCount());
+                line(builder, "nerve_sdk_http_latency_seconds_sum{" + labels + "}", histogram.getSum() / 1e9);
+            }
+            String labels = "{endpoint=\"" + endpoint + "\"}";
+            line(builder, "nerve_sdk_http_sent_bytes_total" + labels, metrics.getSentBytes());
+            line(builder, "nerve_sdk_http_received_bytes_total" + labels, metrics.getReceivedBytes());
+            line(builder, "nerve_sdk_http_in_flight" + labels, metrics.getInFlight());
+            for (Map.Entry<String, AtomicLong> error : new TreeMap<>(metrics.getErrors()).entrySet()) {
+                line(builder, "nerve_sdk_http_errors_total{endpoint=\"" + endpoint + "\",type=\"" + error.getKey() + "\"}", error.getValue().get());
+            }
+        }
+        return builder.toString();
+    }
+
+    private static void line(StringBuilder builder, String name, double value) {
+        builder.append(name).append(' ').append(value).append('\n');
+    }
+}
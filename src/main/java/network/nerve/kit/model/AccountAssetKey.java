@@ -0,0 +1,53 @@
+package network.nerve.kit.model;
+
+import java.util.Objects;
+
+/**
+ * 账户 + 资产, 用于批量查询余额
+ */
+public class AccountAssetKey {
+
+    private final String address;
+    private final int chainId;
+    private final int assetId;
+
+    public AccountAssetKey(String address, int chainId, int assetId) {
+        this.address = address;
+        this.chainId = chainId;
+        this.assetId = assetId;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public int getChainId() {
+        return chainId;
+    }
+
+    public int getAssetId() {
+        return assetId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AccountAssetKey)) {
+            return false;
+        }
+        AccountAssetKey that = (AccountAssetKey) o;
+        return chainId == that.chainId && assetId == that.assetId && Objects.equals(address, that.address);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(address, chainId, assetId);
+    }
+
+    @Override
+    public String toString() {
+        return address + "-" + chainId + "-" + assetId;
+    }
+}
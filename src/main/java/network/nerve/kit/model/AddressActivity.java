@@ -0,0 +1,71 @@
+package network.nerve.kit.model;
+
+import java.math.BigInteger;
+
+/**
+ * 地址在某笔交易中的一次资产变动
+ */
+public class AddressActivity {
+
+    public enum Direction {
+        /**
+         * 作为to收到资产
+         */
+        IN,
+        /**
+         * 作为from支出资产
+         */
+        OUT
+    }
+
+    private final String address;
+    private final long height;
+    private final String txHash;
+    private final int assetChainId;
+    private final int assetId;
+    private final BigInteger amount;
+    private final Direction direction;
+
+    public AddressActivity(String address, long height, String txHash, int assetChainId, int assetId, BigInteger amount, Direction direction) {
+        this.address = address;
+        this.height = height;
+        this.txHash = txHash;
+        this.assetChainId = assetChainId;
+        this.assetId = assetId;
+        this.amount = amount;
+        this.direction = direction;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public long getHeight() {
+        return height;
+    }
+
+    public String getTxHash() {
+        return txHash;
+    }
+
+    public int getAssetChainId() {
+        return assetChainId;
+    }
+
+    public int getAssetId() {
+        return assetId;
+    }
+
+    public BigInteger getAmount() {
+        return amount;
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    @Override
+    public String toString() {
+        return address + " " + direction + " " + amount + " " + assetChainId + "-" + assetId + " @" + height + " " + txHash;
+    }
+}
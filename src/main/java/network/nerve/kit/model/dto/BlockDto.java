@@ -41,7 +41,7 @@ public class BlockDto {
     @ApiModelProperty(description = "区块头信息, 只返回对应的部分数据")
     private BlockHeaderDto header;
     @ApiModelProperty(description = "交易列表", type = @TypeDescriptor(value = List.class, collectionElement = TransactionDto.class))
-    private List<TransactionDto> txs;
+    private List<TransactionDto> txs = new ArrayList<>();
 
     public BlockHeaderDto getHeader() {
         return header;
@@ -56,7 +56,7 @@ public class BlockDto {
     }
 
     public void setTxs(List<TransactionDto> txs) {
-        this.txs = txs;
+        this.txs = txs == null ? new ArrayList<>() : txs;
     }
 
     public static BlockDto mapToPojo(Map map) {
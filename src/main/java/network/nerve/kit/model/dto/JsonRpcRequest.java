@@ -18,6 +18,12 @@ public class JsonRpcRequest {
         this.id = "1";
     }
 
+    public JsonRpcRequest(String method, List<Object> params) {
+        this();
+        this.method = method;
+        this.params = params;
+    }
+
     public String getId() {
         return id;
     }
@@ -62,9 +62,9 @@ public class TransactionDto {
     @ApiModelProperty(description = "在区块中的顺序，存储在rocksDB中是无序的，保存区块时赋值，取出后根据此值排序")
     private int inBlockIndex;
     @ApiModelProperty(description = "输入", type = @TypeDescriptor(value = List.class, collectionElement = CoinFromsDto.class))
-    private List<CoinFromsDto> from;
+    private List<CoinFromsDto> from = new ArrayList<>();
     @ApiModelProperty(description = "输出", type = @TypeDescriptor(value = List.class, collectionElement = CoinTosDto.class))
-    private List<CoinTosDto> to;
+    private List<CoinTosDto> to = new ArrayList<>();
 
     public String getHash() {
         return hash;
@@ -151,7 +151,8 @@ public class TransactionDto {
     }
 
     public void setFrom(List<CoinFromsDto> from) {
-        this.from = from;
+        // 与mapToPojo一致, 缺少时为空列表
+        this.from = from == null ? new ArrayList<>() : from;
     }
 
     public List<CoinTosDto> getTo() {
@@ -159,7 +160,7 @@ public class TransactionDto {
     }
 
     public void setTo(List<CoinTosDto> to) {
-        this.to = to;
+        this.to = to == null ? new ArrayList<>() : to;
     }
 
     public String getBlockHash() {
@@ -170,6 +171,27 @@ public class TransactionDto {
         this.blockHash = blockHash;
     }
 
+    /**
+     * 浅拷贝, 输入输出列表为新的列表; 修改共享结果(如合并请求、缓存返回的对象)前使用
+     */
+    public TransactionDto copy() {
+        TransactionDto tx = new TransactionDto();
+        tx.hash = hash;
+        tx.type = type;
+        tx.time = time;
+        tx.blockHeight = blockHeight;
+        tx.blockHash = blockHash;
+        tx.remark = remark;
+        tx.transactionSignature = transactionSignature;
+        tx.txDataHex = txDataHex;
+        tx.status = status;
+        tx.size = size;
+        tx.inBlockIndex = inBlockIndex;
+        tx.from = new ArrayList<>(from);
+        tx.to = new ArrayList<>(to);
+        return tx;
+    }
+
     public static TransactionDto mapToPojo(Map map) {
         TransactionDto tx = new TransactionDto();
         tx.hash = (String) map.get("hash");
@@ -10,6 +10,7 @@ import network.nerve.base.signture.MultiSignTxSignature;
 import network.nerve.base.signture.P2PHKSignature;
 import network.nerve.base.signture.SignatureUtil;
 import network.nerve.core.basic.Result;
+import network.nerve.core.constant.CommonCodeConstanst;
 import network.nerve.core.constant.ErrorCode;
 import network.nerve.core.crypto.AESEncrypt;
 import network.nerve.core.crypto.Base58;
@@ -18,20 +19,28 @@ import network.nerve.core.crypto.HexUtil;
 import network.nerve.core.exception.CryptoException;
 import network.nerve.core.exception.NulsException;
 import network.nerve.core.exception.NulsRuntimeException;
+import network.nerve.core.log.Log;
 import network.nerve.core.model.FormatValidUtils;
 import network.nerve.core.model.StringUtils;
 import network.nerve.kit.error.AccountErrorCode;
 import network.nerve.kit.model.Account;
+import network.nerve.kit.model.AccountAssetKey;
+import network.nerve.kit.model.dto.AccountBalanceDto;
 import network.nerve.kit.model.dto.AccountDto;
 import network.nerve.kit.model.dto.AccountKeyStoreDto;
 import network.nerve.kit.model.dto.RestFulResult;
 import network.nerve.kit.model.dto.SignDto;
 import network.nerve.kit.util.AccountTool;
+import network.nerve.kit.util.BalanceCache;
 import network.nerve.kit.util.CommonValidator;
 import network.nerve.kit.util.RestFulUtil;
+import network.nerve.kit.util.WalletNodePool.RouteType;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static network.nerve.kit.util.ValidateUtil.validateChainId;
 
@@ -104,10 +113,10 @@ public class AccountService {
             for (int i = 0; i < count; i++) {
                 //create account
                 Account account;
-                if (StringUtils.isBlank(SDKContext.addressPrefix)) {
-                    account = AccountTool.createAccount(SDKContext.main_chain_id);
+                if (StringUtils.isBlank(SDKContext.getAddressPrefix())) {
+                    account = AccountTool.createAccount(SDKContext.getMainChainId());
                 } else {
-                    account = AccountTool.createAccount(SDKContext.main_chain_id, null, SDKContext.addressPrefix);
+                    account = AccountTool.createAccount(SDKContext.getMainChainId(), null, SDKContext.getAddressPrefix());
                 }
                 if (StringUtils.isNotBlank(password)) {
                     account.encrypt(password);
@@ -173,7 +182,7 @@ public class AccountService {
     public Result getPriKey(String address, String password) {
         validateChainId();
         try {
-            if (!AddressTool.validAddress(SDKContext.main_chain_id, address)) {
+            if (!AddressTool.validAddress(SDKContext.getMainChainId(), address)) {
                 throw new NulsException(AccountErrorCode.ADDRESS_ERROR);
             }
             if (!FormatValidUtils.validPassword(password)) {
@@ -208,7 +217,7 @@ public class AccountService {
     public Result getPriKeyOffline(String address, String encryptedPriKey, String password) {
         validateChainId();
         try {
-            if (!AddressTool.validAddress(SDKContext.main_chain_id, address)) {
+            if (!AddressTool.validAddress(SDKContext.getMainChainId(), address)) {
                 throw new NulsException(AccountErrorCode.ADDRESS_ERROR);
             }
             if (StringUtils.isBlank(encryptedPriKey)) {
@@ -222,10 +231,10 @@ public class AccountService {
                 throw new NulsException(AccountErrorCode.PRIVATE_KEY_WRONG);
             }
             Account account;
-            if (StringUtils.isBlank(SDKContext.addressPrefix)) {
-                account = AccountTool.createAccount(SDKContext.main_chain_id, HexUtil.encode(priKeyBytes));
+            if (StringUtils.isBlank(SDKContext.getAddressPrefix())) {
+                account = AccountTool.createAccount(SDKContext.getMainChainId(), HexUtil.encode(priKeyBytes));
             } else {
-                account = AccountTool.createAccount(SDKContext.main_chain_id, HexUtil.encode(priKeyBytes), SDKContext.addressPrefix);
+                account = AccountTool.createAccount(SDKContext.getMainChainId(), HexUtil.encode(priKeyBytes), SDKContext.getAddressPrefix());
             }
             if (!address.equals(account.getAddress().getBase58())) {
                 throw new NulsException(AccountErrorCode.ADDRESS_ERROR);
@@ -271,7 +280,7 @@ public class AccountService {
     public Result exportKeyStore(String address, String password, String filePath) {
         validateChainId();
         try {
-            if (!AddressTool.validAddress(SDKContext.main_chain_id, address)) {
+            if (!AddressTool.validAddress(SDKContext.getMainChainId(), address)) {
                 throw new NulsException(AccountErrorCode.ADDRESS_ERROR);
             }
             if (StringUtils.isBlank(filePath)) {
@@ -301,7 +310,7 @@ public class AccountService {
     public Result resetPassword(String address, String oldPassword, String newPassword) {
         validateChainId();
         try {
-            if (!AddressTool.validAddress(SDKContext.main_chain_id, address)) {
+            if (!AddressTool.validAddress(SDKContext.getMainChainId(), address)) {
                 throw new NulsException(AccountErrorCode.ADDRESS_ERROR);
             }
             if (!FormatValidUtils.validPassword(oldPassword) || !FormatValidUtils.validPassword(newPassword)) {
@@ -363,7 +372,7 @@ public class AccountService {
     public Result resetPasswordOffline(String address, String encryptedPriKey, String oldPassword, String newPassword) {
         validateChainId();
         try {
-            if (!AddressTool.validAddress(SDKContext.main_chain_id, address)) {
+            if (!AddressTool.validAddress(SDKContext.getMainChainId(), address)) {
                 throw new NulsException(AccountErrorCode.ADDRESS_ERROR);
             }
             if (StringUtils.isBlank(encryptedPriKey)) {
@@ -377,10 +386,10 @@ public class AccountService {
                 throw new NulsException(AccountErrorCode.PRIVATE_KEY_WRONG);
             }
             Account account;
-            if (StringUtils.isBlank(SDKContext.addressPrefix)) {
-                account = AccountTool.createAccount(SDKContext.main_chain_id, HexUtil.encode(priKeyBytes));
+            if (StringUtils.isBlank(SDKContext.getAddressPrefix())) {
+                account = AccountTool.createAccount(SDKContext.getMainChainId(), HexUtil.encode(priKeyBytes));
             } else {
-                account = AccountTool.createAccount(SDKContext.main_chain_id, HexUtil.encode(priKeyBytes), SDKContext.addressPrefix);
+                account = AccountTool.createAccount(SDKContext.getMainChainId(), HexUtil.encode(priKeyBytes), SDKContext.getAddressPrefix());
             }
             if (!address.equals(account.getAddress().getBase58())) {
                 throw new NulsException(AccountErrorCode.ADDRESS_ERROR);
@@ -430,10 +439,10 @@ public class AccountService {
                     }
                 }
                 Account account;
-                if (StringUtils.isBlank(SDKContext.addressPrefix)) {
-                    account = AccountTool.createAccount(SDKContext.main_chain_id, HexUtil.encode(priKeyBytes));
+                if (StringUtils.isBlank(SDKContext.getAddressPrefix())) {
+                    account = AccountTool.createAccount(SDKContext.getMainChainId(), HexUtil.encode(priKeyBytes));
                 } else {
-                    account = AccountTool.createAccount(SDKContext.main_chain_id, HexUtil.encode(priKeyBytes), SDKContext.addressPrefix);
+                    account = AccountTool.createAccount(SDKContext.getMainChainId(), HexUtil.encode(priKeyBytes), SDKContext.getAddressPrefix());
                 }
                 if (!signDto.getAddress().equals(account.getAddress().getBase58())) {
                     throw new NulsRuntimeException(AccountErrorCode.ADDRESS_ERROR, account.getAddress() + " and private key do not match");
@@ -582,10 +591,10 @@ public class AccountService {
                 }
             }
             Account account;
-            if (StringUtils.isBlank(SDKContext.addressPrefix)) {
-                account = AccountTool.createAccount(SDKContext.main_chain_id, HexUtil.encode(priKeyBytes));
+            if (StringUtils.isBlank(SDKContext.getAddressPrefix())) {
+                account = AccountTool.createAccount(SDKContext.getMainChainId(), HexUtil.encode(priKeyBytes));
             } else {
-                account = AccountTool.createAccount(SDKContext.main_chain_id, HexUtil.encode(priKeyBytes), SDKContext.addressPrefix);
+                account = AccountTool.createAccount(SDKContext.getMainChainId(), HexUtil.encode(priKeyBytes), SDKContext.getAddressPrefix());
             }
             if (!signDto.getAddress().equals(account.getAddress().getBase58())) {
                 throw new NulsRuntimeException(AccountErrorCode.ADDRESS_ERROR, account.getAddress() + " and private key do not match");
@@ -652,10 +661,10 @@ public class AccountService {
                 throw new NulsException(AccountErrorCode.PARAMETER_ERROR, "encryptedPrivateKey[" + encryptedPrivateKey + "] password error");
             }
             Account account;
-            if (StringUtils.isBlank(SDKContext.addressPrefix)) {
-                account = AccountTool.createAccount(SDKContext.main_chain_id, HexUtil.encode(priKeyBytes));
+            if (StringUtils.isBlank(SDKContext.getAddressPrefix())) {
+                account = AccountTool.createAccount(SDKContext.getMainChainId(), HexUtil.encode(priKeyBytes));
             } else {
-                account = AccountTool.createAccount(SDKContext.main_chain_id, HexUtil.encode(priKeyBytes), SDKContext.addressPrefix);
+                account = AccountTool.createAccount(SDKContext.getMainChainId(), HexUtil.encode(priKeyBytes), SDKContext.getAddressPrefix());
             }
             if (!address.equals(account.getAddress().getBase58())) {
                 throw new NulsRuntimeException(AccountErrorCode.ADDRESS_ERROR, account.getAddress() + " and private key do not match");
@@ -708,14 +717,21 @@ public class AccountService {
      */
     public Result getAccountBalance(String address, int chainId, int assetsId) {
         validateChainId();
+        BalanceCache cache = BalanceCache.getInstance();
+        Map<String, Object> cached = cache.getMap(address, chainId, assetsId);
+        if (cached != null) {
+            return Result.getSuccess(cached);
+        }
 
         Map<String, Object> params = new HashMap<>();
         params.put("assetChainId", chainId);
         params.put("assetId", assetsId);
 
         Result result;
-        RestFulResult restFulResult = RestFulUtil.post("api/accountledger/balance/" + address, params);
+        BalanceCache.Ticket ticket = cache.ticket();
+        RestFulResult<Map<String, Object>> restFulResult = RestFulUtil.post("api/accountledger/balance/" + address, params, RouteType.READ);
         if (restFulResult.isSuccess()) {
+            cache.putMap(address, chainId, assetsId, restFulResult.getData(), ticket);
             result = Result.getSuccess(restFulResult.getData());
         } else {
             ErrorCode errorCode = ErrorCode.init(restFulResult.getError().getCode());
@@ -725,6 +741,195 @@ public class AccountService {
 
     }
 
+    /**
+     * 异步获取账户余额
+     *
+     * @param address 地址
+     * @return result
+     */
+    public CompletableFuture<Result> getAccountBalanceAsync(String address, int chainId, int assetsId) {
+        validateChainId();
+        BalanceCache cache = BalanceCache.getInstance();
+        Map<String, Object> cached = cache.getMap(address, chainId, assetsId);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(Result.getSuccess(cached));
+        }
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("assetChainId", chainId);
+        params.put("assetId", assetsId);
+
+        BalanceCache.Ticket ticket = cache.ticket();
+        return RestFulUtil.postAsync("api/accountledger/balance/" + address, params, RouteType.READ).thenApply(restFulResult -> {
+            Result result;
+            if (restFulResult.isSuccess()) {
+                cache.putMap(address, chainId, assetsId, restFulResult.getData(), ticket);
+                result = Result.getSuccess(restFulResult.getData());
+            } else {
+                ErrorCode errorCode = ErrorCode.init(restFulResult.getError().getCode());
+                result = Result.getFailed(errorCode).setMsg(restFulResult.getError().getMessage());
+            }
+            return result;
+        });
+    }
+
+    /**
+     * 获取账户余额, 响应直接解码为AccountBalanceDto
+     *
+     * @param address 地址
+     * @return result
+     */
+    public Result<AccountBalanceDto> getAccountBalanceDto(String address, int chainId, int assetsId) {
+        validateChainId();
+        BalanceCache cache = BalanceCache.getInstance();
+        AccountBalanceDto cached = cache.getDto(address, chainId, assetsId);
+        if (cached != null) {
+            return Result.getSuccess(cached);
+        }
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("assetChainId", chainId);
+        params.put("assetId", assetsId);
+
+        BalanceCache.Ticket ticket = cache.ticket();
+        RestFulResult<AccountBalanceDto> restFulResult = RestFulUtil.postObject("api/accountledger/balance/" + address, params, RouteType.READ, AccountBalanceDto.class);
+        return toBalanceResult(address, chainId, assetsId, restFulResult, cache, ticket);
+    }
+
+    public CompletableFuture<Result<AccountBalanceDto>> getAccountBalanceDtoAsync(String address, int chainId, int assetsId) {
+        validateChainId();
+        BalanceCache cache = BalanceCache.getInstance();
+        AccountBalanceDto cached = cache.getDto(address, chainId, assetsId);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(Result.getSuccess(cached));
+        }
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("assetChainId", chainId);
+        params.put("assetId", assetsId);
+
+        BalanceCache.Ticket ticket = cache.ticket();
+        return RestFulUtil.postObjectAsync("api/accountledger/balance/" + address, params, RouteType.READ, AccountBalanceDto.class).thenApply(restFulResult -> toBalanceResult(address, chainId, assetsId, restFulResult, cache, ticket));
+    }
+
+    /**
+     * 批量查询进度回调, 在完成查询的线程上调用
+     */
+    public interface BalanceListener {
+        /**
+         * @param key       本次完成的账户资产
+         * @param result    查询结果, 失败时isSuccess为false
+         * @param completed 已完成数量
+         * @param total     总数量
+         */
+        void onResult(AccountAssetKey key, Result<AccountBalanceDto> result, int completed, int total);
+    }
+
+    /**
+     * 批量获取账户余额
+     * 节点没有批量余额接口, 以最多parallelism个并发的异步请求逐个查询; 单个查询失败不影响其他查询
+     *
+     * @param keys        账户资产列表, 重复项只查询一次
+     * @param parallelism 最大并发请求数
+     * @param listener    进度回调, 可为null
+     * @return 按keys顺序排列的查询结果
+     */
+    public Map<AccountAssetKey, Result<AccountBalanceDto>> getAccountBalances(Collection<AccountAssetKey> keys, int parallelism, BalanceListener listener) {
+        return getAccountBalancesAsync(keys, parallelism, listener).join();
+    }
+
+    /**
+     * 异步批量获取账户余额, 返回的future不会以异常结束
+     */
+    public CompletableFuture<Map<AccountAssetKey, Result<AccountBalanceDto>>> getAccountBalancesAsync(Collection<AccountAssetKey> keys, int parallelism, BalanceListener listener) {
+        validateChainId();
+        return new BulkBalanceJob(new ArrayList<>(new LinkedHashSet<>(keys)), Math.max(1, parallelism), listener).start();
+    }
+
+    private class BulkBalanceJob {
+        private final List<AccountAssetKey> keys;
+        private final BalanceListener listener;
+        private final Map<AccountAssetKey, Result<AccountBalanceDto>> results = new ConcurrentHashMap<>();
+        private final CompletableFuture<Map<AccountAssetKey, Result<AccountBalanceDto>>> future = new CompletableFuture<>();
+        private final AtomicInteger permits;
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicInteger wip = new AtomicInteger();
+        /**
+         * 只在drain中访问, wip保证同一时刻只有一个线程执行drain
+         */
+        private int next;
+
+        BulkBalanceJob(List<AccountAssetKey> keys, int parallelism, BalanceListener listener) {
+            this.keys = keys;
+            this.listener = listener;
+            this.permits = new AtomicInteger(parallelism);
+        }
+
+        CompletableFuture<Map<AccountAssetKey, Result<AccountBalanceDto>>> start() {
+            if (keys.isEmpty()) {
+                future.complete(new LinkedHashMap<>());
+            } else {
+                drain();
+            }
+            return future;
+        }
+
+        /**
+         * 缓存命中时查询同步完成, 以循环代替递归发起下一个请求, 避免栈溢出
+         */
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                while (next < keys.size() && permits.get() > 0) {
+                    permits.decrementAndGet();
+                    AccountAssetKey key = keys.get(next++);
+                    CompletableFuture<Result<AccountBalanceDto>> query;
+                    try {
+                        query = getAccountBalanceDtoAsync(key.getAddress(), key.getChainId(), key.getAssetId());
+                    } catch (RuntimeException e) {
+                        // 同步抛出的异常同样计入结果并归还并发数, 否则任务永远不会完成
+                        Log.error(e);
+                        query = CompletableFuture.completedFuture(Result.getFailed(CommonCodeConstanst.DATA_ERROR).setMsg(e.getMessage()));
+                    }
+                    query.whenComplete((result, e) -> onComplete(key, e == null ? result : Result.getFailed(CommonCodeConstanst.DATA_ERROR).setMsg(e.getMessage())));
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
+
+        private void onComplete(AccountAssetKey key, Result<AccountBalanceDto> result) {
+            results.put(key, result);
+            int count = completed.incrementAndGet();
+            if (listener != null) {
+                try {
+                    listener.onResult(key, result, count, keys.size());
+                } catch (RuntimeException e) {
+                    Log.error(e);
+                }
+            }
+            if (count == keys.size()) {
+                Map<AccountAssetKey, Result<AccountBalanceDto>> ordered = new LinkedHashMap<>(keys.size() * 2);
+                for (AccountAssetKey k : keys) {
+                    ordered.put(k, results.get(k));
+                }
+                future.complete(ordered);
+                return;
+            }
+            permits.incrementAndGet();
+            drain();
+        }
+    }
+
+    private Result<AccountBalanceDto> toBalanceResult(String address, int chainId, int assetsId, RestFulResult<AccountBalanceDto> restFulResult, BalanceCache cache, BalanceCache.Ticket ticket) {
+        if (restFulResult.isSuccess()) {
+            cache.putDto(address, chainId, assetsId, restFulResult.getData(), ticket);
+            return Result.getSuccess(restFulResult.getData());
+        }
+        ErrorCode errorCode = ErrorCode.init(restFulResult.getError().getCode());
+        return Result.getFailed(errorCode).setMsg(restFulResult.getError().getMessage());
+    }
+
     /**
      * 导入私钥
      *
@@ -769,7 +974,7 @@ public class AccountService {
             if (minSigns < 1 || minSigns > pubKeys.size()) {
                 throw new NulsException(AccountErrorCode.PARAMETER_ERROR, "minSigns is invalid");
             }
-            MultiSigAccount multiSigAccount = AccountTool.createMultiSigAccount(SDKContext.main_chain_id, pubKeys, minSigns);
+            MultiSigAccount multiSigAccount = AccountTool.createMultiSigAccount(SDKContext.getMainChainId(), pubKeys, minSigns);
             Map<String, Object> map = new HashMap<>();
             map.put("value", multiSigAccount.getAddress().getBase58());
 
@@ -786,10 +991,10 @@ public class AccountService {
         }
         Account account;
         try {
-            if (StringUtils.isBlank(SDKContext.addressPrefix)) {
-                account = AccountTool.createAccount(SDKContext.main_chain_id, priKey);
+            if (StringUtils.isBlank(SDKContext.getAddressPrefix())) {
+                account = AccountTool.createAccount(SDKContext.getMainChainId(), priKey);
             } else {
-                account = AccountTool.createAccount(SDKContext.main_chain_id, priKey, SDKContext.addressPrefix);
+                account = AccountTool.createAccount(SDKContext.getMainChainId(), priKey, SDKContext.getAddressPrefix());
             }
         } catch (NulsException e) {
             throw new NulsRuntimeException(AccountErrorCode.PRIVATE_KEY_WRONG);
@@ -5,9 +5,12 @@ import network.nerve.core.constant.ErrorCode;
 import network.nerve.kit.model.dto.BlockDto;
 import network.nerve.kit.model.dto.BlockHeaderDto;
 import network.nerve.kit.model.dto.RestFulResult;
+import network.nerve.kit.util.BalanceCache;
+import network.nerve.kit.util.BlockHeaderCache;
+import network.nerve.kit.util.ConfirmedObjectCache;
 import network.nerve.kit.util.RestFulUtil;
 
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static network.nerve.kit.util.ValidateUtil.validateChainId;
 
@@ -26,102 +29,132 @@ public class BlockService {
 
     public Result getBlockHeader(long height) {
         validateChainId();
-        RestFulResult restFulResult = RestFulUtil.get("api/block/header/height/" + height);
-        Result result;
-        if (restFulResult.isSuccess()) {
-            result = Result.getSuccess(null);
-            Map<String, Object> map = (Map<String, Object>) restFulResult.getData();
-            BlockHeaderDto dto = BlockHeaderDto.mapToPojo(map);
-            result.setData(dto);
-        } else {
-            ErrorCode errorCode = ErrorCode.init(restFulResult.getError().getCode());
-            result = Result.getFailed(errorCode).setMsg(restFulResult.getError().getMessage());
+        BlockHeaderDto cached = BlockHeaderCache.getInstance().get(height);
+        if (cached != null) {
+            return Result.getSuccess(cached);
         }
-        return result;
+        return toResult(onHeader(RestFulUtil.getObject("api/block/header/height/" + height, BlockHeaderDto.class)));
+    }
+
+    public CompletableFuture<Result> getBlockHeaderAsync(long height) {
+        validateChainId();
+        BlockHeaderDto cached = BlockHeaderCache.getInstance().get(height);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(Result.getSuccess(cached));
+        }
+        return RestFulUtil.getObjectAsync("api/block/header/height/" + height, BlockHeaderDto.class).thenApply(this::onHeader).thenApply(this::toResult);
     }
 
     public Result getBlockHeader(String hash) {
         validateChainId();
-        RestFulResult restFulResult = RestFulUtil.get("api/block/header/hash/" + hash);
-        Result result;
-        if (restFulResult.isSuccess()) {
-            result = Result.getSuccess(null);
-            Map<String, Object> map = (Map<String, Object>) restFulResult.getData();
-            BlockHeaderDto dto = BlockHeaderDto.mapToPojo(map);
-            result.setData(dto);
-        } else {
-            ErrorCode errorCode = ErrorCode.init(restFulResult.getError().getCode());
-            result = Result.getFailed(errorCode).setMsg(restFulResult.getError().getMessage());
+        BlockHeaderDto cached = BlockHeaderCache.getInstance().get(hash);
+        if (cached != null) {
+            return Result.getSuccess(cached);
         }
-        return result;
+        return toResult(onHeader(RestFulUtil.getObject("api/block/header/hash/" + hash, BlockHeaderDto.class)));
     }
 
-    public Result getBestBlockHeader() {
+    public CompletableFuture<Result> getBlockHeaderAsync(String hash) {
         validateChainId();
-        RestFulResult restFulResult = RestFulUtil.get("api/block/header/newest");
-        Result result;
-        if (restFulResult.isSuccess()) {
-            result = Result.getSuccess(null);
-            Map<String, Object> map = (Map<String, Object>) restFulResult.getData();
-            BlockHeaderDto dto = BlockHeaderDto.mapToPojo(map);
-            result.setData(dto);
-        } else {
-            ErrorCode errorCode = ErrorCode.init(restFulResult.getError().getCode());
-            result = Result.getFailed(errorCode).setMsg(restFulResult.getError().getMessage());
+        BlockHeaderDto cached = BlockHeaderCache.getInstance().get(hash);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(Result.getSuccess(cached));
         }
-        return result;
+        return RestFulUtil.getObjectAsync("api/block/header/hash/" + hash, BlockHeaderDto.class).thenApply(this::onHeader).thenApply(this::toResult);
+    }
+
+    public Result getBestBlockHeader() {
+        validateChainId();
+        return toResult(onBestHeader(RestFulUtil.getObject("api/block/header/newest", BlockHeaderDto.class)));
+    }
+
+    public CompletableFuture<Result> getBestBlockHeaderAsync() {
+        validateChainId();
+        return RestFulUtil.getObjectAsync("api/block/header/newest", BlockHeaderDto.class).thenApply(this::onBestHeader).thenApply(this::toResult);
     }
 
     public Result getBlock(long height) {
         validateChainId();
-        RestFulResult restFulResult = RestFulUtil.get("api/block/height/" + height);
-        Result result;
-        if (restFulResult.isSuccess()) {
-            result = Result.getSuccess(null);
-            Map<String, Object> map = (Map<String, Object>) restFulResult.getData();
-            BlockDto dto = BlockDto.mapToPojo(map);
-            result.setData(dto);
-        } else {
-            ErrorCode errorCode = ErrorCode.init(restFulResult.getError().getCode());
-            result = Result.getFailed(errorCode).setMsg(restFulResult.getError().getMessage());
-        }
-        return result;
+        return toResult(onBlock(RestFulUtil.getObject("api/block/height/" + height, BlockDto.class)));
+    }
+
+    public CompletableFuture<Result> getBlockAsync(long height) {
+        validateChainId();
+        return RestFulUtil.getObjectAsync("api/block/height/" + height, BlockDto.class).thenApply(this::onBlock).thenApply(this::toResult);
     }
 
     public Result getBlock(String hash) {
         validateChainId();
-        RestFulResult restFulResult = RestFulUtil.get("api/block/hash/" + hash);
-        Result result;
-        if (restFulResult.isSuccess()) {
-            result = Result.getSuccess(null);
-            Map<String, Object> map = (Map<String, Object>) restFulResult.getData();
-            BlockDto dto = BlockDto.mapToPojo(map);
-            result.setData(dto);
-        } else {
-            ErrorCode errorCode = ErrorCode.init(restFulResult.getError().getCode());
-            result = Result.getFailed(errorCode).setMsg(restFulResult.getError().getMessage());
+        BlockDto cached = ConfirmedObjectCache.getInstance().getBlock(hash);
+        if (cached != null) {
+            return Result.getSuccess(cached);
         }
-        return result;
+        return toResult(onBlock(RestFulUtil.getObject("api/block/hash/" + hash, BlockDto.class)));
+    }
+
+    public CompletableFuture<Result> getBlockAsync(String hash) {
+        validateChainId();
+        BlockDto cached = ConfirmedObjectCache.getInstance().getBlock(hash);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(Result.getSuccess(cached));
+        }
+        return RestFulUtil.getObjectAsync("api/block/hash/" + hash, BlockDto.class).thenApply(this::onBlock).thenApply(this::toResult);
     }
 
     public Result getBestBlock() {
         validateChainId();
-        RestFulResult restFulResult = RestFulUtil.get("api/block/newest");
-        Result result;
+        return toResult(onBestBlock(RestFulUtil.getObject("api/block/newest", BlockDto.class)));
+    }
+
+    public CompletableFuture<Result> getBestBlockAsync() {
+        validateChainId();
+        return RestFulUtil.getObjectAsync("api/block/newest", BlockDto.class).thenApply(this::onBestBlock).thenApply(this::toResult);
+    }
+
+    public Result getInfo() {
+        return toResult(RestFulUtil.get("api/info"));
+    }
+
+    public CompletableFuture<Result> getInfoAsync() {
+        return RestFulUtil.getAsync("api/info").thenApply(this::toResult);
+    }
+
+    private RestFulResult<BlockDto> onBlock(RestFulResult<BlockDto> restFulResult) {
         if (restFulResult.isSuccess()) {
-            result = Result.getSuccess(null);
-            Map<String, Object> map = (Map<String, Object>) restFulResult.getData();
-            BlockDto dto = BlockDto.mapToPojo(map);
-            result.setData(dto);
-        } else {
-            ErrorCode errorCode = ErrorCode.init(restFulResult.getError().getCode());
-            result = Result.getFailed(errorCode).setMsg(restFulResult.getError().getMessage());
+            ConfirmedObjectCache.getInstance().putBlock(restFulResult.getData());
         }
-        return result;
+        return restFulResult;
     }
 
-    public Result getInfo() {
-        RestFulResult restFulResult = RestFulUtil.get("api/info");
+    private RestFulResult<BlockHeaderDto> onHeader(RestFulResult<BlockHeaderDto> restFulResult) {
+        if (restFulResult.isSuccess()) {
+            BlockHeaderCache.getInstance().put(restFulResult.getData());
+        }
+        return restFulResult;
+    }
+
+    /**
+     * 最新高度变化时余额缓存失效, 区块头缓存据此判断确认深度
+     */
+    private RestFulResult<BlockHeaderDto> onBestHeader(RestFulResult<BlockHeaderDto> restFulResult) {
+        if (restFulResult.isSuccess() && restFulResult.getData() != null) {
+            BalanceCache.getInstance().onBestHeight(restFulResult.getData().getHeight());
+            BlockHeaderCache.getInstance().onBestHeight(restFulResult.getData().getHeight());
+            ConfirmedObjectCache.getInstance().onBestHeight(restFulResult.getData().getHeight());
+        }
+        return restFulResult;
+    }
+
+    private RestFulResult<BlockDto> onBestBlock(RestFulResult<BlockDto> restFulResult) {
+        if (restFulResult.isSuccess() && restFulResult.getData() != null && restFulResult.getData().getHeader() != null) {
+            BalanceCache.getInstance().onBestHeight(restFulResult.getData().getHeader().getHeight());
+            BlockHeaderCache.getInstance().onBestHeight(restFulResult.getData().getHeader().getHeight());
+            ConfirmedObjectCache.getInstance().onBestHeight(restFulResult.getData().getHeader().getHeight());
+        }
+        return restFulResult;
+    }
+
+    private Result toResult(RestFulResult restFulResult) {
         Result result;
         if (restFulResult.isSuccess()) {
             result = Result.getSuccess(restFulResult.getData());
@@ -24,10 +24,12 @@ import network.nerve.kit.txdata.*;
 import network.nerve.kit.txdata.linkswap.StableLpSwapTradeData;
 import network.nerve.kit.txdata.linkswap.SwapTradeStableRemoveLpData;
 import network.nerve.kit.util.*;
+import network.nerve.kit.util.WalletNodePool.RouteType;
 
 import java.io.IOException;
 import java.math.BigInteger;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 import static network.nerve.kit.constant.AccountConstant.ALIAS_FEE;
 import static network.nerve.kit.error.TxErrorCode.INVALID_PATH;
@@ -48,13 +50,15 @@ public class TransactionService {
 
     public Result getTx(String txHash) {
         validateChainId();
-        RestFulResult restFulResult = RestFulUtil.get("api/tx/" + txHash);
+        TransactionDto cached = ConfirmedObjectCache.getInstance().getTx(txHash);
+        if (cached != null) {
+            return Result.getSuccess(cached);
+        }
+        RestFulResult<TransactionDto> restFulResult = RestFulUtil.getObject("api/tx/" + txHash, TransactionDto.class);
         Result result;
         if (restFulResult.isSuccess()) {
-            result = Result.getSuccess(null);
-            Map<String, Object> map = (Map<String, Object>) restFulResult.getData();
-            TransactionDto tx = TransactionDto.mapToPojo(map);
-            result.setData(tx);
+            ConfirmedObjectCache.getInstance().putTx(restFulResult.getData());
+            result = Result.getSuccess(restFulResult.getData());
         } else {
             ErrorCode errorCode = ErrorCode.init(restFulResult.getError().getCode());
             result = Result.getFailed(errorCode).setMsg(restFulResult.getError().getMessage());
@@ -63,26 +67,53 @@ public class TransactionService {
     }
 
     public Result getTransaction(String txHash) {
-        validateChainId();
-        RestFulResult restFulResult = RestFulUtil.get("api/tx/" + txHash);
-        Result result;
-        if (restFulResult.isSuccess()) {
-            result = Result.getSuccess(null);
-            Map<String, Object> map = (Map<String, Object>) restFulResult.getData();
-            TransactionDto tx = TransactionDto.mapToPojo(map);
-            restFulResult = RestFulUtil.get("api/block/header/height/" + tx.getBlockHeight());
-            if (restFulResult.isSuccess()) {
-                map = (Map<String, Object>) restFulResult.getData();
-                tx.setBlockHash((String) map.get("hash"));
+        Result result = getTx(txHash);
+        if (result.isSuccess()) {
+            // 查询结果可能与其他调用方共享, 修改前先拷贝
+            TransactionDto tx = ((TransactionDto) result.getData()).copy();
+            Result headerResult = BlockService.getInstance().getBlockHeader(tx.getBlockHeight());
+            if (headerResult.isSuccess()) {
+                tx.setBlockHash(((BlockHeaderDto) headerResult.getData()).getHash());
             }
-            result.setData(tx);
-        } else {
-            ErrorCode errorCode = ErrorCode.init(restFulResult.getError().getCode());
-            result = Result.getFailed(errorCode).setMsg(restFulResult.getError().getMessage());
+            return Result.getSuccess(tx);
         }
         return result;
     }
 
+    public CompletableFuture<Result> getTxAsync(String txHash) {
+        validateChainId();
+        TransactionDto cached = ConfirmedObjectCache.getInstance().getTx(txHash);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(Result.getSuccess(cached));
+        }
+        return RestFulUtil.getObjectAsync("api/tx/" + txHash, TransactionDto.class).thenApply(restFulResult -> {
+            Result result;
+            if (restFulResult.isSuccess()) {
+                ConfirmedObjectCache.getInstance().putTx(restFulResult.getData());
+                result = Result.getSuccess(restFulResult.getData());
+            } else {
+                ErrorCode errorCode = ErrorCode.init(restFulResult.getError().getCode());
+                result = Result.getFailed(errorCode).setMsg(restFulResult.getError().getMessage());
+            }
+            return result;
+        });
+    }
+
+    public CompletableFuture<Result> getTransactionAsync(String txHash) {
+        return getTxAsync(txHash).thenCompose(result -> {
+            if (!result.isSuccess()) {
+                return CompletableFuture.completedFuture(result);
+            }
+            TransactionDto tx = ((TransactionDto) result.getData()).copy();
+            return BlockService.getInstance().getBlockHeaderAsync(tx.getBlockHeight()).thenApply(headerResult -> {
+                if (headerResult.isSuccess()) {
+                    tx.setBlockHash(((BlockHeaderDto) headerResult.getData()).getHash());
+                }
+                return Result.getSuccess(tx);
+            });
+        });
+    }
+
     public Result transfer(TransferForm transferForm) {
         validateChainId();
 
@@ -103,6 +134,17 @@ public class TransactionService {
         return result;
     }
 
+    public CompletableFuture<Result> transferAsync(TransferForm transferForm) {
+        validateChainId();
+        Map<String, Object> params = new HashMap<>();
+        params.put("address", transferForm.getAddress());
+        params.put("toAddress", transferForm.getToAddress());
+        params.put("password", transferForm.getPassword());
+        params.put("amount", transferForm.getAmount());
+        params.put("remark", transferForm.getRemark());
+        return RestFulUtil.postAsync("api/accountledger/transfer", params).thenApply(this::toResult);
+    }
+
     public Result crossTransfer(CrossTransferForm form) {
         validateChainId();
         Map<String, Object> params = new HashMap<>();
@@ -125,6 +167,27 @@ public class TransactionService {
         return result;
     }
 
+    public CompletableFuture<Result> crossTransferAsync(CrossTransferForm form) {
+        validateChainId();
+        Map<String, Object> params = new HashMap<>();
+        params.put("address", form.getAddress());
+        params.put("toAddress", form.getToAddress());
+        params.put("password", form.getPassword());
+        params.put("assetChainId", form.getAssetChainId());
+        params.put("assetId", form.getAssetId());
+        params.put("amount", form.getAmount());
+        params.put("remark", form.getRemark());
+        return RestFulUtil.postAsync("api/accountledger/crossTransfer", params).thenApply(this::toResult);
+    }
+
+    private Result toResult(RestFulResult restFulResult) {
+        if (restFulResult.isSuccess()) {
+            return Result.getSuccess(restFulResult.getData());
+        }
+        ErrorCode errorCode = ErrorCode.init(restFulResult.getError().getCode());
+        return Result.getFailed(errorCode).setMsg(restFulResult.getError().getMessage());
+    }
+
     /**
      * 计算转账交易手续费
      *
@@ -183,17 +246,16 @@ public class TransactionService {
      * @return
      */
     public Result createTxSimpleTransferOfNonNvt(String fromAddress, String toAddress, int assetChainId, int assetId, BigInteger amount, long time, String remark) {
-        Result accountBalanceR = NerveSDKTool.getAccountBalance(fromAddress, assetChainId, assetId);
+        Result accountBalanceR = NonceManager.getInstance().getNonce(fromAddress, assetChainId, assetId);
         if (!accountBalanceR.isSuccess()) {
             return Result.getFailed(accountBalanceR.getErrorCode()).setMsg(accountBalanceR.getMsg());
         }
-        Map balance = (Map) accountBalanceR.getData();
 /*       不验证余额
         BigInteger senderBalance = new BigInteger(balance.get("available").toString());
         if (senderBalance.compareTo(amount) < 0) {
             return Result.getFailed(AccountErrorCode.INSUFFICIENT_BALANCE);
         }*/
-        String nonce = balance.get("nonce").toString();
+        String nonce = (String) accountBalanceR.getData();
 
         TransferDto transferDto = new TransferDto();
         List<CoinFromDto> inputs = new ArrayList<>();
@@ -207,7 +269,7 @@ public class TransactionService {
         from.setNonce(nonce);
         inputs.add(from);
 /*      2021-4-25 取消手续费
-        Result accountBalanceFeeR = NerveSDKTool.getAccountBalance(fromAddress, SDKContext.main_chain_id, SDKContext.main_asset_id);
+        Result accountBalanceFeeR = NerveSDKTool.getAccountBalance(fromAddress, SDKContext.getMainChainId(), SDKContext.getMainAssetId());
         if (!accountBalanceFeeR.isSuccess()) {
             return Result.getFailed(accountBalanceFeeR.getErrorCode()).setMsg(accountBalanceFeeR.getMsg());
         }
@@ -228,8 +290,8 @@ public class TransactionService {
         CoinFromDto fromFee = new CoinFromDto();
         fromFee.setAddress(fromAddress);
         fromFee.setAmount(feeNeed);
-        fromFee.setAssetChainId(SDKContext.main_chain_id);
-        fromFee.setAssetId(SDKContext.main_asset_id);
+        fromFee.setAssetChainId(SDKContext.getMainChainId());
+        fromFee.setAssetId(SDKContext.getMainAssetId());
         fromFee.setNonce(nonceFee);
         inputs.add(fromFee);*/
 
@@ -280,11 +342,10 @@ public class TransactionService {
      * @return
      */
     public Result createTxSimpleTransferOfNvt(String fromAddress, String toAddress, BigInteger amount, long time, String remark) {
-        Result accountBalanceR = NerveSDKTool.getAccountBalance(fromAddress, SDKContext.main_chain_id, SDKContext.main_asset_id);
+        Result accountBalanceR = NonceManager.getInstance().getNonce(fromAddress, SDKContext.getMainChainId(), SDKContext.getMainAssetId());
         if (!accountBalanceR.isSuccess()) {
             return Result.getFailed(accountBalanceR.getErrorCode()).setMsg(accountBalanceR.getMsg());
         }
-        Map balance = (Map) accountBalanceR.getData();
 
 /*      2021-4-25 取消链内手续费
         TransferTxFeeDto feeDto = new TransferTxFeeDto();
@@ -299,7 +360,7 @@ public class TransactionService {
         if (senderBalance.compareTo(amountTotal) < 0) {
             return Result.getFailed(AccountErrorCode.INSUFFICIENT_BALANCE);
         }*/
-        String nonce = balance.get("nonce").toString();
+        String nonce = (String) accountBalanceR.getData();
 
         TransferDto transferDto = new TransferDto();
         List<CoinFromDto> inputs = new ArrayList<>();
@@ -308,8 +369,8 @@ public class TransactionService {
         CoinFromDto from = new CoinFromDto();
         from.setAddress(fromAddress);
         from.setAmount(amount);
-        from.setAssetChainId(SDKContext.main_chain_id);
-        from.setAssetId(SDKContext.main_asset_id);
+        from.setAssetChainId(SDKContext.getMainChainId());
+        from.setAssetId(SDKContext.getMainAssetId());
         from.setNonce(nonce);
         inputs.add(from);
 
@@ -317,8 +378,8 @@ public class TransactionService {
         CoinToDto to = new CoinToDto();
         to.setAddress(toAddress);
         to.setAmount(amount);
-        to.setAssetChainId(SDKContext.main_chain_id);
-        to.setAssetId(SDKContext.main_asset_id);
+        to.setAssetChainId(SDKContext.getMainChainId());
+        to.setAssetId(SDKContext.getMainAssetId());
         outputs.add(to);
 
         transferDto.setInputs(inputs);
@@ -342,32 +403,33 @@ public class TransactionService {
 
             for (CoinFromDto fromDto : transferDto.getInputs()) {
                 if (fromDto.getAssetChainId() == 0) {
-                    fromDto.setAssetChainId(SDKContext.main_chain_id);
+                    fromDto.setAssetChainId(SDKContext.getMainChainId());
                 }
                 if (fromDto.getAssetId() == 0) {
-                    fromDto.setAssetId(SDKContext.main_asset_id);
+                    fromDto.setAssetId(SDKContext.getMainAssetId());
                 }
             }
             for (CoinToDto toDto : transferDto.getOutputs()) {
                 if (toDto.getAssetChainId() == 0) {
-                    toDto.setAssetChainId(SDKContext.main_chain_id);
+                    toDto.setAssetChainId(SDKContext.getMainChainId());
                 }
                 if (toDto.getAssetId() == 0) {
-                    toDto.setAssetId(SDKContext.main_asset_id);
+                    toDto.setAssetId(SDKContext.getMainAssetId());
                 }
             }
 
-            Transaction tx = new Transaction(TxType.TRANSFER);
-            if (transferDto.getTime() != 0) {
-                tx.setTime(transferDto.getTime());
-            } else {
-                tx.setTime(getCurrentTimeSeconds());
+            TransactionBuilder builder = TransactionBuilder.transfer()
+                    .setTime(transferDto.getTime() != 0 ? transferDto.getTime() : getCurrentTimeSeconds())
+                    .setRemark(transferDto.getRemark());
+            for (CoinFromDto from : transferDto.getInputs()) {
+                builder.addFrom(from.getAddress(), from.getAssetChainId(), from.getAssetId(), from.getAmount(), HexUtil.decode(from.getNonce()));
             }
-            tx.setRemark(StringUtils.bytes(transferDto.getRemark()));
+            for (CoinToDto to : transferDto.getOutputs()) {
+                builder.addTo(to.getAddress(), to.getAssetChainId(), to.getAssetId(), to.getAmount(), to.getLockTime());
+            }
+            Transaction tx = builder.build();
 
-            CoinData coinData = assemblyCoinData(transferDto.getInputs(), transferDto.getOutputs(), tx.getSize());
-            tx.setCoinData(coinData.serialize());
-            tx.setHash(NulsHash.calcHash(tx.serializeForHash()));
+            NonceManager.getInstance().onTxCreated(tx);
 
             Map<String, Object> map = new HashMap<>();
             map.put("hash", tx.getHash().toHex());
@@ -380,37 +442,6 @@ public class TransactionService {
         }
     }
 
-    /**
-     * 组装转账交易的coinData数据
-     * Assemble the coinData for the transfer transaction
-     *
-     * @return coinData
-     * @throws NulsException
-     */
-    private CoinData assemblyCoinData(List<CoinFromDto> inputs, List<CoinToDto> outputs, int txSize) throws NulsException {
-        List<CoinFrom> coinFroms = new ArrayList<>();
-        for (CoinFromDto from : inputs) {
-            byte[] address = AddressTool.getAddress(from.getAddress());
-            byte[] nonce = HexUtil.decode(from.getNonce());
-            CoinFrom coinFrom = new CoinFrom(address, from.getAssetChainId(), from.getAssetId(), from.getAmount(), nonce, AccountConstant.NORMAL_TX_LOCKED);
-            coinFroms.add(coinFrom);
-        }
-
-        List<CoinTo> coinTos = new ArrayList<>();
-        for (CoinToDto to : outputs) {
-            byte[] addressByte = AddressTool.getAddress(to.getAddress());
-            CoinTo coinTo = new CoinTo(addressByte, to.getAssetChainId(), to.getAssetId(), to.getAmount(), to.getLockTime());
-            coinTos.add(coinTo);
-        }
-
-        //txSize = txSize + getSignatureSize(coinFroms);
-        //TxUtils.calcTxFee(coinFroms, coinTos, txSize);
-        CoinData coinData = new CoinData();
-        coinData.setFrom(coinFroms);
-        coinData.setTo(coinTos);
-        return coinData;
-    }
-
     /**
      * 便捷版 组装跨链转账非[NULS和NVT]资产的单账户对单账户普通跨链转账(不能用于转NULS和NVT)，用于将资产转入NULS主网。
      * 该方法会主动用fromAddress组装（NULS和NVT资产）打包手续费。
@@ -444,17 +475,16 @@ public class TransactionService {
      * @return
      */
     public Result createCrossTxSimpleTransferOfNonNvtNuls(String fromAddress, String toAddress, int assetChainId, int assetId, BigInteger amount, long time, String remark) {
-        Result accountBalanceR = NerveSDKTool.getAccountBalance(fromAddress, assetChainId, assetId);
+        Result accountBalanceR = NonceManager.getInstance().getNonce(fromAddress, assetChainId, assetId);
         if (!accountBalanceR.isSuccess()) {
             return Result.getFailed(accountBalanceR.getErrorCode()).setMsg(accountBalanceR.getMsg());
         }
-        Map balance = (Map) accountBalanceR.getData();
 /*        不验证余额
         BigInteger senderBalance = new BigInteger(balance.get("available").toString());
         if (senderBalance.compareTo(amount) < 0) {
             return Result.getFailed(AccountErrorCode.INSUFFICIENT_BALANCE);
         }*/
-        String nonce = balance.get("nonce").toString();
+        String nonce = (String) accountBalanceR.getData();
 
         TransferDto transferDto = new TransferDto();
         List<CoinFromDto> inputs = new ArrayList<>();
@@ -479,37 +509,35 @@ public class TransactionService {
         BigInteger feeNulsNeed = feeMap.get("NULS");
 
         /* NVT手续费 资产信息**/
-        Result accountNvtBalanceFeeR = NerveSDKTool.getAccountBalance(fromAddress, SDKContext.main_chain_id, SDKContext.main_asset_id);
+        Result accountNvtBalanceFeeR = NonceManager.getInstance().getNonce(fromAddress, SDKContext.getMainChainId(), SDKContext.getMainAssetId());
         if (!accountNvtBalanceFeeR.isSuccess()) {
             return Result.getFailed(accountNvtBalanceFeeR.getErrorCode()).setMsg(accountNvtBalanceFeeR.getMsg());
         }
-        Map balanceNvtFee = (Map) accountNvtBalanceFeeR.getData();
        /* 不验证余额
        BigInteger senderNvtBalanceFee = new BigInteger(balanceNvtFee.get("available").toString());
         if (senderNvtBalanceFee.compareTo(feeNvtNeed) < 0) {
             return Result.getFailed(AccountErrorCode.INSUFFICIENT_FEE);
         }*/
-        String nonceNvtFee = balanceNvtFee.get("nonce").toString();
+        String nonceNvtFee = (String) accountNvtBalanceFeeR.getData();
 
         /* NULS手续费 资产信息**/
-        Result accountNulsBalanceFeeR = NerveSDKTool.getAccountBalance(fromAddress, SDKContext.nuls_chain_id, SDKContext.nuls_asset_id);
+        Result accountNulsBalanceFeeR = NonceManager.getInstance().getNonce(fromAddress, SDKContext.getNulsChainId(), SDKContext.getNulsAssetId());
         if (!accountNulsBalanceFeeR.isSuccess()) {
             return Result.getFailed(accountNulsBalanceFeeR.getErrorCode()).setMsg(accountNulsBalanceFeeR.getMsg());
         }
-        Map balanceNulsFee = (Map) accountNulsBalanceFeeR.getData();
       /*  不验证余额
         BigInteger senderNulsBalanceFee = new BigInteger(balanceNulsFee.get("available").toString());
         if (senderNulsBalanceFee.compareTo(feeNulsNeed) < 0) {
             return Result.getFailed(AccountErrorCode.INSUFFICIENT_FEE);
         }*/
-        String nonceNulsFee = balanceNulsFee.get("nonce").toString();
+        String nonceNulsFee = (String) accountNulsBalanceFeeR.getData();
 
         //NVT手续费资产
         CoinFromDto fromNvtFee = new CoinFromDto();
         fromNvtFee.setAddress(fromAddress);
         fromNvtFee.setAmount(feeNvtNeed);
-        fromNvtFee.setAssetChainId(SDKContext.main_chain_id);
-        fromNvtFee.setAssetId(SDKContext.main_asset_id);
+        fromNvtFee.setAssetChainId(SDKContext.getMainChainId());
+        fromNvtFee.setAssetId(SDKContext.getMainAssetId());
         fromNvtFee.setNonce(nonceNvtFee);
         inputs.add(fromNvtFee);
 
@@ -517,8 +545,8 @@ public class TransactionService {
         CoinFromDto fromNulsFee = new CoinFromDto();
         fromNulsFee.setAddress(fromAddress);
         fromNulsFee.setAmount(feeNulsNeed);
-        fromNulsFee.setAssetChainId(SDKContext.nuls_chain_id);
-        fromNulsFee.setAssetId(SDKContext.nuls_asset_id);
+        fromNulsFee.setAssetChainId(SDKContext.getNulsChainId());
+        fromNulsFee.setAssetId(SDKContext.getNulsAssetId());
         fromNulsFee.setNonce(nonceNulsFee);
         inputs.add(fromNulsFee);
 
@@ -569,11 +597,10 @@ public class TransactionService {
      * @return
      */
     public Result createCrossTxSimpleTransferOfNvt(String fromAddress, String toAddress, BigInteger amount, long time, String remark) {
-        Result accountBalanceR = NerveSDKTool.getAccountBalance(fromAddress, SDKContext.main_chain_id, SDKContext.main_asset_id);
+        Result accountBalanceR = NonceManager.getInstance().getNonce(fromAddress, SDKContext.getMainChainId(), SDKContext.getMainAssetId());
         if (!accountBalanceR.isSuccess()) {
             return Result.getFailed(accountBalanceR.getErrorCode()).setMsg(accountBalanceR.getMsg());
         }
-        Map balance = (Map) accountBalanceR.getData();
 
 
         CrossTransferTxFeeDto crossFeeDto = new CrossTransferTxFeeDto();
@@ -592,7 +619,7 @@ public class TransactionService {
         if (senderBalance.compareTo(amountTotal) < 0) {
             return Result.getFailed(AccountErrorCode.INSUFFICIENT_BALANCE);
         }*/
-        String nonce = balance.get("nonce").toString();
+        String nonce = (String) accountBalanceR.getData();
 
         TransferDto transferDto = new TransferDto();
         List<CoinFromDto> inputs = new ArrayList<>();
@@ -601,30 +628,29 @@ public class TransactionService {
         CoinFromDto from = new CoinFromDto();
         from.setAddress(fromAddress);
         from.setAmount(amountTotal);
-        from.setAssetChainId(SDKContext.main_chain_id);
-        from.setAssetId(SDKContext.main_asset_id);
+        from.setAssetChainId(SDKContext.getMainChainId());
+        from.setAssetId(SDKContext.getMainAssetId());
         from.setNonce(nonce);
         inputs.add(from);
 
         /* NULS手续费 资产信息**/
-        Result accountNulsBalanceFeeR = NerveSDKTool.getAccountBalance(fromAddress, SDKContext.nuls_chain_id, SDKContext.nuls_asset_id);
+        Result accountNulsBalanceFeeR = NonceManager.getInstance().getNonce(fromAddress, SDKContext.getNulsChainId(), SDKContext.getNulsAssetId());
         if (!accountNulsBalanceFeeR.isSuccess()) {
             return Result.getFailed(accountNulsBalanceFeeR.getErrorCode()).setMsg(accountNulsBalanceFeeR.getMsg());
         }
-        Map balanceNulsFee = (Map) accountNulsBalanceFeeR.getData();
       /* 不验证余额
         BigInteger senderNulsBalanceFee = new BigInteger(balanceNulsFee.get("available").toString());
         if (senderNulsBalanceFee.compareTo(feeNulsNeed) < 0) {
             return Result.getFailed(AccountErrorCode.INSUFFICIENT_FEE);
         }*/
-        String nonceNulsFee = balanceNulsFee.get("nonce").toString();
+        String nonceNulsFee = (String) accountNulsBalanceFeeR.getData();
 
         //NULS手续费资产
         CoinFromDto fromNulsFee = new CoinFromDto();
         fromNulsFee.setAddress(fromAddress);
         fromNulsFee.setAmount(feeNulsNeed);
-        fromNulsFee.setAssetChainId(SDKContext.nuls_chain_id);
-        fromNulsFee.setAssetId(SDKContext.nuls_asset_id);
+        fromNulsFee.setAssetChainId(SDKContext.getNulsChainId());
+        fromNulsFee.setAssetId(SDKContext.getNulsAssetId());
         fromNulsFee.setNonce(nonceNulsFee);
         inputs.add(fromNulsFee);
 
@@ -632,8 +658,8 @@ public class TransactionService {
         CoinToDto to = new CoinToDto();
         to.setAddress(toAddress);
         to.setAmount(amount);
-        to.setAssetChainId(SDKContext.main_chain_id);
-        to.setAssetId(SDKContext.main_asset_id);
+        to.setAssetChainId(SDKContext.getMainChainId());
+        to.setAssetId(SDKContext.getMainAssetId());
         outputs.add(to);
 
         transferDto.setInputs(inputs);
@@ -674,12 +700,10 @@ public class TransactionService {
      * @return
      */
     public Result createCrossTxSimpleTransferOfNuls(String fromAddress, String toAddress, BigInteger amount, long time, String remark) {
-        Result accountNvtBalanceR = NerveSDKTool.getAccountBalance(fromAddress, SDKContext.main_chain_id, SDKContext.main_asset_id);
+        Result accountNvtBalanceR = NonceManager.getInstance().getNonce(fromAddress, SDKContext.getMainChainId(), SDKContext.getMainAssetId());
         if (!accountNvtBalanceR.isSuccess()) {
             return Result.getFailed(accountNvtBalanceR.getErrorCode()).setMsg(accountNvtBalanceR.getMsg());
         }
-        Map balanceNvtFee = (Map) accountNvtBalanceR.getData();
-
 
         CrossTransferTxFeeDto crossFeeDto = new CrossTransferTxFeeDto();
         crossFeeDto.setAddressCount(1);
@@ -695,7 +719,7 @@ public class TransactionService {
         if (senderNvtBalance.compareTo(feeNvtNeed) < 0) {
             return Result.getFailed(AccountErrorCode.INSUFFICIENT_BALANCE);
         }*/
-        String nonceNvtFee = balanceNvtFee.get("nonce").toString();
+        String nonceNvtFee = (String) accountNvtBalanceR.getData();
 
         TransferDto transferDto = new TransferDto();
         List<CoinFromDto> inputs = new ArrayList<>();
@@ -704,31 +728,29 @@ public class TransactionService {
         CoinFromDto from = new CoinFromDto();
         from.setAddress(fromAddress);
         from.setAmount(feeNvtNeed);
-        from.setAssetChainId(SDKContext.main_chain_id);
-        from.setAssetId(SDKContext.main_asset_id);
+        from.setAssetChainId(SDKContext.getMainChainId());
+        from.setAssetId(SDKContext.getMainAssetId());
         from.setNonce(nonceNvtFee);
         inputs.add(from);
 
         /* NULS手续费 资产信息**/
-        Result accountNulsBalanceFeeR = NerveSDKTool.getAccountBalance(fromAddress, SDKContext.nuls_chain_id, SDKContext.nuls_asset_id);
+        Result accountNulsBalanceFeeR = NonceManager.getInstance().getNonce(fromAddress, SDKContext.getNulsChainId(), SDKContext.getNulsAssetId());
         if (!accountNulsBalanceFeeR.isSuccess()) {
             return Result.getFailed(accountNulsBalanceFeeR.getErrorCode()).setMsg(accountNulsBalanceFeeR.getMsg());
         }
-        Map balanceNulsFee = (Map) accountNulsBalanceFeeR.getData();
-        BigInteger senderNulsBalanceFee = new BigInteger(balanceNulsFee.get("available").toString());
         BigInteger amountTotal = amount.add(feeNulsNeed);
       /*  不验证余额
        if (senderNulsBalanceFee.compareTo(amountTotal) < 0) {
             return Result.getFailed(AccountErrorCode.INSUFFICIENT_FEE);
         }*/
-        String nonceNulsFee = balanceNulsFee.get("nonce").toString();
+        String nonceNulsFee = (String) accountNulsBalanceFeeR.getData();
 
         //NULS手续费+转账数量
         CoinFromDto fromNulsFee = new CoinFromDto();
         fromNulsFee.setAddress(fromAddress);
         fromNulsFee.setAmount(amountTotal);
-        fromNulsFee.setAssetChainId(SDKContext.nuls_chain_id);
-        fromNulsFee.setAssetId(SDKContext.nuls_asset_id);
+        fromNulsFee.setAssetChainId(SDKContext.getNulsChainId());
+        fromNulsFee.setAssetId(SDKContext.getNulsAssetId());
         fromNulsFee.setNonce(nonceNulsFee);
         inputs.add(fromNulsFee);
 
@@ -736,8 +758,8 @@ public class TransactionService {
         CoinToDto to = new CoinToDto();
         to.setAddress(toAddress);
         to.setAmount(amount);
-        to.setAssetChainId(SDKContext.nuls_chain_id);
-        to.setAssetId(SDKContext.nuls_asset_id);
+        to.setAssetChainId(SDKContext.getNulsChainId());
+        to.setAssetId(SDKContext.getNulsAssetId());
         outputs.add(to);
 
         transferDto.setInputs(inputs);
@@ -769,6 +791,8 @@ public class TransactionService {
             tx.setCoinData(coinData.serialize());
             tx.setHash(NulsHash.calcHash(tx.serializeForHash()));
 
+            NonceManager.getInstance().onTxCreated(tx);
+
             Map<String, Object> map = new HashMap<>();
             map.put("hash", tx.getHash().toHex());
             map.put("txHex", HexUtil.encode(tx.serialize()));
@@ -835,6 +859,8 @@ public class TransactionService {
             tx.setCoinData(coinData);
             tx.setHash(NulsHash.calcHash(tx.serializeForHash()));
 
+            NonceManager.getInstance().onTxCreated(tx);
+
             Map<String, Object> map = new HashMap<>();
             map.put("hash", tx.getHash().toHex());
             map.put("txHex", HexUtil.encode(tx.serialize()));
@@ -857,7 +883,7 @@ public class TransactionService {
      * @return
      */
     public Result withdrawalAdditionalFeeTxWithNVT(String fromAddress, String txHash, BigInteger amount, long time, String remark, String nonce) {
-        return this.withdrawalAdditionalFeeTxByWholeData(fromAddress, txHash, amount, SDKContext.main_chain_id, SDKContext.main_asset_id, time, remark, nonce);
+        return this.withdrawalAdditionalFeeTxByWholeData(fromAddress, txHash, amount, SDKContext.getMainChainId(), SDKContext.getMainAssetId(), time, remark, nonce);
     }
 
     public Result withdrawalAdditionalFeeTxByWholeData(String fromAddress, String txHash, BigInteger amount, int assetChainId, int assetId, long time, String remark, String nonce) {
@@ -866,7 +892,7 @@ public class TransactionService {
                 time = getCurrentTimeSeconds();
             }
             //转账交易转出地址必须是本链地址
-            if (!AddressTool.validAddress(SDKContext.main_chain_id, fromAddress)) {
+            if (!AddressTool.validAddress(SDKContext.getMainChainId(), fromAddress)) {
                 throw new NulsException(AccountErrorCode.IS_NOT_CURRENT_CHAIN_ADDRESS);
             }
             if (StringUtils.isBlank(txHash)) {
@@ -888,18 +914,18 @@ public class TransactionService {
             tx.setRemark(StringUtils.isBlank(remark) ? null : StringUtils.bytes(remark));
             byte[] coinData;
             if (nonce == null) {
-                Result accountBalance = NerveSDKTool.getAccountBalance(fromAddress, assetChainId, assetId);
-                if (!accountBalance.isSuccess()) {
+                Result nonceResult = NonceManager.getInstance().getNonce(fromAddress, assetChainId, assetId);
+                if (!nonceResult.isSuccess()) {
                     throw new NulsException(AccountErrorCode.NOT_FOUND_NONCE);
                 }
-                Map balanceMap = (Map) accountBalance.getData();
-                //查询账本获取nonce值
-                nonce = balanceMap.get("nonce").toString();
+                nonce = (String) nonceResult.getData();
             }
             coinData = assembleFeeCoinData(fromAddress, amount, assetChainId, assetId, nonce);
             tx.setCoinData(coinData);
             tx.setHash(NulsHash.calcHash(tx.serializeForHash()));
 
+            NonceManager.getInstance().onTxCreated(tx);
+
             Map<String, Object> map = new HashMap<>();
             map.put("hash", tx.getHash().toHex());
             map.put("txHex", HexUtil.encode(tx.serialize()));
@@ -979,6 +1005,8 @@ public class TransactionService {
             }
             tx.setCoinData(TxUtils.nulsData2HexBytes(coinData));
 
+            NonceManager.getInstance().onTxCreated(tx);
+
             Map<String, Object> map = new HashMap<>();
             map.put("hash", tx.getHash().toHex());
             map.put("txHex", HexUtil.encode(TxUtils.nulsData2HexBytes(tx)));
@@ -1027,6 +1055,8 @@ public class TransactionService {
                     amount));
             tx.setCoinData(TxUtils.nulsData2HexBytes(coinData));
 
+            NonceManager.getInstance().onTxCreated(tx);
+
             Map<String, Object> map = new HashMap<>();
             map.put("hash", tx.getHash().toHex());
             map.put("txHex", HexUtil.encode(TxUtils.nulsData2HexBytes(tx)));
@@ -1080,6 +1110,8 @@ public class TransactionService {
                     amountLP));
             tx.setCoinData(TxUtils.nulsData2HexBytes(coinData));
 
+            NonceManager.getInstance().onTxCreated(tx);
+
             Map<String, Object> map = new HashMap<>();
             map.put("hash", tx.getHash().toHex());
             map.put("txHex", HexUtil.encode(TxUtils.nulsData2HexBytes(tx)));
@@ -1097,12 +1129,11 @@ public class TransactionService {
         nonces = new String[length];
         for (int i = 0; i < length; i++) {
             NerveTokenAmount token = tokens[i];
-            Result accountBalance = NerveSDKTool.getAccountBalance(address, token.getChainId(), token.getAssetId());
-            if (!accountBalance.isSuccess()) {
+            Result nonceResult = NonceManager.getInstance().getNonce(address, token.getChainId(), token.getAssetId());
+            if (!nonceResult.isSuccess()) {
                 throw new NulsException(AccountErrorCode.NOT_FOUND_NONCE);
             }
-            Map balance = (Map) accountBalance.getData();
-            nonces[i] = balance.get("nonce").toString();
+            nonces[i] = (String) nonceResult.getData();
         }
         return nonces;
     }
@@ -1111,13 +1142,11 @@ public class TransactionService {
         if (nonce != null) {
             return nonce;
         }
-        Result accountBalance = NerveSDKTool.getAccountBalance(address, token.getChainId(), token.getAssetId());
-        if (!accountBalance.isSuccess()) {
+        Result nonceResult = NonceManager.getInstance().getNonce(address, token.getChainId(), token.getAssetId());
+        if (!nonceResult.isSuccess()) {
             throw new NulsException(AccountErrorCode.NOT_FOUND_NONCE);
         }
-        Map balance = (Map) accountBalance.getData();
-        nonce = balance.get("nonce").toString();
-        return nonce;
+        return (String) nonceResult.getData();
     }
 
     /**
@@ -1131,8 +1160,8 @@ public class TransactionService {
         int withdrawalAssetId = withdrawalTxDto.getAssetId();
         int withdrawalAssetChainId = withdrawalTxDto.getAssetChainId();
 
-        int chainId = SDKContext.main_chain_id;
-        int assetId = SDKContext.main_asset_id;
+        int chainId = SDKContext.getMainChainId();
+        int assetId = SDKContext.getMainAssetId();
         BigInteger amount = withdrawalTxDto.getAmount();
         String address = withdrawalTxDto.getFromAddress();
         //提现资产from
@@ -1196,18 +1225,17 @@ public class TransactionService {
             int withdrawalAssetId,
             BigInteger withdrawalHeterogeneousFeeNvt) throws NulsException {
 
-        Result accountBalance = NerveSDKTool.getAccountBalance(address, withdrawalAssetChainId, withdrawalAssetId);
-        if (!accountBalance.isSuccess()) {
+        Result nonceResult = NonceManager.getInstance().getNonce(address, withdrawalAssetChainId, withdrawalAssetId);
+        if (!nonceResult.isSuccess()) {
             throw new NulsException(AccountErrorCode.NOT_FOUND_NONCE);
         }
-        Map balance = (Map) accountBalance.getData();
 /*      不验证余额是否足够够 保证可以提前组装交易
         BigInteger withdrawalAssetBalance = new BigInteger(balance.get("available").toString());
         if (BigIntegerUtils.isLessThan(withdrawalAssetBalance, amount)) {
             throw new NulsException(AccountErrorCode.INSUFFICIENT_BALANCE);
         }*/
 
-        if (withdrawalAssetChainId == SDKContext.main_chain_id && SDKContext.main_asset_id == withdrawalAssetId) {
+        if (withdrawalAssetChainId == SDKContext.getMainChainId() && SDKContext.getMainAssetId() == withdrawalAssetId) {
             // 异构转出链内主资产, 直接合并到一个coinFrom
             // 总手续费 = 链内打包手续费 + 异构链转账(或签名)手续费[都以链内主资产结算]
             BigInteger totalFee = TransactionFeeCalculator.NORMAL_PRICE_PRE_1024_BYTES.add(withdrawalHeterogeneousFeeNvt);
@@ -1217,7 +1245,7 @@ public class TransactionService {
                 throw new NulsException(AccountErrorCode.INSUFFICIENT_BALANCE);
             }*/
         }
-        String nonce = balance.get("nonce").toString();
+        String nonce = (String) nonceResult.getData();
         return new CoinFrom(
                 AddressTool.getAddress(address),
                 withdrawalAssetChainId,
@@ -1234,7 +1262,7 @@ public class TransactionService {
             int withdrawalAssetId,
             BigInteger withdrawalHeterogeneousFeeNvt,
             String withdrawalAssetNonce) throws NulsException {
-        if (withdrawalAssetChainId == SDKContext.main_chain_id && SDKContext.main_asset_id == withdrawalAssetId) {
+        if (withdrawalAssetChainId == SDKContext.getMainChainId() && SDKContext.getMainAssetId() == withdrawalAssetId) {
             // 异构转出链内主资产, 直接合并到一个coinFrom
             // 总手续费 = 链内打包手续费 + 异构链转账(或签名)手续费[都以链内主资产结算]
             BigInteger totalFee = TransactionFeeCalculator.NORMAL_PRICE_PRE_1024_BYTES.add(withdrawalHeterogeneousFeeNvt);
@@ -1258,16 +1286,13 @@ public class TransactionService {
      * @throws NulsException
      */
     private CoinFrom getWithdrawalFeeCoinFrom(String address, BigInteger withdrawalHeterogeneousFeeNvt) throws NulsException {
-        int chainId = SDKContext.main_chain_id;
-        int assetId = SDKContext.main_asset_id;
+        int chainId = SDKContext.getMainChainId();
+        int assetId = SDKContext.getMainAssetId();
 
-        Result accountBalance = NerveSDKTool.getAccountBalance(address, chainId, assetId);
-        if (!accountBalance.isSuccess()) {
+        Result nonceResult = NonceManager.getInstance().getNonce(address, chainId, assetId);
+        if (!nonceResult.isSuccess()) {
             throw new NulsException(AccountErrorCode.NOT_FOUND_NONCE);
         }
-        Map balanceMap = (Map) accountBalance.getData();
-        // 本链资产余额
-        BigInteger balance = new BigInteger(balanceMap.get("available").toString());
 
         // 总手续费 = 链内打包手续费 + 异构链转账(或签名)手续费[都以链内主资产结算]
         BigInteger totalFee = TransactionFeeCalculator.NORMAL_PRICE_PRE_1024_BYTES.add(withdrawalHeterogeneousFeeNvt);
@@ -1275,15 +1300,15 @@ public class TransactionService {
         if (BigIntegerUtils.isLessThan(balance, totalFee)) {
             throw new NulsException(AccountErrorCode.INSUFFICIENT_BALANCE);
         }*/
-        // 查询账本获取nonce值
-        String nonce = balanceMap.get("nonce").toString();
+        // 由NonceManager获取nonce值, 未启用时查询账本
+        String nonce = (String) nonceResult.getData();
         return new CoinFrom(AddressTool.getAddress(address), chainId, assetId, totalFee, HexUtil.decode(nonce), (byte) 0);
     }
 
     private CoinFrom getWithdrawalFeeCoinFrom(String address, BigInteger withdrawalHeterogeneousFeeNvt,
                                               String nvtFeeAssetNonce) throws NulsException {
-        int chainId = SDKContext.main_chain_id;
-        int assetId = SDKContext.main_asset_id;
+        int chainId = SDKContext.getMainChainId();
+        int assetId = SDKContext.getMainAssetId();
         // 总手续费 = 链内打包手续费 + 异构链转账(或签名)手续费[都以链内主资产结算]
         BigInteger totalFee = TransactionFeeCalculator.NORMAL_PRICE_PRE_1024_BYTES.add(withdrawalHeterogeneousFeeNvt);
         return new CoinFrom(AddressTool.getAddress(address), chainId, assetId, totalFee, HexUtil.decode(nvtFeeAssetNonce), (byte) 0);
@@ -1300,21 +1325,19 @@ public class TransactionService {
      */
     private byte[] assembleFeeCoinData(String address, BigInteger extraFee) throws NulsException {
 
-        int assetChainId = SDKContext.main_chain_id;
-        int assetId = SDKContext.main_asset_id;
-        Result accountBalance = NerveSDKTool.getAccountBalance(address, assetChainId, assetId);
-        if (!accountBalance.isSuccess()) {
+        int assetChainId = SDKContext.getMainChainId();
+        int assetId = SDKContext.getMainAssetId();
+        Result nonceResult = NonceManager.getInstance().getNonce(address, assetChainId, assetId);
+        if (!nonceResult.isSuccess()) {
             throw new NulsException(AccountErrorCode.NOT_FOUND_NONCE);
         }
-        Map balanceMap = (Map) accountBalance.getData();
         BigInteger amount = TransactionFeeCalculator.NORMAL_PRICE_PRE_1024_BYTES.add(extraFee);
 /*        不验证余额
         BigInteger balance = new BigInteger(balanceMap.get("available").toString());
         if (BigIntegerUtils.isLessThan(balance, amount)) {
             throw new NulsException(AccountErrorCode.INSUFFICIENT_BALANCE);
         }*/
-        //查询账本获取nonce值
-        String nonce = balanceMap.get("nonce").toString();
+        String nonce = (String) nonceResult.getData();
         CoinFrom coinFrom = new CoinFrom(
                 AddressTool.getAddress(address),
                 assetChainId,
@@ -1349,8 +1372,8 @@ public class TransactionService {
 
     private byte[] assembleFeeCoinData(String address, BigInteger extraFee, String nonce) throws NulsException {
 
-        int assetChainId = SDKContext.main_chain_id;
-        int assetId = SDKContext.main_asset_id;
+        int assetChainId = SDKContext.getMainChainId();
+        int assetId = SDKContext.getMainAssetId();
         BigInteger amount = TransactionFeeCalculator.NORMAL_PRICE_PRE_1024_BYTES.add(extraFee);
         CoinFrom coinFrom = new CoinFrom(
                 AddressTool.getAddress(address),
@@ -1418,18 +1441,18 @@ public class TransactionService {
             CommonValidator.checkMultiSignTransferDto(transferDto);
             for (CoinFromDto fromDto : transferDto.getInputs()) {
                 if (fromDto.getAssetChainId() == 0) {
-                    fromDto.setAssetChainId(SDKContext.main_chain_id);
+                    fromDto.setAssetChainId(SDKContext.getMainChainId());
                 }
                 if (fromDto.getAssetId() == 0) {
-                    fromDto.setAssetId(SDKContext.main_asset_id);
+                    fromDto.setAssetId(SDKContext.getMainAssetId());
                 }
             }
             for (CoinToDto toDto : transferDto.getOutputs()) {
                 if (toDto.getAssetChainId() == 0) {
-                    toDto.setAssetChainId(SDKContext.main_chain_id);
+                    toDto.setAssetChainId(SDKContext.getMainChainId());
                 }
                 if (toDto.getAssetId() == 0) {
-                    toDto.setAssetId(SDKContext.main_asset_id);
+                    toDto.setAssetId(SDKContext.getMainAssetId());
                 }
             }
 
@@ -1450,6 +1473,8 @@ public class TransactionService {
             signature.setPubKeyList(list);
             tx.setTransactionSignature(signature.serialize());
 
+            NonceManager.getInstance().onTxCreated(tx);
+
             Map<String, Object> map = new HashMap<>();
             map.put("hash", tx.getHash().toHex());
             map.put("txHex", HexUtil.encode(tx.serialize()));
@@ -1540,6 +1565,8 @@ public class TransactionService {
             tx.setCoinData(coinData.serialize());
             tx.setHash(NulsHash.calcHash(tx.serializeForHash()));
 
+            NonceManager.getInstance().onTxCreated(tx);
+
             Map<String, Object> map = new HashMap<>();
             map.put("hash", tx.getHash().toHex());
             map.put("txHex", HexUtil.encode(tx.serialize()));
@@ -1560,17 +1587,17 @@ public class TransactionService {
         coinFrom.setAddress(address);
         coinFrom.setNonce(nonce);
         coinFrom.setAmount(ALIAS_FEE.add(TransactionFeeCalculator.NORMAL_PRICE_PRE_1024_BYTES));
-        coinFrom.setAssetsChainId(SDKContext.main_chain_id);
-        coinFrom.setAssetsId(SDKContext.main_asset_id);
+        coinFrom.setAssetsChainId(SDKContext.getMainChainId());
+        coinFrom.setAssetsId(SDKContext.getMainAssetId());
         coinFroms.add(coinFrom);
 
         String prefix = AccountTool.getPrefix(dto.getAddress());
         List<CoinTo> coinTos = new ArrayList<>();
         CoinTo coinTo = new CoinTo();
-        coinTo.setAddress(AddressTool.getAddress(AccountConstant.DESTORY_PUBKEY, SDKContext.main_chain_id, prefix));
+        coinTo.setAddress(AddressTool.getAddress(AccountConstant.DESTORY_PUBKEY, SDKContext.getMainChainId(), prefix));
         coinTo.setAmount(ALIAS_FEE);
-        coinTo.setAssetsChainId(SDKContext.main_chain_id);
-        coinTo.setAssetsId(SDKContext.main_asset_id);
+        coinTo.setAssetsChainId(SDKContext.getMainChainId());
+        coinTo.setAssetsId(SDKContext.getMainAssetId());
         coinTos.add(coinTo);
 
         CoinData coinData = new CoinData();
@@ -1595,10 +1622,10 @@ public class TransactionService {
             CommonValidator.validateConsensusDto(consensusDto);
 
             if (consensusDto.getInput().getAssetChainId() == 0) {
-                consensusDto.getInput().setAssetChainId(SDKContext.main_chain_id);
+                consensusDto.getInput().setAssetChainId(SDKContext.getMainChainId());
             }
             if (consensusDto.getInput().getAssetId() == 0) {
-                consensusDto.getInput().setAssetId(SDKContext.main_asset_id);
+                consensusDto.getInput().setAssetId(SDKContext.getMainAssetId());
             }
 
             Transaction tx = new Transaction(TxType.REGISTER_AGENT);
@@ -1615,6 +1642,8 @@ public class TransactionService {
             tx.setCoinData(coinData.serialize());
             tx.setHash(NulsHash.calcHash(tx.serializeForHash()));
 
+            NonceManager.getInstance().onTxCreated(tx);
+
             Map<String, Object> map = new HashMap<>();
             map.put("hash", tx.getHash().toHex());
             map.put("txHex", HexUtil.encode(tx.serialize()));
@@ -1638,10 +1667,10 @@ public class TransactionService {
         try {
             CommonValidator.validateDepositDto(dto);
             if (dto.getInput().getAssetChainId() == 0) {
-                dto.getInput().setAssetChainId(SDKContext.main_chain_id);
+                dto.getInput().setAssetChainId(SDKContext.getMainChainId());
             }
             if (dto.getInput().getAssetId() == 0) {
-                dto.getInput().setAssetId(SDKContext.main_asset_id);
+                dto.getInput().setAssetId(SDKContext.getMainAssetId());
             }
 
             Transaction tx = new Transaction(TxType.DEPOSIT);
@@ -1655,6 +1684,8 @@ public class TransactionService {
             tx.setCoinData(coinData.serialize());
             tx.setHash(NulsHash.calcHash(tx.serializeForHash()));
 
+            NonceManager.getInstance().onTxCreated(tx);
+
             Map<String, Object> map = new HashMap<>();
             map.put("hash", tx.getHash().toHex());
             map.put("txHex", HexUtil.encode(tx.serialize()));
@@ -1701,10 +1732,10 @@ public class TransactionService {
             }
             CommonValidator.validateWithDrawDto(dto);
             if (dto.getInput().getAssetChainId() == 0) {
-                dto.getInput().setAssetChainId(SDKContext.main_chain_id);
+                dto.getInput().setAssetChainId(SDKContext.getMainChainId());
             }
             if (dto.getInput().getAssetId() == 0) {
-                dto.getInput().setAssetId(SDKContext.main_asset_id);
+                dto.getInput().setAssetId(SDKContext.getMainAssetId());
             }
 
             Transaction tx = new Transaction(TxType.CANCEL_DEPOSIT);
@@ -1719,6 +1750,8 @@ public class TransactionService {
             tx.setCoinData(coinData.serialize());
             tx.setHash(NulsHash.calcHash(tx.serializeForHash()));
 
+            NonceManager.getInstance().onTxCreated(tx);
+
             Map<String, Object> map = new HashMap<>();
             map.put("hash", tx.getHash().toHex());
             map.put("txHex", HexUtil.encode(tx.serialize()));
@@ -1777,10 +1810,10 @@ public class TransactionService {
             CommonValidator.validateStopConsensusDto(dto);
             for (StopDepositDto depositDto : dto.getDepositList()) {
                 if (depositDto.getInput().getAssetChainId() == 0) {
-                    depositDto.getInput().setAssetChainId(SDKContext.main_chain_id);
+                    depositDto.getInput().setAssetChainId(SDKContext.getMainChainId());
                 }
                 if (depositDto.getInput().getAssetId() == 0) {
-                    depositDto.getInput().setAssetId(SDKContext.main_asset_id);
+                    depositDto.getInput().setAssetId(SDKContext.getMainAssetId());
                 }
             }
 
@@ -1796,6 +1829,8 @@ public class TransactionService {
             tx.setCoinData(coinData.serialize());
             tx.setHash(NulsHash.calcHash(tx.serializeForHash()));
 
+            NonceManager.getInstance().onTxCreated(tx);
+
             Map<String, Object> map = new HashMap<>();
             map.put("hash", tx.getHash().toHex());
             map.put("txHex", HexUtil.encode(tx.serialize()));
@@ -1817,8 +1852,8 @@ public class TransactionService {
      */
     private CoinData assemblyCoinData(StopConsensusDto dto, int txSize) throws NulsException {
         //获取当前链注册共识资产的chainId和assetId
-        int chainId = SDKContext.main_chain_id;
-        int assetId = SDKContext.main_asset_id;
+        int chainId = SDKContext.getMainChainId();
+        int assetId = SDKContext.getMainAssetId();
 
         List<CoinFrom> coinFromList = new ArrayList<>();
         //组装创建节点交易的coinFrom
@@ -1908,15 +1943,81 @@ public class TransactionService {
      * @return
      */
     public Result broadcastTx(String txHex) {
-        RpcResult<Map> balanceResult = JsonRpcUtil.request("broadcastTx", ListUtil.of(SDKContext.main_chain_id, txHex));
+        RpcResult<Map> balanceResult = JsonRpcUtil.request("broadcastTx", ListUtil.of(SDKContext.getMainChainId(), txHex));
+        // 广播完成后再失效, 避免广播期间的查询把旧余额写回缓存
+        BalanceCache.getInstance().onBroadcast(txHex);
         RpcResultError rpcResultError = balanceResult.getError();
         if (rpcResultError != null) {
+            NonceManager.getInstance().onBroadcastFailed(txHex);
             return Result.getFailed(ErrorCode.init(rpcResultError.getCode())).setMsg(rpcResultError.getMessage());
         }
         Map result = balanceResult.getResult();
         return Result.getSuccess(result);
     }
 
+    /**
+     * 广播已组装签名的交易对象, 只在这里编码为hex
+     *
+     * @param tx
+     * @return
+     */
+    public Result broadcastTx(Transaction tx) {
+        try {
+            return broadcastTx(HexUtil.encode(tx.serialize()));
+        } catch (IOException e) {
+            return Result.getFailed(AccountErrorCode.SERIALIZE_ERROR).setMsg(e.getMessage());
+        }
+    }
+
+    /**
+     * 异步广播交易
+     *
+     * @param txHex
+     * @return
+     */
+    public CompletableFuture<Result> broadcastTxAsync(String txHex) {
+        CompletableFuture<RpcResult> future = JsonRpcUtil.requestAsync("broadcastTx", ListUtil.of(SDKContext.getMainChainId(), txHex));
+        return future.thenApply(rpcResult -> {
+            BalanceCache.getInstance().onBroadcast(txHex);
+            RpcResultError rpcResultError = rpcResult.getError();
+            if (rpcResultError != null) {
+                NonceManager.getInstance().onBroadcastFailed(txHex);
+                return Result.getFailed(ErrorCode.init(rpcResultError.getCode())).setMsg(rpcResultError.getMessage());
+            }
+            return Result.getSuccess(rpcResult.getResult());
+        });
+    }
+
+    /**
+     * 批量广播交易
+     * 所有交易打包为一个JSON-RPC批量请求发送, 返回结果与txHexList顺序一致
+     *
+     * @param txHexList
+     * @return
+     */
+    public List<Result> broadcastTxs(List<String> txHexList) {
+        List<JsonRpcRequest> requests = new ArrayList<>(txHexList.size());
+        for (String txHex : txHexList) {
+            requests.add(new JsonRpcRequest("broadcastTx", ListUtil.of(SDKContext.getMainChainId(), txHex)));
+        }
+        List<RpcResult> rpcResults = JsonRpcUtil.batchRequest(requests);
+        for (String txHex : txHexList) {
+            BalanceCache.getInstance().onBroadcast(txHex);
+        }
+        List<Result> results = new ArrayList<>(rpcResults.size());
+        for (int i = 0; i < rpcResults.size(); i++) {
+            RpcResult<Map> rpcResult = rpcResults.get(i);
+            RpcResultError rpcResultError = rpcResult.getError();
+            if (rpcResultError != null) {
+                NonceManager.getInstance().onBroadcastFailed(txHexList.get(i));
+                results.add(Result.getFailed(ErrorCode.init(rpcResultError.getCode())).setMsg(rpcResultError.getMessage()));
+            } else {
+                results.add(Result.getSuccess(rpcResult.getResult()));
+            }
+        }
+        return results;
+    }
+
     /**
      * 验证交易
      *
@@ -1929,10 +2030,16 @@ public class TransactionService {
             if (StringUtils.isBlank(txHex)) {
                 throw new NulsException(AccountErrorCode.PARAMETER_ERROR, "form is empty");
             }
+            if (TxPreValidator.getInstance().isEnabled()) {
+                Result preResult = TxPreValidator.getInstance().validate(txHex);
+                if (!preResult.isSuccess()) {
+                    return preResult;
+                }
+            }
             Map<String, Object> map = new HashMap<>();
             map.put("txHex", txHex);
 
-            RestFulResult restFulResult = RestFulUtil.post("api/accountledger/transaction/validate", map);
+            RestFulResult restFulResult = RestFulUtil.post("api/accountledger/transaction/validate", map, RouteType.READ);
             Result result;
             if (restFulResult.isSuccess()) {
                 result = Result.getSuccess(restFulResult.getData());
@@ -1946,6 +2053,37 @@ public class TransactionService {
         }
     }
 
+    /**
+     * 异步验证交易
+     *
+     * @param txHex
+     * @return
+     */
+    public CompletableFuture<Result> validateTxAsync(String txHex) {
+        validateChainId();
+        if (StringUtils.isBlank(txHex)) {
+            return CompletableFuture.completedFuture(Result.getFailed(AccountErrorCode.PARAMETER_ERROR).setMsg("form is empty"));
+        }
+        if (TxPreValidator.getInstance().isEnabled()) {
+            Result preResult = TxPreValidator.getInstance().validate(txHex);
+            if (!preResult.isSuccess()) {
+                return CompletableFuture.completedFuture(preResult);
+            }
+        }
+        Map<String, Object> map = new HashMap<>();
+        map.put("txHex", txHex);
+        return RestFulUtil.postAsync("api/accountledger/transaction/validate", map, RouteType.READ).thenApply(restFulResult -> {
+            Result result;
+            if (restFulResult.isSuccess()) {
+                result = Result.getSuccess(restFulResult.getData());
+            } else {
+                ErrorCode errorCode = ErrorCode.init(restFulResult.getError().getCode());
+                result = Result.getFailed(errorCode).setMsg(restFulResult.getError().getMessage());
+            }
+            return result;
+        });
+    }
+
     public Result createMultiSignConsensusTx(MultiSignConsensusDto consensusDto) {
         validateChainId();
         try {
@@ -1954,10 +2092,10 @@ public class TransactionService {
             }
             CommonValidator.validateMultiSignConsensusDto(consensusDto);
             if (consensusDto.getInput().getAssetChainId() == 0) {
-                consensusDto.getInput().setAssetChainId(SDKContext.main_chain_id);
+                consensusDto.getInput().setAssetChainId(SDKContext.getMainChainId());
             }
             if (consensusDto.getInput().getAssetId() == 0) {
-                consensusDto.getInput().setAssetId(SDKContext.main_asset_id);
+                consensusDto.getInput().setAssetId(SDKContext.getMainAssetId());
             }
 
             Transaction tx = new Transaction(TxType.REGISTER_AGENT);
@@ -1982,6 +2120,8 @@ public class TransactionService {
             signature.setPubKeyList(list);
             tx.setTransactionSignature(signature.serialize());
 
+            NonceManager.getInstance().onTxCreated(tx);
+
             Map<String, Object> map = new HashMap<>();
             map.put("hash", tx.getHash().toHex());
             map.put("txHex", HexUtil.encode(tx.serialize()));
@@ -2018,10 +2158,10 @@ public class TransactionService {
         try {
             CommonValidator.validateMultiSignDepositDto(dto);
             if (dto.getInput().getAssetChainId() == 0) {
-                dto.getInput().setAssetChainId(SDKContext.main_chain_id);
+                dto.getInput().setAssetChainId(SDKContext.getMainChainId());
             }
             if (dto.getInput().getAssetId() == 0) {
-                dto.getInput().setAssetId(SDKContext.main_asset_id);
+                dto.getInput().setAssetId(SDKContext.getMainAssetId());
             }
 
             Transaction tx = new Transaction(TxType.DEPOSIT);
@@ -2043,6 +2183,8 @@ public class TransactionService {
             signature.setPubKeyList(list);
             tx.setTransactionSignature(signature.serialize());
 
+            NonceManager.getInstance().onTxCreated(tx);
+
             Map<String, Object> map = new HashMap<>();
             map.put("hash", tx.getHash().toHex());
             map.put("txHex", HexUtil.encode(tx.serialize()));
@@ -2068,10 +2210,10 @@ public class TransactionService {
             }
             CommonValidator.validateMultiSignWithDrawDto(dto);
             if (dto.getInput().getAssetChainId() == 0) {
-                dto.getInput().setAssetChainId(SDKContext.main_chain_id);
+                dto.getInput().setAssetChainId(SDKContext.getMainChainId());
             }
             if (dto.getInput().getAssetId() == 0) {
-                dto.getInput().setAssetId(SDKContext.main_asset_id);
+                dto.getInput().setAssetId(SDKContext.getMainAssetId());
             }
 
             Transaction tx = new Transaction(TxType.CANCEL_DEPOSIT);
@@ -2094,6 +2236,8 @@ public class TransactionService {
             signature.setPubKeyList(list);
             tx.setTransactionSignature(signature.serialize());
 
+            NonceManager.getInstance().onTxCreated(tx);
+
             Map<String, Object> map = new HashMap<>();
             map.put("hash", tx.getHash().toHex());
             map.put("txHex", HexUtil.encode(tx.serialize()));
@@ -2115,10 +2259,10 @@ public class TransactionService {
             CommonValidator.validateMultiSignStopConsensusDto(dto);
             for (StopDepositDto depositDto : dto.getDepositList()) {
                 if (depositDto.getInput().getAssetChainId() == 0) {
-                    depositDto.getInput().setAssetChainId(SDKContext.main_chain_id);
+                    depositDto.getInput().setAssetChainId(SDKContext.getMainChainId());
                 }
                 if (depositDto.getInput().getAssetId() == 0) {
-                    depositDto.getInput().setAssetId(SDKContext.main_asset_id);
+                    depositDto.getInput().setAssetId(SDKContext.getMainAssetId());
                 }
             }
 
@@ -2142,6 +2286,8 @@ public class TransactionService {
             signature.setPubKeyList(list);
             tx.setTransactionSignature(signature.serialize());
 
+            NonceManager.getInstance().onTxCreated(tx);
+
             Map<String, Object> map = new HashMap<>();
             map.put("hash", tx.getHash().toHex());
             map.put("txHex", HexUtil.encode(tx.serialize()));
@@ -2177,6 +2323,8 @@ public class TransactionService {
             signature.setPubKeyList(list);
             tx.setTransactionSignature(signature.serialize());
 
+            NonceManager.getInstance().onTxCreated(tx);
+
             Map<String, Object> map = new HashMap<>();
             map.put("hash", tx.getHash().toHex());
             map.put("txHex", HexUtil.encode(tx.serialize()));
@@ -2194,7 +2342,7 @@ public class TransactionService {
 
     public Result swapCreatePair(String from, NerveToken tokenA, NerveToken tokenB, String remark) {
         try {
-            int chainId = SDKContext.main_chain_id;
+            int chainId = SDKContext.getMainChainId();
             // 组装交易
             CreatePairData data = new CreatePairData();
             data.setToken0(tokenA);
@@ -2223,6 +2371,7 @@ public class TransactionService {
                     mainToken.getAssetId(),
                     BigInteger.ZERO));
             tx.setCoinData(TxUtils.nulsData2HexBytes(coinData));
+            NonceManager.getInstance().onTxCreated(tx);
             Map<String, Object> map = new HashMap<>();
             map.put("hash", tx.getHash().toHex());
             map.put("txHex", HexUtil.encode(TxUtils.nulsData2HexBytes(tx)));
@@ -2242,7 +2391,7 @@ public class TransactionService {
             if (deadline == null || deadline.longValue() <= 0) {
                 deadline = currentTimeSeconds + 300;
             }
-            int chainId = SDKContext.main_chain_id;
+            int chainId = SDKContext.getMainChainId();
             byte[] fromBytes = AddressTool.getAddress(from);
             byte[] pairAddress = TxUtils.getPairAddress(chainId, tokenA, tokenB);
             // 组装交易
@@ -2289,6 +2438,7 @@ public class TransactionService {
                     tokenB.getAssetId(),
                     amountB));
             tx.setCoinData(TxUtils.nulsData2HexBytes(coinData));
+            NonceManager.getInstance().onTxCreated(tx);
             Map<String, Object> map = new HashMap<>();
             map.put("hash", tx.getHash().toHex());
             map.put("txHex", HexUtil.encode(TxUtils.nulsData2HexBytes(tx)));
@@ -2304,7 +2454,7 @@ public class TransactionService {
             if (deadline == null || deadline.longValue() <= 0) {
                 deadline = currentTimeSeconds + 300;
             }
-            int chainId = SDKContext.main_chain_id;
+            int chainId = SDKContext.getMainChainId();
             byte[] fromBytes = AddressTool.getAddress(from);
             byte[] feeToBytes = feeTo != null ? AddressTool.getAddress(feeTo) : null;
 
@@ -2345,6 +2495,7 @@ public class TransactionService {
                     tokenIn.getAssetId(),
                     amountIn));
             tx.setCoinData(TxUtils.nulsData2HexBytes(coinData));
+            NonceManager.getInstance().onTxCreated(tx);
             Map<String, Object> map = new HashMap<>();
             map.put("hash", tx.getHash().toHex());
             map.put("txHex", HexUtil.encode(TxUtils.nulsData2HexBytes(tx)));
@@ -2360,7 +2511,7 @@ public class TransactionService {
             if (deadline == null || deadline.longValue() <= 0) {
                 deadline = currentTimeSeconds + 300;
             }
-            int chainId = SDKContext.main_chain_id;
+            int chainId = SDKContext.getMainChainId();
             byte[] fromBytes = AddressTool.getAddress(from);
             byte[] feeToBytes = feeTo != null ? AddressTool.getAddress(feeTo) : null;
 
@@ -2401,6 +2552,7 @@ public class TransactionService {
                     tokenIn.getAssetId(),
                     amountIn));
             tx.setCoinData(TxUtils.nulsData2HexBytes(coinData));
+            NonceManager.getInstance().onTxCreated(tx);
             Map<String, Object> map = new HashMap<>();
             map.put("hash", tx.getHash().toHex());
             map.put("txHex", HexUtil.encode(TxUtils.nulsData2HexBytes(tx)));
@@ -2416,7 +2568,7 @@ public class TransactionService {
             if (deadline == null || deadline.longValue() <= 0) {
                 deadline = currentTimeSeconds + 300;
             }
-            int chainId = SDKContext.main_chain_id;
+            int chainId = SDKContext.getMainChainId();
             byte[] fromBytes = AddressTool.getAddress(from);
             byte[] feeToBytes = feeTo != null ? AddressTool.getAddress(feeTo) : null;
 
@@ -2458,6 +2610,7 @@ public class TransactionService {
                     tokenIn.getAssetId(),
                     amountIn));
             tx.setCoinData(TxUtils.nulsData2HexBytes(coinData));
+            NonceManager.getInstance().onTxCreated(tx);
             Map<String, Object> map = new HashMap<>();
             map.put("hash", tx.getHash().toHex());
             map.put("txHex", HexUtil.encode(TxUtils.nulsData2HexBytes(tx)));
@@ -0,0 +1,278 @@
+package network.nerve.kit.util;
+
+import network.nerve.core.log.Log;
+import network.nerve.kit.model.AddressActivity;
+import network.nerve.kit.model.AddressActivity.Direction;
+import network.nerve.kit.model.dto.BlockDto;
+import network.nerve.kit.model.dto.CoinFromsDto;
+import network.nerve.kit.model.dto.CoinTosDto;
+import network.nerve.kit.model.dto.TransactionDto;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 地址资产变动索引
+ * 逐个区块解析交易的from/to, 维护 地址 -> (高度, 交易hash, 资产, 数量, 方向) 的索引, 查询为内存中的哈希查找
+ * 数据以每个区块一帧的形式追加写入dir/activity.log, 打开时以内存映射读取并重建内存索引, 末尾不完整的帧(写入中断)被截掉,
+ * 之后从最后索引的高度继续. 可通过 {@link #setWatchAddresses(Collection)} 只索引关注的地址, 修改关注列表不会补建之前的区块
+ */
+public class AddressActivityIndex implements Closeable {
+
+    private static final String LOG_FILE = "activity.log";
+
+    private final FileChannel channel;
+    private final Map<String, List<AddressActivity>> activities = new ConcurrentHashMap<>();
+    private volatile Set<String> watchAddresses;
+    private volatile long lastHeight = -1;
+    private volatile boolean sync;
+    private volatile boolean closed;
+    private Thread worker;
+    private BlockStream stream;
+
+    public AddressActivityIndex(File dir) throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("can not create dir: " + dir);
+        }
+        channel = FileChannel.open(new File(dir, LOG_FILE).toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        load();
+    }
+
+    private void load() throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            return;
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        int end = 0;
+        try {
+            while (buffer.remaining() >= 4) {
+                int length = buffer.getInt();
+                if (length < 12 || length > buffer.remaining()) {
+                    break;
+                }
+                ByteBuffer frame = buffer.slice();
+                frame.limit(length);
+                // 整帧解析成功后才加入索引, 损坏的帧会从文件中截掉, 不能留下其中的部分记录
+                long height = frame.getLong();
+                List<AddressActivity> list = readFrame(height, frame);
+                for (AddressActivity activity : list) {
+                    add(activity);
+                }
+                lastHeight = height;
+                buffer.position(buffer.position() + length);
+                end = buffer.position();
+            }
+        } catch (BufferUnderflowException | NegativeArraySizeException | NumberFormatException e) {
+            Log.warn("address activity log corrupted at {}", end);
+        }
+        if (end < size) {
+            channel.truncate(end);
+        }
+        channel.position(end);
+    }
+
+    private static List<AddressActivity> readFrame(long height, ByteBuffer frame) {
+        int count = frame.getInt();
+        List<AddressActivity> list = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Direction direction = frame.get() == 0 ? Direction.IN : Direction.OUT;
+            String address = readString(frame);
+            String txHash = readString(frame);
+            int assetChainId = frame.getInt();
+            int assetId = frame.getInt();
+            byte[] amount = new byte[frame.getShort()];
+            frame.get(amount);
+            list.add(new AddressActivity(address, height, txHash, assetChainId, assetId, new BigInteger(amount), direction));
+        }
+        return list;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void add(AddressActivity activity) {
+        List<AddressActivity> list = activities.computeIfAbsent(activity.getAddress(), k -> new ArrayList<>());
+        synchronized (list) {
+            list.add(activity);
+        }
+    }
+
+    /**
+     * 索引一个区块, 不高于已索引高度的区块被忽略
+     */
+    public synchronized void index(BlockDto block) throws IOException {
+        long height = block.getHeader().getHeight();
+        if (height <= lastHeight) {
+            return;
+        }
+        List<AddressActivity> list = new ArrayList<>();
+        if (block.getTxs() != null) {
+            for (TransactionDto tx : block.getTxs()) {
+                if (tx.getFrom() != null) {
+                    for (CoinFromsDto from : tx.getFrom()) {
+                        collect(list, from.getAddress(), height, tx.getHash(), from.getAssetsChainId(), from.getAssetsId(), from.getAmount(), Direction.OUT);
+                    }
+                }
+                if (tx.getTo() != null) {
+                    for (CoinTosDto to : tx.getTo()) {
+                        collect(list, to.getAddress(), height, tx.getHash(), to.getAssetsChainId(), to.getAssetsId(), to.getAmount(), Direction.IN);
+                    }
+                }
+            }
+        }
+        channel.write(encode(height, list));
+        if (sync) {
+            channel.force(false);
+        }
+        for (AddressActivity activity : list) {
+            add(activity);
+        }
+        lastHeight = height;
+    }
+
+    private void collect(List<AddressActivity> list, String address, long height, String txHash, int assetChainId, int assetId, String amount, Direction direction) {
+        Set<String> watch = watchAddresses;
+        if (address == null || (watch != null && !watch.contains(address))) {
+            return;
+        }
+        list.add(new AddressActivity(address, height, txHash, assetChainId, assetId, new BigInteger(amount), direction));
+    }
+
+    private static ByteBuffer encode(long height, List<AddressActivity> list) {
+        List<byte[][]> fields = new ArrayList<>(list.size());
+        int length = 12;
+        for (AddressActivity activity : list) {
+            byte[][] f = {
+                    activity.getAddress().getBytes(StandardCharsets.UTF_8),
+                    activity.getTxHash().getBytes(StandardCharsets.UTF_8),
+                    activity.getAmount().toByteArray()
+            };
+            fields.add(f);
+            length += 1 + 2 + f[0].length + 2 + f[1].length + 8 + 2 + f[2].length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(4 + length);
+        buffer.putInt(length);
+        buffer.putLong(height);
+        buffer.putInt(list.size());
+        for (int i = 0; i < list.size(); i++) {
+            AddressActivity activity = list.get(i);
+            byte[][] f = fields.get(i);
+            buffer.put((byte) (activity.getDirection() == Direction.IN ? 0 : 1));
+            buffer.putShort((short) f[0].length).put(f[0]);
+            buffer.putShort((short) f[1].length).put(f[1]);
+            buffer.putInt(activity.getAssetChainId());
+            buffer.putInt(activity.getAssetId());
+            buffer.putShort((short) f[2].length).put(f[2]);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 查询地址的全部资产变动, 按高度升序
+     */
+    public List<AddressActivity> query(String address) {
+        return query(address, 0);
+    }
+
+    /**
+     * 查询地址在fromHeight(包含)之后的资产变动, 按高度升序
+     */
+    public List<AddressActivity> query(String address, long fromHeight) {
+        List<AddressActivity> list = activities.get(address);
+        if (list == null) {
+            return Collections.emptyList();
+        }
+        List<AddressActivity> result = new ArrayList<>();
+        synchronized (list) {
+            for (AddressActivity activity : list) {
+                if (activity.getHeight() >= fromHeight) {
+                    result.add(activity);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 在后台线程中跟随链上最新高度持续索引, 从已索引高度的下一个区块(首次为fromHeight)开始
+     */
+    public synchronized AddressActivityIndex start(long fromHeight) {
+        if (worker != null) {
+            return this;
+        }
+        // 后台线程使用调用方绑定的客户端
+        worker = NerveClient.threadFactory(NerveClient.current(), "address-activity-index").newThread(() -> {
+            while (!closed) {
+                try (BlockStream blocks = new BlockStream(Math.max(lastHeight + 1, fromHeight), BlockStream.FOLLOW, 8)) {
+                    stream = blocks;
+                    while (!closed && blocks.hasNext()) {
+                        index(blocks.next());
+                    }
+                } catch (Exception e) {
+                    if (closed) {
+                        return;
+                    }
+                    Log.error(e);
+                    try {
+                        Thread.sleep(1000);
+                    } catch (InterruptedException ie) {
+                        return;
+                    }
+                }
+            }
+        });
+        worker.start();
+        return this;
+    }
+
+    public long getLastHeight() {
+        return lastHeight;
+    }
+
+    public Set<String> getWatchAddresses() {
+        return watchAddresses;
+    }
+
+    /**
+     * 只索引这些地址, null表示索引所有地址
+     */
+    public AddressActivityIndex setWatchAddresses(Collection<String> watchAddresses) {
+        this.watchAddresses = watchAddresses == null ? null : Collections.unmodifiableSet(new HashSet<>(watchAddresses));
+        return this;
+    }
+
+    /**
+     * 每个区块写入后是否强制刷盘, 默认只写入系统缓存
+     */
+    public AddressActivityIndex setSync(boolean sync) {
+        this.sync = sync;
+        return this;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        BlockStream blocks = stream;
+        if (blocks != null) {
+            blocks.close();
+        }
+        synchronized (this) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package network.nerve.kit.util;
+
+import network.nerve.core.basic.Result;
+import network.nerve.core.constant.CommonCodeConstanst;
+import network.nerve.core.constant.ErrorCode;
+import network.nerve.core.log.Log;
+import network.nerve.kit.model.NerveToken;
+import network.nerve.kit.model.dto.JsonRpcRequest;
+import network.nerve.kit.model.dto.RpcResult;
+import network.nerve.kit.model.dto.RpcResultError;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static network.nerve.kit.constant.Constant.PUBLIC_SERVER_URL;
+
+/**
+ * 资产信息缓存
+ * 按 资产链ID + 资产ID 缓存公共服务getSymbolInfo的结果(symbol、decimals、usdPrice等)
+ * 未超过freshMillis的直接返回; 超过freshMillis但未超过maxStaleMillis的先返回旧值, 同时在后台刷新(每个资产同一时刻只有一个刷新请求);
+ * 超过maxStaleMillis或未缓存的同步查询. 可通过 {@link #prefetch(Collection)} 批量预取, 通过 {@link #setRefreshIntervalMillis(long)} 定时批量刷新已缓存的资产
+ * 返回的Map在调用方之间共享, 不应修改. 默认关闭, 关闭时每次都查询公共服务
+ */
+public class AssetInfoCache {
+
+    private static final String METHOD = "getSymbolInfo";
+
+    private static class Entry {
+        private final Map<String, Object> info;
+        private final long loadedAt;
+
+        Entry(Map<String, Object> info) {
+            this.info = info;
+            this.loadedAt = System.currentTimeMillis();
+        }
+    }
+
+    private static final AssetInfoCache instance = new AssetInfoCache(null);
+
+    /**
+     * @return 当前线程绑定的 {@link NerveClient} 的实例, 未绑定时为默认实例
+     */
+    public static AssetInfoCache getInstance() {
+        NerveClient client = NerveClient.current();
+        return client == null ? instance : client.getAssetInfoCache();
+    }
+
+    private final Map<NerveToken, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<NerveToken, AtomicBoolean> refreshing = new ConcurrentHashMap<>();
+    private volatile boolean enabled;
+    private volatile String serverUrl = PUBLIC_SERVER_URL;
+    private volatile long freshMillis = 30000;
+    private volatile long maxStaleMillis = 600000;
+    private ScheduledExecutorService refresher;
+    private final NerveClient client;
+
+    /**
+     * @param client 后台线程绑定的客户端, 默认实例为null
+     */
+    AssetInfoCache(NerveClient client) {
+        this.client = client;
+    }
+
+    /**
+     * 获取资产信息
+     *
+     * @return 成功时data为getSymbolInfo返回的Map
+     */
+    public Result getSymbolInfo(int assetChainId, int assetId) {
+        NerveToken token = new NerveToken(assetChainId, assetId);
+        Entry entry = get(token);
+        if (entry != null) {
+            return Result.getSuccess(CommonCodeConstanst.SUCCESS).setData(entry.info);
+        }
+        return toResult(token, JsonRpcUtil.request(serverUrl, METHOD, ListUtil.of(assetChainId, assetId)));
+    }
+
+    public CompletableFuture<Result> getSymbolInfoAsync(int assetChainId, int assetId) {
+        NerveToken token = new NerveToken(assetChainId, assetId);
+        Entry entry = get(token);
+        if (entry != null) {
+            return CompletableFuture.completedFuture(Result.getSuccess(CommonCodeConstanst.SUCCESS).setData(entry.info));
+        }
+        CompletableFuture<RpcResult> future = JsonRpcUtil.requestAsync(serverUrl, METHOD, ListUtil.of(assetChainId, assetId));
+        return future.thenApply(rpcResult -> toResult(token, rpcResult));
+    }
+
+    /**
+     * 返回可用的缓存项, 已过fresh期的同时触发后台刷新
+     */
+    private Entry get(NerveToken token) {
+        if (!enabled) {
+            return null;
+        }
+        Entry entry = entries.get(token);
+        if (entry == null) {
+            return null;
+        }
+        long age = System.currentTimeMillis() - entry.loadedAt;
+        if (age < freshMillis) {
+            return entry;
+        }
+        if (age < maxStaleMillis) {
+            refresh(token);
+            return entry;
+        }
+        return null;
+    }
+
+    private void refresh(NerveToken token) {
+        AtomicBoolean flag = refreshing.computeIfAbsent(token, k -> new AtomicBoolean());
+        if (!flag.compareAndSet(false, true)) {
+            return;
+        }
+        CompletableFuture<RpcResult> future = JsonRpcUtil.requestAsync(serverUrl, METHOD, ListUtil.of(token.getChainId(), token.getAssetId()));
+        future.thenAccept(rpcResult -> toResult(token, rpcResult)).whenComplete((r, e) -> flag.set(false));
+    }
+
+    /**
+     * 批量预取资产信息, 以一个JSON-RPC批量请求完成
+     *
+     * @return 成功加载的数量
+     */
+    public int prefetch(Collection<NerveToken> tokens) {
+        List<NerveToken> list = new ArrayList<>(tokens);
+        List<JsonRpcRequest> requests = new ArrayList<>(list.size());
+        for (NerveToken token : list) {
+            requests.add(new JsonRpcRequest(METHOD, ListUtil.of(token.getChainId(), token.getAssetId())));
+        }
+        List<RpcResult> results = JsonRpcUtil.batchRequest(serverUrl, requests);
+        int loaded = 0;
+        for (int i = 0; i < results.size(); i++) {
+            if (toResult(list.get(i), results.get(i)).isSuccess()) {
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
+    private Result toResult(NerveToken token, RpcResult rpcResult) {
+        RpcResultError rpcResultError = rpcResult.getError();
+        if (rpcResultError != null) {
+            return Result.getFailed(ErrorCode.init(rpcResultError.getCode())).setMsg(rpcResultError.getMessage());
+        }
+        Object info = rpcResult.getResult();
+        if (enabled && info instanceof Map) {
+            entries.put(token, new Entry((Map<String, Object>) info));
+        }
+        return Result.getSuccess(CommonCodeConstanst.SUCCESS).setData(info);
+    }
+
+    public void invalidate(int assetChainId, int assetId) {
+        entries.remove(new NerveToken(assetChainId, assetId));
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public AssetInfoCache setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            entries.clear();
+        }
+        return this;
+    }
+
+    /**
+     * 后台定时批量刷新所有已缓存的资产, 0表示不刷新
+     */
+    public synchronized AssetInfoCache setRefreshIntervalMillis(long intervalMillis) {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+        if (intervalMillis > 0) {
+            refresher = Executors.newSingleThreadScheduledExecutor(NerveClient.threadFactory(client, "asset-info-refresh"));
+            refresher.scheduleWithFixedDelay(() -> {
+                if (enabled && !entries.isEmpty()) {
+                    try {
+                        prefetch(entries.keySet());
+                    } catch (Exception e) {
+                        Log.error(e);
+                    }
+                }
+            }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+        return this;
+    }
+
+    public String getServerUrl() {
+        return serverUrl;
+    }
+
+    /**
+     * 资产信息服务地址, 默认为 {@link network.nerve.kit.constant.Constant#PUBLIC_SERVER_URL}
+     */
+    public AssetInfoCache setServerUrl(String serverUrl) {
+        this.serverUrl = serverUrl;
+        return this;
+    }
+
+    public long getFreshMillis() {
+        return freshMillis;
+    }
+
+    public AssetInfoCache setFreshMillis(long freshMillis) {
+        this.freshMillis = freshMillis;
+        return this;
+    }
+
+    public long getMaxStaleMillis() {
+        return maxStaleMillis;
+    }
+
+    /**
+     * 旧值最多可使用多久, 超过后同步查询
+     */
+    public AssetInfoCache setMaxStaleMillis(long maxStaleMillis) {
+        this.maxStaleMillis = maxStaleMillis;
+        return this;
+    }
+}
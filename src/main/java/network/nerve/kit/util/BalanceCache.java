@@ -0,0 +1,292 @@
+package network.nerve.kit.util;
+
+import network.nerve.base.basic.AddressTool;
+import network.nerve.base.data.CoinData;
+import network.nerve.base.data.CoinFrom;
+import network.nerve.base.data.CoinTo;
+import network.nerve.base.data.Transaction;
+import network.nerve.core.crypto.HexUtil;
+import network.nerve.core.log.Log;
+import network.nerve.kit.model.dto.AccountBalanceDto;
+import network.nerve.kit.service.BlockService;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 账户余额缓存
+ * 按 地址 + 资产链ID + 资产ID 缓存账本查询结果(余额与nonce), 以下情况视为失效:
+ * 超过TTL; 最新区块高度在缓存之后发生变化; 广播了涉及该账户该资产的交易
+ * 最新高度来自SDK的最新区块查询, 也可通过 {@link #setHeightPollIntervalMillis(long)} 在后台定时查询
+ * 查询前通过 {@link #ticket()} 记录发起时刻, 缓存的有效期与高度按发起时刻计算; 查询期间该账户资产被广播或失效时丢弃查询结果
+ * 返回的余额对象在调用方之间共享, 不应修改. 默认关闭, 通过 {@link #setEnabled(boolean)} 开启
+ */
+public class BalanceCache {
+
+    private static class Entry {
+        private final long expireAt;
+        private final long height;
+        private volatile Map<String, Object> map;
+        private volatile AccountBalanceDto dto;
+
+        Entry(long expireAt, long height) {
+            this.expireAt = expireAt;
+            this.height = height;
+        }
+    }
+
+    /**
+     * 查询发起时刻的记录, 写入缓存时据此判断结果是否已过时
+     */
+    public static final class Ticket {
+        private final long seq;
+        private final long millis;
+        private final long height;
+
+        private Ticket(long seq, long millis, long height) {
+            this.seq = seq;
+            this.millis = millis;
+            this.height = height;
+        }
+    }
+
+    private static class Invalidation {
+        private final long seq;
+        private final long millis;
+
+        Invalidation(long seq, long millis) {
+            this.seq = seq;
+            this.millis = millis;
+        }
+    }
+
+    private static final BalanceCache instance = new BalanceCache(null);
+
+    /**
+     * @return 当前线程绑定的 {@link NerveClient} 的实例, 未绑定时为默认实例
+     */
+    public static BalanceCache getInstance() {
+        NerveClient client = NerveClient.current();
+        return client == null ? instance : client.getBalanceCache();
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    /**
+     * 各账户资产最近一次失效的序号, 超过TTL的记录不再需要
+     */
+    private final Map<String, Invalidation> invalidations = new ConcurrentHashMap<>();
+    private final AtomicLong seq = new AtomicLong();
+    private volatile long clearedSeq;
+    private volatile boolean enabled;
+    private volatile long ttlMillis = 3000;
+    private volatile int maxEntries = 10000;
+    private volatile long bestHeight;
+    private ScheduledExecutorService heightPoller;
+    private final NerveClient client;
+
+    /**
+     * @param client 后台线程绑定的客户端, 默认实例为null
+     */
+    BalanceCache(NerveClient client) {
+        this.client = client;
+    }
+
+    public Map<String, Object> getMap(String address, int chainId, int assetId) {
+        Entry entry = get(address, chainId, assetId);
+        return entry == null ? null : entry.map;
+    }
+
+    public AccountBalanceDto getDto(String address, int chainId, int assetId) {
+        Entry entry = get(address, chainId, assetId);
+        return entry == null ? null : entry.dto;
+    }
+
+    /**
+     * 在发起查询前调用
+     */
+    public Ticket ticket() {
+        return new Ticket(seq.get(), System.currentTimeMillis(), bestHeight);
+    }
+
+    public void putMap(String address, int chainId, int assetId, Map<String, Object> balance, Ticket ticket) {
+        if (enabled && balance != null) {
+            Entry entry = entry(address, chainId, assetId, ticket);
+            if (entry != null) {
+                entry.map = balance;
+            }
+        }
+    }
+
+    public void putDto(String address, int chainId, int assetId, AccountBalanceDto balance, Ticket ticket) {
+        if (enabled && balance != null) {
+            Entry entry = entry(address, chainId, assetId, ticket);
+            if (entry != null) {
+                entry.dto = balance;
+            }
+        }
+    }
+
+    private Entry get(String address, int chainId, int assetId) {
+        if (!enabled) {
+            return null;
+        }
+        String key = key(address, chainId, assetId);
+        Entry entry = entries.get(key);
+        if (entry != null && !isValid(entry)) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * @return 查询结果已过时时返回null
+     */
+    private Entry entry(String address, int chainId, int assetId, Ticket ticket) {
+        String key = key(address, chainId, assetId);
+        if (ticket.seq < clearedSeq || ticket.height < bestHeight || ticket.millis + ttlMillis <= System.currentTimeMillis()) {
+            return null;
+        }
+        if (entries.size() >= maxEntries) {
+            evict();
+        }
+        Entry entry = entries.compute(key, (k, e) -> e != null && isValid(e) ? e : new Entry(ticket.millis + ttlMillis, ticket.height));
+        // 与失效并发时以失效为准
+        Invalidation invalidation = invalidations.get(key);
+        if (invalidation != null && invalidation.seq > ticket.seq) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * 缓存已满时先清除失效的缓存, 仍然已满时清除约十分之一
+     */
+    private void evict() {
+        entries.values().removeIf(e -> !isValid(e));
+        int excess = entries.size() - maxEntries + Math.max(1, maxEntries / 10);
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (excess-- > 0 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private boolean isValid(Entry entry) {
+        return entry.expireAt > System.currentTimeMillis() && entry.height >= bestHeight;
+    }
+
+    /**
+     * 得知新的最新区块高度时调用, 之前缓存的余额全部失效
+     */
+    public void onBestHeight(long height) {
+        if (height > bestHeight) {
+            bestHeight = height;
+        }
+    }
+
+    /**
+     * 广播交易时调用, 丢弃交易中所有from与to对应的余额
+     */
+    public void onBroadcast(String txHex) {
+        if (!enabled || entries.isEmpty()) {
+            return;
+        }
+        try {
+            Transaction tx = Transaction.getInstance(HexUtil.decode(txHex));
+            if (tx.getCoinData() == null) {
+                return;
+            }
+            CoinData coinData = tx.getCoinDataInstance();
+            for (CoinFrom from : coinData.getFrom()) {
+                invalidate(key(AddressTool.getStringAddressByBytes(from.getAddress()), from.getAssetsChainId(), from.getAssetsId()));
+            }
+            for (CoinTo to : coinData.getTo()) {
+                invalidate(key(AddressTool.getStringAddressByBytes(to.getAddress()), to.getAssetsChainId(), to.getAssetsId()));
+            }
+        } catch (Exception e) {
+            Log.error(e);
+            clear();
+        }
+    }
+
+    public void invalidate(String address, int chainId, int assetId) {
+        invalidate(key(address, chainId, assetId));
+    }
+
+    private void invalidate(String key) {
+        long now = System.currentTimeMillis();
+        if (invalidations.size() >= maxEntries) {
+            // 早于TTL发起的查询已不会写入缓存
+            invalidations.values().removeIf(i -> i.millis + ttlMillis < now);
+        }
+        invalidations.put(key, new Invalidation(seq.incrementAndGet(), now));
+        entries.remove(key);
+    }
+
+    public void clear() {
+        clearedSeq = seq.incrementAndGet();
+        entries.clear();
+        invalidations.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static String key(String address, int chainId, int assetId) {
+        return address + "-" + chainId + "-" + assetId;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public BalanceCache setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            clear();
+        }
+        return this;
+    }
+
+    /**
+     * 后台定时查询最新区块高度, 0表示不查询
+     */
+    public synchronized BalanceCache setHeightPollIntervalMillis(long intervalMillis) {
+        if (heightPoller != null) {
+            heightPoller.shutdownNow();
+            heightPoller = null;
+        }
+        if (intervalMillis > 0) {
+            heightPoller = Executors.newSingleThreadScheduledExecutor(NerveClient.threadFactory(client, "balance-cache-height"));
+            // BlockService在查询到最新区块头时回调onBestHeight
+            heightPoller.scheduleWithFixedDelay(() -> {
+                if (enabled) {
+                    BlockService.getInstance().getBestBlockHeader();
+                }
+            }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+        return this;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public BalanceCache setTtlMillis(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        return this;
+    }
+
+    public BalanceCache setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+        return this;
+    }
+}
@@ -0,0 +1,396 @@
+package network.nerve.kit.util;
+
+import network.nerve.SDKContext;
+import network.nerve.base.basic.AddressTool;
+import network.nerve.base.data.CoinFrom;
+import network.nerve.base.data.CoinTo;
+import network.nerve.base.data.Transaction;
+import network.nerve.core.basic.Result;
+import network.nerve.core.constant.CommonCodeConstanst;
+import network.nerve.core.crypto.ECKey;
+import network.nerve.core.crypto.HexUtil;
+import network.nerve.core.parse.SerializeUtils;
+import network.nerve.kit.constant.AccountConstant;
+import network.nerve.kit.error.AccountErrorCode;
+import network.nerve.kit.service.TransactionService;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 批量转账
+ * 按 转出地址 + 资产 分组, 每组只查询一次nonce, 之后按 TxUtils.getNonce(上一笔交易hash) 在本地串联;
+ * 每笔交易在不超过交易大小与输出数量上限的前提下装入尽可能多的转账, 同一交易中不会出现重复的接收地址;
+ * 组装与签名在ForkJoin线程池中并行执行, 广播时同一组的交易按nonce顺序依次发送, 不同组最多maxConcurrency组同时发送,
+ * 某笔交易广播失败后同组之后的交易不再广播
+ * 返回结果与转账列表顺序一致, 成功时data为所在交易的hash, future不会以异常结束
+ */
+public class BatchPayout {
+
+    /**
+     * 单笔转账, 资产链ID与资产ID为0时使用当前链的主资产
+     */
+    public static class Item {
+        private final String from;
+        private final String to;
+        private final int assetChainId;
+        private final int assetId;
+        private final BigInteger amount;
+
+        public Item(String from, String to, BigInteger amount) {
+            this(from, to, 0, 0, amount);
+        }
+
+        public Item(String from, String to, int assetChainId, int assetId, BigInteger amount) {
+            this.from = from;
+            this.to = to;
+            this.assetChainId = assetChainId;
+            this.assetId = assetId;
+            this.amount = amount;
+        }
+
+        public String getFrom() {
+            return from;
+        }
+
+        public String getTo() {
+            return to;
+        }
+
+        public int getAssetChainId() {
+            return assetChainId;
+        }
+
+        public int getAssetId() {
+            return assetId;
+        }
+
+        public BigInteger getAmount() {
+            return amount;
+        }
+    }
+
+    private static class Group {
+        private final String from;
+        private final byte[] fromBytes;
+        private final int assetChainId;
+        private final int assetId;
+        private final List<Integer> indexes = new ArrayList<>();
+        private final List<Item> items = new ArrayList<>();
+        private final List<Packed> txs = new ArrayList<>();
+        private ECKey key;
+        private byte[] nonce;
+
+        Group(String from, int assetChainId, int assetId) {
+            this.from = from;
+            this.fromBytes = AddressTool.getAddress(from);
+            this.assetChainId = assetChainId;
+            this.assetId = assetId;
+        }
+    }
+
+    private static class Packed {
+        private final Transaction tx;
+        private final ECKey key;
+        private final List<Integer> indexes;
+        private String txHex;
+
+        Packed(Transaction tx, ECKey key, List<Integer> indexes) {
+            this.tx = tx;
+            this.key = key;
+            this.indexes = indexes;
+        }
+    }
+
+    private final List<ECKey> keys = new ArrayList<>();
+    private volatile int parallelism = Runtime.getRuntime().availableProcessors();
+    private volatile int maxConcurrency = 8;
+    private volatile int maxTxSize = 300 * 1024;
+    private volatile int maxOutputsPerTx = Integer.MAX_VALUE;
+    private volatile String remark;
+
+    /**
+     * 添加转出地址的私钥, 转出地址没有对应私钥的转账直接失败
+     */
+    public synchronized BatchPayout addPrivateKey(String priKey) {
+        keys.add(ECKey.fromPrivate(HexUtil.decode(priKey)));
+        return this;
+    }
+
+    public List<Result> pay(List<Item> items) {
+        return payAsync(items).join();
+    }
+
+    /**
+     * 在调用线程中查询nonce并完成组装与签名, 广播异步进行
+     */
+    public CompletableFuture<List<Result>> payAsync(List<Item> items) {
+        Result[] results = new Result[items.size()];
+        Collection<Group> groups = group(items, results);
+        NonceManager nonceManager = NonceManager.getInstance();
+        List<Group> ready = new ArrayList<>();
+        for (Group group : groups) {
+            if (group.key == null) {
+                set(results, group.indexes, Result.getFailed(AccountErrorCode.PARAMETER_ERROR).setMsg("private key of [" + group.from + "] is not set"));
+                continue;
+            }
+            Result nonceResult = nonceManager.getNonce(group.from, group.assetChainId, group.assetId);
+            if (!nonceResult.isSuccess()) {
+                set(results, group.indexes, nonceResult);
+                continue;
+            }
+            group.nonce = HexUtil.decode((String) nonceResult.getData());
+            ready.add(group);
+        }
+        long time = System.currentTimeMillis() / 1000;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            // 同组的交易依赖上一笔的hash, 组内顺序组装, 组间并行; 签名不影响hash, 全部交易并行签名
+            pool.submit(() -> ready.parallelStream().forEach(group -> pack(group, time, results))).get();
+            List<Packed> txs = new ArrayList<>();
+            for (Group group : ready) {
+                for (Packed packed : group.txs) {
+                    // 组装顺序即nonce推进顺序
+                    nonceManager.onTxCreated(packed.tx);
+                    txs.add(packed);
+                }
+            }
+            pool.submit(() -> txs.parallelStream().forEach(packed -> sign(packed, results))).get();
+            for (Group group : ready) {
+                for (Packed packed : group.txs) {
+                    if (packed.txHex == null) {
+                        // 之后的交易不会广播, 本地nonce作废
+                        nonceManager.invalidate(group.from, group.assetChainId, group.assetId);
+                        break;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.completedFuture(finish(results, Result.getFailed(CommonCodeConstanst.SYS_UNKOWN_EXCEPTION).setMsg("interrupted")));
+        } catch (ExecutionException e) {
+            return CompletableFuture.completedFuture(finish(results, Result.getFailed(CommonCodeConstanst.SYS_UNKOWN_EXCEPTION).setMsg(String.valueOf(e.getCause()))));
+        } finally {
+            pool.shutdown();
+        }
+
+        Queue<Group> queue = new ConcurrentLinkedQueue<>();
+        for (Group group : ready) {
+            if (!group.txs.isEmpty()) {
+                queue.add(group);
+            }
+        }
+        int lanes = Math.min(maxConcurrency, queue.size());
+        CompletableFuture<?>[] futures = new CompletableFuture[lanes];
+        for (int i = 0; i < lanes; i++) {
+            futures[i] = broadcastNext(queue, results);
+        }
+        return CompletableFuture.allOf(futures).thenApply(v -> finish(results, null));
+    }
+
+    private Collection<Group> group(List<Item> items, Result[] results) {
+        int chainId = SDKContext.getMainChainId();
+        Map<String, ECKey> keysByAddress = new HashMap<>();
+        synchronized (this) {
+            for (ECKey key : keys) {
+                keysByAddress.put(HexUtil.encode(AddressTool.getAddress(key.getPubKey(), chainId)), key);
+            }
+        }
+        Map<String, Group> groups = new LinkedHashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            String error = validate(item, chainId);
+            if (error != null) {
+                results[i] = Result.getFailed(AccountErrorCode.PARAMETER_ERROR).setMsg(error);
+                continue;
+            }
+            int assetChainId = item.assetChainId == 0 ? chainId : item.assetChainId;
+            int assetId = item.assetId == 0 ? SDKContext.getMainAssetId() : item.assetId;
+            Group group = groups.computeIfAbsent(item.from + "-" + assetChainId + "-" + assetId, k -> {
+                Group g = new Group(item.from, assetChainId, assetId);
+                g.key = keysByAddress.get(HexUtil.encode(g.fromBytes));
+                return g;
+            });
+            group.indexes.add(i);
+            group.items.add(item);
+        }
+        return groups.values();
+    }
+
+    private static String validate(Item item, int chainId) {
+        if (item == null) {
+            return "item is null";
+        }
+        if (!AddressTool.validAddress(chainId, item.from)) {
+            return "from address [" + item.from + "] is invalid";
+        }
+        if (!AddressTool.validAddress(chainId, item.to)) {
+            return "to address [" + item.to + "] is invalid";
+        }
+        if (item.assetChainId < 0 || item.assetId < 0) {
+            return "asset [" + item.assetChainId + "-" + item.assetId + "] is invalid";
+        }
+        if (item.amount == null || item.amount.signum() <= 0) {
+            return "amount [" + item.amount + "] is invalid";
+        }
+        return null;
+    }
+
+    private void pack(Group group, long time, Result[] results) {
+        List<Integer> pending = group.indexes;
+        List<Item> items = group.items;
+        byte[] nonce = group.nonce;
+        // from的金额为定长编码, 大小与金额无关
+        int fromSize = SerializeUtils.sizeOfNulsData(new CoinFrom(group.fromBytes, group.assetChainId, group.assetId, BigInteger.ZERO, nonce, AccountConstant.NORMAL_TX_LOCKED));
+        int start = 0;
+        try {
+            while (start < pending.size()) {
+                TransactionBuilder builder = TransactionBuilder.transfer().setTime(time).setRemark(remark);
+                Set<String> receivers = new HashSet<>();
+                BigInteger total = BigInteger.ZERO;
+                int end = start;
+                while (end < pending.size() && builder.getToCount() < maxOutputsPerTx) {
+                    Item item = items.get(end);
+                    byte[] to = AddressTool.getAddress(item.to);
+                    if (!receivers.add(HexUtil.encode(to))) {
+                        break;
+                    }
+                    CoinTo coinTo = new CoinTo(to, group.assetChainId, group.assetId, item.amount);
+                    if (builder.getToCount() > 0 && builder.estimateSize(1) + fromSize + SerializeUtils.sizeOfNulsData(coinTo) > maxTxSize) {
+                        break;
+                    }
+                    builder.addTo(coinTo);
+                    total = total.add(item.amount);
+                    end++;
+                }
+                builder.addFrom(new CoinFrom(group.fromBytes, group.assetChainId, group.assetId, total, nonce, AccountConstant.NORMAL_TX_LOCKED));
+                Transaction tx = builder.build();
+                group.txs.add(new Packed(tx, group.key, pending.subList(start, end)));
+                nonce = TxUtils.getNonce(tx.getHash().getBytes());
+                start = end;
+            }
+        } catch (IOException e) {
+            set(results, pending.subList(start, pending.size()), Result.getFailed(AccountErrorCode.SERIALIZE_ERROR).setMsg(e.getMessage()));
+        }
+    }
+
+    private void sign(Packed packed, Result[] results) {
+        try {
+            TransactionBuilder.sign(packed.tx, packed.key);
+            packed.txHex = HexUtil.encode(packed.tx.serialize());
+        } catch (Exception e) {
+            set(results, packed.indexes, Result.getFailed(CommonCodeConstanst.SIGNATURE_ERROR).setMsg(e.getMessage()));
+        }
+    }
+
+    private CompletableFuture<Void> broadcastNext(Queue<Group> queue, Result[] results) {
+        Group group = queue.poll();
+        if (group == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return broadcast(group, 0, results).thenCompose(v -> broadcastNext(queue, results));
+    }
+
+    private CompletableFuture<Void> broadcast(Group group, int index, Result[] results) {
+        if (index == group.txs.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Packed packed = group.txs.get(index);
+        if (packed.txHex == null) {
+            skip(group, index, results, results[packed.indexes.get(0)]);
+            return CompletableFuture.completedFuture(null);
+        }
+        return TransactionService.getInstance().broadcastTxAsync(packed.txHex).thenCompose(result -> {
+            if (!result.isSuccess()) {
+                set(results, packed.indexes, result);
+                skip(group, index, results, result);
+                return CompletableFuture.completedFuture(null);
+            }
+            set(results, packed.indexes, Result.getSuccess(packed.tx.getHash().toHex()));
+            return broadcast(group, index + 1, results);
+        });
+    }
+
+    /**
+     * 第index笔交易失败后, 同组之后的交易因nonce不连续不再广播
+     */
+    private static void skip(Group group, int index, Result[] results, Result cause) {
+        String hash = group.txs.get(index).tx.getHash().toHex();
+        for (int i = index + 1; i < group.txs.size(); i++) {
+            set(results, group.txs.get(i).indexes, Result.getFailed(cause.getErrorCode()).setMsg("previous transaction " + hash + " failed: " + cause.getMsg()));
+        }
+    }
+
+    private static void set(Result[] results, List<Integer> indexes, Result result) {
+        for (int index : indexes) {
+            results[index] = result;
+        }
+    }
+
+    private static List<Result> finish(Result[] results, Result unfinished) {
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                results[i] = unfinished;
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * 组装与签名的并行度, 默认为CPU核数
+     */
+    public BatchPayout setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * 同时广播的分组数
+     */
+    public BatchPayout setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+        return this;
+    }
+
+    public int getMaxTxSize() {
+        return maxTxSize;
+    }
+
+    /**
+     * 单笔交易签名后的最大字节数, 默认300K
+     */
+    public BatchPayout setMaxTxSize(int maxTxSize) {
+        this.maxTxSize = maxTxSize;
+        return this;
+    }
+
+    public int getMaxOutputsPerTx() {
+        return maxOutputsPerTx;
+    }
+
+    public BatchPayout setMaxOutputsPerTx(int maxOutputsPerTx) {
+        this.maxOutputsPerTx = maxOutputsPerTx;
+        return this;
+    }
+
+    /**
+     * 所有交易使用的备注
+     */
+    public BatchPayout setRemark(String remark) {
+        this.remark = remark;
+        return this;
+    }
+}
@@ -0,0 +1,156 @@
+package network.nerve.kit.util;
+
+import network.nerve.kit.model.dto.BlockHeaderDto;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 区块头缓存
+ * 按高度缓存区块头(LRU), 同时维护 hash -> 高度 的索引, 查询区块头与交易所在区块时复用
+ * 缓存时距最新高度已超过确认深度的区块头视为不可回滚, 只受容量淘汰; 较新的区块头可能因分叉被替换, 只缓存recentTtlMillis
+ * 最新高度取已知的最新区块高度与缓存过的最大高度中较大者. 默认关闭, 通过 {@link #setEnabled(boolean)} 开启
+ */
+public class BlockHeaderCache {
+
+    private static class Entry {
+        private final BlockHeaderDto header;
+        private final boolean confirmed;
+        private final long expireAt;
+
+        Entry(BlockHeaderDto header, boolean confirmed, long expireAt) {
+            this.header = header;
+            this.confirmed = confirmed;
+            this.expireAt = expireAt;
+        }
+    }
+
+    private static final BlockHeaderCache instance = new BlockHeaderCache();
+
+    /**
+     * @return 当前线程绑定的 {@link NerveClient} 的实例, 未绑定时为默认实例
+     */
+    public static BlockHeaderCache getInstance() {
+        NerveClient client = NerveClient.current();
+        return client == null ? instance : client.getBlockHeaderCache();
+    }
+
+    private final Map<String, Long> heights = new HashMap<>();
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            if (size() > maxEntries) {
+                heights.remove(eldest.getValue().header.getHash());
+                return true;
+            }
+            return false;
+        }
+    };
+    private volatile boolean enabled;
+    private volatile int maxEntries = 2000;
+    private volatile int confirmedDepth = 30;
+    private volatile long recentTtlMillis = 3000;
+    private volatile long bestHeight;
+
+    public synchronized BlockHeaderDto get(long height) {
+        if (!enabled) {
+            return null;
+        }
+        Entry entry = entries.get(height);
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.confirmed && entry.expireAt <= System.currentTimeMillis()) {
+            remove(height);
+            return null;
+        }
+        return entry.header;
+    }
+
+    public synchronized BlockHeaderDto get(String hash) {
+        if (!enabled || hash == null) {
+            return null;
+        }
+        Long height = heights.get(hash);
+        return height == null ? null : get(height);
+    }
+
+    public synchronized void put(BlockHeaderDto header) {
+        if (!enabled || header == null || header.getHash() == null) {
+            return;
+        }
+        long height = header.getHeight();
+        onBestHeight(height);
+        boolean confirmed = height <= bestHeight - confirmedDepth;
+        remove(height);
+        entries.put(height, new Entry(header, confirmed, System.currentTimeMillis() + recentTtlMillis));
+        heights.put(header.getHash(), height);
+    }
+
+    private void remove(long height) {
+        Entry entry = entries.remove(height);
+        if (entry != null) {
+            heights.remove(entry.header.getHash());
+        }
+    }
+
+    /**
+     * 得知新的最新区块高度时调用, 用于判断区块头是否已确认
+     */
+    public void onBestHeight(long height) {
+        if (height > bestHeight) {
+            bestHeight = height;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        heights.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public BlockHeaderCache setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            clear();
+        }
+        return this;
+    }
+
+    public BlockHeaderCache setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+        return this;
+    }
+
+    public int getConfirmedDepth() {
+        return confirmedDepth;
+    }
+
+    /**
+     * 距最新高度多少个区块后视为不可回滚
+     */
+    public BlockHeaderCache setConfirmedDepth(int confirmedDepth) {
+        this.confirmedDepth = confirmedDepth;
+        return this;
+    }
+
+    public long getRecentTtlMillis() {
+        return recentTtlMillis;
+    }
+
+    /**
+     * 未确认区块头的缓存时间
+     */
+    public BlockHeaderCache setRecentTtlMillis(long recentTtlMillis) {
+        this.recentTtlMillis = recentTtlMillis;
+        return this;
+    }
+}
@@ -0,0 +1,133 @@
+package network.nerve.kit.util;
+
+import network.nerve.core.basic.Result;
+import network.nerve.core.constant.CommonCodeConstanst;
+import network.nerve.core.exception.NulsRuntimeException;
+import network.nerve.kit.model.dto.BlockDto;
+import network.nerve.kit.model.dto.BlockHeaderDto;
+import network.nerve.kit.service.BlockService;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 按高度顺序遍历区块
+ * 同时异步预取window个高度的区块, 按高度顺序交付; 只在调用方取走区块后才请求新的高度, 消费慢时不会无限预取
+ * toHeight为 {@link #FOLLOW} 时持续跟随链上最新高度, 追上后每隔pollIntervalMillis查询一次最新区块头, 直到 {@link #close()}
+ * 单个区块查询失败时重试一次, 仍失败则关闭并抛出 {@link NulsRuntimeException}. 非线程安全, 应由单个线程消费
+ */
+public class BlockStream implements Iterator<BlockDto>, Closeable {
+
+    public static final long FOLLOW = -1;
+
+    private final ArrayDeque<CompletableFuture<Result>> window = new ArrayDeque<>();
+    private final long toHeight;
+    private final int windowSize;
+    private volatile long pollIntervalMillis = 1000;
+    private volatile boolean closed;
+    /**
+     * 下一个交付的高度
+     */
+    private long nextHeight;
+    /**
+     * 下一个请求的高度
+     */
+    private long requestHeight;
+    private long bestHeight = -1;
+
+    /**
+     * @param fromHeight 起始高度(包含)
+     * @param toHeight   结束高度(包含), {@link #FOLLOW} 表示跟随最新高度
+     * @param windowSize 同时预取的区块数
+     */
+    public BlockStream(long fromHeight, long toHeight, int windowSize) {
+        if (fromHeight < 0 || windowSize < 1 || (toHeight != FOLLOW && toHeight < fromHeight)) {
+            throw new NulsRuntimeException(CommonCodeConstanst.PARAMETER_ERROR);
+        }
+        this.nextHeight = fromHeight;
+        this.requestHeight = fromHeight;
+        this.toHeight = toHeight;
+        this.windowSize = windowSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !closed && (toHeight == FOLLOW || nextHeight <= toHeight);
+    }
+
+    @Override
+    public BlockDto next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        fill();
+        while (window.isEmpty()) {
+            // 跟随模式下已追上最新高度
+            refreshBestHeight();
+            fill();
+            if (window.isEmpty()) {
+                try {
+                    Thread.sleep(pollIntervalMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    close();
+                }
+            }
+            if (closed) {
+                throw new NoSuchElementException();
+            }
+        }
+        long height = nextHeight;
+        Result result = window.poll().join();
+        if (!result.isSuccess()) {
+            result = BlockService.getInstance().getBlock(height);
+        }
+        if (!result.isSuccess()) {
+            close();
+            throw new NulsRuntimeException(result.getErrorCode(), "get block " + height + " failed: " + result.getMsg());
+        }
+        nextHeight++;
+        fill();
+        return (BlockDto) result.getData();
+    }
+
+    /**
+     * 补足预取窗口
+     */
+    private void fill() {
+        long limit = toHeight == FOLLOW ? bestHeight : toHeight;
+        while (!closed && window.size() < windowSize && requestHeight <= limit) {
+            window.add(BlockService.getInstance().getBlockAsync(requestHeight++));
+        }
+    }
+
+    private void refreshBestHeight() {
+        Result result = BlockService.getInstance().getBestBlockHeader();
+        if (result.isSuccess()) {
+            bestHeight = Math.max(bestHeight, ((BlockHeaderDto) result.getData()).getHeight());
+        }
+    }
+
+    /**
+     * 下一个将要交付的高度
+     */
+    public long getNextHeight() {
+        return nextHeight;
+    }
+
+    public BlockStream setPollIntervalMillis(long pollIntervalMillis) {
+        this.pollIntervalMillis = pollIntervalMillis;
+        return this;
+    }
+
+    /**
+     * 停止遍历, 可由其他线程调用, 跟随模式下最多在一个轮询间隔后生效
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
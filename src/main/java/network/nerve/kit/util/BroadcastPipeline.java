@@ -0,0 +1,465 @@
+package network.nerve.kit.util;
+
+import network.nerve.base.data.Transaction;
+import network.nerve.core.basic.Result;
+import network.nerve.core.constant.CommonCodeConstanst;
+import network.nerve.core.crypto.HexUtil;
+import network.nerve.core.log.Log;
+import network.nerve.kit.model.dto.TransactionDto;
+import network.nerve.kit.service.TransactionService;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 交易广播管道
+ * 已签名的交易先写入预写日志(dir/broadcast.wal)再进入队列, 按批以JSON-RPC批量请求广播; 相同hash的交易只广播一次;
+ * 可重试的错误(默认为网络异常、超时)按指数退避重试, 其他错误直接失败; 广播成功后交给 {@link PendingTxTracker} 跟踪确认,
+ * 超过confirmTimeoutMillis仍未确认(可能已被节点丢弃)时, 次数未用完则重新广播, 否则失败
+ * 交易确认或最终失败后在日志中标记完成, 完成记录超过compactThreshold条时重写日志只保留未完成的交易;
+ * 进程重启后未完成的交易从日志恢复: 已上链的直接确认, 其余按原顺序重新广播
+ * submit返回的future在交易确认(data为TransactionDto)或最终失败时完成, 不会以异常结束
+ */
+public class BroadcastPipeline implements Closeable {
+
+    public enum Status {
+        QUEUED,
+        BROADCAST,
+        CONFIRMED,
+        FAILED
+    }
+
+    private static final String WAL_FILE = "broadcast.wal";
+
+    private static class Entry {
+        private final String hash;
+        private final String txHex;
+        private final CompletableFuture<Result> future = new CompletableFuture<>();
+        private volatile Status status = Status.QUEUED;
+        private int attempts;
+        /**
+         * 确认跟踪的回调, 关闭管道时取消
+         */
+        private volatile CompletableFuture<Void> tracking;
+
+        Entry(String hash, String txHex) {
+            this.hash = hash;
+            this.txHex = txHex;
+        }
+    }
+
+    private final File walFile;
+    /**
+     * 日志写入流, 压缩时重新打开, 由this保护
+     */
+    private FileOutputStream walOut;
+    private Writer wal;
+    /**
+     * 上次压缩后写入的完成记录数, 由this保护
+     */
+    private int doneLines;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final List<Entry> recovered = new ArrayList<>();
+    /**
+     * 后台线程使用创建时绑定的客户端
+     */
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(NerveClient.threadFactory(NerveClient.current(), "broadcast-pipeline"));
+    private volatile int capacity = 10000;
+    private volatile int batchSize = 50;
+    private volatile int maxAttempts = 5;
+    private volatile long retryDelayMillis = 500;
+    private volatile long maxRetryDelayMillis = 30000;
+    private volatile long confirmTimeoutMillis = 600000;
+    private volatile Set<String> retriableCodes = new HashSet<>(Arrays.asList(
+            CommonCodeConstanst.DATA_ERROR.getCode(),
+            CommonCodeConstanst.REQUEST_TIME_OUT.getCode(),
+            CommonCodeConstanst.RPC_REQUEST_FAILD.getCode(),
+            CommonCodeConstanst.SYS_UNKOWN_EXCEPTION.getCode()));
+    private volatile boolean sync = true;
+    private volatile int compactThreshold = 1000;
+    private boolean started;
+    private volatile boolean closed;
+
+    public BroadcastPipeline(File dir) throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("can not create dir: " + dir);
+        }
+        walFile = new File(dir, WAL_FILE);
+        recover();
+        openWal();
+    }
+
+    private void openWal() throws IOException {
+        walOut = new FileOutputStream(walFile, true);
+        wal = new OutputStreamWriter(walOut, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 读取日志中未完成的交易, 并重写日志只保留这些交易
+     */
+    private void recover() throws IOException {
+        for (Map.Entry<String, String> e : rewriteWal().entrySet()) {
+            Entry entry = new Entry(e.getKey(), e.getValue());
+            entries.put(entry.hash, entry);
+            recovered.add(entry);
+        }
+    }
+
+    /**
+     * 按提交顺序读取日志中未完成的交易, 写入临时文件后替换日志
+     * 日志每行一条记录: "S hash txHex" 提交, "D hash" 完成; 末尾不完整的行被忽略
+     */
+    private Map<String, String> rewriteWal() throws IOException {
+        Map<String, String> pending = new LinkedHashMap<>();
+        if (walFile.exists()) {
+            byte[] bytes = Files.readAllBytes(walFile.toPath());
+            int end = lastIndexOf(bytes, (byte) '\n') + 1;
+            for (String line : new String(bytes, 0, end, StandardCharsets.UTF_8).split("\n")) {
+                String[] parts = line.split(" ");
+                if (parts.length == 3 && "S".equals(parts[0])) {
+                    pending.put(parts[1], parts[2]);
+                } else if (parts.length == 2 && "D".equals(parts[0])) {
+                    pending.remove(parts[1]);
+                }
+            }
+        }
+        File tmp = new File(walFile.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String> e : pending.entrySet()) {
+                writer.write("S " + e.getKey() + " " + e.getValue() + "\n");
+            }
+        }
+        Files.move(tmp.toPath(), walFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return pending;
+    }
+
+    /**
+     * 运行中压缩日志, 去掉已完成的交易
+     */
+    private synchronized void compactWal() {
+        if (closed) {
+            return;
+        }
+        try {
+            wal.close();
+            rewriteWal();
+            doneLines = 0;
+        } catch (IOException e) {
+            Log.error(e);
+        } finally {
+            try {
+                openWal();
+            } catch (IOException e) {
+                Log.error(e);
+            }
+        }
+    }
+
+    private static int lastIndexOf(byte[] bytes, byte b) {
+        for (int i = bytes.length - 1; i >= 0; i--) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 提交已签名的交易, 相同hash的交易返回同一个future
+     */
+    public CompletableFuture<Result> submit(String txHex) {
+        String hash;
+        try {
+            hash = Transaction.getInstance(HexUtil.decode(txHex)).getHash().toHex();
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(Result.getFailed(CommonCodeConstanst.PARAMETER_ERROR).setMsg("invalid txHex: " + e.getMessage()));
+        }
+        Entry existing = entries.get(hash);
+        if (existing != null) {
+            return existing.future;
+        }
+        synchronized (this) {
+            existing = entries.get(hash);
+            if (existing != null) {
+                return existing.future;
+            }
+            if (entries.size() >= capacity) {
+                return CompletableFuture.completedFuture(Result.getFailed(CommonCodeConstanst.REQUEST_DENIED).setMsg("broadcast queue is full"));
+            }
+            Entry entry = new Entry(hash, txHex);
+            try {
+                appendWal("S " + hash + " " + txHex);
+            } catch (IOException e) {
+                Log.error(e);
+                return CompletableFuture.completedFuture(Result.getFailed(CommonCodeConstanst.IO_ERROR).setMsg(e.getMessage()));
+            }
+            entries.put(hash, entry);
+            queue.add(entry);
+            return entry.future;
+        }
+    }
+
+    private synchronized void appendWal(String line) throws IOException {
+        if (closed) {
+            throw new IOException("broadcast pipeline is closed");
+        }
+        wal.write(line);
+        wal.write('\n');
+        wal.flush();
+        if (sync) {
+            walOut.getFD().sync();
+        }
+    }
+
+    /**
+     * 启动后台广播与确认查询
+     */
+    public synchronized BroadcastPipeline start() {
+        if (started) {
+            return this;
+        }
+        started = true;
+        executor.execute(() -> checkRecovered(0));
+        executor.scheduleWithFixedDelay(this::drain, 0, 20, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    /**
+     * 恢复的交易可能在重启前已经上链, 先查询再决定是否重新广播
+     * 每次并发查询batchSize笔, 查询完成后未上链的按日志顺序进入队列, 保证同一账户连续nonce的交易顺序不变
+     */
+    private void checkRecovered(int from) {
+        if (closed) {
+            return;
+        }
+        if (from >= recovered.size()) {
+            recovered.clear();
+            return;
+        }
+        List<Entry> batch = recovered.subList(from, Math.min(recovered.size(), from + Math.max(1, batchSize)));
+        List<CompletableFuture<Result>> futures = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            CompletableFuture<Result> future;
+            try {
+                future = TransactionService.getInstance().getTxAsync(entry.hash);
+            } catch (RuntimeException e) {
+                Log.error(e);
+                future = CompletableFuture.completedFuture(Result.getFailed(CommonCodeConstanst.DATA_ERROR).setMsg(e.getMessage()));
+            }
+            futures.add(future);
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).whenComplete((v, e) -> {
+            try {
+                executor.execute(() -> {
+                    for (int i = 0; i < batch.size(); i++) {
+                        Result result = futures.get(i).getNow(null);
+                        if (result != null && isConfirmed(result)) {
+                            complete(batch.get(i), Status.CONFIRMED, result);
+                        } else {
+                            queue.add(batch.get(i));
+                        }
+                    }
+                    checkRecovered(from + batch.size());
+                });
+            } catch (RejectedExecutionException ignored) {
+                // 管道已关闭
+            }
+        });
+    }
+
+    private void drain() {
+        try {
+            List<Entry> batch = new ArrayList<>(batchSize);
+            while (queue.drainTo(batch, batchSize) > 0) {
+                // 等待确认超时后重新入队的交易可能已在此期间确认
+                batch.removeIf(entry -> entry.future.isDone());
+                broadcast(batch);
+                batch.clear();
+            }
+        } catch (Exception e) {
+            Log.error(e);
+        }
+    }
+
+    private void broadcast(List<Entry> batch) {
+        List<String> txHexList = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            txHexList.add(entry.txHex);
+        }
+        List<Result> results = TransactionService.getInstance().broadcastTxs(txHexList);
+        for (int i = 0; i < batch.size(); i++) {
+            Entry entry = batch.get(i);
+            Result result = results.get(i);
+            entry.attempts++;
+            if (result.isSuccess()) {
+                int attempt = entry.attempts;
+                entry.status = Status.BROADCAST;
+                entry.tracking = PendingTxTracker.getInstance().track(entry.hash).thenAccept(tracked -> {
+                    if (tracked.isSuccess()) {
+                        complete(entry, Status.CONFIRMED, tracked);
+                    } else {
+                        notConfirmed(entry, attempt, tracked);
+                    }
+                });
+                executor.schedule(() -> notConfirmed(entry, attempt, Result.getFailed(CommonCodeConstanst.REQUEST_TIME_OUT)
+                        .setMsg("transaction not confirmed in " + confirmTimeoutMillis + "ms")), confirmTimeoutMillis, TimeUnit.MILLISECONDS);
+            } else if (entry.attempts < maxAttempts && result.getErrorCode() != null && retriableCodes.contains(result.getErrorCode().getCode())) {
+                long delay = Math.min(maxRetryDelayMillis, retryDelayMillis << Math.min(entry.attempts - 1, 20));
+                executor.schedule(() -> queue.add(entry), delay, TimeUnit.MILLISECONDS);
+            } else {
+                complete(entry, Status.FAILED, result);
+            }
+        }
+    }
+
+    /**
+     * 第attempt次广播后等待确认超时或跟踪失败: 次数未用完时重新广播, 否则以result失败
+     */
+    private void notConfirmed(Entry entry, int attempt, Result result) {
+        synchronized (entry) {
+            if (entry.status != Status.BROADCAST || entry.attempts != attempt || entry.future.isDone()) {
+                return;
+            }
+            entry.status = Status.QUEUED;
+        }
+        CompletableFuture<Void> tracking = entry.tracking;
+        if (tracking != null) {
+            tracking.cancel(false);
+        }
+        if (entry.attempts < maxAttempts) {
+            queue.add(entry);
+        } else {
+            complete(entry, Status.FAILED, result);
+        }
+    }
+
+    private static boolean isConfirmed(Result result) {
+        return result.isSuccess() && result.getData() != null && ((TransactionDto) result.getData()).getBlockHeight() >= 0;
+    }
+
+    /**
+     * 关闭后不再完成, 交易保留在日志中, 重启后重新查询
+     */
+    private void complete(Entry entry, Status status, Result result) {
+        boolean compact;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            try {
+                appendWal("D " + entry.hash);
+            } catch (IOException e) {
+                Log.error(e);
+            }
+            compact = ++doneLines >= compactThreshold;
+        }
+        entry.status = status;
+        entries.remove(entry.hash);
+        entry.future.complete(result);
+        if (compact) {
+            compactWal();
+        }
+    }
+
+    /**
+     * @return 交易在管道中的状态, 已完成或不在管道中时为null
+     */
+    public Status getStatus(String hash) {
+        Entry entry = entries.get(hash);
+        return entry == null ? null : entry.status;
+    }
+
+    /**
+     * 管道中未完成的交易数
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    public BroadcastPipeline setCapacity(int capacity) {
+        this.capacity = capacity;
+        return this;
+    }
+
+    public BroadcastPipeline setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * 包括首次广播在内的最多广播次数
+     */
+    public BroadcastPipeline setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    /**
+     * 首次重试的延迟, 之后每次翻倍, 不超过maxRetryDelayMillis
+     */
+    public BroadcastPipeline setRetryDelayMillis(long retryDelayMillis) {
+        this.retryDelayMillis = retryDelayMillis;
+        return this;
+    }
+
+    public BroadcastPipeline setMaxRetryDelayMillis(long maxRetryDelayMillis) {
+        this.maxRetryDelayMillis = maxRetryDelayMillis;
+        return this;
+    }
+
+    /**
+     * 广播失败时可重试的错误码
+     */
+    public BroadcastPipeline setRetriableCodes(Collection<String> retriableCodes) {
+        this.retriableCodes = new HashSet<>(retriableCodes);
+        return this;
+    }
+
+    /**
+     * 广播成功后等待确认的最长时间, 默认10分钟
+     */
+    public BroadcastPipeline setConfirmTimeoutMillis(long confirmTimeoutMillis) {
+        this.confirmTimeoutMillis = confirmTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * 每条日志写入后是否强制刷盘, 默认开启
+     */
+    public BroadcastPipeline setSync(boolean sync) {
+        this.sync = sync;
+        return this;
+    }
+
+    /**
+     * 完成记录累计多少条后压缩日志, 默认1000
+     */
+    public BroadcastPipeline setCompactThreshold(int compactThreshold) {
+        this.compactThreshold = compactThreshold;
+        return this;
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            wal.close();
+        }
+        // 跟踪器为共享实例, 只取消本管道的回调, 不影响其他调用方对同一交易的跟踪
+        for (Entry entry : entries.values()) {
+            CompletableFuture<Void> tracking = entry.tracking;
+            if (tracking != null) {
+                tracking.cancel(false);
+            }
+        }
+    }
+}
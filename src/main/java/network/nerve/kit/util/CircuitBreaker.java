@@ -0,0 +1,352 @@
+package network.nerve.kit.util;
+
+import network.nerve.core.log.Log;
+import okhttp3.*;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按远程端点(scheme://host:port)熔断
+ * CLOSED状态下连续失败(连接异常、超时或5xx)达到阈值后进入OPEN, 此后请求立即以 {@link CircuitOpenException} 失败, 不再占用连接超时;
+ * OPEN期间后台定时探测端点, 探测得到非5xx响应后进入HALF_OPEN, 放行少量试探请求, 成功则恢复CLOSED, 失败则重新OPEN
+ * 以OkHttp拦截器的形式挂在 {@link OkHttpClientUtil} 的所有请求上, 默认关闭, 通过 {@link #setEnabled(boolean)} 开启
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    public static class CircuitOpenException extends IOException {
+        public CircuitOpenException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * 熔断参数, 时间单位均为毫秒
+     */
+    public static class Config {
+        private int failureThreshold = 5;
+        private long probeIntervalMillis = 5000;
+        private long probeTimeoutMillis = 3000;
+        /**
+         * HALF_OPEN状态下同时放行的试探请求数
+         */
+        private int halfOpenMaxCalls = 1;
+        /**
+         * HALF_OPEN状态下连续成功多少次后恢复CLOSED
+         */
+        private int successThreshold = 1;
+
+        public Config copy() {
+            Config config = new Config();
+            config.failureThreshold = failureThreshold;
+            config.probeIntervalMillis = probeIntervalMillis;
+            config.probeTimeoutMillis = probeTimeoutMillis;
+            config.halfOpenMaxCalls = halfOpenMaxCalls;
+            config.successThreshold = successThreshold;
+            return config;
+        }
+
+        public int getFailureThreshold() {
+            return failureThreshold;
+        }
+
+        public Config setFailureThreshold(int failureThreshold) {
+            this.failureThreshold = failureThreshold;
+            return this;
+        }
+
+        public long getProbeIntervalMillis() {
+            return probeIntervalMillis;
+        }
+
+        public Config setProbeIntervalMillis(long probeIntervalMillis) {
+            this.probeIntervalMillis = probeIntervalMillis;
+            return this;
+        }
+
+        public long getProbeTimeoutMillis() {
+            return probeTimeoutMillis;
+        }
+
+        public Config setProbeTimeoutMillis(long probeTimeoutMillis) {
+            this.probeTimeoutMillis = probeTimeoutMillis;
+            return this;
+        }
+
+        public int getHalfOpenMaxCalls() {
+            return halfOpenMaxCalls;
+        }
+
+        public Config setHalfOpenMaxCalls(int halfOpenMaxCalls) {
+            this.halfOpenMaxCalls = halfOpenMaxCalls;
+            return this;
+        }
+
+        public int getSuccessThreshold() {
+            return successThreshold;
+        }
+
+        public Config setSuccessThreshold(int successThreshold) {
+            this.successThreshold = successThreshold;
+            return this;
+        }
+    }
+
+    /**
+     * 单个端点的熔断状态
+     */
+    public class Circuit {
+        private final String endpoint;
+        private final Config config;
+        private State state = State.CLOSED;
+        private int failures;
+        private int halfOpenCalls;
+        private int halfOpenSuccesses;
+
+        Circuit(String endpoint, Config config) {
+            this.endpoint = endpoint;
+            this.config = config;
+        }
+
+        /**
+         * 是否放行本次请求, 放行HALF_OPEN试探请求时占用一个名额
+         */
+        synchronized boolean tryAcquire() {
+            switch (state) {
+                case CLOSED:
+                    return true;
+                case HALF_OPEN:
+                    if (halfOpenCalls < config.halfOpenMaxCalls) {
+                        halfOpenCalls++;
+                        return true;
+                    }
+                    return false;
+                default:
+                    return false;
+            }
+        }
+
+        synchronized void onSuccess(State acquiredIn) {
+            failures = 0;
+            if (acquiredIn == State.HALF_OPEN && state == State.HALF_OPEN) {
+                halfOpenCalls--;
+                if (++halfOpenSuccesses >= config.successThreshold) {
+                    transition(State.CLOSED);
+                }
+            }
+        }
+
+        synchronized void onFailure(State acquiredIn) {
+            if (acquiredIn == State.HALF_OPEN && state == State.HALF_OPEN) {
+                open();
+            } else if (state == State.CLOSED && ++failures >= config.failureThreshold) {
+                open();
+            }
+        }
+
+        /**
+         * 请求被调用方取消, 只归还试探名额
+         */
+        synchronized void onIgnored(State acquiredIn) {
+            if (acquiredIn == State.HALF_OPEN && state == State.HALF_OPEN) {
+                halfOpenCalls--;
+            }
+        }
+
+        private void open() {
+            transition(State.OPEN);
+            schedule(this);
+        }
+
+        synchronized void halfOpen() {
+            if (state == State.OPEN) {
+                transition(State.HALF_OPEN);
+            }
+        }
+
+        private void transition(State next) {
+            if (next == State.OPEN) {
+                Log.warn("circuit opened: {}", endpoint);
+            } else if (next == State.CLOSED) {
+                Log.info("circuit closed: {}", endpoint);
+            }
+            state = next;
+            failures = 0;
+            halfOpenCalls = 0;
+            halfOpenSuccesses = 0;
+        }
+
+        public String getEndpoint() {
+            return endpoint;
+        }
+
+        public synchronized State getState() {
+            return state;
+        }
+
+        @Override
+        public String toString() {
+            return endpoint + "{" + getState() + "}";
+        }
+    }
+
+    /**
+     * 探测请求的标记, 带有此tag的请求不经过熔断判断
+     */
+    private static final class Probe {
+    }
+
+    private static final ScheduledExecutorService PROBER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "circuit-breaker-probe");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final CircuitBreaker instance = new CircuitBreaker();
+
+    public static CircuitBreaker getInstance() {
+        return instance;
+    }
+
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+    private final Map<String, Config> endpointConfigs = new ConcurrentHashMap<>();
+    private final Map<String, String> probePaths = new ConcurrentHashMap<>();
+    private volatile Config defaultConfig = new Config();
+    private volatile boolean enabled;
+
+    private final Interceptor interceptor = chain -> {
+        Request request = chain.request();
+        if (!enabled || request.tag(Probe.class) != null) {
+            return chain.proceed(request);
+        }
+        Circuit circuit = getCircuit(endpoint(request.url()));
+        State acquiredIn;
+        synchronized (circuit) {
+            if (!circuit.tryAcquire()) {
+                throw new CircuitOpenException("circuit open: " + circuit.endpoint);
+            }
+            acquiredIn = circuit.state;
+        }
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException | RuntimeException e) {
+            if (chain.call().isCanceled()) {
+                circuit.onIgnored(acquiredIn);
+            } else {
+                circuit.onFailure(acquiredIn);
+            }
+            throw e;
+        }
+        if (response.code() >= 500) {
+            circuit.onFailure(acquiredIn);
+        } else {
+            circuit.onSuccess(acquiredIn);
+        }
+        return response;
+    };
+
+    /**
+     * 挂到OkHttpClient上的应用拦截器
+     */
+    public Interceptor getInterceptor() {
+        return interceptor;
+    }
+
+    public Circuit getCircuit(String endpoint) {
+        return circuits.computeIfAbsent(endpoint, k -> new Circuit(k, endpointConfigs.getOrDefault(k, defaultConfig)));
+    }
+
+    /**
+     * @param url 任意完整url, 按其scheme://host:port取熔断状态
+     */
+    public State getState(String url) {
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        return httpUrl == null ? State.CLOSED : getCircuit(endpoint(httpUrl)).getState();
+    }
+
+    private void schedule(Circuit circuit) {
+        PROBER.schedule(() -> probe(circuit), circuit.config.probeIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void probe(Circuit circuit) {
+        if (circuit.getState() != State.OPEN) {
+            return;
+        }
+        long timeout = circuit.config.probeTimeoutMillis;
+        Request request = new Request.Builder()
+                .url(circuit.endpoint + "/" + probePaths.getOrDefault(circuit.endpoint, ""))
+                .tag(Probe.class, new Probe())
+                .build();
+        OkHttpClient client = OkHttpClientUtil.getInstance().withTimeouts(timeout, timeout, timeout, 0).getClient();
+        try (Response response = client.newCall(request).execute()) {
+            if (response.code() < 500) {
+                circuit.halfOpen();
+                return;
+            }
+        } catch (Exception e) {
+            Log.debug("circuit probe failed: {}", circuit.endpoint);
+        }
+        schedule(circuit);
+    }
+
+    private static String endpoint(HttpUrl url) {
+        return url.scheme() + "://" + url.host() + ":" + url.port();
+    }
+
+    /**
+     * 设置默认参数, 只影响之后新建的熔断状态
+     */
+    public CircuitBreaker setConfig(Config config) {
+        this.defaultConfig = config.copy();
+        return this;
+    }
+
+    /**
+     * 设置某个端点的参数, 优先于默认参数
+     *
+     * @param url 端点上的任意url
+     */
+    public CircuitBreaker setConfig(String url, Config config) {
+        String endpoint = endpoint(HttpUrl.get(url));
+        endpointConfigs.put(endpoint, config.copy());
+        circuits.remove(endpoint);
+        return this;
+    }
+
+    /**
+     * 设置某个端点的探测路径, 默认探测根路径; 钱包节点可设置为api/info
+     *
+     * @param url 端点上的任意url
+     */
+    public CircuitBreaker setProbePath(String url, String path) {
+        probePaths.put(endpoint(HttpUrl.get(url)), path);
+        return this;
+    }
+
+    /**
+     * 清空所有端点的熔断状态
+     */
+    public void reset() {
+        circuits.clear();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public CircuitBreaker setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+}
@@ -77,7 +77,7 @@ public class CommonValidator {
     }
 
     public static void checkAliasDto(AliasDto aliasDto) throws NulsException {
-        if (!AddressTool.validAddress(SDKContext.main_chain_id, aliasDto.getAddress())) {
+        if (!AddressTool.validAddress(SDKContext.getMainChainId(), aliasDto.getAddress())) {
             throw new NulsException(AccountErrorCode.PARAMETER_ERROR, "address is invalid");
         }
         if (!FormatValidUtils.validAlias(aliasDto.getAlias())) {
@@ -89,7 +89,7 @@ public class CommonValidator {
     }
 
     public static void validateCoinFrom(CoinFromDto from) throws NulsException {
-        if (!AddressTool.validAddress(SDKContext.main_chain_id, from.getAddress())) {
+        if (!AddressTool.validAddress(SDKContext.getMainChainId(), from.getAddress())) {
             throw new NulsException(AccountErrorCode.PARAMETER_ERROR, "from address [" + from.getAddress() + "] is invalid");
         }
         if (!validateChainId(from.getAssetChainId())) {
@@ -107,7 +107,7 @@ public class CommonValidator {
     }
 
     public static void validateLockCoinFrom(CoinFromDto from) throws NulsException {
-        if (!AddressTool.validAddress(SDKContext.main_chain_id, from.getAddress())) {
+        if (!AddressTool.validAddress(SDKContext.getMainChainId(), from.getAddress())) {
             throw new NulsException(AccountErrorCode.PARAMETER_ERROR, "from address [" + from.getAddress() + "] is invalid");
         }
         if (!validateChainId(from.getAssetChainId())) {
@@ -157,7 +157,7 @@ public class CommonValidator {
 
     public static void validateSignDto(List<SignDto> signDtoList) throws NulsException {
         for (SignDto signDto : signDtoList) {
-            if (!AddressTool.validAddress(SDKContext.main_chain_id, signDto.getAddress())) {
+            if (!AddressTool.validAddress(SDKContext.getMainChainId(), signDto.getAddress())) {
                 throw new NulsException(AccountErrorCode.PARAMETER_ERROR, "address[" + signDto.getAddress() + "] is invalid");
             }
             if (StringUtils.isBlank(signDto.getEncryptedPrivateKey()) && StringUtils.isBlank(signDto.getPriKey())) {
@@ -170,7 +170,7 @@ public class CommonValidator {
     }
 
     public static void validateSignDto(SignDto signDto) throws NulsException {
-        if (!AddressTool.validAddress(SDKContext.main_chain_id, signDto.getAddress())) {
+        if (!AddressTool.validAddress(SDKContext.getMainChainId(), signDto.getAddress())) {
             throw new NulsException(AccountErrorCode.PARAMETER_ERROR, "address[" + signDto.getAddress() + "] is invalid");
         }
         if (StringUtils.isBlank(signDto.getEncryptedPrivateKey()) && StringUtils.isBlank(signDto.getPriKey())) {
@@ -182,13 +182,13 @@ public class CommonValidator {
     }
 
     public static void validateConsensusDto(ConsensusDto consensusDto) throws NulsException {
-        if (!AddressTool.validAddress(SDKContext.main_chain_id, consensusDto.getAgentAddress())) {
+        if (!AddressTool.validAddress(SDKContext.getMainChainId(), consensusDto.getAgentAddress())) {
             throw new NulsException(AccountErrorCode.ADDRESS_ERROR, "agentAddress is invalid");
         }
-        if (!AddressTool.validAddress(SDKContext.main_chain_id, consensusDto.getPackingAddress())) {
+        if (!AddressTool.validAddress(SDKContext.getMainChainId(), consensusDto.getPackingAddress())) {
             throw new NulsException(AccountErrorCode.ADDRESS_ERROR, "packingAddress is invalid");
         }
-        if (!AddressTool.validAddress(SDKContext.main_chain_id, consensusDto.getRewardAddress())) {
+        if (!AddressTool.validAddress(SDKContext.getMainChainId(), consensusDto.getRewardAddress())) {
             throw new NulsException(AccountErrorCode.ADDRESS_ERROR, "rewardAddress is invalid");
         }
         if (!ValidateUtil.validateCommissionRate(consensusDto.getCommissionRate())) {
@@ -198,7 +198,7 @@ public class CommonValidator {
     }
 
     public static void validateDepositDto(DepositDto dto) throws NulsException {
-        if (!AddressTool.validAddress(SDKContext.main_chain_id, dto.getAddress())) {
+        if (!AddressTool.validAddress(SDKContext.getMainChainId(), dto.getAddress())) {
             throw new NulsException(AccountErrorCode.ADDRESS_ERROR, "address is invalid");
         }
         if (!ValidateUtil.validHash(dto.getAgentHash())) {
@@ -208,7 +208,7 @@ public class CommonValidator {
     }
 
     public static void validateWithDrawDto(WithDrawDto dto) throws NulsException {
-        if (!AddressTool.validAddress(SDKContext.main_chain_id, dto.getAddress())) {
+        if (!AddressTool.validAddress(SDKContext.getMainChainId(), dto.getAddress())) {
             throw new NulsException(AccountErrorCode.ADDRESS_ERROR, "address is invalid");
         }
         if (!ValidateUtil.validHash(dto.getDepositHash())) {
@@ -221,7 +221,7 @@ public class CommonValidator {
         if (!ValidateUtil.validHash(dto.getAgentHash())) {
             throw new NulsException(AccountErrorCode.PARAMETER_ERROR, "agentHash is invalid");
         }
-        if (!AddressTool.validAddress(SDKContext.main_chain_id, dto.getAgentAddress())) {
+        if (!AddressTool.validAddress(SDKContext.getMainChainId(), dto.getAgentAddress())) {
             throw new NulsException(AccountErrorCode.ADDRESS_ERROR, "agentAddress is invalid");
         }
         for (StopDepositDto stopDepositDto : dto.getDepositList()) {
@@ -233,13 +233,13 @@ public class CommonValidator {
     }
 
     public static void validateCreateAgentForm(CreateAgentForm form) throws NulsException {
-        if (!AddressTool.validAddress(SDKContext.main_chain_id, form.getAgentAddress())) {
+        if (!AddressTool.validAddress(SDKContext.getMainChainId(), form.getAgentAddress())) {
             throw new NulsException(AccountErrorCode.ADDRESS_ERROR, "agentAddress is invalid");
         }
-        if (!AddressTool.validAddress(SDKContext.main_chain_id, form.getPackingAddress())) {
+        if (!AddressTool.validAddress(SDKContext.getMainChainId(), form.getPackingAddress())) {
             throw new NulsException(AccountErrorCode.ADDRESS_ERROR, "packingAddress is invalid");
         }
-        if (!AddressTool.validAddress(SDKContext.main_chain_id, form.getRewardAddress())) {
+        if (!AddressTool.validAddress(SDKContext.getMainChainId(), form.getRewardAddress())) {
             throw new NulsException(AccountErrorCode.ADDRESS_ERROR, "rewardAddress is invalid");
         }
         if (!ValidateUtil.validateCommissionRate(form.getCommissionRate())) {
@@ -254,7 +254,7 @@ public class CommonValidator {
     }
 
     public static void validateStopAgentForm(StopAgentForm form) throws NulsException {
-        if (!AddressTool.validAddress(SDKContext.main_chain_id, form.getAgentAddress())) {
+        if (!AddressTool.validAddress(SDKContext.getMainChainId(), form.getAgentAddress())) {
             throw new NulsException(AccountErrorCode.ADDRESS_ERROR, "agentAddress is invalid");
         }
         if (!FormatValidUtils.validPassword(form.getPassword())) {
@@ -263,7 +263,7 @@ public class CommonValidator {
     }
 
     public static void validateDepositForm(DepositForm form) throws NulsException {
-        if (!AddressTool.validAddress(SDKContext.main_chain_id, form.getAddress())) {
+        if (!AddressTool.validAddress(SDKContext.getMainChainId(), form.getAddress())) {
             throw new NulsException(AccountErrorCode.ADDRESS_ERROR, "address is invalid");
         }
         if (!ValidateUtil.validHash(form.getAgentHash())) {
@@ -278,7 +278,7 @@ public class CommonValidator {
     }
 
     public static void validateWithDrawForm(WithdrawForm form) throws NulsException {
-        if (!AddressTool.validAddress(SDKContext.main_chain_id, form.getAddress())) {
+        if (!AddressTool.validAddress(SDKContext.getMainChainId(), form.getAddress())) {
             throw new NulsException(AccountErrorCode.ADDRESS_ERROR, "address is invalid");
         }
         if (!ValidateUtil.validHash(form.getTxHash())) {
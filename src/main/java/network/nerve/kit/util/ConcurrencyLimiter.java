@@ -0,0 +1,485 @@
+package network.nerve.kit.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import network.nerve.kit.util.WalletNodePool.RouteType;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * 自适应并发限制(AIMD)
+ * 按 节点url + 请求类别 分别维护并发上限: 延迟接近无负载延迟且并发接近上限时加1, 延迟超过容忍倍数或请求失败时按比例收缩;
+ * 超过上限的请求在有界队列中等待, 队列已满或等待超时立即以 {@link LimitExceededException} 失败, 不占用节点资源
+ * 默认关闭, 通过 {@link #setEnabled(boolean)} 开启
+ */
+public class ConcurrencyLimiter {
+
+    /**
+     * 请求类别, 不同类别的并发上限互不影响
+     */
+    public enum Category {
+        /**
+         * 只读查询
+         */
+        READ,
+        /**
+         * 交易验证
+         */
+        VALIDATE,
+        /**
+         * 广播交易及其他写请求
+         */
+        BROADCAST;
+
+        public static Category of(String path, RouteType routeType) {
+            if (routeType == RouteType.WRITE) {
+                return BROADCAST;
+            }
+            if (path != null && path.contains("transaction/validate")) {
+                return VALIDATE;
+            }
+            return READ;
+        }
+    }
+
+    public static class LimitExceededException extends IOException {
+        public LimitExceededException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * 限流参数, 时间单位均为毫秒
+     */
+    public static class Config {
+        private int initialLimit = 20;
+        private int minLimit = 1;
+        private int maxLimit = 200;
+        /**
+         * 延迟超过 无负载延迟 * latencyTolerance 时视为过载
+         */
+        private double latencyTolerance = 2.0;
+        private double backoffRatio = 0.9;
+        private int maxQueueSize = 100;
+        private long maxQueueWaitMillis = 1000;
+        /**
+         * 每隔多少个样本以当前延迟重置无负载延迟, 适应节点性能的变化
+         */
+        private int minRttResetSamples = 1000;
+
+        public Config copy() {
+            Config config = new Config();
+            config.initialLimit = initialLimit;
+            config.minLimit = minLimit;
+            config.maxLimit = maxLimit;
+            config.latencyTolerance = latencyTolerance;
+            config.backoffRatio = backoffRatio;
+            config.maxQueueSize = maxQueueSize;
+            config.maxQueueWaitMillis = maxQueueWaitMillis;
+            config.minRttResetSamples = minRttResetSamples;
+            return config;
+        }
+
+        public int getInitialLimit() {
+            return initialLimit;
+        }
+
+        public Config setInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        public int getMinLimit() {
+            return minLimit;
+        }
+
+        public Config setMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+            return this;
+        }
+
+        public int getMaxLimit() {
+            return maxLimit;
+        }
+
+        public Config setMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        public double getLatencyTolerance() {
+            return latencyTolerance;
+        }
+
+        public Config setLatencyTolerance(double latencyTolerance) {
+            this.latencyTolerance = latencyTolerance;
+            return this;
+        }
+
+        public double getBackoffRatio() {
+            return backoffRatio;
+        }
+
+        public Config setBackoffRatio(double backoffRatio) {
+            this.backoffRatio = backoffRatio;
+            return this;
+        }
+
+        public int getMaxQueueSize() {
+            return maxQueueSize;
+        }
+
+        public Config setMaxQueueSize(int maxQueueSize) {
+            this.maxQueueSize = maxQueueSize;
+            return this;
+        }
+
+        public long getMaxQueueWaitMillis() {
+            return maxQueueWaitMillis;
+        }
+
+        public Config setMaxQueueWaitMillis(long maxQueueWaitMillis) {
+            this.maxQueueWaitMillis = maxQueueWaitMillis;
+            return this;
+        }
+
+        public int getMinRttResetSamples() {
+            return minRttResetSamples;
+        }
+
+        public Config setMinRttResetSamples(int minRttResetSamples) {
+            this.minRttResetSamples = minRttResetSamples;
+            return this;
+        }
+    }
+
+    /**
+     * 单个 节点url + 类别 的限流状态
+     */
+    public static class Limiter {
+        private static final CompletableFuture<Void> ACQUIRED = CompletableFuture.completedFuture(null);
+
+        private final String name;
+        private final Config config;
+        private final ArrayDeque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+        private double limit;
+        private int inFlight;
+        private long minRttNanos;
+        private int samples;
+
+        Limiter(String name, Config config) {
+            this.name = name;
+            this.config = config;
+            this.limit = config.initialLimit;
+        }
+
+        /**
+         * 获取一个并发许可, 未能立即获取时排队; 返回的future以 {@link LimitExceededException} 结束表示被拒绝
+         */
+        public CompletableFuture<Void> acquire() {
+            CompletableFuture<Void> waiter;
+            synchronized (this) {
+                if (inFlight < (int) limit) {
+                    inFlight++;
+                    return ACQUIRED;
+                }
+                if (waiters.size() >= config.maxQueueSize) {
+                    CompletableFuture<Void> rejected = new CompletableFuture<>();
+                    rejected.completeExceptionally(new LimitExceededException(name + " concurrency limit exceeded: " + getLimit()));
+                    return rejected;
+                }
+                waiter = new CompletableFuture<>();
+                waiters.add(waiter);
+            }
+            TIMER.schedule(() -> {
+                boolean removed;
+                synchronized (this) {
+                    removed = waiters.remove(waiter);
+                }
+                if (removed) {
+                    waiter.completeExceptionally(new LimitExceededException(name + " concurrency limit wait timeout"));
+                }
+            }, config.maxQueueWaitMillis, TimeUnit.MILLISECONDS);
+            return waiter;
+        }
+
+        /**
+         * 归还许可并根据本次请求的延迟调整上限
+         *
+         * @param rttNanos 请求耗时
+         * @param dropped  请求是否因超时、连接失败等原因失败
+         */
+        public void release(long rttNanos, boolean dropped) {
+            List<CompletableFuture<Void>> granted = new ArrayList<>(1);
+            synchronized (this) {
+                int current = inFlight--;
+                if (dropped) {
+                    limit = Math.max(config.minLimit, limit * config.backoffRatio);
+                } else {
+                    if (minRttNanos == 0 || rttNanos < minRttNanos || ++samples >= config.minRttResetSamples) {
+                        minRttNanos = rttNanos;
+                        samples = 0;
+                    }
+                    if (rttNanos > minRttNanos * config.latencyTolerance) {
+                        limit = Math.max(config.minLimit, limit * config.backoffRatio);
+                    } else if (current * 2 >= limit) {
+                        limit = Math.min(config.maxLimit, limit + 1);
+                    }
+                }
+                while (inFlight < (int) limit && !waiters.isEmpty()) {
+                    inFlight++;
+                    granted.add(waiters.poll());
+                }
+            }
+            for (CompletableFuture<Void> waiter : granted) {
+                waiter.complete(null);
+            }
+        }
+
+        /**
+         * 归还许可, 不作为延迟样本(如请求被调用方取消)
+         */
+        public void release() {
+            CompletableFuture<Void> granted = null;
+            synchronized (this) {
+                inFlight--;
+                if (inFlight < (int) limit && !waiters.isEmpty()) {
+                    inFlight++;
+                    granted = waiters.poll();
+                }
+            }
+            if (granted != null) {
+                granted.complete(null);
+            }
+        }
+
+        /**
+         * 放弃acquire返回的许可: 仍在排队时移除, 已经获得时归还
+         */
+        public void cancel(CompletableFuture<Void> permit) {
+            if (!remove(permit)) {
+                // 已获得或即将获得; 等待超时的不会执行
+                permit.thenRun(this::release);
+            }
+        }
+
+        /**
+         * 从队列中移除等待者, 移除后等待者以CancellationException结束
+         */
+        boolean remove(CompletableFuture<Void> waiter) {
+            synchronized (this) {
+                if (!waiters.remove(waiter)) {
+                    return false;
+                }
+            }
+            waiter.completeExceptionally(new CancellationException());
+            return true;
+        }
+
+        public synchronized int getLimit() {
+            return (int) limit;
+        }
+
+        public synchronized int getInFlight() {
+            return inFlight;
+        }
+
+        public synchronized int getQueueSize() {
+            return waiters.size();
+        }
+
+        @Override
+        public String toString() {
+            return name + "{limit=" + getLimit() + ", inFlight=" + getInFlight() + ", queued=" + getQueueSize() + "}";
+        }
+    }
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "concurrency-limiter-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final ConcurrencyLimiter instance = new ConcurrencyLimiter();
+
+    public static ConcurrencyLimiter getInstance() {
+        return instance;
+    }
+
+    private final Map<String, Limiter> limiters = new ConcurrentHashMap<>();
+    private final Map<Category, Config> categoryConfigs = new ConcurrentHashMap<>();
+    private final Map<String, Config> endpointConfigs = new ConcurrentHashMap<>();
+    private volatile boolean enabled;
+
+    /**
+     * 设置某一类别的默认参数, 只影响之后新建的限流状态
+     */
+    public ConcurrencyLimiter setConfig(Category category, Config config) {
+        categoryConfigs.put(category, config.copy());
+        return this;
+    }
+
+    /**
+     * 设置某个节点某一类别的参数, 优先于类别默认参数
+     */
+    public ConcurrencyLimiter setConfig(String endpoint, Category category, Config config) {
+        String key = key(endpoint, category);
+        endpointConfigs.put(key, config.copy());
+        limiters.remove(key);
+        return this;
+    }
+
+    public Limiter getLimiter(String endpoint, Category category) {
+        String key = key(endpoint, category);
+        return limiters.computeIfAbsent(key, k -> {
+            Config config = endpointConfigs.get(k);
+            if (config == null) {
+                config = categoryConfigs.getOrDefault(category, new Config());
+            }
+            return new Limiter(k, config);
+        });
+    }
+
+    /**
+     * 在并发许可内同步执行请求
+     */
+    public <T> T execute(String endpoint, Category category, Callable<T> call) throws Exception {
+        if (!enabled) {
+            return call.call();
+        }
+        Limiter limiter = getLimiter(endpoint, category);
+        CompletableFuture<Void> permit = limiter.acquire();
+        try {
+            permit.get();
+        } catch (ExecutionException e) {
+            throw (Exception) e.getCause();
+        } catch (InterruptedException e) {
+            limiter.cancel(permit);
+            throw e;
+        }
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = call.call();
+        } catch (Exception e) {
+            release(limiter, start, e);
+            throw e;
+        }
+        limiter.release(System.nanoTime() - start, false);
+        return result;
+    }
+
+    /**
+     * 在并发许可内异步执行请求, 排队期间不占用调用线程
+     */
+    public <T> CompletableFuture<T> executeAsync(String endpoint, Category category, Supplier<CompletableFuture<T>> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        Limiter limiter = getLimiter(endpoint, category);
+        CompletableFuture<Void> permit = limiter.acquire();
+        if (permit == Limiter.ACQUIRED) {
+            // 立即获得许可时直接返回原始future, 保留取消网络请求的能力
+            return start(limiter, call);
+        }
+        // 排队的请求可能在其他请求的回调线程上发出, 保留调用方绑定的客户端
+        Supplier<CompletableFuture<T>> bound = NerveClient.wrap(call);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        permit.whenComplete((v, e) -> {
+            if (e != null) {
+                result.completeExceptionally(e);
+                return;
+            }
+            if (result.isDone()) {
+                // 排队期间已被取消, 归还刚获得的许可
+                limiter.release();
+                return;
+            }
+            CompletableFuture<T> future;
+            try {
+                future = start(limiter, bound);
+            } catch (RuntimeException ex) {
+                result.completeExceptionally(ex);
+                return;
+            }
+            future.whenComplete((r, ex) -> {
+                if (ex == null) {
+                    result.complete(r);
+                } else {
+                    result.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+                }
+            });
+            result.whenComplete((r, ex) -> {
+                if (result.isCancelled()) {
+                    future.cancel(true);
+                }
+            });
+        });
+        result.whenComplete((r, e) -> {
+            if (result.isCancelled()) {
+                limiter.remove(permit);
+            }
+        });
+        return result;
+    }
+
+    private <T> CompletableFuture<T> start(Limiter limiter, Supplier<CompletableFuture<T>> call) {
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            release(limiter, start, e);
+            throw e;
+        }
+        future.whenComplete((result, e) -> {
+            if (future.isCancelled()) {
+                limiter.release();
+            } else if (e == null) {
+                limiter.release(System.nanoTime() - start, false);
+            } else {
+                release(limiter, start, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 熔断的快速失败没有到达节点, 不作为延迟样本; 只有超时、连接异常与5xx视为过载丢弃,
+     * 4xx、响应解析失败等由请求本身导致的错误按正常延迟样本释放, 不会缩小并发上限
+     */
+    private static void release(Limiter limiter, long start, Throwable e) {
+        if (e instanceof CircuitBreaker.CircuitOpenException) {
+            limiter.release();
+        } else {
+            limiter.release(System.nanoTime() - start, isDropped(e));
+        }
+    }
+
+    private static boolean isDropped(Throwable e) {
+        if (e instanceof OkHttpClientUtil.HttpStatusException) {
+            return ((OkHttpClientUtil.HttpStatusException) e).getCode() >= 500;
+        }
+        if (e instanceof JsonProcessingException) {
+            return false;
+        }
+        return e instanceof IOException || e instanceof TimeoutException;
+    }
+
+    private static String key(String endpoint, Category category) {
+        return endpoint + "#" + category;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+}
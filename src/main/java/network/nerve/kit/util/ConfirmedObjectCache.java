@@ -0,0 +1,272 @@
+package network.nerve.kit.util;
+
+import network.nerve.core.log.Log;
+import network.nerve.core.parse.JSONUtils;
+import network.nerve.kit.model.dto.BlockDto;
+import network.nerve.kit.model.dto.TransactionDto;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 已确认区块与交易的磁盘缓存
+ * 已确认的区块和交易不会再变化, 按hash缓存到本地, 进程重启后不必重新从节点获取
+ * 数据追加写入dir下固定大小的段文件(segment-xxxxx.dat), 段文件以内存映射方式读写, 内存中维护 hash -> 位置 的索引, 打开时扫描段文件重建
+ * 只缓存距最新高度已达到确认数的对象, 最新高度来自SDK的最新区块查询. 每次读取都反序列化出新对象, 调用方可以修改
+ * 默认关闭, 通过 {@link #open(File)} 开启
+ */
+public class ConfirmedObjectCache {
+
+    private static final byte TYPE_BLOCK = 1;
+    private static final byte TYPE_TX = 2;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+
+    private static class Location {
+        private final int segment;
+        private final int offset;
+        private final int length;
+
+        Location(int segment, int offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static final ConfirmedObjectCache instance = new ConfirmedObjectCache();
+
+    /**
+     * @return 当前线程绑定的 {@link NerveClient} 的实例, 未绑定时为默认实例
+     */
+    public static ConfirmedObjectCache getInstance() {
+        NerveClient client = NerveClient.current();
+        return client == null ? instance : client.getConfirmedObjectCache();
+    }
+
+    private final Map<String, Location> index = new HashMap<>();
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private File dir;
+    private volatile boolean enabled;
+    private volatile int confirmations = 30;
+    private volatile int segmentSize = 64 * 1024 * 1024;
+    private volatile long bestHeight;
+
+    /**
+     * 打开缓存目录并开启缓存
+     */
+    public synchronized void open(File dir) throws IOException {
+        close();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("can not create dir: " + dir);
+        }
+        this.dir = dir;
+        File[] files = dir.listFiles((d, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                MappedByteBuffer segment = map(file, file.length());
+                scan(segments.size(), segment);
+                segments.add(segment);
+            }
+        }
+        enabled = true;
+    }
+
+    private static MappedByteBuffer map(File file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    /**
+     * 重建索引, 段内第一个长度为0或不完整的记录之后视为空闲空间
+     * 记录格式: 长度(int) 类型(byte) hash长度(short) hash 数据
+     */
+    private void scan(int segmentIndex, MappedByteBuffer segment) {
+        segment.position(0);
+        while (segment.remaining() >= 4) {
+            int start = segment.position();
+            int length = segment.getInt();
+            if (length <= 3 || length > segment.remaining()) {
+                segment.position(start);
+                break;
+            }
+            byte type = segment.get();
+            int hashLength = segment.getShort();
+            if (hashLength < 0 || hashLength > length - 3) {
+                segment.position(start);
+                break;
+            }
+            byte[] hash = new byte[hashLength];
+            segment.get(hash);
+            int dataOffset = segment.position();
+            int dataLength = length - 3 - hash.length;
+            index.put(key(type, new String(hash, StandardCharsets.UTF_8)), new Location(segmentIndex, dataOffset, dataLength));
+            segment.position(dataOffset + dataLength);
+        }
+    }
+
+    public synchronized void close() {
+        enabled = false;
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+        segments.clear();
+        index.clear();
+        dir = null;
+    }
+
+    public BlockDto getBlock(String hash) {
+        return get(TYPE_BLOCK, hash, BlockDto.class);
+    }
+
+    public TransactionDto getTx(String hash) {
+        return get(TYPE_TX, hash, TransactionDto.class);
+    }
+
+    /**
+     * 区块已达到确认数时写入缓存
+     */
+    public void putBlock(BlockDto block) {
+        if (!enabled || block == null || block.getHeader() == null) {
+            return;
+        }
+        long height = block.getHeader().getHeight();
+        onBestHeight(height);
+        if (isConfirmed(height)) {
+            put(TYPE_BLOCK, block.getHeader().getHash(), block);
+        }
+    }
+
+    /**
+     * 交易已打包且达到确认数时写入缓存
+     */
+    public void putTx(TransactionDto tx) {
+        if (!enabled || tx == null || tx.getBlockHeight() < 0) {
+            return;
+        }
+        onBestHeight(tx.getBlockHeight());
+        if (isConfirmed(tx.getBlockHeight())) {
+            put(TYPE_TX, tx.getHash(), tx);
+        }
+    }
+
+    private boolean isConfirmed(long height) {
+        return height <= bestHeight - confirmations;
+    }
+
+    private <T> T get(byte type, String hash, Class<T> clazz) {
+        if (!enabled || hash == null) {
+            return null;
+        }
+        byte[] data;
+        synchronized (this) {
+            Location location = index.get(key(type, hash));
+            if (location == null) {
+                return null;
+            }
+            data = new byte[location.length];
+            // 独立的position, 不影响追加位置
+            ByteBuffer view = segments.get(location.segment).duplicate();
+            view.position(location.offset);
+            view.get(data);
+        }
+        try {
+            return JSONUtils.byteArray2pojo(data, clazz);
+        } catch (IOException e) {
+            Log.error(e);
+            return null;
+        }
+    }
+
+    private void put(byte type, String hash, Object value) {
+        if (hash == null) {
+            return;
+        }
+        try {
+            byte[] data = JSONUtils.obj2ByteArray(value);
+            byte[] hashBytes = hash.getBytes(StandardCharsets.UTF_8);
+            int length = 3 + hashBytes.length + data.length;
+            if (4 + length > segmentSize) {
+                return;
+            }
+            synchronized (this) {
+                String key = key(type, hash);
+                if (!enabled || index.containsKey(key)) {
+                    return;
+                }
+                MappedByteBuffer segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+                if (segment == null || segment.remaining() < 4 + length) {
+                    File file = new File(dir, String.format("%s%05d%s", SEGMENT_PREFIX, segments.size(), SEGMENT_SUFFIX));
+                    segment = map(file, segmentSize);
+                    segments.add(segment);
+                }
+                // 先写数据再写长度, 写入中断时长度仍为0, 重建索引时不会读到半条记录
+                int start = segment.position();
+                segment.position(start + 4);
+                segment.put(type);
+                segment.putShort((short) hashBytes.length);
+                segment.put(hashBytes);
+                int dataOffset = segment.position();
+                segment.put(data);
+                // 清掉下一条记录的长度, 之前中断写入的残留数据不会被当作记录
+                if (segment.remaining() >= 4) {
+                    segment.putInt(segment.position(), 0);
+                }
+                segment.putInt(start, length);
+                index.put(key, new Location(segments.size() - 1, dataOffset, data.length));
+            }
+        } catch (IOException e) {
+            Log.error(e);
+        }
+    }
+
+    private static String key(byte type, String hash) {
+        return type + hash;
+    }
+
+    /**
+     * 得知新的最新区块高度时调用, 用于判断是否已达到确认数
+     */
+    public void onBestHeight(long height) {
+        if (height > bestHeight) {
+            bestHeight = height;
+        }
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getConfirmations() {
+        return confirmations;
+    }
+
+    public ConfirmedObjectCache setConfirmations(int confirmations) {
+        this.confirmations = confirmations;
+        return this;
+    }
+
+    /**
+     * 新建段文件的大小, 超过段大小的对象不缓存
+     */
+    public ConfirmedObjectCache setSegmentSize(int segmentSize) {
+        this.segmentSize = segmentSize;
+        return this;
+    }
+}
@@ -0,0 +1,210 @@
+package network.nerve.kit.util;
+
+import network.nerve.kit.util.WalletNodePool.RouteType;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 读请求对冲
+ * 请求在对冲延迟(近期延迟的指定分位数)内未响应时, 向另一节点发出相同请求, 取先成功的结果并取消另一个;
+ * 只对路由类型为READ且路径匹配的幂等查询生效, 广播交易等写请求永远不会被对冲
+ * 默认关闭, 通过 {@link #setEnabled(boolean)} 开启
+ */
+public class HedgingPolicy {
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "hedging-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final HedgingPolicy instance = new HedgingPolicy();
+
+    public static HedgingPolicy getInstance() {
+        return instance;
+    }
+
+    private volatile boolean enabled;
+    private volatile List<String> paths = Arrays.asList("api/tx/", "api/accountledger/balance/");
+    private volatile double percentile = 0.95;
+    private volatile long minDelayMillis = 5;
+    /**
+     * 样本不足时使用的对冲延迟
+     */
+    private volatile long initialDelayMillis = 200;
+    private volatile int minSamples = 20;
+
+    private final long[] samples = new long[512];
+    private int sampleCount;
+    private int sampleIndex;
+    private volatile long delayMillis = -1;
+
+    private final AtomicLong hedged = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    public boolean shouldHedge(String path, RouteType routeType) {
+        if (!enabled || routeType != RouteType.READ || path == null) {
+            return false;
+        }
+        for (String prefix : paths) {
+            if (path.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 执行对冲请求
+     * 返回的future被取消时两个请求都会被取消; 两个请求都失败时以后失败的异常结束
+     *
+     * @param primary   首选请求
+     * @param secondary 对冲请求, 应发往另一节点
+     */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> primary, Supplier<CompletableFuture<T>> secondary) {
+        // 对冲请求在定时线程上发出, 保留调用方绑定的客户端
+        Supplier<CompletableFuture<T>> boundSecondary = NerveClient.wrap(secondary);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        AtomicBoolean settled = new AtomicBoolean();
+        long start = System.nanoTime();
+        CompletableFuture<T> first = primary.get();
+        first.whenComplete((r, e) -> onComplete(result, outstanding, settled, start, r, e, false));
+
+        CompletableFuture<CompletableFuture<T>> hedge = new CompletableFuture<>();
+        ScheduledFuture<?> timer = TIMER.schedule(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            outstanding.incrementAndGet();
+            hedged.incrementAndGet();
+            CompletableFuture<T> second;
+            try {
+                second = boundSecondary.get();
+            } catch (RuntimeException e) {
+                onComplete(result, outstanding, settled, start, null, e, true);
+                return;
+            }
+            hedge.complete(second);
+            second.whenComplete((r, e) -> onComplete(result, outstanding, settled, start, r, e, true));
+        }, getDelayMillis(), TimeUnit.MILLISECONDS);
+
+        result.whenComplete((r, e) -> {
+            timer.cancel(false);
+            first.cancel(true);
+            hedge.thenAccept(second -> second.cancel(true));
+        });
+        return result;
+    }
+
+    /**
+     * 延迟样本始终是首选请求从发出起的耗时: 对冲请求胜出时首选请求被取消, 其延迟至少为当前耗时;
+     * 若记录胜出方自身的耗时, 对冲延迟会被对冲请求的快速响应不断拉低
+     */
+    private <T> void onComplete(CompletableFuture<T> result, AtomicInteger outstanding, AtomicBoolean settled, long start, T value, Throwable e, boolean isHedge) {
+        if (e == null) {
+            // 先计数再完成, 调用方拿到结果时统计已可见
+            if (settled.compareAndSet(false, true)) {
+                record(System.nanoTime() - start);
+                if (isHedge) {
+                    hedgeWins.incrementAndGet();
+                }
+                result.complete(value);
+            }
+        } else if (outstanding.decrementAndGet() == 0) {
+            result.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+        }
+    }
+
+    private synchronized void record(long nanos) {
+        samples[sampleIndex] = nanos;
+        sampleIndex = (sampleIndex + 1) % samples.length;
+        if (sampleCount < samples.length) {
+            sampleCount++;
+        }
+        // 每32个样本重新计算一次分位数
+        if (sampleCount >= minSamples && (sampleIndex & 31) == 0) {
+            long[] copy = Arrays.copyOf(samples, sampleCount);
+            Arrays.sort(copy);
+            int index = Math.min(sampleCount - 1, (int) Math.ceil(percentile * sampleCount) - 1);
+            delayMillis = Math.max(minDelayMillis, TimeUnit.NANOSECONDS.toMillis(copy[Math.max(index, 0)]));
+        }
+    }
+
+    /**
+     * 当前的对冲延迟
+     */
+    public long getDelayMillis() {
+        long delay = delayMillis;
+        return delay < 0 ? initialDelayMillis : delay;
+    }
+
+    /**
+     * 发出对冲请求的次数
+     */
+    public long getHedged() {
+        return hedged.get();
+    }
+
+    /**
+     * 对冲请求先于首选请求成功的次数
+     */
+    public long getHedgeWins() {
+        return hedgeWins.get();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public HedgingPolicy setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+    public List<String> getPaths() {
+        return paths;
+    }
+
+    /**
+     * 需要对冲的请求路径前缀, 相对于钱包url
+     */
+    public HedgingPolicy setPaths(List<String> paths) {
+        this.paths = paths;
+        return this;
+    }
+
+    public HedgingPolicy setPercentile(double percentile) {
+        this.percentile = percentile;
+        return this;
+    }
+
+    public HedgingPolicy setMinDelayMillis(long minDelayMillis) {
+        this.minDelayMillis = minDelayMillis;
+        return this;
+    }
+
+    public HedgingPolicy setInitialDelayMillis(long initialDelayMillis) {
+        this.initialDelayMillis = initialDelayMillis;
+        return this;
+    }
+
+    public HedgingPolicy setMinSamples(int minSamples) {
+        this.minSamples = minSamples;
+        return this;
+    }
+
+    public synchronized void reset() {
+        sampleCount = 0;
+        sampleIndex = 0;
+        delayMillis = -1;
+        hedged.set(0);
+        hedgeWins.set(0);
+    }
+}
@@ -1,16 +1,18 @@
 package network.nerve.kit.util;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import network.nerve.core.constant.CommonCodeConstanst;
 import network.nerve.core.log.Log;
 import network.nerve.core.parse.JSONUtils;
+import network.nerve.kit.model.dto.JsonRpcRequest;
 import network.nerve.kit.model.dto.RpcResult;
 import network.nerve.kit.model.dto.RpcResultError;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
-import static network.nerve.SDKContext.wallet_url;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
  * JSON-RPC 请求工具
@@ -25,24 +27,45 @@ public class JsonRpcUtil {
     private static final String PARAMS = "params";
     private static final String DEFAULT_ID = "1";
     private static final String JSONRPC_VERSION = "2.0";
+    private static final String BROADCAST_TX = "broadcastTx";
+    private static final String BATCH_METRIC_NAME = JSONRPC + "/batch";
 
-    public static RpcResult request(String method, List<Object> params) {
-        String url = wallet_url + JSONRPC;
-        return request(url, method, params);
+    /**
+     * 批量请求中每个调用的id, 进程内递增, 保证同一批次内不重复
+     */
+    private static final AtomicLong BATCH_ID = new AtomicLong(0);
+
+    private static final OkHttpClientUtil.BodyReader<RpcResult> RPC_RESULT_READER = body -> JSONUtils.getInstance().readValue(body.byteStream(), RpcResult.class);
+    private static final OkHttpClientUtil.BodyReader<JsonNode> JSON_TREE_READER = body -> JSONUtils.getInstance().readTree(body.byteStream());
 
+    /**
+     * 请求钱包节点, 配置了多节点时broadcastTx按写请求路由, 其余方法按读请求路由
+     * 读请求经过 {@link SingleFlight} 合并, 相同方法与参数的进行中请求共享一次网络调用
+     */
+    public static RpcResult request(String method, List<Object> params) {
+        RpcResult rpcResult;
+        try {
+            Map<String, Object> body = requestBody(method, params);
+            WalletNodePool.RouteType routeType = routeType(method);
+            WalletNodePool.HttpCall<RpcResult> call = url -> OkHttpClientUtil.getInstance().postJson(url, body, metricName(method), RPC_RESULT_READER);
+            rpcResult = routeType == WalletNodePool.RouteType.READ
+                    ? SingleFlight.getInstance().execute(flightKey(JSONRPC, method, params), () -> WalletNodePool.route(JSONRPC, routeType, call))
+                    : WalletNodePool.route(JSONRPC, routeType, call);
+        } catch (Exception e) {
+            Log.error(e);
+            rpcResult = RpcResult.failed(new RpcResultError(CommonCodeConstanst.DATA_ERROR.getCode(), e.getMessage(), null));
+        }
+        return rpcResult;
     }
 
     public static RpcResult request(String requestURL, String method, List<Object> params) {
         RpcResult rpcResult;
         try {
-            Map<String, Object> map = new HashMap<>(8);
-            map.put(ID, DEFAULT_ID);
-            map.put(JSONRPC, JSONRPC_VERSION);
-            map.put(METHOD, method);
-            map.put(PARAMS, params);
-            String param = JSONUtils.obj2json(map);
-            String resultStr = OkHttpClientUtil.getInstance().postJson(requestURL, param);
-            rpcResult = JSONUtils.json2pojo(resultStr, RpcResult.class);
+            Map<String, Object> body = requestBody(method, params);
+            WalletNodePool.HttpCall<RpcResult> call = url -> OkHttpClientUtil.getInstance().postJson(url, body, metricName(method), RPC_RESULT_READER);
+            rpcResult = routeType(method) == WalletNodePool.RouteType.READ
+                    ? SingleFlight.getInstance().execute(flightKey(requestURL, method, params), () -> call.execute(requestURL))
+                    : call.execute(requestURL);
         } catch (Exception e) {
             Log.error(e);
             rpcResult = RpcResult.failed(new RpcResultError(CommonCodeConstanst.DATA_ERROR.getCode(), e.getMessage(), null));
@@ -50,4 +73,156 @@ public class JsonRpcUtil {
         return rpcResult;
     }
 
+    public static CompletableFuture<RpcResult> requestAsync(String method, List<Object> params) {
+        Map<String, Object> body = requestBody(method, params);
+        WalletNodePool.RouteType routeType = routeType(method);
+        Supplier<CompletableFuture<RpcResult>> call = () -> WalletNodePool.routeAsync(JSONRPC, routeType,
+                url -> OkHttpClientUtil.getInstance().postJsonAsync(url, body, metricName(method), RPC_RESULT_READER));
+        return toRpcResult(routeType == WalletNodePool.RouteType.READ ? SingleFlight.getInstance().executeAsync(flightKey(JSONRPC, method, params), call) : call.get());
+    }
+
+    /**
+     * 异步JSON-RPC请求
+     * 返回的future不会以异常结束, 请求失败时结果中包含error
+     *
+     * @param requestURL 请求地址
+     * @param method     方法名
+     * @param params     参数
+     * @return
+     */
+    public static CompletableFuture<RpcResult> requestAsync(String requestURL, String method, List<Object> params) {
+        Map<String, Object> body = requestBody(method, params);
+        Supplier<CompletableFuture<RpcResult>> call = () -> OkHttpClientUtil.getInstance().postJsonAsync(requestURL, body, metricName(method), RPC_RESULT_READER);
+        return toRpcResult(routeType(method) == WalletNodePool.RouteType.READ ? SingleFlight.getInstance().executeAsync(flightKey(requestURL, method, params), call) : call.get());
+    }
+
+    /**
+     * 合并key, 参数按toString比较
+     */
+    private static String flightKey(String target, String method, List<Object> params) {
+        return target + "#" + method + "#" + params;
+    }
+
+    private static Map<String, Object> requestBody(String method, List<Object> params) {
+        Map<String, Object> map = new HashMap<>(8);
+        map.put(ID, DEFAULT_ID);
+        map.put(JSONRPC, JSONRPC_VERSION);
+        map.put(METHOD, method);
+        map.put(PARAMS, params);
+        return map;
+    }
+
+    private static String metricName(String method) {
+        return JSONRPC + "/" + method;
+    }
+
+    private static WalletNodePool.RouteType routeType(String method) {
+        return BROADCAST_TX.equals(method) ? WalletNodePool.RouteType.WRITE : WalletNodePool.RouteType.READ;
+    }
+
+    private static CompletableFuture<RpcResult> toRpcResult(CompletableFuture<RpcResult> future) {
+        return future.exceptionally(e -> {
+            if (e instanceof CompletionException && e.getCause() != null) {
+                e = e.getCause();
+            }
+            Log.error(e);
+            return RpcResult.failed(new RpcResultError(CommonCodeConstanst.DATA_ERROR.getCode(), e.getMessage(), null));
+        });
+    }
+
+    /**
+     * 批量请求钱包节点, 批次中包含broadcastTx时按写请求路由
+     */
+    public static List<RpcResult> batchRequest(List<JsonRpcRequest> requests) {
+        WalletNodePool.RouteType routeType = WalletNodePool.RouteType.READ;
+        for (JsonRpcRequest request : requests) {
+            if (routeType(request.getMethod()) == WalletNodePool.RouteType.WRITE) {
+                routeType = WalletNodePool.RouteType.WRITE;
+                break;
+            }
+        }
+        WalletNodePool.RouteType batchRouteType = routeType;
+        return batchRequest(requests, body -> WalletNodePool.route(JSONRPC, batchRouteType, url -> OkHttpClientUtil.getInstance().postJson(url, body, BATCH_METRIC_NAME, JSON_TREE_READER)));
+    }
+
+    /**
+     * JSON-RPC 2.0 批量请求
+     * 将多个调用打包为一个数组请求发送, 每个调用分配独立的id, 按id将响应映射回各自的调用
+     * 返回结果与requests顺序一致, 单个调用失败只体现在对应位置的RpcResult.error中
+     *
+     * @param requestURL 请求地址
+     * @param requests   调用列表
+     * @return 与requests一一对应的结果列表
+     */
+    public static List<RpcResult> batchRequest(String requestURL, List<JsonRpcRequest> requests) {
+        return batchRequest(requests, body -> OkHttpClientUtil.getInstance().postJson(requestURL, body, BATCH_METRIC_NAME, JSON_TREE_READER));
+    }
+
+    private interface BatchCall {
+        /**
+         * @param body 批量请求体
+         * @return 响应的JSON树
+         */
+        JsonNode execute(List<Map<String, Object>> body) throws Exception;
+    }
+
+    private static List<RpcResult> batchRequest(List<JsonRpcRequest> requests, BatchCall call) {
+        if (requests == null || requests.isEmpty()) {
+            return Collections.emptyList();
+        }
+        int size = requests.size();
+        List<Map<String, Object>> body = new ArrayList<>(size);
+        List<String> ids = new ArrayList<>(size);
+        for (JsonRpcRequest request : requests) {
+            String id = String.valueOf(BATCH_ID.incrementAndGet());
+            Map<String, Object> map = new HashMap<>(8);
+            map.put(ID, id);
+            map.put(JSONRPC, JSONRPC_VERSION);
+            map.put(METHOD, request.getMethod());
+            map.put(PARAMS, request.getParams());
+            body.add(map);
+            ids.add(id);
+        }
+        List<RpcResult> results = new ArrayList<>(size);
+        try {
+            JsonNode root = call.execute(body);
+            if (!root.isArray()) {
+                // 整个批次被拒绝(如解析错误), 服务端只返回一个响应对象
+                RpcResult whole = JSONUtils.getInstance().treeToValue(root, RpcResult.class);
+                RpcResultError error = whole.getError() != null ? whole.getError()
+                        : new RpcResultError(CommonCodeConstanst.DATA_ERROR.getCode(), "unexpected batch response", null);
+                for (String id : ids) {
+                    RpcResult rpcResult = RpcResult.failed(error);
+                    rpcResult.setId(id);
+                    results.add(rpcResult);
+                }
+                return results;
+            }
+            Map<String, RpcResult> resultMap = new HashMap<>(size * 2);
+            for (JsonNode node : root) {
+                RpcResult rpcResult = JSONUtils.getInstance().treeToValue(node, RpcResult.class);
+                if (rpcResult.getId() != null) {
+                    resultMap.put(rpcResult.getId(), rpcResult);
+                }
+            }
+            for (String id : ids) {
+                RpcResult rpcResult = resultMap.get(id);
+                if (rpcResult == null) {
+                    rpcResult = RpcResult.failed(new RpcResultError(CommonCodeConstanst.DATA_NOT_FOUND.getCode(), "no response for id " + id, null));
+                    rpcResult.setId(id);
+                }
+                results.add(rpcResult);
+            }
+        } catch (Exception e) {
+            Log.error(e);
+            results.clear();
+            for (String id : ids) {
+                RpcResult rpcResult = RpcResult.failed(new RpcResultError(CommonCodeConstanst.DATA_ERROR.getCode(), e.getMessage(), null));
+                rpcResult.setId(id);
+                results.add(rpcResult);
+            }
+        }
+        return results;
+    }
+
 }
@@ -0,0 +1,324 @@
+package network.nerve.kit.util;
+
+import network.nerve.NerveSDKBootStrap;
+import network.nerve.core.parse.I18nUtils;
+import network.nerve.kit.metrics.MetricsRegistry;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 实例化的SDK客户端
+ * 每个实例持有自己的链配置、钱包节点(或节点池)、OkHttp客户端、请求合并、各类缓存、交易跟踪与指标采集, 多个实例可以在同一进程中并行访问不同的链或节点集群
+ * SDK的服务与 {@link NerveSDKTool} 均为静态入口, 在 {@link #call(Supplier)} 或 {@link #run(Runnable)} 中调用时使用当前实例, 否则使用 SDKContext 中的默认配置
+ * 实例的OkHttp调度线程与后台线程始终绑定该实例, 异步请求的回调同样使用该实例; 熔断、并发限制与对冲策略按节点地址区分, 仍为进程内共享
+ * 用完需调用close
+ */
+public class NerveClient implements Closeable {
+
+    private static final ThreadLocal<NerveClient> CURRENT = new ThreadLocal<>();
+    private static final AtomicInteger SEQ = new AtomicInteger();
+
+    static {
+        // 错误码的多语言信息, 与NerveSDKBootStrap初始化时加载的相同; 只加载一次, 避免重新加载时清空正在使用的映射
+        if (!I18nUtils.hasLanguage("en")) {
+            I18nUtils.loadLanguage(NerveSDKBootStrap.class, "languages", "en");
+        }
+    }
+
+    private final String name;
+    private final int chainId;
+    private final int assetId;
+    private final int nulsChainId;
+    private final int nulsAssetId;
+    private final String addressPrefix;
+    private final String addressPrefixNuls;
+    private final String walletUrl;
+    private final WalletNodePool walletNodePool;
+    private final OkHttpClientUtil httpClient;
+    private volatile MetricsRegistry metricsRegistry;
+
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final NonceManager nonceManager = new NonceManager();
+    private final BlockHeaderCache blockHeaderCache = new BlockHeaderCache();
+    private final ConfirmedObjectCache confirmedObjectCache = new ConfirmedObjectCache();
+    private final BalanceCache balanceCache;
+    private final AssetInfoCache assetInfoCache;
+    private final PendingTxTracker pendingTxTracker;
+
+    public NerveClient(Config config) {
+        if (config.chainId < 1 || config.chainId > 65535) {
+            throw new IllegalArgumentException("chainId is invalid: " + config.chainId);
+        }
+        if (config.walletUrls.isEmpty()) {
+            throw new IllegalArgumentException("walletUrls is empty");
+        }
+        this.name = "nerve-client-" + SEQ.incrementAndGet();
+        this.chainId = config.chainId;
+        this.assetId = config.assetId;
+        this.nulsChainId = config.nulsChainId;
+        this.nulsAssetId = config.nulsAssetId;
+        this.addressPrefix = config.addressPrefix;
+        this.addressPrefixNuls = config.addressPrefixNuls;
+        this.walletUrl = WalletNodePool.normalize(config.walletUrls.get(0));
+        this.metricsRegistry = config.metricsRegistry;
+        this.httpClient = OkHttpClientUtil.create(config.httpConfig, threadFactory(this, name + "-http"));
+        this.balanceCache = new BalanceCache(this);
+        this.assetInfoCache = new AssetInfoCache(this);
+        this.pendingTxTracker = new PendingTxTracker(this);
+        // 节点池的探测线程同样需要使用本实例的http客户端
+        this.walletNodePool = config.walletUrls.size() > 1 ? call(() -> new WalletNodePool(config.walletUrls)) : null;
+    }
+
+    /**
+     * @return 当前线程绑定的实例, 未绑定时为null
+     */
+    public static NerveClient current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 在当前线程绑定本实例的情况下执行, 结束后恢复原来的绑定
+     */
+    public <T> T call(Supplier<T> action) {
+        NerveClient previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return action.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    public void run(Runnable action) {
+        call(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private static void restore(NerveClient previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * 包装为在调用方当前绑定的实例下执行, 用于交给其他线程延后执行的请求
+     */
+    public static <T> Supplier<T> wrap(Supplier<T> action) {
+        NerveClient client = CURRENT.get();
+        if (client == null) {
+            return () -> {
+                NerveClient previous = CURRENT.get();
+                CURRENT.remove();
+                try {
+                    return action.get();
+                } finally {
+                    restore(previous);
+                }
+            };
+        }
+        return () -> client.call(action);
+    }
+
+    /**
+     * 创建守护线程, 线程整个生命周期内绑定client, client为null时不绑定
+     */
+    public static ThreadFactory threadFactory(NerveClient client, String name) {
+        AtomicInteger seq = new AtomicInteger();
+        return r -> {
+            Runnable task = client == null ? r : () -> client.run(r);
+            Thread thread = new Thread(task, name + "-" + seq.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getChainId() {
+        return chainId;
+    }
+
+    public int getAssetId() {
+        return assetId;
+    }
+
+    public int getNulsChainId() {
+        return nulsChainId;
+    }
+
+    public int getNulsAssetId() {
+        return nulsAssetId;
+    }
+
+    public String getAddressPrefix() {
+        return addressPrefix;
+    }
+
+    public String getAddressPrefixNuls() {
+        return addressPrefixNuls;
+    }
+
+    public String getWalletUrl() {
+        return walletUrl;
+    }
+
+    /**
+     * @return 节点池, 只配置了一个节点时为null
+     */
+    public WalletNodePool getWalletNodePool() {
+        return walletNodePool;
+    }
+
+    public OkHttpClientUtil getHttpClient() {
+        return httpClient;
+    }
+
+    public MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+    /**
+     * 本实例的指标采集实现, 为null时使用 Metrics 中注册的全局实现
+     */
+    public NerveClient setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+        return this;
+    }
+
+    public SingleFlight getSingleFlight() {
+        return singleFlight;
+    }
+
+    public NonceManager getNonceManager() {
+        return nonceManager;
+    }
+
+    public BlockHeaderCache getBlockHeaderCache() {
+        return blockHeaderCache;
+    }
+
+    public ConfirmedObjectCache getConfirmedObjectCache() {
+        return confirmedObjectCache;
+    }
+
+    public BalanceCache getBalanceCache() {
+        return balanceCache;
+    }
+
+    public AssetInfoCache getAssetInfoCache() {
+        return assetInfoCache;
+    }
+
+    public PendingTxTracker getPendingTxTracker() {
+        return pendingTxTracker;
+    }
+
+    /**
+     * 停止后台线程, 关闭磁盘缓存并释放http连接
+     */
+    @Override
+    public void close() {
+        balanceCache.setHeightPollIntervalMillis(0);
+        assetInfoCache.setRefreshIntervalMillis(0);
+        pendingTxTracker.shutdown();
+        confirmedObjectCache.close();
+        if (walletNodePool != null) {
+            walletNodePool.shutdown();
+        }
+        httpClient.shutdown();
+    }
+
+    /**
+     * 客户端配置, 默认连接NERVE主网公共节点
+     */
+    public static class Config {
+        private int chainId = 9;
+        private int assetId = 1;
+        private int nulsChainId = 1;
+        private int nulsAssetId = 1;
+        private String addressPrefix = "NERVE";
+        private String addressPrefixNuls = "NULS";
+        private List<String> walletUrls = Collections.singletonList("https://api.nerve.network/");
+        private OkHttpClientUtil.Config httpConfig = new OkHttpClientUtil.Config();
+        private MetricsRegistry metricsRegistry;
+
+        /**
+         * 主网配置, 与 NerveSDKBootStrap.initMain 相同
+         */
+        public static Config main(String... walletUrls) {
+            return new Config().setWalletUrls(walletUrls);
+        }
+
+        /**
+         * 测试网配置, 与 NerveSDKBootStrap.initTest 相同
+         */
+        public static Config test(String... walletUrls) {
+            return new Config().setChainId(5).setNulsChainId(2).setAddressPrefix("TNVT").setAddressPrefixNuls("tNULS").setWalletUrls(walletUrls);
+        }
+
+        public Config setChainId(int chainId) {
+            this.chainId = chainId;
+            return this;
+        }
+
+        public Config setAssetId(int assetId) {
+            this.assetId = assetId;
+            return this;
+        }
+
+        public Config setNulsChainId(int nulsChainId) {
+            this.nulsChainId = nulsChainId;
+            return this;
+        }
+
+        public Config setNulsAssetId(int nulsAssetId) {
+            this.nulsAssetId = nulsAssetId;
+            return this;
+        }
+
+        public Config setAddressPrefix(String addressPrefix) {
+            this.addressPrefix = addressPrefix;
+            return this;
+        }
+
+        public Config setAddressPrefixNuls(String addressPrefixNuls) {
+            this.addressPrefixNuls = addressPrefixNuls;
+            return this;
+        }
+
+        /**
+         * 钱包节点地址, 多于一个时使用节点池; 为空时保留默认地址
+         */
+        public Config setWalletUrls(String... walletUrls) {
+            if (walletUrls == null || walletUrls.length == 0) {
+                return this;
+            }
+            List<String> urls = new ArrayList<>();
+            Collections.addAll(urls, walletUrls);
+            this.walletUrls = urls;
+            return this;
+        }
+
+        public Config setHttpConfig(OkHttpClientUtil.Config httpConfig) {
+            this.httpConfig = httpConfig.copy();
+            return this;
+        }
+
+        public Config setMetricsRegistry(MetricsRegistry metricsRegistry) {
+            this.metricsRegistry = metricsRegistry;
+            return this;
+        }
+    }
+}
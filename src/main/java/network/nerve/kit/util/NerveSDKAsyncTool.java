@@ -0,0 +1,267 @@
+package network.nerve.kit.util;
+
+import network.nerve.SDKContext;
+import network.nerve.core.basic.Result;
+import network.nerve.core.constant.CommonCodeConstanst;
+import network.nerve.core.log.Log;
+import network.nerve.kit.model.AccountAssetKey;
+import network.nerve.kit.model.NerveToken;
+import network.nerve.kit.model.NerveTokenAmount;
+import network.nerve.kit.model.dto.AccountBalanceDto;
+import network.nerve.kit.model.dto.CrossTransferForm;
+import network.nerve.kit.model.dto.TransferForm;
+import network.nerve.kit.model.dto.WithdrawalTxDto;
+import network.nerve.kit.service.AccountService;
+import network.nerve.kit.service.BlockService;
+import network.nerve.kit.service.TransactionService;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+
+/**
+ * NerveSDKTool 的异步版本
+ * 所有网络接口基于OkHttp的enqueue执行, 不占用调用线程; 返回的future不会以异常结束, 失败信息在Result中
+ * 需要查询账本nonce的交易组装接口先通过 {@link NonceManager#prefetchAsync} 异步查询, 再在回调线程上执行与NerveSDKTool相同的组装代码
+ * 只使用调用方传入的数据、不涉及网络请求的离线组装与签名接口, 请直接使用NerveSDKTool
+ */
+public class NerveSDKAsyncTool {
+
+    private static AccountService accountService = AccountService.getInstance();
+
+    private static TransactionService transactionService = TransactionService.getInstance();
+
+    private static BlockService blockService = BlockService.getInstance();
+
+    public static CompletableFuture<Result> getInfo() {
+        return blockService.getInfoAsync();
+    }
+
+    public static CompletableFuture<Result> getAccountBalance(String address, int chainId, int assetsId) {
+        return accountService.getAccountBalanceAsync(address, chainId, assetsId);
+    }
+
+    /**
+     * 批量获取账户余额, 最多parallelism个并发请求, listener可为null
+     */
+    public static CompletableFuture<Map<AccountAssetKey, Result<AccountBalanceDto>>> getAccountBalances(Collection<AccountAssetKey> keys, int parallelism, AccountService.BalanceListener listener) {
+        return accountService.getAccountBalancesAsync(keys, parallelism, listener);
+    }
+
+    public static CompletableFuture<Result> getBlockHeader(long height) {
+        return blockService.getBlockHeaderAsync(height);
+    }
+
+    public static CompletableFuture<Result> getBlockHeader(String hash) {
+        return blockService.getBlockHeaderAsync(hash);
+    }
+
+    public static CompletableFuture<Result> getBlock(long height) {
+        return blockService.getBlockAsync(height);
+    }
+
+    public static CompletableFuture<Result> getBlock(String hash) {
+        return blockService.getBlockAsync(hash);
+    }
+
+    public static CompletableFuture<Result> getBestBlockHeader() {
+        return blockService.getBestBlockHeaderAsync();
+    }
+
+    public static CompletableFuture<Result> getBestBlock() {
+        return blockService.getBestBlockAsync();
+    }
+
+    public static CompletableFuture<Result> getTx(String txHash) {
+        return transactionService.getTxAsync(txHash);
+    }
+
+    public static CompletableFuture<Result> getTransaction(String txHash) {
+        return transactionService.getTransactionAsync(txHash);
+    }
+
+    public static CompletableFuture<Result> validateTx(String txHex) {
+        return transactionService.validateTxAsync(txHex);
+    }
+
+    public static CompletableFuture<Result> broadcast(String txHex) {
+        return transactionService.broadcastTxAsync(txHex);
+    }
+
+    /**
+     * 等待已广播的交易确认, 由 {@link PendingTxTracker} 按区块批量检查
+     */
+    public static CompletableFuture<Result> waitForConfirmation(String txHash) {
+        return PendingTxTracker.getInstance().track(txHash);
+    }
+
+    public static CompletableFuture<Result> transfer(TransferForm transferForm) {
+        return transactionService.transferAsync(transferForm);
+    }
+
+    public static CompletableFuture<Result> crossTransfer(CrossTransferForm transferForm) {
+        return transactionService.crossTransferAsync(transferForm);
+    }
+
+    public static CompletableFuture<Result> createTxSimpleTransferOfNonNvt(String fromAddress, String toAddress, int assetChainId, int assetId, BigInteger amount) {
+        return assemble(() -> transactionService.createTxSimpleTransferOfNonNvt(fromAddress, toAddress, assetChainId, assetId, amount),
+                new AccountAssetKey(fromAddress, assetChainId, assetId));
+    }
+
+    public static CompletableFuture<Result> createTxSimpleTransferOfNonNvt(String fromAddress, String toAddress, int assetChainId, int assetId, BigInteger amount, long time, String remark) {
+        return assemble(() -> transactionService.createTxSimpleTransferOfNonNvt(fromAddress, toAddress, assetChainId, assetId, amount, time, remark),
+                new AccountAssetKey(fromAddress, assetChainId, assetId));
+    }
+
+    public static CompletableFuture<Result> createTxSimpleTransferOfNvt(String fromAddress, String toAddress, BigInteger amount) {
+        return assemble(() -> transactionService.createTxSimpleTransferOfNvt(fromAddress, toAddress, amount), nvt(fromAddress));
+    }
+
+    public static CompletableFuture<Result> createTxSimpleTransferOfNvt(String fromAddress, String toAddress, BigInteger amount, long time, String remark) {
+        return assemble(() -> transactionService.createTxSimpleTransferOfNvt(fromAddress, toAddress, amount, time, remark), nvt(fromAddress));
+    }
+
+    public static CompletableFuture<Result> createCrossTxSimpleTransferOfNonNvtNuls(String fromAddress, String toAddress, int assetChainId, int assetId, BigInteger amount) {
+        return assemble(() -> transactionService.createCrossTxSimpleTransferOfNonNvtNuls(fromAddress, toAddress, assetChainId, assetId, amount),
+                new AccountAssetKey(fromAddress, assetChainId, assetId), nvt(fromAddress), nuls(fromAddress));
+    }
+
+    public static CompletableFuture<Result> createCrossTxSimpleTransferOfNonNvtNuls(String fromAddress, String toAddress, int assetChainId, int assetId, BigInteger amount, long time, String remark) {
+        return assemble(() -> transactionService.createCrossTxSimpleTransferOfNonNvtNuls(fromAddress, toAddress, assetChainId, assetId, amount, time, remark),
+                new AccountAssetKey(fromAddress, assetChainId, assetId), nvt(fromAddress), nuls(fromAddress));
+    }
+
+    public static CompletableFuture<Result> createCrossTxSimpleTransferOfNuls(String fromAddress, String toAddress, BigInteger amount) {
+        return assemble(() -> transactionService.createCrossTxSimpleTransferOfNuls(fromAddress, toAddress, amount), nvt(fromAddress), nuls(fromAddress));
+    }
+
+    public static CompletableFuture<Result> createCrossTxSimpleTransferOfNuls(String fromAddress, String toAddress, BigInteger amount, long time, String remark) {
+        return assemble(() -> transactionService.createCrossTxSimpleTransferOfNuls(fromAddress, toAddress, amount, time, remark), nvt(fromAddress), nuls(fromAddress));
+    }
+
+    public static CompletableFuture<Result> createCrossTxSimpleTransferOfNvt(String fromAddress, String toAddress, BigInteger amount) {
+        return assemble(() -> transactionService.createCrossTxSimpleTransferOfNvt(fromAddress, toAddress, amount), nvt(fromAddress), nuls(fromAddress));
+    }
+
+    public static CompletableFuture<Result> createCrossTxSimpleTransferOfNvt(String fromAddress, String toAddress, BigInteger amount, long time, String remark) {
+        return assemble(() -> transactionService.createCrossTxSimpleTransferOfNvt(fromAddress, toAddress, amount, time, remark), nvt(fromAddress), nuls(fromAddress));
+    }
+
+    public static CompletableFuture<Result> createWithdrawalTx(WithdrawalTxDto withdrawalTxDto) {
+        String from = withdrawalTxDto.getFromAddress();
+        return assemble(() -> transactionService.createWithdrawalTx(withdrawalTxDto, null, null),
+                new AccountAssetKey(from, withdrawalTxDto.getAssetChainId(), withdrawalTxDto.getAssetId()), nvt(from));
+    }
+
+    public static CompletableFuture<Result> withdrawalAdditionalFeeTx(String fromAddress, String txHash, BigInteger amount, long time, String remark) {
+        return assemble(() -> transactionService.withdrawalAdditionalFeeTxWithNVT(fromAddress, txHash, amount, time, remark, null), nvt(fromAddress));
+    }
+
+    public static CompletableFuture<Result> stableSwapTradeTx(String from, String to, NerveTokenAmount[] tokenAmountIns, int tokenOutIndex, String pairAddress, String feeTo, String remark) {
+        return assemble(() -> transactionService.stableSwapTradeTx(from, to, tokenAmountIns, null, tokenOutIndex, pairAddress, feeTo, null, remark), keys(from, tokenAmountIns));
+    }
+
+    public static CompletableFuture<Result> stableSwapTradeTx(String from, String to, NerveTokenAmount[] tokenAmountIns, int tokenOutIndex, String pairAddress, String feeTo, NerveTokenAmount feeTokenAmount, String remark) {
+        return assemble(() -> transactionService.stableSwapTradeTx(from, to, tokenAmountIns, null, tokenOutIndex, pairAddress, feeTo, feeTokenAmount, remark), keys(from, tokenAmountIns));
+    }
+
+    public static CompletableFuture<Result> stableSwapAddLiquidity(String from, BigInteger amount, NerveToken token, String pairAddress, Long deadline, String to, String remark) {
+        return assemble(() -> transactionService.stableSwapAddLiquidity(from, amount, token, pairAddress, deadline, to, remark), keys(from, token));
+    }
+
+    public static CompletableFuture<Result> stableSwapRemoveLiquidity(String from, BigInteger amountLP, NerveToken tokenLP, Integer[] receiveOrderIndexs, String pairAddress, Long deadline, String to, String remark) {
+        return assemble(() -> transactionService.stableSwapRemoveLiquidity(from, amountLP, tokenLP, receiveOrderIndexs, pairAddress, deadline, to, remark), keys(from, tokenLP));
+    }
+
+    public static CompletableFuture<Result> swapTradeTx(String from, BigInteger amountIn, NerveToken[] tokenPath, BigInteger amountOutMin, String feeTo, Long deadline, String to, String remark) {
+        return assemble(() -> transactionService.swapTradeTx(from, amountIn, tokenPath, amountOutMin, feeTo, deadline, to, remark), keys(from, first(tokenPath)));
+    }
+
+    public static CompletableFuture<Result> stableLpSwapTrade(String from, String stablePairAddress, BigInteger amountIn, NerveToken[] tokenPath, BigInteger amountOutMin, String feeTo, Long deadline, String to, String remark) {
+        return assemble(() -> transactionService.stableLpSwapTrade(from, stablePairAddress, amountIn, tokenPath, amountOutMin, feeTo, deadline, to, remark), keys(from, first(tokenPath)));
+    }
+
+    public static CompletableFuture<Result> swapTradeStableRemoveLp(String from, BigInteger amountIn, NerveToken[] tokenPath, BigInteger amountOutMin, String feeTo, Long deadline, String to, NerveToken targetToken, String remark) {
+        return assemble(() -> transactionService.swapTradeStableRemoveLp(from, amountIn, tokenPath, amountOutMin, feeTo, deadline, to, targetToken, remark), keys(from, first(tokenPath)));
+    }
+
+    public static CompletableFuture<Result> swapCreatePair(String from, NerveToken tokenA, NerveToken tokenB, String remark) {
+        return assemble(() -> transactionService.swapCreatePair(from, tokenA, tokenB, remark), new AccountAssetKey(from, SDKContext.getMainChainId(), 1));
+    }
+
+    public static CompletableFuture<Result> swapAddLiquidity(String from, BigInteger amountA, BigInteger amountB, NerveToken tokenA, NerveToken tokenB, BigInteger amountAMin, BigInteger amountBMin, Long deadline, String to, String remark) {
+        return assemble(() -> transactionService.swapAddLiquidity(from, amountA, amountB, tokenA, tokenB, amountAMin, amountBMin, deadline, to, remark), keys(from, tokenA, tokenB));
+    }
+
+    /**
+     * 异步查询keys的账本nonce后执行同步的组装代码
+     */
+    private static CompletableFuture<Result> assemble(Supplier<Result> assembly, AccountAssetKey... keys) {
+        return NonceManager.getInstance().prefetchAsync(keys).thenApply(prefetched -> {
+            if (!prefetched.isSuccess()) {
+                return prefetched;
+            }
+            try {
+                return NonceManager.withPrefetched((Map<String, String>) prefetched.getData(), assembly);
+            } catch (RuntimeException e) {
+                Log.error(e);
+                return Result.getFailed(CommonCodeConstanst.DATA_ERROR).setMsg(e.getMessage());
+            }
+        });
+    }
+
+    private static AccountAssetKey nvt(String address) {
+        return new AccountAssetKey(address, SDKContext.getMainChainId(), SDKContext.getMainAssetId());
+    }
+
+    private static AccountAssetKey nuls(String address) {
+        return new AccountAssetKey(address, SDKContext.getNulsChainId(), SDKContext.getNulsAssetId());
+    }
+
+    private static NerveToken first(NerveToken[] tokens) {
+        return tokens == null || tokens.length == 0 ? null : tokens[0];
+    }
+
+    private static AccountAssetKey[] keys(String address, NerveToken... tokens) {
+        List<AccountAssetKey> keys = new ArrayList<>();
+        for (NerveToken token : tokens) {
+            if (token != null) {
+                keys.add(new AccountAssetKey(address, token.getChainId(), token.getAssetId()));
+            }
+        }
+        return keys.toArray(new AccountAssetKey[0]);
+    }
+
+    private static AccountAssetKey[] keys(String address, NerveTokenAmount[] tokens) {
+        List<AccountAssetKey> keys = new ArrayList<>();
+        if (tokens != null) {
+            for (NerveTokenAmount token : tokens) {
+                keys.add(new AccountAssetKey(address, token.getChainId(), token.getAssetId()));
+            }
+        }
+        return keys.toArray(new AccountAssetKey[0]);
+    }
+
+    public static CompletableFuture<Result> getSymbolInfo(int assetChainId, int assetId) {
+        if (assetChainId == 0 || assetId == 0) {
+            return CompletableFuture.completedFuture(Result.getFailed(CommonCodeConstanst.NULL_PARAMETER).setMsg("assetChainId or assetId is empty"));
+        }
+        return AssetInfoCache.getInstance().getSymbolInfoAsync(assetChainId, assetId);
+    }
+
+    /**
+     * 获取资产的USD价格, 查询失败时future以异常结束
+     */
+    public static CompletableFuture<BigDecimal> getUsdPrice(int assetChainId, int assetId) {
+        return getSymbolInfo(assetChainId, assetId).thenApply(rs -> {
+            Map map = (Map) rs.getData();
+            return new BigDecimal(map.get("usdPrice").toString());
+        });
+    }
+}
@@ -6,10 +6,10 @@ import network.nerve.base.basic.NulsByteBuffer;
 import network.nerve.base.data.Transaction;
 import network.nerve.core.basic.Result;
 import network.nerve.core.constant.CommonCodeConstanst;
-import network.nerve.core.constant.ErrorCode;
 import network.nerve.core.crypto.HexUtil;
 import network.nerve.core.exception.NulsException;
 import network.nerve.core.rpc.model.*;
+import network.nerve.kit.model.AccountAssetKey;
 import network.nerve.kit.model.NerveToken;
 import network.nerve.kit.model.NerveTokenAmount;
 import network.nerve.kit.model.annotation.ApiOperation;
@@ -21,11 +21,13 @@ import network.nerve.kit.service.TransactionService;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
-import static network.nerve.kit.constant.Constant.PUBLIC_SERVER_URL;
-
+/**
+ * SDK静态入口, 使用 SDKContext 中的默认配置; 需要同时访问多条链或多组节点时, 在 {@link NerveClient#call} 中调用
+ */
 public class NerveSDKTool {
 
     private static AccountService accountService = AccountService.getInstance();
@@ -136,6 +138,17 @@ public class NerveSDKTool {
         return accountService.getAccountBalance(address, chainId, assetsId);
     }
 
+    @ApiOperation(description = "批量查询账户余额", order = 160, detailDesc = "以有限并发逐个查询多个账户资产的余额, 单个失败不影响其他查询, 可通过回调获取进度")
+    @Parameters({
+            @Parameter(parameterName = "keys", requestType = @TypeDescriptor(value = Collection.class, collectionElement = AccountAssetKey.class), parameterDes = "账户资产集合"),
+            @Parameter(parameterName = "parallelism", requestType = @TypeDescriptor(value = int.class), parameterDes = "最大并发请求数"),
+            @Parameter(parameterName = "listener", requestType = @TypeDescriptor(value = AccountService.BalanceListener.class), parameterDes = "进度回调, 可为null")
+    })
+    @ResponseData(name = "返回值", description = "按参数顺序排列的每个账户资产的查询结果", responseType = @TypeDescriptor(value = Map.class))
+    public static Map<AccountAssetKey, Result<AccountBalanceDto>> getAccountBalances(Collection<AccountAssetKey> keys, int parallelism, AccountService.BalanceListener listener) {
+        return accountService.getAccountBalances(keys, parallelism, listener);
+    }
+
     @ApiOperation(description = "设置账户别名", order = 108, detailDesc = "别名格式为1-20位小写字母和数字的组合，设置别名会销毁1个NULS")
     @Parameters({
             @Parameter(parameterName = "address", requestType = @TypeDescriptor(value = String.class), parameterDes = "账户地址"),
@@ -155,7 +168,7 @@ public class NerveSDKTool {
     })
     @ResponseData(name = "返回值", responseType = @TypeDescriptor(value = Map.class))
     public static Result validateAddress(String address) {
-        return accountService.validateAddress(SDKContext.main_chain_id, address);
+        return accountService.validateAddress(SDKContext.getMainChainId(), address);
     }
 
     @ApiOperation(description = "验证地址格式是否正确", order = 110, detailDesc = "根据chainId验证地址格式是否正确")
@@ -362,6 +375,21 @@ public class NerveSDKTool {
         return blockService.getBestBlock();
     }
 
+    @ApiOperation(description = "按高度顺序遍历区块", order = 207, detailDesc = "并发预取多个高度的区块并按顺序交付, toHeight为-1时持续跟随最新高度, 用完需调用close")
+    @Parameters({
+            @Parameter(parameterName = "fromHeight", requestType = @TypeDescriptor(value = long.class), parameterDes = "起始高度(包含)"),
+            @Parameter(parameterName = "toHeight", requestType = @TypeDescriptor(value = long.class), parameterDes = "结束高度(包含), -1表示跟随最新高度"),
+            @Parameter(parameterName = "window", requestType = @TypeDescriptor(value = int.class), parameterDes = "同时预取的区块数")
+    })
+    @ResponseData(name = "返回值", description = "区块迭代器", responseType = @TypeDescriptor(value = BlockStream.class))
+    public static BlockStream streamBlocks(long fromHeight, long toHeight, int window) {
+        return new BlockStream(fromHeight, toHeight, window);
+    }
+
+    public static BlockStream streamBlocks(long fromHeight, long toHeight) {
+        return streamBlocks(fromHeight, toHeight, 8);
+    }
+
     @ApiOperation(description = "根据hash查询交易详情", order = 301)
     @Parameters({
             @Parameter(parameterName = "hash", parameterDes = "交易hash")
@@ -398,6 +426,19 @@ public class NerveSDKTool {
         return transactionService.broadcastTx(txHex);
     }
 
+    public static Result broadcast(Transaction tx) {
+        return transactionService.broadcastTx(tx);
+    }
+
+    @ApiOperation(description = "批量广播交易", order = 306, detailDesc = "使用一次JSON-RPC批量请求广播多笔离线组装的交易,返回结果与参数顺序一致")
+    @Parameters({
+            @Parameter(parameterName = "txHexList", requestType = @TypeDescriptor(value = List.class, collectionElement = String.class), parameterDes = "交易序列化16进制字符串集合")
+    })
+    @ResponseData(name = "返回值", description = "返回每笔交易的广播结果", responseType = @TypeDescriptor(value = List.class, collectionElement = Result.class))
+    public static List<Result> broadcast(List<String> txHexList) {
+        return transactionService.broadcastTxs(txHexList);
+    }
+
 
     @ApiOperation(description = "单笔转账", order = 304, detailDesc = "发起单账户单资产的转账交易(在线)")
     @Parameters({
@@ -971,12 +1012,7 @@ public class NerveSDKTool {
         if (assetChainId == 0 || assetId == 0) {
             return Result.getFailed(CommonCodeConstanst.NULL_PARAMETER).setMsg("assetChainId or assetId is empty");
         }
-        RpcResult<Map> rpcResult = JsonRpcUtil.request(PUBLIC_SERVER_URL,"getSymbolInfo", ListUtil.of(assetChainId, assetId));
-        RpcResultError rpcResultError = rpcResult.getError();
-        if (rpcResultError != null) {
-            return Result.getFailed(ErrorCode.init(rpcResultError.getCode())).setMsg(rpcResultError.getMessage());
-        }
-        return Result.getSuccess(CommonCodeConstanst.SUCCESS).setData(rpcResult.getResult());
+        return AssetInfoCache.getInstance().getSymbolInfo(assetChainId, assetId);
     }
 
     /**
@@ -0,0 +1,204 @@
+package network.nerve.kit.util;
+
+import network.nerve.base.basic.AddressTool;
+import network.nerve.base.data.CoinData;
+import network.nerve.base.data.CoinFrom;
+import network.nerve.base.data.Transaction;
+import network.nerve.core.basic.Result;
+import network.nerve.core.crypto.HexUtil;
+import network.nerve.core.exception.NulsException;
+import network.nerve.core.log.Log;
+import network.nerve.kit.model.AccountAssetKey;
+import network.nerve.kit.service.AccountService;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 本地nonce管理
+ * 按 地址 + 资产链ID + 资产ID 缓存nonce, 首次使用时查询账本, 之后每组装一笔交易就在本地推进为 TxUtils.getNonce(txHash),
+ * 同一账户连续发出的交易不再每笔查询余额, 也不会重复使用旧nonce; 广播失败时丢弃相关缓存, 下次使用时重新查询账本
+ * 同一账户的连续交易需按顺序组装. 默认关闭, 关闭时每次都查询账本
+ * 异步组装交易时先以 {@link #prefetchAsync} 异步查询账本, 再在 {@link #withPrefetched} 中执行同步的组装代码, 组装过程不再阻塞于网络请求
+ */
+public class NonceManager {
+
+    private static final NonceManager instance = new NonceManager();
+
+    /**
+     * 当前线程预先查询到的账本nonce, 只在withPrefetched执行期间有效
+     */
+    private static final ThreadLocal<Map<String, String>> PREFETCHED = new ThreadLocal<>();
+
+    /**
+     * @return 当前线程绑定的 {@link NerveClient} 的实例, 未绑定时为默认实例
+     */
+    public static NonceManager getInstance() {
+        NerveClient client = NerveClient.current();
+        return client == null ? instance : client.getNonceManager();
+    }
+
+    private final Map<String, String> nonces = new ConcurrentHashMap<>();
+    private volatile boolean enabled;
+
+    /**
+     * 获取下一笔交易应使用的nonce
+     *
+     * @return 成功时data为nonce的hex字符串, 失败时为查询账本的错误
+     */
+    public Result getNonce(String address, int assetChainId, int assetId) {
+        String key = key(address, assetChainId, assetId);
+        if (enabled) {
+            String nonce = nonces.get(key);
+            if (nonce != null) {
+                return Result.getSuccess(nonce);
+            }
+        }
+        Map<String, String> prefetched = PREFETCHED.get();
+        String nonce = prefetched == null ? null : prefetched.get(key);
+        if (nonce == null) {
+            Result accountBalance = NerveSDKTool.getAccountBalance(address, assetChainId, assetId);
+            if (!accountBalance.isSuccess()) {
+                return accountBalance;
+            }
+            Map balance = (Map) accountBalance.getData();
+            nonce = balance.get("nonce").toString();
+        }
+        if (enabled) {
+            // 并发查询时保留已在本地推进过的值
+            String local = nonces.putIfAbsent(key, nonce);
+            if (local != null) {
+                nonce = local;
+            }
+        }
+        return Result.getSuccess(nonce);
+    }
+
+    /**
+     * 异步查询各个账户资产的账本nonce, 启用后本地已有nonce的不再查询
+     *
+     * @return 成功时data为预先查询到的nonce, 交给withPrefetched使用; 失败时为第一个失败的查询结果
+     */
+    public CompletableFuture<Result> prefetchAsync(AccountAssetKey... keys) {
+        Map<String, CompletableFuture<Result>> queries = new LinkedHashMap<>();
+        for (AccountAssetKey k : keys) {
+            String key = key(k.getAddress(), k.getChainId(), k.getAssetId());
+            if ((enabled && nonces.containsKey(key)) || queries.containsKey(key)) {
+                continue;
+            }
+            queries.put(key, AccountService.getInstance().getAccountBalanceAsync(k.getAddress(), k.getChainId(), k.getAssetId()));
+        }
+        return CompletableFuture.allOf(queries.values().toArray(new CompletableFuture[0])).thenApply(v -> {
+            Map<String, String> prefetched = new HashMap<>();
+            for (Map.Entry<String, CompletableFuture<Result>> e : queries.entrySet()) {
+                Result result = e.getValue().join();
+                if (!result.isSuccess()) {
+                    return result;
+                }
+                prefetched.put(e.getKey(), ((Map) result.getData()).get("nonce").toString());
+            }
+            return Result.getSuccess(prefetched);
+        });
+    }
+
+    /**
+     * 在当前线程执行action, 其间需要查询账本时使用prefetchAsync查到的nonce
+     */
+    public static <T> T withPrefetched(Map<String, String> prefetched, Supplier<T> action) {
+        Map<String, String> previous = PREFETCHED.get();
+        PREFETCHED.set(prefetched);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                PREFETCHED.remove();
+            } else {
+                PREFETCHED.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 交易组装完成后调用, 将交易中各个未锁定from的nonce推进为该交易hash对应的nonce
+     */
+    public void onTxCreated(Transaction tx) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            String nonce = HexUtil.encode(TxUtils.getNonce(tx.getHash().getBytes()));
+            for (CoinFrom from : froms(tx)) {
+                nonces.put(key(from), nonce);
+            }
+        } catch (NulsException e) {
+            Log.error(e);
+        }
+    }
+
+    /**
+     * 广播失败时调用, 丢弃交易中各个from的本地nonce, 下次使用时重新查询账本
+     */
+    public void onBroadcastFailed(String txHex) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Transaction tx = Transaction.getInstance(HexUtil.decode(txHex));
+            for (CoinFrom from : froms(tx)) {
+                nonces.remove(key(from));
+            }
+        } catch (Exception e) {
+            // 无法解析时无从得知涉及的账户, 全部重新同步
+            Log.error(e);
+            nonces.clear();
+        }
+    }
+
+    /**
+     * 丢弃某个账户某项资产的本地nonce
+     */
+    public void invalidate(String address, int assetChainId, int assetId) {
+        nonces.remove(key(address, assetChainId, assetId));
+    }
+
+    public void clear() {
+        nonces.clear();
+    }
+
+    private static List<CoinFrom> froms(Transaction tx) throws NulsException {
+        List<CoinFrom> result = new ArrayList<>();
+        if (tx.getCoinData() == null) {
+            return result;
+        }
+        CoinData coinData = tx.getCoinDataInstance();
+        for (CoinFrom from : coinData.getFrom()) {
+            // 解锁类交易的from使用锁定交易的nonce, 不影响账户nonce
+            if (from.getLocked() == 0) {
+                result.add(from);
+            }
+        }
+        return result;
+    }
+
+    private static String key(CoinFrom from) {
+        return key(AddressTool.getStringAddressByBytes(from.getAddress()), from.getAssetsChainId(), from.getAssetsId());
+    }
+
+    private static String key(String address, int assetChainId, int assetId) {
+        return address + "-" + assetChainId + "-" + assetId;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public NonceManager setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            nonces.clear();
+        }
+        return this;
+    }
+}
@@ -1,46 +1,202 @@
 package network.nerve.kit.util;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import network.nerve.core.parse.JSONUtils;
+import network.nerve.kit.metrics.HttpMetricsListener;
+import network.nerve.kit.metrics.Metrics;
+import network.nerve.kit.metrics.MetricsRegistry;
 import okhttp3.*;
+import okio.BufferedSink;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * OkHttp封装
+ * 默认实例由 {@link #getInstance()} 获取, 可通过 {@link #init(Config)} 调整连接池、调度器与超时;
+ * 需要隔离的流量(例如访问不同节点或不同超时要求)可通过 {@link #register(String, Config)} 创建具名实例
+ * 请求未指定Accept-Encoding时由OkHttp自动协商gzip并透明解压, BodyReader读到的始终是解压后的字节流
+ */
 public class OkHttpClientUtil {
-    private static final int READ_TIMEOUT = 100;
-    private static final int CONNECT_TIMEOUT = 60;
-    private static final int WRITE_TIMEOUT = 60;
+
+    /**
+     * 节点返回非2xx响应
+     */
+    public static class HttpStatusException extends IOException {
+        private final int code;
+
+        public HttpStatusException(int code, String message) {
+            super(message);
+            this.code = code;
+        }
+
+        public int getCode() {
+            return code;
+        }
+    }
+
     private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+    /**
+     * 序列化完成后不关闭sink, 由OkHttp负责
+     */
+    private static final ObjectWriter JSON_WRITER = JSONUtils.getInstance().writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
     private static final byte[] LOCKER = new byte[0];
-    private static OkHttpClientUtil mInstance;
-    private OkHttpClient okHttpClient;
-    private OkHttpClientUtil() {
+    private static volatile OkHttpClientUtil mInstance;
+    private static final Map<String, OkHttpClientUtil> NAMED_INSTANCES = new ConcurrentHashMap<>();
+    private final Config config;
+    private final OkHttpClient okHttpClient;
+
+    private OkHttpClientUtil(Config config) {
+        this(config, (ThreadFactory) null);
+    }
 
+    private OkHttpClientUtil(Config config, ThreadFactory threadFactory) {
+        this.config = config;
         okhttp3.OkHttpClient.Builder clientBuilder = new okhttp3.OkHttpClient.Builder();
         // 读取超时
-        clientBuilder.readTimeout(READ_TIMEOUT, TimeUnit.SECONDS);
+        clientBuilder.readTimeout(config.readTimeoutMillis, TimeUnit.MILLISECONDS);
         // 连接超时
-        clientBuilder.connectTimeout(CONNECT_TIMEOUT, TimeUnit.SECONDS);
+        clientBuilder.connectTimeout(config.connectTimeoutMillis, TimeUnit.MILLISECONDS);
         //写入超时
-        clientBuilder.writeTimeout(WRITE_TIMEOUT, TimeUnit.SECONDS);
+        clientBuilder.writeTimeout(config.writeTimeoutMillis, TimeUnit.MILLISECONDS);
+        // 整个调用的超时, 0表示不限制
+        clientBuilder.callTimeout(config.callTimeoutMillis, TimeUnit.MILLISECONDS);
+        clientBuilder.connectionPool(new ConnectionPool(config.maxIdleConnections, config.keepAliveMillis, TimeUnit.MILLISECONDS));
+        // 与OkHttp默认的调度线程池相同, 只替换线程工厂
+        Dispatcher dispatcher = threadFactory == null ? new Dispatcher()
+                : new Dispatcher(new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), threadFactory));
+        dispatcher.setMaxRequests(config.maxRequests);
+        dispatcher.setMaxRequestsPerHost(config.maxRequestsPerHost);
+        clientBuilder.dispatcher(dispatcher);
+        // 熔断未开启时直接放行
+        clientBuilder.addInterceptor(CircuitBreaker.getInstance().getInterceptor());
+        // 未注册MetricsRegistry时为空实现
+        clientBuilder.eventListenerFactory(HttpMetricsListener.FACTORY);
+        if (config.http2PriorKnowledge) {
+            // 仅适用于明文http且服务端支持h2c的节点
+            clientBuilder.protocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+        }
         okHttpClient = clientBuilder.build();
     }
+
+    private OkHttpClientUtil(Config config, OkHttpClient okHttpClient) {
+        this.config = config;
+        this.okHttpClient = okHttpClient;
+    }
+
     /**
      * 单例模式获取 NetUtils
+     * 当前线程绑定了 {@link NerveClient} 时返回该客户端的实例
      *
      * @return {@link OkHttpClientUtil}
      */
     public static OkHttpClientUtil getInstance() {
+        NerveClient client = NerveClient.current();
+        if (client != null) {
+            return client.getHttpClient();
+        }
         if (mInstance == null) {
             synchronized (LOCKER) {
                 if (mInstance == null) {
-                    mInstance = new OkHttpClientUtil();
+                    mInstance = new OkHttpClientUtil(new Config());
                 }
             }
         }
         return mInstance;
     }
+
+    /**
+     * 使用指定配置重建默认实例, 已发出的请求继续在旧实例上完成
+     */
+    public static OkHttpClientUtil init(Config config) {
+        synchronized (LOCKER) {
+            mInstance = new OkHttpClientUtil(config.copy());
+        }
+        return mInstance;
+    }
+
+    /**
+     * 创建独立实例, 不替换默认实例也不注册名称, 调度线程由threadFactory创建
+     */
+    public static OkHttpClientUtil create(Config config, ThreadFactory threadFactory) {
+        return new OkHttpClientUtil(config.copy(), threadFactory);
+    }
+
+    /**
+     * 创建具名实例, 同名实例已存在时替换并关闭旧实例
+     */
+    public static OkHttpClientUtil register(String name, Config config) {
+        OkHttpClientUtil client = new OkHttpClientUtil(config.copy());
+        OkHttpClientUtil old = NAMED_INSTANCES.put(name, client);
+        if (old != null) {
+            old.shutdown();
+        }
+        return client;
+    }
+
+    public static OkHttpClientUtil getInstance(String name) {
+        OkHttpClientUtil client = NAMED_INSTANCES.get(name);
+        if (client == null) {
+            throw new IllegalArgumentException("http client not registered: " + name);
+        }
+        return client;
+    }
+
+    public static void unregister(String name) {
+        OkHttpClientUtil client = NAMED_INSTANCES.remove(name);
+        if (client != null) {
+            client.shutdown();
+        }
+    }
+
+    /**
+     * 返回使用不同超时设置的视图, 与当前实例共享连接池与调度器
+     *
+     * @param connectTimeoutMillis 连接超时
+     * @param readTimeoutMillis    读取超时
+     * @param writeTimeoutMillis   写入超时
+     * @param callTimeoutMillis    整个调用的超时, 0表示不限制
+     */
+    public OkHttpClientUtil withTimeouts(long connectTimeoutMillis, long readTimeoutMillis, long writeTimeoutMillis, long callTimeoutMillis) {
+        Config timeoutConfig = config.copy()
+                .setConnectTimeoutMillis(connectTimeoutMillis)
+                .setReadTimeoutMillis(readTimeoutMillis)
+                .setWriteTimeoutMillis(writeTimeoutMillis)
+                .setCallTimeoutMillis(callTimeoutMillis);
+        OkHttpClient client = okHttpClient.newBuilder()
+                .connectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS)
+                .writeTimeout(writeTimeoutMillis, TimeUnit.MILLISECONDS)
+                .callTimeout(callTimeoutMillis, TimeUnit.MILLISECONDS)
+                .build();
+        return new OkHttpClientUtil(timeoutConfig, client);
+    }
+
+    public OkHttpClient getClient() {
+        return okHttpClient;
+    }
+
+    public Config getConfig() {
+        return config.copy();
+    }
+
+    /**
+     * 取消未完成的请求并释放连接池
+     */
+    public void shutdown() {
+        okHttpClient.dispatcher().cancelAll();
+        okHttpClient.dispatcher().executorService().shutdown();
+        okHttpClient.connectionPool().evictAll();
+    }
+
     /**
      * GET，同步方式，获取网络数据
      *
@@ -73,28 +229,20 @@ public class OkHttpClientUtil {
      * @return {@link Response}
      */
     public String getData(String url, Map<String, Object> params) throws Exception {
-        StringBuffer buffer;
-        if (null != params && !params.isEmpty()) {
-            //遍历map
-            buffer = new StringBuffer("");
-            for (Map.Entry<String, Object> entry : params.entrySet()) {
-                buffer.append("&" + entry.getKey() + "=" + entry.getValue());
-            }
-            url = url + buffer.toString();
-        }
-        // 构造 Request
-        Request.Builder builder = new Request.Builder();
-        Request request = builder.get().url(url).build();
-        // 将 Request 封装为 Call
-        Call call = okHttpClient.newCall(request);
-        // 执行 Call，得到 Response
-        Response response = null;
-        response = call.execute();
-        if (response.isSuccessful()) {
-            return response.body().string();
-        } else {
-            throw new IOException("Unexpected code " + response);
-        }
+        return getData(url, params, ResponseBody::string);
+    }
+
+    /**
+     * GET，同步方式，由reader直接从响应流中解码
+     *
+     * @param url    请求地址
+     * @param params 请求参数
+     * @param reader 响应体解码器
+     * @return 解码结果
+     */
+    public <T> T getData(String url, Map<String, Object> params, BodyReader<T> reader) throws Exception {
+        Request request = new Request.Builder().get().url(appendParams(url, params)).build();
+        return execute(request, reader);
     }
     /**
      * POST 请求，同步方式，提交数据
@@ -166,17 +314,26 @@ public class OkHttpClientUtil {
      * @throws IOException 异常
      */
     public String postJson(String url, String json) throws IOException {
+        return postJson(url, json, null);
+    }
+
+    /**
+     * 同步 POST 请求，使用 JSON 格式作为参数
+     *
+     * @param url        请求地址
+     * @param json       JSON 格式参数
+     * @param metricName 指标中的接口名, 为空时按请求路径归一化
+     * @return 响应结果
+     * @throws IOException 异常
+     */
+    public String postJson(String url, String json, String metricName) throws IOException {
         RequestBody body = RequestBody.create(json, JSON);
         Request request = new Request.Builder()
                 .url(url)
                 .post(body)
+                .tag(Metrics.Name.class, metricName == null ? null : new Metrics.Name(metricName))
                 .build();
-        Response response = okHttpClient.newCall(request).execute();
-        if (response.isSuccessful()) {
-            return response.body().string();
-        } else {
-            throw new IOException("Unexpected code " + response);
-        }
+        return execute(request, ResponseBody::string);
     }
 
     /**
@@ -188,19 +345,32 @@ public class OkHttpClientUtil {
      * @throws IOException 异常
      */
     public String postJson(String url, Map<String, Object> bodyParams)  throws Exception {
-        // 构造 RequestBody
-        RequestBody body = RequestBody.create(JSONUtils.obj2json(bodyParams), JSON);
-        Request request = new Request.Builder()
-                .url(url)
-                .post(body)
-                .header("content-type", JSON.toString())
-                .build();
-        Response response = okHttpClient.newCall(request).execute();
-        if (response.isSuccessful()) {
-            return response.body().string();
-        } else {
-            throw new IOException("Unexpected code " + response);
-        }
+        return postJson(url, bodyParams, ResponseBody::string);
+    }
+
+    /**
+     * 同步 POST 请求，使用 JSON 格式作为参数，由reader直接从响应流中解码
+     *
+     * @param url        请求地址
+     * @param bodyParams 格式参数
+     * @param reader     响应体解码器
+     * @return 解码结果
+     */
+    public <T> T postJson(String url, Map<String, Object> bodyParams, BodyReader<T> reader) throws Exception {
+        return postJson(url, bodyParams, null, reader);
+    }
+
+    /**
+     * 同步 POST 请求, 请求对象直接序列化到请求体, 响应由reader直接从字节流解码
+     *
+     * @param url        请求地址
+     * @param body       请求对象, 以JSON序列化
+     * @param metricName 指标中的接口名, 为空时按请求路径归一化
+     * @param reader     响应体解码器
+     * @return 解码结果
+     */
+    public <T> T postJson(String url, Object body, String metricName, BodyReader<T> reader) throws IOException {
+        return execute(jsonPost(url, body, metricName), reader);
     }
 
     /**
@@ -216,6 +386,191 @@ public class OkHttpClientUtil {
         // 构造 Request
         buildRequest(url, netCallback, body);
     }
+    /**
+     * GET，异步方式，获取网络数据
+     * 请求在OkHttp的调度线程上执行, 调用线程不会阻塞; 取消返回的future会同时取消网络请求
+     *
+     * @param url    请求地址
+     * @param params 请求参数
+     * @return 响应内容
+     */
+    public CompletableFuture<String> getDataAsync(String url, Map<String, Object> params) {
+        return getDataAsync(url, params, ResponseBody::string);
+    }
+
+    /**
+     * GET，异步方式，在OkHttp的调度线程上由reader直接从响应流中解码
+     *
+     * @param url    请求地址
+     * @param params 请求参数
+     * @param reader 响应体解码器
+     * @return 解码结果
+     */
+    public <T> CompletableFuture<T> getDataAsync(String url, Map<String, Object> params, BodyReader<T> reader) {
+        Request request = new Request.Builder().get().url(appendParams(url, params)).build();
+        return enqueue(request, reader);
+    }
+
+    /**
+     * 异步 POST 请求，使用 JSON 格式作为参数
+     *
+     * @param url  请求地址
+     * @param json JSON 格式参数
+     * @return 响应内容
+     */
+    public CompletableFuture<String> postJsonAsync(String url, String json) {
+        return postJsonAsync(url, json, (String) null);
+    }
+
+    /**
+     * 异步 POST 请求，使用 JSON 格式作为参数
+     *
+     * @param url        请求地址
+     * @param json       JSON 格式参数
+     * @param metricName 指标中的接口名, 为空时按请求路径归一化
+     * @return 响应内容
+     */
+    public CompletableFuture<String> postJsonAsync(String url, String json, String metricName) {
+        RequestBody body = RequestBody.create(json, JSON);
+        Request request = new Request.Builder()
+                .url(url)
+                .post(body)
+                .tag(Metrics.Name.class, metricName == null ? null : new Metrics.Name(metricName))
+                .build();
+        return enqueue(request, ResponseBody::string);
+    }
+
+    /**
+     * 异步 POST 请求，使用 JSON 格式作为参数
+     *
+     * @param url        请求地址
+     * @param bodyParams 格式参数
+     * @return 响应内容
+     */
+    public CompletableFuture<String> postJsonAsync(String url, Map<String, Object> bodyParams) {
+        return postJsonAsync(url, bodyParams, ResponseBody::string);
+    }
+
+    /**
+     * 异步 POST 请求，使用 JSON 格式作为参数，由reader直接从响应流中解码
+     *
+     * @param url        请求地址
+     * @param bodyParams 格式参数
+     * @param reader     响应体解码器
+     * @return 解码结果
+     */
+    public <T> CompletableFuture<T> postJsonAsync(String url, Map<String, Object> bodyParams, BodyReader<T> reader) {
+        return postJsonAsync(url, bodyParams, null, reader);
+    }
+
+    /**
+     * 异步 POST 请求, 请求对象直接序列化到请求体, 响应由reader直接从字节流解码
+     *
+     * @param url        请求地址
+     * @param body       请求对象, 以JSON序列化
+     * @param metricName 指标中的接口名, 为空时按请求路径归一化
+     * @param reader     响应体解码器
+     * @return 解码结果
+     */
+    public <T> CompletableFuture<T> postJsonAsync(String url, Object body, String metricName, BodyReader<T> reader) {
+        return enqueue(jsonPost(url, body, metricName), reader);
+    }
+
+    private static Request jsonPost(String url, Object body, String metricName) {
+        return new Request.Builder()
+                .url(url)
+                .post(jsonBody(body))
+                .tag(Metrics.Name.class, metricName == null ? null : new Metrics.Name(metricName))
+                .build();
+    }
+
+    /**
+     * 发送时由Jackson直接写入连接的sink, 不生成中间的String或byte[]
+     * 长度事先未知, 以chunked方式发送; 连接重试时会重新序列化
+     */
+    public static RequestBody jsonBody(Object value) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return JSON;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                JSON_WRITER.writeValue(sink.outputStream(), value);
+            }
+        };
+    }
+
+    private <T> T execute(Request request, BodyReader<T> reader) throws IOException {
+        try (Response response = okHttpClient.newCall(request).execute()) {
+            if (response.isSuccessful()) {
+                return read(request, reader, response.body());
+            } else {
+                recordError(request, "http_" + response.code());
+                throw new HttpStatusException(response.code(), "Unexpected code " + response);
+            }
+        }
+    }
+
+    private <T> T read(Request request, BodyReader<T> reader, ResponseBody body) throws IOException {
+        try {
+            return reader.read(body);
+        } catch (IOException | RuntimeException e) {
+            recordError(request, "decode");
+            throw e;
+        }
+    }
+
+    private static void recordError(Request request, String errorType) {
+        MetricsRegistry registry = Metrics.getRegistry();
+        if (registry != null) {
+            registry.recordError(Metrics.name(request), errorType);
+        }
+    }
+
+    private <T> CompletableFuture<T> enqueue(Request request, BodyReader<T> reader) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Call call = okHttpClient.newCall(request);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(e);
+            }
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (ResponseBody body = response.body()) {
+                    if (response.isSuccessful()) {
+                        future.complete(read(request, reader, body));
+                    } else {
+                        recordError(request, "http_" + response.code());
+                        future.completeExceptionally(new HttpStatusException(response.code(), "Unexpected code " + response));
+                    }
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        future.whenComplete((result, e) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+        return future;
+    }
+
+    private String appendParams(String url, Map<String, Object> params) {
+        if (null != params && !params.isEmpty()) {
+            //遍历map
+            StringBuffer buffer = new StringBuffer("");
+            for (Map.Entry<String, Object> entry : params.entrySet()) {
+                buffer.append("&" + entry.getKey() + "=" + entry.getValue());
+            }
+            url = url + buffer.toString();
+        }
+        return url;
+    }
+
     /**
      * 构造 POST 请求参数
      *
@@ -260,6 +615,128 @@ public class OkHttpClientUtil {
             }
         });
     }
+    /**
+     * 客户端配置, 时间单位均为毫秒
+     */
+    public static class Config {
+        private int maxIdleConnections = 5;
+        private long keepAliveMillis = 5 * 60 * 1000L;
+        /**
+         * OkHttp默认单host并发为5, SDK通常只访问一个节点, 默认与总并发保持一致
+         */
+        private int maxRequests = 64;
+        private int maxRequestsPerHost = 64;
+        private long connectTimeoutMillis = 60 * 1000L;
+        private long readTimeoutMillis = 100 * 1000L;
+        private long writeTimeoutMillis = 60 * 1000L;
+        private long callTimeoutMillis;
+        private boolean http2PriorKnowledge;
+
+        public Config copy() {
+            Config config = new Config();
+            config.maxIdleConnections = maxIdleConnections;
+            config.keepAliveMillis = keepAliveMillis;
+            config.maxRequests = maxRequests;
+            config.maxRequestsPerHost = maxRequestsPerHost;
+            config.connectTimeoutMillis = connectTimeoutMillis;
+            config.readTimeoutMillis = readTimeoutMillis;
+            config.writeTimeoutMillis = writeTimeoutMillis;
+            config.callTimeoutMillis = callTimeoutMillis;
+            config.http2PriorKnowledge = http2PriorKnowledge;
+            return config;
+        }
+
+        public int getMaxIdleConnections() {
+            return maxIdleConnections;
+        }
+
+        public Config setMaxIdleConnections(int maxIdleConnections) {
+            this.maxIdleConnections = maxIdleConnections;
+            return this;
+        }
+
+        public long getKeepAliveMillis() {
+            return keepAliveMillis;
+        }
+
+        public Config setKeepAliveMillis(long keepAliveMillis) {
+            this.keepAliveMillis = keepAliveMillis;
+            return this;
+        }
+
+        public int getMaxRequests() {
+            return maxRequests;
+        }
+
+        public Config setMaxRequests(int maxRequests) {
+            this.maxRequests = maxRequests;
+            return this;
+        }
+
+        public int getMaxRequestsPerHost() {
+            return maxRequestsPerHost;
+        }
+
+        public Config setMaxRequestsPerHost(int maxRequestsPerHost) {
+            this.maxRequestsPerHost = maxRequestsPerHost;
+            return this;
+        }
+
+        public long getConnectTimeoutMillis() {
+            return connectTimeoutMillis;
+        }
+
+        public Config setConnectTimeoutMillis(long connectTimeoutMillis) {
+            this.connectTimeoutMillis = connectTimeoutMillis;
+            return this;
+        }
+
+        public long getReadTimeoutMillis() {
+            return readTimeoutMillis;
+        }
+
+        public Config setReadTimeoutMillis(long readTimeoutMillis) {
+            this.readTimeoutMillis = readTimeoutMillis;
+            return this;
+        }
+
+        public long getWriteTimeoutMillis() {
+            return writeTimeoutMillis;
+        }
+
+        public Config setWriteTimeoutMillis(long writeTimeoutMillis) {
+            this.writeTimeoutMillis = writeTimeoutMillis;
+            return this;
+        }
+
+        public long getCallTimeoutMillis() {
+            return callTimeoutMillis;
+        }
+
+        public Config setCallTimeoutMillis(long callTimeoutMillis) {
+            this.callTimeoutMillis = callTimeoutMillis;
+            return this;
+        }
+
+        public boolean isHttp2PriorKnowledge() {
+            return http2PriorKnowledge;
+        }
+
+        /**
+         * 以h2c直连节点, 跳过HTTP/1.1升级协商, 仅对http地址有效
+         */
+        public Config setHttp2PriorKnowledge(boolean http2PriorKnowledge) {
+            this.http2PriorKnowledge = http2PriorKnowledge;
+            return this;
+        }
+    }
+
+    /**
+     * 响应体解码器, 在响应关闭前被调用, 可直接读取 {@link ResponseBody#byteStream()}
+     */
+    public interface BodyReader<T> {
+        T read(ResponseBody body) throws IOException;
+    }
     /**
      * 自定义网络回调接口
      */
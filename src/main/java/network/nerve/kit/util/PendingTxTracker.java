@@ -0,0 +1,269 @@
+package network.nerve.kit.util;
+
+import network.nerve.core.basic.Result;
+import network.nerve.core.constant.CommonCodeConstanst;
+import network.nerve.core.log.Log;
+import network.nerve.kit.model.dto.BlockHeaderDto;
+import network.nerve.kit.model.dto.TransactionDto;
+import network.nerve.kit.service.BlockService;
+import network.nerve.kit.service.TransactionService;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * 未确认交易跟踪
+ * 登记已广播交易的hash, 后台定时查询最新高度, 每出一个新区块取一次区块头的交易hash列表在本地匹配, 不再逐笔轮询交易;
+ * 交易登记后的下一次查询、落后超过maxScanBlocks个区块时、以及交易等待超过fallbackBlocks个区块仍未匹配到时, 改为并发查询这些交易
+ * 交易确认后track返回的future完成, data为TransactionDto(只包含hash、区块高度、区块hash与状态);
+ * 等待超过maxWaitBlocks个区块仍未确认时以失败结果完成并停止跟踪; future不会以异常结束
+ */
+public class PendingTxTracker {
+
+    private static class Pending {
+        private final CompletableFuture<Result> future = new CompletableFuture<>();
+        /**
+         * 上次查询交易后经过的区块数
+         */
+        private int blocksWaited;
+        /**
+         * 开始跟踪后经过的区块数
+         */
+        private int totalBlocks;
+        /**
+         * 登记后是否已查询过一次交易, 登记前的区块不会再逐个匹配
+         */
+        private volatile boolean queried;
+    }
+
+    private static final PendingTxTracker instance = new PendingTxTracker(null);
+
+    /**
+     * @return 当前线程绑定的 {@link NerveClient} 的实例, 未绑定时为默认实例
+     */
+    public static PendingTxTracker getInstance() {
+        NerveClient client = NerveClient.current();
+        return client == null ? instance : client.getPendingTxTracker();
+    }
+
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private volatile long pollIntervalMillis = 2000;
+    private volatile int maxScanBlocks = 100;
+    private volatile int fallbackBlocks = 10;
+    private volatile int maxWaitBlocks = 300;
+    private volatile long checkedHeight = -1;
+    private ScheduledExecutorService poller;
+    private final NerveClient client;
+
+    /**
+     * @param client 后台线程绑定的客户端, 默认实例为null
+     */
+    PendingTxTracker(NerveClient client) {
+        this.client = client;
+    }
+
+    /**
+     * 跟踪交易直到确认, 同一hash返回同一个future
+     */
+    public CompletableFuture<Result> track(String txHash) {
+        Pending p = pending.computeIfAbsent(txHash, k -> new Pending());
+        ensurePolling();
+        return p.future;
+    }
+
+    /**
+     * 停止跟踪, 对应的future不再完成
+     */
+    public void untrack(String txHash) {
+        pending.remove(txHash);
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    /**
+     * 停止跟踪所有交易
+     */
+    public void clear() {
+        pending.clear();
+        checkedHeight = -1;
+    }
+
+    /**
+     * 停止后台查询, 之后有新的跟踪时重新启动
+     */
+    synchronized void shutdown() {
+        if (poller != null) {
+            poller.shutdownNow();
+            poller = null;
+        }
+    }
+
+    private synchronized void ensurePolling() {
+        if (poller == null) {
+            poller = Executors.newSingleThreadScheduledExecutor(NerveClient.threadFactory(client, "pending-tx-tracker"));
+            poller.scheduleWithFixedDelay(this::poll, 0, pollIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void poll() {
+        try {
+            if (pending.isEmpty()) {
+                checkedHeight = -1;
+                return;
+            }
+            Result best = BlockService.getInstance().getBestBlockHeader();
+            if (!best.isSuccess()) {
+                return;
+            }
+            long bestHeight = ((BlockHeaderDto) best.getData()).getHeight();
+            if (bestHeight <= checkedHeight) {
+                // 上次查询后登记的交易可能已在检查过的区块中打包, 查询一次
+                queryTxs(unqueried());
+                return;
+            }
+            if (checkedHeight < 0 || bestHeight - checkedHeight > maxScanBlocks) {
+                if (checkedHeight >= 0) {
+                    addBlocks(bestHeight - checkedHeight);
+                }
+                queryTxs(new ArrayList<>(pending.keySet()));
+                expire();
+                checkedHeight = bestHeight;
+                return;
+            }
+            Map<Long, CompletableFuture<Result>> headers = new HashMap<>();
+            for (long h = checkedHeight + 1; h <= bestHeight; h++) {
+                headers.put(h, BlockService.getInstance().getBlockHeaderAsync(h));
+            }
+            List<String> fallback = new ArrayList<>();
+            for (long h = checkedHeight + 1; h <= bestHeight; h++) {
+                Result result = headers.get(h).join();
+                BlockHeaderDto header = result.isSuccess() ? (BlockHeaderDto) result.getData() : null;
+                if (header == null || header.getTxHashList() == null) {
+                    // 取不到交易列表时无法匹配, 查询全部
+                    fallback.addAll(pending.keySet());
+                    break;
+                }
+                for (String hash : header.getTxHashList()) {
+                    Pending p = pending.remove(hash);
+                    if (p != null) {
+                        p.future.complete(Result.getSuccess(confirmed(hash, header.getHeight(), header.getHash())));
+                    }
+                }
+            }
+            addBlocks(bestHeight - checkedHeight);
+            for (Map.Entry<String, Pending> e : pending.entrySet()) {
+                Pending p = e.getValue();
+                if ((p.blocksWaited >= fallbackBlocks || !p.queried) && !fallback.contains(e.getKey())) {
+                    fallback.add(e.getKey());
+                }
+            }
+            queryTxs(fallback);
+            expire();
+            checkedHeight = bestHeight;
+        } catch (Exception e) {
+            Log.error(e);
+        }
+    }
+
+    private List<String> unqueried() {
+        List<String> hashes = new ArrayList<>();
+        for (Map.Entry<String, Pending> e : pending.entrySet()) {
+            if (!e.getValue().queried) {
+                hashes.add(e.getKey());
+            }
+        }
+        return hashes;
+    }
+
+    private void addBlocks(long newBlocks) {
+        for (Pending p : pending.values()) {
+            p.blocksWaited += newBlocks;
+            p.totalBlocks += newBlocks;
+        }
+    }
+
+    /**
+     * 查询后仍未确认且等待超过maxWaitBlocks个区块的交易以失败结束
+     */
+    private void expire() {
+        for (Map.Entry<String, Pending> e : pending.entrySet()) {
+            Pending p = e.getValue();
+            if (p.totalBlocks >= maxWaitBlocks && pending.remove(e.getKey(), p)) {
+                p.future.complete(Result.getFailed(CommonCodeConstanst.REQUEST_TIME_OUT).setMsg("transaction not confirmed in " + p.totalBlocks + " blocks: " + e.getKey()));
+            }
+        }
+    }
+
+    private void queryTxs(List<String> hashes) {
+        Map<String, CompletableFuture<Result>> queries = new HashMap<>();
+        for (String hash : hashes) {
+            queries.put(hash, TransactionService.getInstance().getTxAsync(hash));
+        }
+        for (Map.Entry<String, CompletableFuture<Result>> query : queries.entrySet()) {
+            Result result = query.getValue().join();
+            Pending p = pending.get(query.getKey());
+            if (p == null) {
+                continue;
+            }
+            p.blocksWaited = 0;
+            p.queried = true;
+            if (result.isSuccess() && result.getData() != null && ((TransactionDto) result.getData()).getBlockHeight() >= 0) {
+                pending.remove(query.getKey());
+                p.future.complete(result);
+            }
+        }
+    }
+
+    private static TransactionDto confirmed(String hash, long height, String blockHash) {
+        TransactionDto tx = new TransactionDto();
+        tx.setHash(hash);
+        tx.setBlockHeight(height);
+        tx.setBlockHash(blockHash);
+        tx.setStatus(1);
+        return tx;
+    }
+
+    /**
+     * 查询最新高度的间隔, 默认2000毫秒
+     */
+    public synchronized PendingTxTracker setPollIntervalMillis(long pollIntervalMillis) {
+        this.pollIntervalMillis = pollIntervalMillis;
+        if (poller != null) {
+            poller.shutdownNow();
+            poller = null;
+            if (!pending.isEmpty()) {
+                ensurePolling();
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 一次最多逐个匹配的区块数, 落后更多时直接查询交易
+     */
+    public PendingTxTracker setMaxScanBlocks(int maxScanBlocks) {
+        this.maxScanBlocks = maxScanBlocks;
+        return this;
+    }
+
+    /**
+     * 交易等待多少个区块仍未匹配到时查询一次交易
+     */
+    public PendingTxTracker setFallbackBlocks(int fallbackBlocks) {
+        this.fallbackBlocks = fallbackBlocks;
+        return this;
+    }
+
+    /**
+     * 交易最多等待的区块数, 超过后future以失败结果完成, 默认300
+     */
+    public PendingTxTracker setMaxWaitBlocks(int maxWaitBlocks) {
+        this.maxWaitBlocks = maxWaitBlocks;
+        return this;
+    }
+}
@@ -1,14 +1,26 @@
 package network.nerve.kit.util;
 
-import network.nerve.SDKContext;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import network.nerve.core.constant.CommonCodeConstanst;
 import network.nerve.core.log.Log;
 import network.nerve.core.parse.JSONUtils;
 import network.nerve.kit.model.dto.RestFulResult;
+import network.nerve.kit.util.WalletNodePool.RouteType;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
 
 /**
  * 基于HttpClient第三方工具的http工具类
@@ -17,6 +29,8 @@ import java.util.Map;
  */
 public class RestFulUtil {
 
+    private static final Map<Class<?>, ObjectReader> DATA_READERS = new ConcurrentHashMap<>();
+
     /**
      * 发送get请求不带参数
      *
@@ -29,6 +43,7 @@ public class RestFulUtil {
 
     /**
      * 发送get请求
+     * 相同url与参数的进行中请求经 {@link SingleFlight} 合并为一次网络调用
      *
      * @param url
      * @param params
@@ -36,10 +51,9 @@ public class RestFulUtil {
      */
     public static RestFulResult<Map<String, Object>> get(String url, Map<String, Object> params) {
         try {
-            url = SDKContext.wallet_url + url;
-            String resultStr = OkHttpClientUtil.getInstance().getData(url, params);
-            RestFulResult<Map<String, Object>> result = toResult(resultStr);
-            return result;
+            return SingleFlight.getInstance().execute(flightKey(url, params),
+                    () -> route(url, RouteType.READ, fullUrl -> OkHttpClientUtil.getInstance().getData(fullUrl, params, RestFulUtil.<Map<String, Object>>untypedReader()),
+                            fullUrl -> OkHttpClientUtil.getInstance().getDataAsync(fullUrl, params, RestFulUtil.<Map<String, Object>>untypedReader())));
         } catch (Exception e) {
             Log.error(e);
             return RestFulResult.failed(CommonCodeConstanst.DATA_ERROR.getCode(), e.getMessage(), null);
@@ -55,10 +69,9 @@ public class RestFulUtil {
      */
     public static RestFulResult<List<Object>> getList(String url, Map<String, Object> params) {
         try {
-            url = SDKContext.wallet_url + url;
-            String resultStr = OkHttpClientUtil.getInstance().getData(url, params);
-            RestFulResult<List<Object>> result = toResultList(resultStr);
-            return result;
+            return SingleFlight.getInstance().execute(flightKey(url, params),
+                    () -> route(url, RouteType.READ, fullUrl -> OkHttpClientUtil.getInstance().getData(fullUrl, params, RestFulUtil.<List<Object>>untypedReader()),
+                            fullUrl -> OkHttpClientUtil.getInstance().getDataAsync(fullUrl, params, RestFulUtil.<List<Object>>untypedReader())));
         } catch (Exception e) {
             Log.error(e);
             return RestFulResult.failed(CommonCodeConstanst.DATA_ERROR.getCode(), e.getMessage(), null);
@@ -67,17 +80,28 @@ public class RestFulUtil {
 
     /**
      * 发送post请求
+     * 默认按写请求路由(依赖节点本地钱包的接口), 只读查询请使用 {@link #post(String, Map, RouteType)}
      *
      * @param url
      * @param params
      * @return
      */
     public static RestFulResult<Map<String, Object>> post(String url, Map<String, Object> params) {
+        return post(url, params, RouteType.WRITE);
+    }
+
+    /**
+     * 发送post请求
+     *
+     * @param url
+     * @param params
+     * @param routeType 多节点时的路由类型
+     * @return
+     */
+    public static RestFulResult<Map<String, Object>> post(String url, Map<String, Object> params, RouteType routeType) {
         try {
-            url = SDKContext.wallet_url + url;
-            String resultStr = OkHttpClientUtil.getInstance().postJson(url, params);
-            RestFulResult<Map<String, Object>> result = toResult(resultStr);
-            return result;
+            return route(url, routeType, fullUrl -> OkHttpClientUtil.getInstance().postJson(fullUrl, params, RestFulUtil.<Map<String, Object>>untypedReader()),
+                    fullUrl -> OkHttpClientUtil.getInstance().postJsonAsync(fullUrl, params, RestFulUtil.<Map<String, Object>>untypedReader()));
         } catch (Exception e) {
             Log.error(e);
             return RestFulResult.failed(CommonCodeConstanst.DATA_ERROR.getCode(), e.getMessage(), null);
@@ -93,50 +117,199 @@ public class RestFulUtil {
      */
     public static RestFulResult<Map<String, Object>> put(String url, Map<String, Object> params) {
         try {
-            url = SDKContext.wallet_url + url;
-            String resultStr = OkHttpClientUtil.getInstance().postJson(url, params);
-            RestFulResult<Map<String, Object>> result = toResult(resultStr);
-            return result;
+            return WalletNodePool.route(url, RouteType.WRITE, fullUrl -> OkHttpClientUtil.getInstance().postJson(fullUrl, params, RestFulUtil.<Map<String, Object>>untypedReader()));
         } catch (Exception e) {
             Log.error(e);
             return RestFulResult.failed(CommonCodeConstanst.DATA_ERROR.getCode(), e.getMessage(), null);
         }
     }
 
-    private static RestFulResult toResult(String str) throws IOException {
-        Map<String, Object> resultMap = JSONUtils.json2map(str);
-        RestFulResult result = null;
-        Boolean b = (Boolean) resultMap.get("success");
-        if (b) {
-            result = RestFulResult.success(resultMap.get("data"));
-        } else {
-            Object dataObj = resultMap.get("data");
-            if(dataObj instanceof Map) {
-                Map<String, Object> data = (Map<String, Object>) resultMap.get("data");
-                if (data != null) {
-                    result = RestFulResult.failed(data.get("code").toString(), data.get("msg").toString());
-                }
-            } else {
-                result = RestFulResult.failed(CommonCodeConstanst.SYS_UNKOWN_EXCEPTION.getCode(), resultMap.toString());
+    /**
+     * 发送get请求, 响应中的data直接从响应流解码为dataType, 不经过中间的String与Map
+     *
+     * @param url
+     * @param dataType data字段的类型
+     * @return
+     */
+    public static <T> RestFulResult<T> getObject(String url, Class<T> dataType) {
+        return getObject(url, null, dataType);
+    }
+
+    public static <T> RestFulResult<T> getObject(String url, Map<String, Object> params, Class<T> dataType) {
+        try {
+            return SingleFlight.getInstance().execute(flightKey(url, params) + dataType.getName(),
+                    () -> route(url, RouteType.READ, fullUrl -> OkHttpClientUtil.getInstance().getData(fullUrl, params, resultReader(dataType)),
+                            fullUrl -> OkHttpClientUtil.getInstance().getDataAsync(fullUrl, params, resultReader(dataType))));
+        } catch (Exception e) {
+            Log.error(e);
+            return RestFulResult.failed(CommonCodeConstanst.DATA_ERROR.getCode(), e.getMessage(), null);
+        }
+    }
+
+    /**
+     * 发送post请求, 响应中的data直接从响应流解码为dataType
+     *
+     * @param url
+     * @param params
+     * @param routeType 多节点时的路由类型
+     * @param dataType  data字段的类型
+     * @return
+     */
+    public static <T> RestFulResult<T> postObject(String url, Map<String, Object> params, RouteType routeType, Class<T> dataType) {
+        try {
+            return route(url, routeType, fullUrl -> OkHttpClientUtil.getInstance().postJson(fullUrl, params, resultReader(dataType)),
+                    fullUrl -> OkHttpClientUtil.getInstance().postJsonAsync(fullUrl, params, resultReader(dataType)));
+        } catch (Exception e) {
+            Log.error(e);
+            return RestFulResult.failed(CommonCodeConstanst.DATA_ERROR.getCode(), e.getMessage(), null);
+        }
+    }
+
+    /**
+     * 异步发送get请求
+     * 返回的future不会以异常结束, 请求失败时结果为RestFulResult.failed
+     *
+     * @param url
+     * @param params
+     * @return
+     */
+    public static CompletableFuture<RestFulResult<Map<String, Object>>> getAsync(String url, Map<String, Object> params) {
+        return SingleFlight.getInstance().executeAsync(flightKey(url, params),
+                () -> WalletNodePool.routeAsync(url, RouteType.READ, fullUrl -> OkHttpClientUtil.getInstance().getDataAsync(fullUrl, params, RestFulUtil.<Map<String, Object>>untypedReader())))
+                .exceptionally(RestFulUtil::asyncFailed);
+    }
+
+    public static CompletableFuture<RestFulResult<Map<String, Object>>> getAsync(String url) {
+        return getAsync(url, null);
+    }
+
+    /**
+     * 异步发送post请求
+     *
+     * @param url
+     * @param params
+     * @return
+     */
+    public static CompletableFuture<RestFulResult<Map<String, Object>>> postAsync(String url, Map<String, Object> params) {
+        return postAsync(url, params, RouteType.WRITE);
+    }
+
+    public static CompletableFuture<RestFulResult<Map<String, Object>>> postAsync(String url, Map<String, Object> params, RouteType routeType) {
+        return WalletNodePool.routeAsync(url, routeType, fullUrl -> OkHttpClientUtil.getInstance().postJsonAsync(fullUrl, params, RestFulUtil.<Map<String, Object>>untypedReader()))
+                .exceptionally(RestFulUtil::asyncFailed);
+    }
+
+    public static <T> CompletableFuture<RestFulResult<T>> getObjectAsync(String url, Class<T> dataType) {
+        return getObjectAsync(url, null, dataType);
+    }
+
+    /**
+     * 异步发送get请求, 在OkHttp的调度线程上将data直接从响应流解码为dataType
+     *
+     * @param url
+     * @param params
+     * @param dataType data字段的类型
+     * @return
+     */
+    public static <T> CompletableFuture<RestFulResult<T>> getObjectAsync(String url, Map<String, Object> params, Class<T> dataType) {
+        return SingleFlight.getInstance().executeAsync(flightKey(url, params) + dataType.getName(),
+                () -> WalletNodePool.routeAsync(url, RouteType.READ, fullUrl -> OkHttpClientUtil.getInstance().getDataAsync(fullUrl, params, resultReader(dataType))))
+                .exceptionally(RestFulUtil::asyncFailed);
+    }
+
+    public static <T> CompletableFuture<RestFulResult<T>> postObjectAsync(String url, Map<String, Object> params, RouteType routeType, Class<T> dataType) {
+        return WalletNodePool.routeAsync(url, routeType, fullUrl -> OkHttpClientUtil.getInstance().postJsonAsync(fullUrl, params, resultReader(dataType)))
+                .exceptionally(RestFulUtil::asyncFailed);
+    }
+
+    private static <T> RestFulResult<T> asyncFailed(Throwable e) {
+        if (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
+        }
+        Log.error(e);
+        return RestFulResult.failed(CommonCodeConstanst.DATA_ERROR.getCode(), e.getMessage(), null);
+    }
+
+    /**
+     * 同步路由请求, 需要对冲的读请求改走异步调用, 以便取消较慢的一方
+     */
+    private static <T> T route(String url, RouteType routeType, WalletNodePool.HttpCall<T> call, Function<String, CompletableFuture<T>> asyncCall) throws Exception {
+        if (!HedgingPolicy.getInstance().shouldHedge(url, routeType)) {
+            return WalletNodePool.route(url, routeType, call);
+        }
+        try {
+            return WalletNodePool.routeAsync(url, routeType, asyncCall).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
             }
+            throw e;
         }
-        return result;
     }
 
-    private static RestFulResult toResultList(String str) throws IOException {
-        Map<String, Object> resultMap = JSONUtils.json2map(str);
-        RestFulResult<List<Object>> result = null;
-        Boolean b = (Boolean) resultMap.get("success");
-        if (b) {
-            List<Object> data = (List<Object>) resultMap.get("data");
-            result = RestFulResult.success(data);
-        } else {
-            Map<String, Object> data = (Map<String, Object>) resultMap.get("data");
-            if (data != null) {
-                result = RestFulResult.failed(data.get("code").toString(), data.get("msg").toString());
+    /**
+     * get请求的合并key, 相同url与参数的进行中请求共享一次网络调用
+     */
+    private static String flightKey(String url, Map<String, Object> params) {
+        return params == null || params.isEmpty() ? "GET " + url + "#" : "GET " + url + params + "#";
+    }
+
+    private static <T> OkHttpClientUtil.BodyReader<RestFulResult<T>> resultReader(Class<T> dataType) {
+        ObjectReader dataReader = DATA_READERS.computeIfAbsent(dataType,
+                type -> JSONUtils.getInstance().readerFor(type).without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES));
+        return body -> readResult(body.byteStream(), dataReader);
+    }
+
+    /**
+     * data按Map/List/基本类型解码, 与原先经String转Map的结果一致
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> OkHttpClientUtil.BodyReader<RestFulResult<T>> untypedReader() {
+        return (OkHttpClientUtil.BodyReader) resultReader(Object.class);
+    }
+
+    /**
+     * 流式解析 {"success":..,"data":..}
+     * 节点返回的success在data之前, 此时data直接绑定到目标类型; 顺序相反或请求失败时才把data读成树再处理
+     */
+    private static <T> RestFulResult<T> readResult(InputStream in, ObjectReader dataReader) throws IOException {
+        ObjectMapper mapper = JSONUtils.getInstance();
+        try (JsonParser parser = mapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Unexpected response token " + parser.currentToken());
+            }
+            Boolean success = null;
+            T data = null;
+            JsonNode dataNode = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if ("success".equals(field)) {
+                    success = parser.getValueAsBoolean();
+                } else if ("data".equals(field)) {
+                    if (Boolean.TRUE.equals(success)) {
+                        data = token == JsonToken.VALUE_NULL ? null : dataReader.readValue(parser);
+                    } else {
+                        dataNode = mapper.readTree(parser);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (success == null) {
+                throw new IOException("Missing success field in response");
+            }
+            if (success) {
+                if (dataNode != null && !dataNode.isNull()) {
+                    data = dataReader.readValue(dataNode);
+                }
+                return RestFulResult.success(data);
+            }
+            if (dataNode != null && dataNode.isObject()) {
+                return RestFulResult.failed(dataNode.path("code").asText(), dataNode.path("msg").asText());
             }
+            return RestFulResult.failed(CommonCodeConstanst.SYS_UNKOWN_EXCEPTION.getCode(), String.valueOf(dataNode));
         }
-        return result;
     }
 
 //    public static String sendGet(String url, Map<String, String> map) {
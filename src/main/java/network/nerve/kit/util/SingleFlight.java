@@ -0,0 +1,123 @@
+package network.nerve.kit.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 幂等读请求合并
+ * 相同key的请求在执行期间只发出一次网络调用, 期间到达的调用方等待并共享同一个结果(或异常);
+ * 请求完成后立即移除, 不做结果缓存
+ */
+public class SingleFlight {
+
+    private static final SingleFlight instance = new SingleFlight();
+
+    /**
+     * @return 当前线程绑定的 {@link NerveClient} 的实例, 未绑定时为默认实例
+     */
+    public static SingleFlight getInstance() {
+        NerveClient client = NerveClient.current();
+        return client == null ? instance : client.getSingleFlight();
+    }
+
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile boolean enabled = true;
+
+    /**
+     * 同步执行, 已有相同key的请求在执行时等待其结果
+     */
+    public <T> T execute(String key, Callable<T> call) throws Exception {
+        if (!enabled) {
+            return call.call();
+        }
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            hits.incrementAndGet();
+            try {
+                return (T) existing.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                }
+                throw e;
+            }
+        }
+        misses.incrementAndGet();
+        try {
+            T result = call.call();
+            future.complete(result);
+            return result;
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * 异步执行
+     * 每个调用方拿到的是共享结果的独立future, 取消只影响调用方自身, 不会取消共享的网络请求
+     */
+    public <T> CompletableFuture<T> executeAsync(String key, Supplier<CompletableFuture<T>> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            hits.incrementAndGet();
+            return existing.thenApply(result -> (T) result);
+        }
+        misses.incrementAndGet();
+        try {
+            call.get().whenComplete((result, e) -> {
+                inFlight.remove(key, future);
+                if (e != null) {
+                    future.completeExceptionally(e);
+                } else {
+                    future.complete(result);
+                }
+            });
+        } catch (Throwable e) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+        }
+        return future.thenApply(result -> (T) result);
+    }
+
+    /**
+     * 与进行中的请求合并的次数
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * 实际发出网络调用的次数
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public void resetCounters() {
+        hits.set(0);
+        misses.set(0);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+}
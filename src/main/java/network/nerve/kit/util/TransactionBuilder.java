@@ -0,0 +1,160 @@
+package network.nerve.kit.util;
+
+import network.nerve.base.basic.AddressTool;
+import network.nerve.base.data.*;
+import network.nerve.base.signture.P2PHKSignature;
+import network.nerve.base.signture.SignatureUtil;
+import network.nerve.base.signture.TransactionSignature;
+import network.nerve.core.basic.VarInt;
+import network.nerve.core.constant.TxType;
+import network.nerve.core.crypto.ECKey;
+import network.nerve.core.model.StringUtils;
+import network.nerve.core.parse.SerializeUtils;
+import network.nerve.kit.constant.AccountConstant;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 交易组装
+ * 直接由地址、资产与金额生成 {@link Transaction} 对象: coinData只序列化一次, 交易hash只计算一次, 签名直接写入交易对象;
+ * 之后可通过 {@link Transaction#serialize(java.nio.ByteBuffer)} 写入调用方提供的缓冲区, 只在广播等需要hex的地方再编码
+ * 组装时不查询余额与nonce, 也不做参数校验
+ */
+public class TransactionBuilder {
+
+    private final int type;
+    private long time;
+    private byte[] remark;
+    private byte[] txData;
+    private final List<CoinFrom> froms = new ArrayList<>();
+    private final List<CoinTo> tos = new ArrayList<>();
+    /**
+     * 已添加的from与to序列化后的字节数, 不含数量前缀
+     */
+    private int coinBytes;
+
+    public TransactionBuilder(int type) {
+        this.type = type;
+    }
+
+    /**
+     * 链内转账交易
+     */
+    public static TransactionBuilder transfer() {
+        return new TransactionBuilder(TxType.TRANSFER);
+    }
+
+    /**
+     * 交易时间(秒), 未设置时使用组装时的当前时间
+     */
+    public TransactionBuilder setTime(long time) {
+        this.time = time;
+        return this;
+    }
+
+    public TransactionBuilder setRemark(String remark) {
+        this.remark = StringUtils.bytes(remark);
+        return this;
+    }
+
+    public TransactionBuilder setTxData(BaseNulsData txData) throws IOException {
+        this.txData = txData == null ? null : txData.serialize();
+        return this;
+    }
+
+    public TransactionBuilder setTxData(byte[] txData) {
+        this.txData = txData;
+        return this;
+    }
+
+    public TransactionBuilder addFrom(String address, int assetChainId, int assetId, BigInteger amount, byte[] nonce) {
+        return addFrom(new CoinFrom(AddressTool.getAddress(address), assetChainId, assetId, amount, nonce, AccountConstant.NORMAL_TX_LOCKED));
+    }
+
+    public TransactionBuilder addFrom(CoinFrom from) {
+        froms.add(from);
+        coinBytes += SerializeUtils.sizeOfNulsData(from);
+        return this;
+    }
+
+    public TransactionBuilder addTo(String address, int assetChainId, int assetId, BigInteger amount) {
+        return addTo(address, assetChainId, assetId, amount, 0);
+    }
+
+    public TransactionBuilder addTo(String address, int assetChainId, int assetId, BigInteger amount, long lockTime) {
+        return addTo(new CoinTo(AddressTool.getAddress(address), assetChainId, assetId, amount, lockTime));
+    }
+
+    public TransactionBuilder addTo(CoinTo to) {
+        tos.add(to);
+        coinBytes += SerializeUtils.sizeOfNulsData(to);
+        return this;
+    }
+
+    public int getFromCount() {
+        return froms.size();
+    }
+
+    public int getToCount() {
+        return tos.size();
+    }
+
+    /**
+     * 估算以signatureCount个普通签名签名后的交易大小, 按单个签名的最大长度计算, 不小于实际大小
+     */
+    public int estimateSize(int signatureCount) {
+        int coinDataSize = VarInt.sizeOf(froms.size()) + VarInt.sizeOf(tos.size()) + coinBytes;
+        int signatureSize = signatureCount * P2PHKSignature.SERIALIZE_LENGTH;
+        return SerializeUtils.sizeOfUint16()
+                + SerializeUtils.sizeOfUint32()
+                + SerializeUtils.sizeOfBytes(remark)
+                + SerializeUtils.sizeOfBytes(txData)
+                + VarInt.sizeOf(coinDataSize) + coinDataSize
+                + (signatureSize == 0 ? 1 : VarInt.sizeOf(signatureSize) + signatureSize);
+    }
+
+    /**
+     * 组装未签名的交易
+     */
+    public Transaction build() throws IOException {
+        Transaction tx = new Transaction(type);
+        tx.setTime(time != 0 ? time : System.currentTimeMillis() / 1000);
+        tx.setRemark(remark);
+        tx.setTxData(txData);
+        tx.setCoinData(new CoinData(new ArrayList<>(froms), new ArrayList<>(tos)).serialize());
+        return tx;
+    }
+
+    /**
+     * 组装交易并用keys签名
+     */
+    public Transaction build(ECKey... keys) throws IOException {
+        Transaction tx = build();
+        sign(tx, keys);
+        return tx;
+    }
+
+    /**
+     * 在交易上追加普通签名, 不重新解析交易
+     */
+    public static void sign(Transaction tx, ECKey... keys) throws IOException {
+        List<P2PHKSignature> signatures = new ArrayList<>(keys.length);
+        byte[] existing = tx.getTransactionSignature();
+        if (existing != null && existing.length > 0) {
+            try {
+                TransactionSignature transactionSignature = Transaction.getInstance(existing, TransactionSignature.class);
+                signatures.addAll(transactionSignature.getP2PHKSignatures());
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+        }
+        signatures.addAll(SignatureUtil.createSignaturesByEckey(tx, Arrays.asList(keys)));
+        TransactionSignature transactionSignature = new TransactionSignature();
+        transactionSignature.setP2PHKSignatures(signatures);
+        tx.setTransactionSignature(transactionSignature.serialize());
+    }
+}
@@ -0,0 +1,211 @@
+package network.nerve.kit.util;
+
+import network.nerve.SDKContext;
+import network.nerve.base.basic.AddressTool;
+import network.nerve.base.basic.NulsByteBuffer;
+import network.nerve.base.basic.TransactionFeeCalculator;
+import network.nerve.base.data.*;
+import network.nerve.base.signture.SignatureUtil;
+import network.nerve.core.basic.Result;
+import network.nerve.core.constant.CommonCodeConstanst;
+import network.nerve.core.constant.ErrorCode;
+import network.nerve.core.constant.TxType;
+import network.nerve.core.crypto.HexUtil;
+import network.nerve.core.exception.NulsException;
+import network.nerve.core.model.StringUtils;
+import network.nerve.kit.constant.AccountConstant;
+import network.nerve.kit.error.AccountErrorCode;
+import network.nerve.kit.txdata.*;
+import network.nerve.kit.txdata.linkswap.StableLpSwapTradeData;
+import network.nerve.kit.txdata.linkswap.SwapTradeStableRemoveLpData;
+
+import java.math.BigInteger;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * 交易本地预验证
+ * 在请求节点验证之前检查交易能否完整解析、txData能否按交易类型解析、签名是否正确、备注长度、
+ * coinData中地址的链ID、各资产转出不少于转入以及需要手续费的交易类型的手续费是否足够, 不通过时不再请求节点
+ * 开启后 TransactionService.validateTx 先做本地验证, 默认关闭
+ */
+public class TxPreValidator {
+
+    /**
+     * 预验证不通过的原因, 失败的Result中data为对应的Reason
+     */
+    public enum Reason {
+        MALFORMED(CommonCodeConstanst.DESERIALIZE_ERROR),
+        TX_DATA_ERROR(AccountErrorCode.TX_DATA_VALIDATION_ERROR),
+        REMARK_TOO_LONG(AccountErrorCode.REMARK_TOO_LONG),
+        COIN_DATA_MISSING(AccountErrorCode.TX_COINDATA_NOT_EXIST),
+        CHAIN_ID_ERROR(AccountErrorCode.IS_NOT_CURRENT_CHAIN_ADDRESS),
+        INSUFFICIENT_AMOUNT(AccountErrorCode.INSUFFICIENT_BALANCE),
+        INSUFFICIENT_FEE(AccountErrorCode.INSUFFICIENT_FEE),
+        UNSIGNED(CommonCodeConstanst.SIGNATURE_ERROR),
+        SIGNATURE_ERROR(CommonCodeConstanst.SIGNATURE_ERROR);
+
+        private final ErrorCode errorCode;
+
+        Reason(ErrorCode errorCode) {
+            this.errorCode = errorCode;
+        }
+
+        public ErrorCode getErrorCode() {
+            return errorCode;
+        }
+    }
+
+    private static final Map<Integer, Supplier<BaseNulsData>> TX_DATA_TYPES = new HashMap<>();
+
+    static {
+        TX_DATA_TYPES.put(TxType.ACCOUNT_ALIAS, Alias::new);
+        TX_DATA_TYPES.put(TxType.REGISTER_AGENT, Agent::new);
+        TX_DATA_TYPES.put(TxType.DEPOSIT, Deposit::new);
+        TX_DATA_TYPES.put(TxType.CANCEL_DEPOSIT, CancelDeposit::new);
+        TX_DATA_TYPES.put(TxType.STOP_AGENT, StopAgent::new);
+        TX_DATA_TYPES.put(TxType.WITHDRAWAL, WithdrawalTxData::new);
+        TX_DATA_TYPES.put(TxType.WITHDRAWAL_ADDITIONAL_FEE, WithdrawalAdditionalFeeTxData::new);
+        TX_DATA_TYPES.put(TxType.CREATE_SWAP_PAIR, CreatePairData::new);
+        TX_DATA_TYPES.put(TxType.SWAP_TRADE, SwapTradeData::new);
+        TX_DATA_TYPES.put(TxType.SWAP_ADD_LIQUIDITY, AddLiquidityData::new);
+        TX_DATA_TYPES.put(TxType.SWAP_TRADE_STABLE_COIN, StableSwapTradeData::new);
+        TX_DATA_TYPES.put(TxType.SWAP_ADD_LIQUIDITY_STABLE_COIN, StableAddLiquidityData::new);
+        TX_DATA_TYPES.put(TxType.SWAP_REMOVE_LIQUIDITY_STABLE_COIN, StableRemoveLiquidityData::new);
+        TX_DATA_TYPES.put(TxType.SWAP_STABLE_LP_SWAP_TRADE, StableLpSwapTradeData::new);
+        TX_DATA_TYPES.put(TxType.SWAP_TRADE_SWAP_STABLE_REMOVE_LP, SwapTradeStableRemoveLpData::new);
+    }
+
+    private static final TxPreValidator instance = new TxPreValidator();
+
+    public static TxPreValidator getInstance() {
+        return instance;
+    }
+
+    private volatile boolean enabled;
+    private volatile int maxRemarkLength = AccountConstant.TX_REMARK_MAX_LEN;
+    private volatile Set<Integer> feeTxTypes = new HashSet<>(Arrays.asList(TxType.ACCOUNT_ALIAS, TxType.WITHDRAWAL));
+
+    /**
+     * 验证已签名的交易
+     *
+     * @return 通过时data为交易hash, 不通过时errorCode为Reason对应的错误码, data为Reason
+     */
+    public Result validate(String txHex) {
+        Transaction tx = new Transaction();
+        try {
+            NulsByteBuffer buffer = new NulsByteBuffer(HexUtil.decode(txHex));
+            tx.parse(buffer);
+            if (!buffer.isFinished()) {
+                return failed(Reason.MALFORMED, "unexpected bytes after transaction");
+            }
+        } catch (Exception e) {
+            return failed(Reason.MALFORMED, e.getMessage());
+        }
+        Supplier<BaseNulsData> txData = TX_DATA_TYPES.get(tx.getType());
+        if (txData != null) {
+            if (tx.getTxData() == null) {
+                return failed(Reason.TX_DATA_ERROR, "txData is empty");
+            }
+            try {
+                NulsByteBuffer buffer = new NulsByteBuffer(tx.getTxData());
+                txData.get().parse(buffer);
+                if (!buffer.isFinished()) {
+                    return failed(Reason.TX_DATA_ERROR, "unexpected bytes after txData");
+                }
+            } catch (Exception e) {
+                return failed(Reason.TX_DATA_ERROR, e.getMessage());
+            }
+        }
+        if (tx.getRemark() != null && tx.getRemark().length > maxRemarkLength) {
+            return failed(Reason.REMARK_TOO_LONG, tx.getRemark().length + " > " + maxRemarkLength);
+        }
+        CoinData coinData;
+        try {
+            coinData = tx.getCoinDataInstance();
+        } catch (NulsException e) {
+            return failed(Reason.MALFORMED, "coinData: " + e.format());
+        }
+        if (coinData == null || (coinData.getFrom().isEmpty() && coinData.getTo().isEmpty())) {
+            return failed(Reason.COIN_DATA_MISSING, null);
+        }
+        Result coinResult = validateCoinData(tx, coinData);
+        if (!coinResult.isSuccess()) {
+            return coinResult;
+        }
+        if (tx.getTransactionSignature() == null || tx.getTransactionSignature().length == 0) {
+            return failed(Reason.UNSIGNED, null);
+        }
+        try {
+            SignatureUtil.validateTransactionSignture(SDKContext.getMainChainId(), tx);
+        } catch (Exception e) {
+            return failed(Reason.SIGNATURE_ERROR, e.getMessage());
+        }
+        return Result.getSuccess(tx.getHash().toHex());
+    }
+
+    private Result validateCoinData(Transaction tx, CoinData coinData) {
+        int chainId = SDKContext.getMainChainId();
+        // 资产 -> 转出减转入
+        Map<String, BigInteger> remains = new HashMap<>();
+        for (CoinFrom from : coinData.getFrom()) {
+            if (AddressTool.getChainIdByAddress(from.getAddress()) != chainId) {
+                return failed(Reason.CHAIN_ID_ERROR, "from " + AddressTool.getStringAddressByBytes(from.getAddress()));
+            }
+            remains.merge(from.getAssetsChainId() + "-" + from.getAssetsId(), from.getAmount(), BigInteger::add);
+        }
+        for (CoinTo to : coinData.getTo()) {
+            // 跨链交易的接收地址属于其他链
+            if (tx.getType() != TxType.CROSS_CHAIN && AddressTool.getChainIdByAddress(to.getAddress()) != chainId) {
+                return failed(Reason.CHAIN_ID_ERROR, "to " + AddressTool.getStringAddressByBytes(to.getAddress()));
+            }
+            remains.merge(to.getAssetsChainId() + "-" + to.getAssetsId(), to.getAmount().negate(), BigInteger::add);
+        }
+        if (coinData.getFrom().isEmpty()) {
+            return Result.getSuccess(null);
+        }
+        for (Map.Entry<String, BigInteger> e : remains.entrySet()) {
+            if (e.getValue().signum() < 0) {
+                return failed(Reason.INSUFFICIENT_AMOUNT, "asset " + e.getKey());
+            }
+        }
+        if (feeTxTypes.contains(tx.getType())) {
+            BigInteger fee = remains.getOrDefault(chainId + "-" + SDKContext.getMainAssetId(), BigInteger.ZERO);
+            BigInteger need = TransactionFeeCalculator.getNormalTxFee(tx.getSize());
+            if (fee.compareTo(need) < 0) {
+                return failed(Reason.INSUFFICIENT_FEE, fee + " < " + need);
+            }
+        }
+        return Result.getSuccess(null);
+    }
+
+    private static Result failed(Reason reason, String detail) {
+        String msg = StringUtils.isBlank(detail) ? reason.name() : reason.name() + ": " + detail;
+        return Result.getFailed(reason.getErrorCode()).setMsg(msg).setData(reason);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public TxPreValidator setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+    /**
+     * 备注的最大字节数, 默认 AccountConstant.TX_REMARK_MAX_LEN
+     */
+    public TxPreValidator setMaxRemarkLength(int maxRemarkLength) {
+        this.maxRemarkLength = maxRemarkLength;
+        return this;
+    }
+
+    /**
+     * 需要按交易大小支付链内主资产手续费的交易类型, 默认为设置别名与提现; NERVE链内普通转账不收手续费
+     */
+    public TxPreValidator setFeeTxTypes(Collection<Integer> feeTxTypes) {
+        this.feeTxTypes = new HashSet<>(feeTxTypes);
+        return this;
+    }
+}
@@ -35,7 +35,7 @@ public class TxUtils {
     private static final byte PAIR_ADDRESS_TYPE = 4;
 
     public static boolean isMainAsset(int chainId, int assetId) {
-        return chainId == main_chain_id && assetId == SDKContext.main_asset_id;
+        return chainId == main_chain_id && assetId == SDKContext.getMainAssetId();
     }
 
     public static boolean isNulsAsset(int chainId, int assetId) {
@@ -12,7 +12,7 @@ import java.util.regex.Pattern;
 public class ValidateUtil {
 
     public static void validateChainId() {
-        if (SDKContext.main_chain_id < 1 || SDKContext.main_chain_id > 65535) {
+        if (SDKContext.getMainChainId() < 1 || SDKContext.getMainChainId() > 65535) {
             throw new RuntimeException("config main_chain_id is invalid");
         }
     }
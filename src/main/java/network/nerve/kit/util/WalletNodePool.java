@@ -0,0 +1,360 @@
+package network.nerve.kit.util;
+
+import network.nerve.SDKContext;
+import network.nerve.core.log.Log;
+import network.nerve.kit.util.ConcurrencyLimiter.Category;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 多钱包节点池
+ * 读请求路由到当前延迟(EWMA)最低的健康节点, 写请求(广播交易、依赖节点本地钱包的接口)固定路由到第一个健康节点;
+ * 节点连续失败达到阈值后被剔除, 后台定时探测 api/info, 探测成功后重新加入;
+ * 节点的EWMA只在有请求时更新, 选择时按空闲时间半衰, 一时变慢的节点空闲一段时间后会被重新尝试
+ */
+public class WalletNodePool {
+
+    /**
+     * 请求类型
+     */
+    public enum RouteType {
+        /**
+         * 只读查询
+         */
+        READ,
+        /**
+         * 广播交易以及依赖节点本地钱包状态的请求
+         */
+        WRITE
+    }
+
+    /**
+     * 路由策略
+     */
+    public enum RoutePolicy {
+        /**
+         * 选择EWMA延迟最低的健康节点
+         */
+        FASTEST,
+        /**
+         * 按配置顺序选择第一个健康节点
+         */
+        PRIMARY
+    }
+
+    public interface HttpCall<T> {
+        T execute(String url) throws Exception;
+    }
+
+    public static class Node {
+        private final String url;
+        /**
+         * 0表示尚无样本, 未使用过的节点会被优先尝试
+         */
+        private volatile double ewmaNanos;
+        private volatile long lastSampleNanos;
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private volatile boolean ejected;
+
+        Node(String url) {
+            this.url = url;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public double getEwmaMillis() {
+            return ewmaNanos / 1_000_000D;
+        }
+
+        public int getConsecutiveFailures() {
+            return consecutiveFailures.get();
+        }
+
+        public boolean isEjected() {
+            return ejected;
+        }
+
+        @Override
+        public String toString() {
+            return url + "{ewma=" + getEwmaMillis() + "ms, failures=" + getConsecutiveFailures() + ", ejected=" + ejected + "}";
+        }
+    }
+
+    private static final String PROBE_PATH = "api/info";
+
+    private final List<Node> nodes;
+    private volatile double ewmaAlpha = 0.2;
+    private volatile long ewmaHalfLifeMillis = 60_000;
+    private volatile int maxFailures = 3;
+    private volatile long probeIntervalMillis = 10_000;
+    private volatile RoutePolicy readPolicy = RoutePolicy.FASTEST;
+    private volatile RoutePolicy writePolicy = RoutePolicy.PRIMARY;
+    private ScheduledExecutorService prober;
+    /**
+     * 创建时绑定的客户端, 探测线程使用其http客户端
+     */
+    private final NerveClient client = NerveClient.current();
+
+    public WalletNodePool(List<String> urls) {
+        if (urls == null || urls.isEmpty()) {
+            throw new IllegalArgumentException("wallet urls is empty");
+        }
+        List<Node> list = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            list.add(new Node(normalize(url)));
+            CircuitBreaker.getInstance().setProbePath(url, PROBE_PATH);
+        }
+        this.nodes = Collections.unmodifiableList(list);
+    }
+
+    public static String normalize(String url) {
+        if (url != null && !url.endsWith("/")) {
+            url += "/";
+        }
+        return url;
+    }
+
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    public Node select(RouteType routeType) {
+        RoutePolicy policy = routeType == RouteType.WRITE ? writePolicy : readPolicy;
+        long now = System.nanoTime();
+        Node selected = null;
+        double selectedScore = 0;
+        for (Node node : nodes) {
+            if (node.ejected) {
+                continue;
+            }
+            if (policy == RoutePolicy.PRIMARY) {
+                return node;
+            }
+            double score = score(node, now);
+            if (selected == null || score < selectedScore) {
+                selected = node;
+                selectedScore = score;
+            }
+        }
+        if (selected == null) {
+            // 全部节点被剔除时仍按配置顺序尝试, 不直接拒绝请求
+            selected = nodes.get(0);
+        }
+        return selected;
+    }
+
+    /**
+     * 选择除exclude之外延迟最低的健康节点, 没有其他可用节点时返回exclude
+     */
+    public Node selectOther(Node exclude) {
+        long now = System.nanoTime();
+        Node selected = null;
+        double selectedScore = 0;
+        for (Node node : nodes) {
+            if (node == exclude || node.ejected) {
+                continue;
+            }
+            double score = score(node, now);
+            if (selected == null || score < selectedScore) {
+                selected = node;
+                selectedScore = score;
+            }
+        }
+        return selected == null ? exclude : selected;
+    }
+
+    /**
+     * 选择节点时使用的延迟: EWMA按距上次样本的空闲时间半衰
+     */
+    private double score(Node node, long now) {
+        return node.ewmaNanos * decay(node, now);
+    }
+
+    private double decay(Node node, long now) {
+        long halfLife = ewmaHalfLifeMillis;
+        if (halfLife <= 0) {
+            return 1;
+        }
+        return Math.pow(0.5, (now - node.lastSampleNanos) / (halfLife * 1_000_000D));
+    }
+
+    public void onSuccess(Node node, long elapsedNanos) {
+        long now = System.nanoTime();
+        double ewma = node.ewmaNanos;
+        if (ewma == 0) {
+            node.ewmaNanos = elapsedNanos;
+        } else {
+            // 空闲越久旧值越不可信, 新样本的权重随之增大
+            double alpha = 1 - (1 - ewmaAlpha) * decay(node, now);
+            node.ewmaNanos = ewma + alpha * (elapsedNanos - ewma);
+        }
+        node.lastSampleNanos = now;
+        node.consecutiveFailures.set(0);
+        node.ejected = false;
+    }
+
+    public void onFailure(Node node) {
+        if (node.consecutiveFailures.incrementAndGet() >= maxFailures && !node.ejected) {
+            node.ejected = true;
+            Log.warn("wallet node ejected: {}", node.url);
+            startProber();
+        }
+    }
+
+    /**
+     * 按当前配置路由请求: 配置了多节点时走节点池, 否则直接请求 SDKContext.getWalletUrl()
+     */
+    public static <T> T route(String path, RouteType routeType, HttpCall<T> call) throws Exception {
+        WalletNodePool pool = SDKContext.getWalletNodePool();
+        if (pool == null) {
+            String walletUrl = SDKContext.getWalletUrl();
+            return ConcurrencyLimiter.getInstance().execute(walletUrl, Category.of(path, routeType), () -> call.execute(walletUrl + path));
+        }
+        return pool.execute(path, routeType, call);
+    }
+
+    /**
+     * 异步路由请求, 开启对冲且路径匹配时, 超过对冲延迟仍未响应则向另一节点发出相同请求
+     */
+    public static <T> CompletableFuture<T> routeAsync(String path, RouteType routeType, Function<String, CompletableFuture<T>> call) {
+        WalletNodePool pool = SDKContext.getWalletNodePool();
+        HedgingPolicy hedging = HedgingPolicy.getInstance();
+        if (pool == null) {
+            String walletUrl = SDKContext.getWalletUrl();
+            // 只有一个节点时向同一节点重复请求只会加重其负载, 不做对冲
+            return ConcurrencyLimiter.getInstance().executeAsync(walletUrl, Category.of(path, routeType), () -> call.apply(walletUrl + path));
+        }
+        Node primary = pool.select(routeType);
+        if (hedging.shouldHedge(path, routeType)) {
+            Node secondary = pool.selectOther(primary);
+            if (secondary != primary) {
+                return hedging.execute(() -> pool.executeAsync(primary, path, routeType, call), () -> pool.executeAsync(secondary, path, routeType, call));
+            }
+        }
+        return pool.executeAsync(primary, path, routeType, call);
+    }
+
+    /**
+     * 在选中的节点上同步执行请求, 并记录延迟与失败
+     *
+     * @param path      相对于钱包url的请求路径
+     * @param routeType 请求类型
+     * @param call      实际的http调用, 参数为完整url
+     */
+    public <T> T execute(String path, RouteType routeType, HttpCall<T> call) throws Exception {
+        Node node = select(routeType);
+        // 并发限制的拒绝发生在本地, 不计入节点失败
+        return ConcurrencyLimiter.getInstance().execute(node.url, Category.of(path, routeType), () -> {
+            long start = System.nanoTime();
+            try {
+                T result = call.execute(node.url + path);
+                onSuccess(node, System.nanoTime() - start);
+                return result;
+            } catch (Exception e) {
+                onFailure(node);
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * 在选中的节点上异步执行请求, 并记录延迟与失败
+     */
+    public <T> CompletableFuture<T> executeAsync(String path, RouteType routeType, Function<String, CompletableFuture<T>> call) {
+        return executeAsync(select(routeType), path, routeType, call);
+    }
+
+    /**
+     * 在指定节点上异步执行请求, 并记录延迟与失败
+     */
+    public <T> CompletableFuture<T> executeAsync(Node node, String path, RouteType routeType, Function<String, CompletableFuture<T>> call) {
+        return ConcurrencyLimiter.getInstance().executeAsync(node.url, Category.of(path, routeType), () -> {
+            long start = System.nanoTime();
+            CompletableFuture<T> future = call.apply(node.url + path);
+            future.whenComplete((result, e) -> {
+                if (e == null) {
+                    onSuccess(node, System.nanoTime() - start);
+                } else if (!future.isCancelled()) {
+                    onFailure(node);
+                }
+            });
+            return future;
+        });
+    }
+
+    private synchronized void startProber() {
+        if (prober != null) {
+            return;
+        }
+        prober = Executors.newSingleThreadScheduledExecutor(NerveClient.threadFactory(client, "wallet-node-probe"));
+        prober.scheduleWithFixedDelay(this::probe, probeIntervalMillis, probeIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void probe() {
+        for (Node node : nodes) {
+            if (!node.ejected) {
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                OkHttpClientUtil.getInstance().getData(node.url + PROBE_PATH);
+                // 重新加入时以探测延迟作为新的EWMA起点, 避免沿用剔除前的历史值
+                node.ewmaNanos = 0;
+                onSuccess(node, System.nanoTime() - start);
+                Log.info("wallet node re-admitted: {}", node.url);
+            } catch (Exception e) {
+                Log.debug("wallet node probe failed: {}", node.url);
+            }
+        }
+    }
+
+    public synchronized void shutdown() {
+        if (prober != null) {
+            prober.shutdownNow();
+            prober = null;
+        }
+    }
+
+    public WalletNodePool setEwmaAlpha(double ewmaAlpha) {
+        this.ewmaAlpha = ewmaAlpha;
+        return this;
+    }
+
+    /**
+     * 空闲节点EWMA的半衰期, 小于等于0时不衰减
+     */
+    public WalletNodePool setEwmaHalfLifeMillis(long ewmaHalfLifeMillis) {
+        this.ewmaHalfLifeMillis = ewmaHalfLifeMillis;
+        return this;
+    }
+
+    public WalletNodePool setMaxFailures(int maxFailures) {
+        this.maxFailures = maxFailures;
+        return this;
+    }
+
+    public WalletNodePool setProbeIntervalMillis(long probeIntervalMillis) {
+        this.probeIntervalMillis = probeIntervalMillis;
+        return this;
+    }
+
+    public WalletNodePool setReadPolicy(RoutePolicy readPolicy) {
+        this.readPolicy = readPolicy;
+        return this;
+    }
+
+    public WalletNodePool setWritePolicy(RoutePolicy writePolicy) {
+        this.writePolicy = writePolicy;
+        return this;
+    }
+}
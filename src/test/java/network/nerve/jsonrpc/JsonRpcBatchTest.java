@@ -0,0 +1,87 @@
+package network.nerve.jsonrpc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sun.net.httpserver.HttpServer;
+import network.nerve.core.parse.JSONUtils;
+import network.nerve.kit.model.dto.JsonRpcRequest;
+import network.nerve.kit.model.dto.RpcResult;
+import network.nerve.kit.util.JsonRpcUtil;
+import network.nerve.kit.util.ListUtil;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * 本地模拟节点, 验证批量请求的id映射与单个调用失败
+ */
+public class JsonRpcBatchTest {
+
+    private HttpServer server;
+    private String url;
+
+    @Before
+    public void before() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/jsonrpc", exchange -> {
+            String body = IOUtils.toString(exchange.getRequestBody(), StandardCharsets.UTF_8);
+            JsonNode root = JSONUtils.getInstance().readTree(body);
+            List<Map<String, Object>> responses = new ArrayList<>();
+            for (JsonNode node : root) {
+                String method = node.get("method").asText();
+                if ("missing".equals(method)) {
+                    continue;
+                }
+                Map<String, Object> resp = new HashMap<>();
+                resp.put("jsonrpc", "2.0");
+                resp.put("id", node.get("id").asText());
+                if ("fail".equals(method)) {
+                    Map<String, Object> error = new HashMap<>();
+                    error.put("code", "1000");
+                    error.put("message", "bad");
+                    resp.put("error", error);
+                } else {
+                    resp.put("result", node.get("params").get(0).asInt());
+                }
+                responses.add(resp);
+            }
+            // 响应顺序与请求顺序相反
+            Collections.reverse(responses);
+            byte[] bytes = JSONUtils.obj2ByteArray(responses);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/jsonrpc";
+    }
+
+    @After
+    public void after() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testBatchRequest() {
+        List<JsonRpcRequest> requests = new ArrayList<>();
+        requests.add(new JsonRpcRequest("echo", ListUtil.of(1)));
+        requests.add(new JsonRpcRequest("fail", ListUtil.of(2)));
+        requests.add(new JsonRpcRequest("echo", ListUtil.of(3)));
+        requests.add(new JsonRpcRequest("missing", ListUtil.of(4)));
+        List<RpcResult> results = JsonRpcUtil.batchRequest(url, requests);
+        assertEquals(4, results.size());
+        assertEquals(1, results.get(0).getResult());
+        assertNull(results.get(0).getError());
+        assertEquals("1000", results.get(1).getError().getCode());
+        assertEquals(3, results.get(2).getResult());
+        assertNotNull(results.get(3).getError());
+    }
+}
@@ -0,0 +1,79 @@
+package network.nerve.metrics;
+
+import network.nerve.kit.metrics.LatencyHistogram;
+import network.nerve.kit.metrics.Metrics;
+import network.nerve.kit.metrics.MetricsRegistry.Phase;
+import network.nerve.kit.metrics.SimpleMetricsRegistry;
+import network.nerve.kit.metrics.SimpleMetricsRegistry.EndpointMetrics;
+import network.nerve.kit.util.JsonRpcUtil;
+import network.nerve.kit.util.ListUtil;
+import network.nerve.kit.util.RestFulUtil;
+import network.nerve.service.MockWalletNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MetricsTest {
+
+    @Rule
+    public MockWalletNode node = MockWalletNode.rule();
+    private SimpleMetricsRegistry registry;
+
+    @Before
+    public void before() throws Exception {
+        registry = new SimpleMetricsRegistry();
+        Metrics.setRegistry(registry);
+    }
+
+    @After
+    public void after() {
+        Metrics.setRegistry(null);
+    }
+
+    @Test
+    public void testHttpMetrics() {
+        node.put("api/block/header/height/100", "header");
+        assertTrue(RestFulUtil.get("api/block/header/height/100").isSuccess());
+
+        EndpointMetrics metrics = registry.get("api/block/header/height/{n}");
+        assertNotNull(metrics);
+        assertEquals(1, metrics.getLatency(Phase.TOTAL).getCount());
+        assertEquals(1, metrics.getLatency(Phase.TTFB).getCount());
+        assertEquals(1, metrics.getLatency(Phase.DECODE).getCount());
+        assertTrue(metrics.getReceivedBytes() > 0);
+        assertEquals(0, metrics.getInFlight());
+        assertEquals(0, metrics.getErrorCount());
+
+        node.setStatusCode(500);
+        assertFalse(RestFulUtil.get("api/block/header/height/101").isSuccess());
+        assertEquals(1, metrics.getErrors().get("http_500").get());
+        assertTrue(registry.scrape().contains("nerve_sdk_http_errors_total{endpoint=\"api/block/header/height/{n}\",type=\"http_500\"} 1"));
+    }
+
+    @Test
+    public void testRpcMethodName() {
+        JsonRpcUtil.request("getSymbolInfo", ListUtil.of(9, 1));
+        EndpointMetrics metrics = registry.get("jsonrpc/getSymbolInfo");
+        assertNotNull(metrics);
+        assertEquals(1, metrics.getLatency(Phase.TOTAL).getCount());
+        assertTrue(metrics.getSentBytes() > 0);
+    }
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1_000_000L);
+        }
+        assertEquals(1000, histogram.getCount());
+        long p50 = histogram.getValueAtPercentile(50);
+        long p99 = histogram.getValueAtPercentile(99);
+        // 桶的相对误差不超过1/16
+        assertEquals(500_000_000D, p50, 500_000_000D / 16);
+        assertEquals(990_000_000D, p99, 990_000_000D / 16);
+        assertEquals(1000_000_000L, histogram.getMax());
+    }
+}
@@ -0,0 +1,122 @@
+package network.nerve.service;
+
+import network.nerve.core.parse.JSONUtils;
+import network.nerve.kit.model.AddressActivity;
+import network.nerve.kit.model.dto.BlockDto;
+import network.nerve.kit.util.AddressActivityIndex;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AddressActivityIndexTest {
+
+    private static final String ALICE = "NERVEepb61R6tii7FzrXFpagKi2muBxnEcqQpp";
+    private static final String BOB = "NERVEepb6Cu6CC2uYpS2pAgmaReMFeHJvVH8FB";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public MockWalletNode node = MockWalletNode.rule();
+
+    private static String blockJson(long height, String txHash, String from, String to, long amount) {
+        return "{\"header\":{\"hash\":\"h" + height + "\",\"height\":" + height + "},\"txs\":[{\"hash\":\"" + txHash + "\",\"blockHeight\":" + height
+                + ",\"from\":[{\"address\":\"" + from + "\",\"assetsChainId\":9,\"assetsId\":1,\"amount\":\"" + (amount + 100000) + "\"}]"
+                + ",\"to\":[{\"address\":\"" + to + "\",\"assetsChainId\":9,\"assetsId\":1,\"amount\":\"" + amount + "\"}]}]}";
+    }
+
+    private static BlockDto block(long height, String txHash, String from, String to, long amount) throws Exception {
+        return JSONUtils.json2pojo(blockJson(height, txHash, from, to, amount), BlockDto.class);
+    }
+
+    @Test
+    public void testIndexAndResume() throws Exception {
+        File dir = folder.newFolder();
+        try (AddressActivityIndex index = new AddressActivityIndex(dir)) {
+            index.index(block(1, "aa01", ALICE, BOB, 500));
+            index.index(block(2, "aa02", BOB, ALICE, 200));
+            // 重复的高度被忽略
+            index.index(block(2, "aa02", BOB, ALICE, 200));
+            assertEquals(2, index.query(ALICE).size());
+        }
+        // 模拟写入中断留下的半帧
+        try (RandomAccessFile file = new RandomAccessFile(new File(dir, "activity.log"), "rw")) {
+            file.seek(file.length());
+            file.write(new byte[]{0, 0, 0, 100, 1, 2});
+        }
+        try (AddressActivityIndex index = new AddressActivityIndex(dir)) {
+            assertEquals(2, index.getLastHeight());
+            List<AddressActivity> bob = index.query(BOB);
+            assertEquals(2, bob.size());
+            assertEquals(AddressActivity.Direction.IN, bob.get(0).getDirection());
+            assertEquals(BigInteger.valueOf(500), bob.get(0).getAmount());
+            assertEquals(AddressActivity.Direction.OUT, bob.get(1).getDirection());
+            assertEquals("aa02", bob.get(1).getTxHash());
+            assertEquals(1, index.query(BOB, 2).size());
+
+            index.index(block(3, "aa03", ALICE, BOB, 1));
+            assertEquals(3, index.query(ALICE).size());
+        }
+        try (AddressActivityIndex index = new AddressActivityIndex(dir)) {
+            assertEquals(3, index.getLastHeight());
+            assertEquals(3, index.query(ALICE).size());
+        }
+    }
+
+    @Test
+    public void testCorruptFrameNotApplied() throws Exception {
+        File dir = folder.newFolder();
+        try (AddressActivityIndex index = new AddressActivityIndex(dir)) {
+            index.index(block(1, "aa01", ALICE, BOB, 500));
+        }
+        long length = new File(dir, "activity.log").length();
+        // 长度完整但记录数多于实际记录的帧: 前两条记录可以解析, 第三条越界
+        File other = folder.newFolder();
+        try (AddressActivityIndex index = new AddressActivityIndex(other)) {
+            index.index(block(2, "aa02", BOB, ALICE, 200));
+        }
+        byte[] frame = Files.readAllBytes(new File(other, "activity.log").toPath());
+        ByteBuffer.wrap(frame).putInt(12, 3);
+        try (RandomAccessFile file = new RandomAccessFile(new File(dir, "activity.log"), "rw")) {
+            file.seek(file.length());
+            file.write(frame);
+        }
+        try (AddressActivityIndex index = new AddressActivityIndex(dir)) {
+            assertEquals(1, index.getLastHeight());
+            assertEquals(1, index.query(ALICE).size());
+            assertEquals(1, index.query(BOB).size());
+            assertEquals(length, new File(dir, "activity.log").length());
+
+            index.index(block(2, "aa02", BOB, ALICE, 200));
+            assertEquals(2, index.query(ALICE).size());
+        }
+    }
+
+    @Test
+    public void testFollowChainWithWatchList() throws Exception {
+        for (long h = 1; h <= 5; h++) {
+            node.putRaw("api/block/height/" + h, "{\"success\":true,\"data\":" + blockJson(h, "bb0" + h, h % 2 == 0 ? ALICE : BOB, "NERVEepb6ED2QAwfBdXdL7ufh4Tn4HyPHoGpSg", h) + "}");
+        }
+        node.putRaw("api/block/header/newest", "{\"success\":true,\"data\":{\"hash\":\"h5\",\"height\":5}}");
+        try (AddressActivityIndex index = new AddressActivityIndex(folder.newFolder())) {
+            index.setWatchAddresses(Arrays.asList(ALICE)).start(1);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (index.getLastHeight() < 5 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(5, index.getLastHeight());
+            assertEquals(2, index.query(ALICE).size());
+            assertTrue(index.query(BOB).isEmpty());
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package network.nerve.service;
+
+import network.nerve.core.basic.Result;
+import network.nerve.kit.model.dto.TransferForm;
+import network.nerve.kit.util.NerveSDKAsyncTool;
+import network.nerve.kit.util.NerveSDKTool;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AsyncServiceTest {
+
+    @Rule
+    public MockWalletNode node = MockWalletNode.rule();
+
+    @Test
+    public void testAsyncCompose() throws Exception {
+        Map<String, Object> info = new HashMap<>();
+        info.put("chainId", 9);
+        node.put("api/info", info);
+        Map<String, Object> balance = new HashMap<>();
+        balance.put("nonce", "0000000000000000");
+        node.put("api/accountledger/balance/NERVEepb6Cu6CC2uYpS2pAgmaReMFeHJvVH8FB", balance);
+
+        CompletableFuture<Result> infoFuture = NerveSDKAsyncTool.getInfo();
+        CompletableFuture<Result> balanceFuture = NerveSDKAsyncTool.getAccountBalance("NERVEepb6Cu6CC2uYpS2pAgmaReMFeHJvVH8FB", 9, 1);
+        CompletableFuture.allOf(infoFuture, balanceFuture).get();
+
+        assertEquals(9, ((Map) infoFuture.get().getData()).get("chainId"));
+        assertEquals("0000000000000000", ((Map) balanceFuture.get().getData()).get("nonce"));
+    }
+
+    @Test
+    public void testAsyncFailure() throws Exception {
+        Result result = NerveSDKAsyncTool.getTx("00").get();
+        assertFalse(result.isSuccess());
+    }
+
+    @Test
+    public void testAsyncAssembly() throws Exception {
+        String address = "NERVEepb61R6tii7FzrXFpagKi2muBxnEcqQpp";
+        String path = "api/accountledger/balance/" + address;
+        node.putRaw(path, "{\"success\":true,\"data\":{\"total\":100,\"available\":\"100\",\"nonce\":\"0102030405060708\",\"nonceType\":1}}");
+        // 异步查询nonce后的组装结果与同步接口一致, 组装时不再查询账本
+        Result async = NerveSDKAsyncTool.createTxSimpleTransferOfNvt(address, address, BigInteger.ONE, 1600000000, "async").get(5, TimeUnit.SECONDS);
+        assertTrue(async.getMsg(), async.isSuccess());
+        assertEquals(1, node.hits(path));
+        Result sync = NerveSDKTool.createTxSimpleTransferOfNvt(address, address, BigInteger.ONE, 1600000000, "async");
+        assertEquals(((Map) sync.getData()).get("txHex"), ((Map) async.getData()).get("txHex"));
+
+        Result failed = NerveSDKAsyncTool.createTxSimpleTransferOfNvt("NERVEepb6Cu6CC2uYpS2pAgmaReMFeHJvVH8FB", address, BigInteger.ONE).get(5, TimeUnit.SECONDS);
+        assertFalse(failed.isSuccess());
+
+        node.putRaw("api/accountledger/transfer", "{\"success\":true,\"data\":{\"value\":\"0020aa\"}}");
+        TransferForm form = new TransferForm();
+        form.setAddress(address);
+        form.setToAddress(address);
+        form.setPassword("nuls123456");
+        form.setAmount(BigInteger.ONE);
+        Result transfer = NerveSDKAsyncTool.transfer(form).get(5, TimeUnit.SECONDS);
+        assertEquals("0020aa", ((Map) transfer.getData()).get("value"));
+    }
+}
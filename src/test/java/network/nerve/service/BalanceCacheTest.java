@@ -0,0 +1,93 @@
+package network.nerve.service;
+
+import network.nerve.kit.service.AccountService;
+import network.nerve.kit.util.BalanceCache;
+import network.nerve.kit.util.NerveSDKTool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class BalanceCacheTest {
+
+    private static final String ADDRESS = "NERVEepb61R6tii7FzrXFpagKi2muBxnEcqQpp";
+    private static final String BALANCE_PATH = "api/accountledger/balance/" + ADDRESS;
+
+    @Rule
+    public MockWalletNode node = MockWalletNode.rule();
+
+    @Before
+    public void before() throws Exception {
+        node.putRaw(BALANCE_PATH, "{\"success\":true,\"data\":{\"total\":100,\"available\":\"100\",\"nonce\":\"0000000000000000\",\"nonceType\":1}}");
+        BalanceCache.getInstance().setEnabled(true).setTtlMillis(60_000);
+    }
+
+    @After
+    public void after() {
+        BalanceCache.getInstance().setEnabled(false).setTtlMillis(3000).setMaxEntries(10000);
+    }
+
+    @Test
+    public void testTtlAndHeight() throws Exception {
+        assertTrue(NerveSDKTool.getAccountBalance(ADDRESS, 9, 1).isSuccess());
+        assertTrue(NerveSDKTool.getAccountBalance(ADDRESS, 9, 1).isSuccess());
+        assertEquals("100", AccountService.getInstance().getAccountBalanceDto(ADDRESS, 9, 1).getData().getAvailable());
+        // Map与AccountBalanceDto分别缓存
+        assertEquals(2, node.hits(BALANCE_PATH));
+
+        // 新区块使之前的缓存失效
+        BalanceCache.getInstance().onBestHeight(System.currentTimeMillis());
+        NerveSDKTool.getAccountBalance(ADDRESS, 9, 1);
+        assertEquals(3, node.hits(BALANCE_PATH));
+
+        BalanceCache.getInstance().setTtlMillis(0);
+        BalanceCache.getInstance().clear();
+        NerveSDKTool.getAccountBalance(ADDRESS, 9, 1);
+        NerveSDKTool.getAccountBalance(ADDRESS, 9, 1);
+        assertEquals(5, node.hits(BALANCE_PATH));
+    }
+
+    @Test
+    public void testBroadcastInvalidates() throws Exception {
+        Map tx = (Map) NerveSDKTool.createTxSimpleTransferOfNvt(ADDRESS, ADDRESS, BigInteger.ONE).getData();
+        NerveSDKTool.getAccountBalance(ADDRESS, 9, 1);
+        assertEquals(1, node.hits(BALANCE_PATH));
+
+        node.putRaw("jsonrpc", "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":{\"value\":true}}");
+        assertTrue(NerveSDKTool.broadcast(tx.get("txHex").toString()).isSuccess());
+        NerveSDKTool.getAccountBalance(ADDRESS, 9, 1);
+        assertEquals(2, node.hits(BALANCE_PATH));
+    }
+
+    @Test
+    public void testStaleResultDropped() {
+        BalanceCache cache = BalanceCache.getInstance();
+        Map<String, Object> balance = new HashMap<>();
+        // 查询期间发生广播, 旧结果不写入缓存
+        BalanceCache.Ticket ticket = cache.ticket();
+        cache.invalidate(ADDRESS, 9, 1);
+        cache.putMap(ADDRESS, 9, 1, balance, ticket);
+        assertNull(cache.getMap(ADDRESS, 9, 1));
+        // 其他账户不受影响
+        cache.putMap(ADDRESS, 9, 2, balance, ticket);
+        assertSame(balance, cache.getMap(ADDRESS, 9, 2));
+
+        cache.putMap(ADDRESS, 9, 1, balance, cache.ticket());
+        assertSame(balance, cache.getMap(ADDRESS, 9, 1));
+
+        // 缓存已满时只清除一部分
+        cache.clear();
+        cache.setMaxEntries(10);
+        for (int i = 0; i < 25; i++) {
+            cache.putMap(ADDRESS, 9, 100 + i, balance, cache.ticket());
+            assertTrue(cache.size() > 0 && cache.size() <= 10);
+        }
+        assertSame(balance, cache.getMap(ADDRESS, 9, 124));
+    }
+}
@@ -0,0 +1,142 @@
+package network.nerve.service;
+
+import network.nerve.SDKContext;
+import network.nerve.base.data.CoinData;
+import network.nerve.base.data.CoinTo;
+import network.nerve.base.data.Transaction;
+import network.nerve.core.basic.Result;
+import network.nerve.core.crypto.HexUtil;
+import network.nerve.core.parse.JSONUtils;
+import network.nerve.kit.error.AccountErrorCode;
+import network.nerve.kit.model.Account;
+import network.nerve.kit.util.AccountTool;
+import network.nerve.kit.util.BatchPayout;
+import network.nerve.kit.util.BatchPayout.Item;
+import network.nerve.kit.util.TxPreValidator;
+import network.nerve.kit.util.TxUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class BatchPayoutTest {
+
+    private static final String NONCE = "0102030405060708";
+
+    @Rule
+    public MockWalletNode node = MockWalletNode.rule();
+    private Account sender;
+    private String senderAddress;
+
+    @Before
+    public void before() throws Exception {
+        sender = AccountTool.createAccount(SDKContext.main_chain_id);
+        senderAddress = sender.getAddress().getBase58();
+        node.putRaw("api/accountledger/balance/" + senderAddress, "{\"success\":true,\"data\":{\"total\":100000,\"available\":\"100000\",\"nonce\":\"" + NONCE + "\",\"nonceType\":1}}");
+        node.putRaw("jsonrpc", "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":{\"value\":true}}");
+    }
+
+    private BatchPayout payout() {
+        return new BatchPayout().addPrivateKey(HexUtil.encode(sender.getPriKey())).setParallelism(4);
+    }
+
+    private List<Item> items(int count) throws Exception {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String to = AccountTool.createAccount(SDKContext.main_chain_id).getAddress().getBase58();
+            items.add(new Item(senderAddress, to, BigInteger.valueOf(i + 1)));
+        }
+        return items;
+    }
+
+    /**
+     * 按广播顺序解析广播的交易
+     */
+    private List<Transaction> broadcastTxs() throws Exception {
+        List<Transaction> txs = new ArrayList<>();
+        for (String body : node.getRequestBodies()) {
+            if (body.contains("broadcastTx")) {
+                List params = (List) JSONUtils.json2map(body).get("params");
+                txs.add(Transaction.getInstance(HexUtil.decode(params.get(1).toString())));
+            }
+        }
+        return txs;
+    }
+
+    @Test
+    public void testPay() throws Exception {
+        List<Item> items = items(250);
+        items.add(new Item(senderAddress, "invalid", BigInteger.ONE));
+        Account other = AccountTool.createAccount(SDKContext.main_chain_id);
+        items.add(new Item(other.getAddress().getBase58(), senderAddress, BigInteger.ONE));
+
+        List<Result> results = payout().setMaxOutputsPerTx(100).pay(items);
+        assertEquals(items.size(), results.size());
+        assertEquals(AccountErrorCode.PARAMETER_ERROR, results.get(250).getErrorCode());
+        assertEquals(AccountErrorCode.PARAMETER_ERROR, results.get(251).getErrorCode());
+        Set<Object> hashes = new LinkedHashSet<>();
+        for (int i = 0; i < 250; i++) {
+            assertTrue(results.get(i).getMsg(), results.get(i).isSuccess());
+            hashes.add(results.get(i).getData());
+        }
+        assertEquals(3, hashes.size());
+        assertEquals(1, node.hits("api/accountledger/balance/" + senderAddress));
+        assertEquals(3, node.hits("jsonrpc"));
+
+        // nonce按广播顺序串联, 每笔交易都能通过本地验证
+        List<Transaction> txs = broadcastTxs();
+        assertEquals(new ArrayList<>(hashes), Arrays.asList(txs.get(0).getHash().toHex(), txs.get(1).getHash().toHex(), txs.get(2).getHash().toHex()));
+        byte[] nonce = HexUtil.decode(NONCE);
+        int outputs = 0;
+        for (Transaction tx : txs) {
+            CoinData coinData = tx.getCoinDataInstance();
+            assertArrayEquals(nonce, coinData.getFrom().get(0).getNonce());
+            assertTrue(TxPreValidator.getInstance().validate(HexUtil.encode(tx.serialize())).isSuccess());
+            nonce = TxUtils.getNonce(tx.getHash().getBytes());
+            outputs += coinData.getTo().size();
+        }
+        assertEquals(250, outputs);
+    }
+
+    @Test
+    public void testPacking() throws Exception {
+        List<Item> items = items(50);
+        // 同一交易中接收地址不重复
+        items.add(new Item(senderAddress, items.get(49).getTo(), BigInteger.TEN));
+        List<Result> results = payout().setMaxTxSize(2000).pay(items);
+        for (Result result : results) {
+            assertTrue(result.getMsg(), result.isSuccess());
+        }
+        List<Transaction> txs = broadcastTxs();
+        assertTrue(txs.size() > 2);
+        for (Transaction tx : txs) {
+            assertTrue(tx.size() <= 2000);
+            Set<String> receivers = new HashSet<>();
+            BigInteger total = BigInteger.ZERO;
+            for (CoinTo to : tx.getCoinDataInstance().getTo()) {
+                assertTrue(receivers.add(HexUtil.encode(to.getAddress())));
+                total = total.add(to.getAmount());
+            }
+            assertEquals(total, tx.getCoinDataInstance().getFrom().get(0).getAmount());
+        }
+    }
+
+    @Test
+    public void testBroadcastFailure() throws Exception {
+        node.putRaw("jsonrpc", "{\"jsonrpc\":\"2.0\",\"id\":1,\"error\":{\"code\":\"tx_0013\",\"message\":\"nonce error\"}}");
+        List<Result> results = payout().setMaxOutputsPerTx(10).pay(items(25));
+        for (int i = 0; i < 25; i++) {
+            assertFalse(results.get(i).isSuccess());
+            assertEquals("tx_0013", results.get(i).getErrorCode().getCode());
+            if (i >= 10) {
+                assertTrue(results.get(i).getMsg().startsWith("previous transaction"));
+            }
+        }
+        // 第一笔失败后同组的交易不再广播
+        assertEquals(1, node.hits("jsonrpc"));
+    }
+}
@@ -0,0 +1,79 @@
+package network.nerve.service;
+
+import network.nerve.core.basic.Result;
+import network.nerve.kit.model.dto.BlockHeaderDto;
+import network.nerve.kit.model.dto.TransactionDto;
+import network.nerve.kit.service.BlockService;
+import network.nerve.kit.service.TransactionService;
+import network.nerve.kit.util.BlockHeaderCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BlockHeaderCacheTest {
+
+    @Rule
+    public MockWalletNode node = MockWalletNode.rule();
+
+    @Before
+    public void before() throws Exception {
+        BlockHeaderCache.getInstance().setEnabled(true).setConfirmedDepth(30).setRecentTtlMillis(3000);
+    }
+
+    @After
+    public void after() {
+        BlockHeaderCache.getInstance().setEnabled(false).setRecentTtlMillis(3000).setMaxEntries(2000);
+    }
+
+    private void putHeader(long height, String hash) {
+        node.putRaw("api/block/header/height/" + height, "{\"success\":true,\"data\":{\"hash\":\"" + hash + "\",\"height\":" + height + "}}");
+    }
+
+    @Test
+    public void testTransactionsInSameBlock() {
+        putHeader(10, "aa10");
+        for (String hash : new String[]{"01", "02", "03"}) {
+            node.putRaw("api/tx/" + hash, "{\"success\":true,\"data\":{\"hash\":\"" + hash + "\",\"blockHeight\":10}}");
+        }
+        BlockHeaderCache.getInstance().onBestHeight(1000);
+        for (String hash : new String[]{"01", "02", "03"}) {
+            Result result = TransactionService.getInstance().getTransaction(hash);
+            assertEquals("aa10", ((TransactionDto) result.getData()).getBlockHash());
+        }
+        assertEquals(1, node.hits("api/block/header/height/10"));
+
+        // 按hash查询命中按高度缓存的区块头
+        Result byHash = BlockService.getInstance().getBlockHeader("aa10");
+        assertEquals(10, ((BlockHeaderDto) byHash.getData()).getHeight());
+        assertEquals(0, node.hits("api/block/header/hash/aa10"));
+    }
+
+    @Test
+    public void testRecentHeightExpires() throws Exception {
+        long height = 5_000_000_000L;
+        putHeader(height, "bb");
+        BlockHeaderCache.getInstance().setRecentTtlMillis(50);
+        BlockService.getInstance().getBlockHeader(height);
+        BlockService.getInstance().getBlockHeader(height);
+        assertEquals(1, node.hits("api/block/header/height/" + height));
+        Thread.sleep(100);
+        BlockService.getInstance().getBlockHeader(height);
+        assertEquals(2, node.hits("api/block/header/height/" + height));
+    }
+
+    @Test
+    public void testLruEviction() {
+        BlockHeaderCache cache = BlockHeaderCache.getInstance().setMaxEntries(2);
+        cache.onBestHeight(1000);
+        for (long h = 1; h <= 3; h++) {
+            putHeader(h, "cc" + h);
+            BlockService.getInstance().getBlockHeader(h);
+        }
+        assertEquals(2, cache.size());
+        assertNull(cache.get("cc1"));
+        assertNotNull(cache.get(3));
+    }
+}
@@ -0,0 +1,75 @@
+package network.nerve.service;
+
+import network.nerve.kit.model.dto.BlockDto;
+import network.nerve.kit.util.BlockStream;
+import network.nerve.kit.util.NerveSDKTool;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BlockStreamTest {
+
+    @Rule
+    public MockWalletNode node = MockWalletNode.rule();
+
+    @Before
+    public void before() throws Exception {
+        for (long h = 1; h <= 30; h++) {
+            node.putRaw("api/block/height/" + h, "{\"success\":true,\"data\":{\"header\":{\"hash\":\"h" + h + "\",\"height\":" + h + "},\"txs\":[]}}");
+        }
+    }
+
+    private void setNewest(long height) {
+        node.putRaw("api/block/header/newest", "{\"success\":true,\"data\":{\"hash\":\"h" + height + "\",\"height\":" + height + "}}");
+    }
+
+    private int blockHits(long from, long to) {
+        int hits = 0;
+        for (long h = from; h <= to; h++) {
+            hits += node.hits("api/block/height/" + h);
+        }
+        return hits;
+    }
+
+    @Test
+    public void testRangeInOrderAndPrefetched() {
+        node.setDelayMillis(100);
+        long start = System.currentTimeMillis();
+        long expected = 1;
+        try (BlockStream stream = NerveSDKTool.streamBlocks(1, 20, 5)) {
+            while (stream.hasNext()) {
+                BlockDto block = stream.next();
+                assertEquals(expected++, block.getHeader().getHeight());
+            }
+        }
+        assertEquals(21, expected);
+        // 串行需要2秒以上
+        assertTrue(System.currentTimeMillis() - start < 1500);
+    }
+
+    @Test
+    public void testWindowBoundsPrefetch() throws Exception {
+        try (BlockStream stream = NerveSDKTool.streamBlocks(1, 30, 4)) {
+            stream.next();
+            Thread.sleep(200);
+            // 已交付1个, 窗口内最多4个
+            assertTrue(blockHits(1, 30) <= 5);
+        }
+    }
+
+    @Test
+    public void testFollowTip() {
+        setNewest(3);
+        try (BlockStream stream = NerveSDKTool.streamBlocks(2, BlockStream.FOLLOW, 4).setPollIntervalMillis(20)) {
+            assertEquals(2, stream.next().getHeader().getHeight());
+            assertEquals(3, stream.next().getHeader().getHeight());
+            assertEquals(0, node.hits("api/block/height/4"));
+            setNewest(5);
+            assertEquals(4, stream.next().getHeader().getHeight());
+            assertEquals(5, stream.next().getHeader().getHeight());
+            assertTrue(stream.hasNext());
+        }
+    }
+}
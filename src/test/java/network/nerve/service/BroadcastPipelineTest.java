@@ -0,0 +1,199 @@
+package network.nerve.service;
+
+import network.nerve.base.data.Transaction;
+import network.nerve.core.basic.Result;
+import network.nerve.core.crypto.HexUtil;
+import network.nerve.kit.model.dto.TransactionDto;
+import network.nerve.kit.util.BroadcastPipeline;
+import network.nerve.kit.util.NerveSDKTool;
+import network.nerve.kit.util.PendingTxTracker;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BroadcastPipelineTest {
+
+    private static final String ADDRESS = "NERVEepb61R6tii7FzrXFpagKi2muBxnEcqQpp";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public MockWalletNode node = MockWalletNode.rule();
+
+    @Before
+    public void before() throws Exception {
+        node.putRaw("api/accountledger/balance/" + ADDRESS, "{\"success\":true,\"data\":{\"total\":100,\"available\":\"100\",\"nonce\":\"0000000000000000\",\"nonceType\":1}}");
+        newBlock(6);
+        PendingTxTracker.getInstance().clear();
+        PendingTxTracker.getInstance().setPollIntervalMillis(50);
+    }
+
+    @After
+    public void after() {
+        PendingTxTracker.getInstance().setPollIntervalMillis(2000);
+    }
+
+    private String createTx(long amount) {
+        Map map = (Map) NerveSDKTool.createTxSimpleTransferOfNvt(ADDRESS, ADDRESS, BigInteger.valueOf(amount)).getData();
+        return map.get("txHex").toString();
+    }
+
+    private static String hash(String txHex) throws Exception {
+        return Transaction.getInstance(HexUtil.decode(txHex)).getHash().toHex();
+    }
+
+    private void confirm(String txHex) throws Exception {
+        node.putRaw("api/tx/" + hash(txHex), "{\"success\":true,\"data\":{\"hash\":\"" + hash(txHex) + "\",\"blockHeight\":5}}");
+    }
+
+    /**
+     * 只在出现新区块时查询交易状态
+     */
+    private void newBlock(long height) {
+        node.putRaw("api/block/header/newest", "{\"success\":true,\"data\":{\"hash\":\"h" + height + "\",\"height\":" + height + "}}");
+    }
+
+    @Test
+    public void testRetryThenConfirm() throws Exception {
+        String txHex = createTx(1);
+        node.setStatusCode(500);
+        try (BroadcastPipeline pipeline = new BroadcastPipeline(folder.newFolder())) {
+            pipeline.setRetryDelayMillis(50).setSync(false);
+            CompletableFuture<Result> future = pipeline.submit(txHex);
+            assertSame(future, pipeline.submit(txHex));
+            pipeline.start();
+            Thread.sleep(150);
+            assertFalse(future.isDone());
+            node.setStatusCode(200);
+            node.putRaw("jsonrpc", "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":{\"value\":true}}");
+            // 交易在新区块中确认
+            confirm(txHex);
+            newBlock(7);
+            Result result = future.get(5, TimeUnit.SECONDS);
+            assertTrue(result.isSuccess());
+            assertEquals(5, ((TransactionDto) result.getData()).getBlockHeight());
+            assertEquals(0, pipeline.size());
+        }
+    }
+
+    @Test
+    public void testNonRetriableFails() throws Exception {
+        node.putRaw("jsonrpc", "{\"jsonrpc\":\"2.0\",\"id\":1,\"error\":{\"code\":\"tx_0013\",\"message\":\"coinData not enough\"}}");
+        try (BroadcastPipeline pipeline = new BroadcastPipeline(folder.newFolder())) {
+            CompletableFuture<Result> future = pipeline.setSync(false).start().submit(createTx(2));
+            Result result = future.get(5, TimeUnit.SECONDS);
+            assertFalse(result.isSuccess());
+            assertEquals("tx_0013", result.getErrorCode().getCode());
+            assertEquals(1, node.hits("jsonrpc"));
+        }
+    }
+
+    @Test
+    public void testConfirmTimeout() throws Exception {
+        node.putRaw("jsonrpc", "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":{\"value\":true}}");
+        try (BroadcastPipeline pipeline = new BroadcastPipeline(folder.newFolder())) {
+            // 节点接受后丢弃的交易: 超时后重新广播一次, 仍未确认则失败
+            CompletableFuture<Result> future = pipeline.setConfirmTimeoutMillis(200).setMaxAttempts(2).setSync(false).start().submit(createTx(10));
+            Result result = future.get(5, TimeUnit.SECONDS);
+            assertFalse(result.isSuccess());
+            assertEquals(2, node.hits("jsonrpc"));
+            assertEquals(0, pipeline.size());
+        }
+    }
+
+    @Test
+    public void testRecoverFromWal() throws Exception {
+        File dir = folder.newFolder();
+        String pending = createTx(3);
+        String confirmed = createTx(4);
+        try (BroadcastPipeline pipeline = new BroadcastPipeline(dir)) {
+            pipeline.submit(pending);
+            pipeline.submit(confirmed);
+        }
+        node.putRaw("jsonrpc", "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":{\"value\":true}}");
+        confirm(confirmed);
+        try (BroadcastPipeline pipeline = new BroadcastPipeline(dir)) {
+            assertEquals(2, pipeline.size());
+            CompletableFuture<Result> confirmedFuture = pipeline.submit(confirmed);
+            CompletableFuture<Result> pendingFuture = pipeline.submit(pending);
+            pipeline.start();
+            // 重启前已上链的不再广播
+            assertTrue(confirmedFuture.get(5, TimeUnit.SECONDS).isSuccess());
+            long deadline = System.currentTimeMillis() + 5000;
+            while (pipeline.getStatus(hash(pending)) != BroadcastPipeline.Status.BROADCAST && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(BroadcastPipeline.Status.BROADCAST, pipeline.getStatus(hash(pending)));
+            assertEquals(1, node.hits("jsonrpc"));
+            confirm(pending);
+            newBlock(7);
+            assertTrue(pendingFuture.get(5, TimeUnit.SECONDS).isSuccess());
+        }
+        try (BroadcastPipeline pipeline = new BroadcastPipeline(dir)) {
+            assertEquals(0, pipeline.size());
+        }
+    }
+
+    @Test
+    public void testCompactWal() throws Exception {
+        node.putRaw("jsonrpc", "{\"jsonrpc\":\"2.0\",\"id\":1,\"error\":{\"code\":\"tx_0013\",\"message\":\"coinData not enough\"}}");
+        File dir = folder.newFolder();
+        File wal = new File(dir, "broadcast.wal");
+        try (BroadcastPipeline pipeline = new BroadcastPipeline(dir)) {
+            pipeline.setCompactThreshold(3).setSync(false).start();
+            CompletableFuture<Result> f1 = pipeline.submit(createTx(5));
+            CompletableFuture<Result> f2 = pipeline.submit(createTx(6));
+            CompletableFuture<Result> f3 = pipeline.submit(createTx(7));
+            CompletableFuture.allOf(f1, f2, f3).get(5, TimeUnit.SECONDS);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (wal.length() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            // 三条完成记录后日志被重写为空
+            assertEquals(0, wal.length());
+            // 压缩后继续写入
+            String txHex = createTx(8);
+            pipeline.submit(txHex);
+            assertTrue(new String(Files.readAllBytes(wal.toPath()), StandardCharsets.UTF_8).startsWith("S " + hash(txHex)));
+        }
+    }
+
+    @Test
+    public void testCloseStopsTracking() throws Exception {
+        node.putRaw("jsonrpc", "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":{\"value\":true}}");
+        File dir = folder.newFolder();
+        String txHex = createTx(9);
+        BroadcastPipeline pipeline = new BroadcastPipeline(dir);
+        CompletableFuture<Result> future = pipeline.setSync(false).start().submit(txHex);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pipeline.getStatus(hash(txHex)) != BroadcastPipeline.Status.BROADCAST && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(BroadcastPipeline.Status.BROADCAST, pipeline.getStatus(hash(txHex)));
+        pipeline.close();
+
+        // 关闭后确认的交易不再写入日志, 重启后重新查询
+        confirm(txHex);
+        newBlock(7);
+        CompletableFuture<Result> tracked = PendingTxTracker.getInstance().track(hash(txHex));
+        assertTrue(tracked.get(5, TimeUnit.SECONDS).isSuccess());
+        Thread.sleep(100);
+        assertFalse(future.isDone());
+        try (BroadcastPipeline reopened = new BroadcastPipeline(dir)) {
+            assertEquals(1, reopened.size());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package network.nerve.service;
+
+import network.nerve.SDKContext;
+import network.nerve.core.basic.Result;
+import network.nerve.kit.model.AccountAssetKey;
+import network.nerve.kit.model.dto.AccountBalanceDto;
+import network.nerve.kit.util.NerveSDKAsyncTool;
+import network.nerve.kit.util.NerveSDKTool;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BulkBalanceTest {
+
+    @Rule
+    public MockWalletNode node = MockWalletNode.rule();
+
+    @Test
+    public void testBoundedAndPartialFailure() {
+        List<AccountAssetKey> keys = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            String address = "addr" + i;
+            keys.add(new AccountAssetKey(address, 9, 1));
+            // 最后一个地址不存在, 查询失败
+            if (i < 9) {
+                node.putRaw("api/accountledger/balance/" + address, "{\"success\":true,\"data\":{\"total\":" + i + ",\"available\":\"" + i + "\",\"nonce\":\"0000000000000000\",\"nonceType\":1}}");
+            }
+        }
+        keys.add(new AccountAssetKey("addr0", 9, 1));
+        node.setDelayMillis(100);
+
+        AtomicInteger calls = new AtomicInteger();
+        AtomicInteger lastCompleted = new AtomicInteger();
+        long start = System.currentTimeMillis();
+        Map<AccountAssetKey, Result<AccountBalanceDto>> results = NerveSDKTool.getAccountBalances(keys, 2, (key, result, completed, total) -> {
+            calls.incrementAndGet();
+            lastCompleted.accumulateAndGet(completed, Math::max);
+            assertEquals(10, total);
+        });
+        // 最多2个并发, 10个请求至少5轮
+        assertTrue(System.currentTimeMillis() - start >= 450);
+        assertEquals(10, calls.get());
+        assertEquals(10, lastCompleted.get());
+        assertEquals(10, results.size());
+        assertEquals(keys.get(0), results.keySet().iterator().next());
+        assertEquals("3", results.get(new AccountAssetKey("addr3", 9, 1)).getData().getAvailable());
+        assertFalse(results.get(new AccountAssetKey("addr9", 9, 1)).isSuccess());
+    }
+
+    @Test
+    public void testSynchronousThrow() throws Exception {
+        List<AccountAssetKey> keys = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            String address = "addr" + i;
+            keys.add(new AccountAssetKey(address, 9, 1));
+            node.putRaw("api/accountledger/balance/" + address, "{\"success\":true,\"data\":{\"total\":" + i + ",\"available\":\"" + i + "\",\"nonce\":\"0000000000000000\",\"nonceType\":1}}");
+        }
+        int chainId = SDKContext.main_chain_id;
+        try {
+            // 第一个结果返回后使配置失效, 之后的查询在发起时同步抛出异常
+            Map<AccountAssetKey, Result<AccountBalanceDto>> results = NerveSDKAsyncTool.getAccountBalances(keys, 1, (key, result, completed, total) -> SDKContext.main_chain_id = 0)
+                    .get(5, TimeUnit.SECONDS);
+            assertEquals(3, results.size());
+            assertTrue(results.get(keys.get(0)).isSuccess());
+            assertFalse(results.get(keys.get(1)).isSuccess());
+            assertFalse(results.get(keys.get(2)).isSuccess());
+        } finally {
+            SDKContext.main_chain_id = chainId;
+        }
+    }
+}
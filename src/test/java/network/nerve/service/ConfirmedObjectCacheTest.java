@@ -0,0 +1,88 @@
+package network.nerve.service;
+
+import network.nerve.kit.model.dto.BlockDto;
+import network.nerve.kit.model.dto.TransactionDto;
+import network.nerve.kit.service.BlockService;
+import network.nerve.kit.service.TransactionService;
+import network.nerve.kit.util.ConfirmedObjectCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class ConfirmedObjectCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Rule
+    public MockWalletNode node = MockWalletNode.rule();
+
+    @Before
+    public void before() throws Exception {
+        ConfirmedObjectCache.getInstance().setConfirmations(30).onBestHeight(1000);
+    }
+
+    @After
+    public void after() {
+        ConfirmedObjectCache.getInstance().close();
+        ConfirmedObjectCache.getInstance().setSegmentSize(64 * 1024 * 1024);
+    }
+
+    private void putTx(String hash, long height) {
+        node.putRaw("api/tx/" + hash, "{\"success\":true,\"data\":{\"hash\":\"" + hash + "\",\"blockHeight\":" + height + ",\"remark\":\"r\"}}");
+    }
+
+    @Test
+    public void testConfirmedOnlyAndSurvivesReopen() throws Exception {
+        File dir = folder.newFolder();
+        ConfirmedObjectCache cache = ConfirmedObjectCache.getInstance();
+        cache.open(dir);
+        putTx("aa", 10);
+        putTx("bb", 999);
+        node.putRaw("api/block/hash/cc", "{\"success\":true,\"data\":{\"header\":{\"hash\":\"cc\",\"height\":20},\"txs\":[]}}");
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals("r", ((TransactionDto) TransactionService.getInstance().getTx("aa").getData()).getRemark());
+            assertTrue(TransactionService.getInstance().getTx("bb").isSuccess());
+            assertEquals(20, ((BlockDto) BlockService.getInstance().getBlock("cc").getData()).getHeader().getHeight());
+        }
+        assertEquals(1, node.hits("api/tx/aa"));
+        // 确认数不足的不缓存
+        assertEquals(2, node.hits("api/tx/bb"));
+        assertEquals(1, node.hits("api/block/hash/cc"));
+
+        cache.close();
+        cache.open(dir);
+        assertEquals(2, cache.size());
+        TransactionDto tx = (TransactionDto) TransactionService.getInstance().getTx("aa").getData();
+        assertEquals(10, tx.getBlockHeight());
+        assertNotNull(BlockService.getInstance().getBlock("cc").getData());
+        assertEquals(1, node.hits("api/tx/aa"));
+        assertEquals(1, node.hits("api/block/hash/cc"));
+    }
+
+    @Test
+    public void testSegmentRoll() throws Exception {
+        File dir = folder.newFolder();
+        ConfirmedObjectCache cache = ConfirmedObjectCache.getInstance().setSegmentSize(400);
+        cache.open(dir);
+        for (int i = 0; i < 10; i++) {
+            putTx("d" + i, i);
+            TransactionService.getInstance().getTx("d" + i);
+        }
+        assertTrue(dir.listFiles().length > 1);
+        cache.close();
+        cache.open(dir);
+        assertEquals(10, cache.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, ((TransactionDto) TransactionService.getInstance().getTx("d" + i).getData()).getBlockHeight());
+            assertEquals(1, node.hits("api/tx/d" + i));
+        }
+    }
+}
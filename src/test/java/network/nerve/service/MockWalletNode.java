@@ -0,0 +1,205 @@
+package network.nerve.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import network.nerve.SDKContext;
+import network.nerve.core.parse.JSONUtils;
+import org.junit.rules.ExternalResource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 测试用的本地钱包节点, 按路径返回预设的 {"success":true,"data":...} 响应
+ * 通过 {@link #rule()} 作为JUnit规则使用时, 每个测试期间 SDKContext.wallet_url 指向本节点
+ */
+public class MockWalletNode extends ExternalResource {
+
+    private final HttpServer server;
+    private final Map<String, Object> data = new ConcurrentHashMap<>();
+    private final Map<String, String> raw = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+    private volatile long delayMillis;
+    private volatile int statusCode = 200;
+    private volatile boolean gzip;
+    private volatile String lastAcceptEncoding;
+    private volatile String lastRequestBody;
+    private final List<String> requestBodies = new CopyOnWriteArrayList<>();
+    private final boolean bindWalletUrl;
+    private String previousWalletUrl;
+
+    public MockWalletNode() throws IOException {
+        this(false);
+    }
+
+    private MockWalletNode(boolean bindWalletUrl) throws IOException {
+        this.bindWalletUrl = bindWalletUrl;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(java.util.concurrent.Executors.newCachedThreadPool());
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * <pre>@Rule public MockWalletNode node = MockWalletNode.rule();</pre>
+     * 测试前把 SDKContext.wallet_url 指向本节点, 测试后恢复原值并停止节点
+     */
+    public static MockWalletNode rule() {
+        try {
+            return new MockWalletNode(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    protected void before() {
+        if (bindWalletUrl) {
+            previousWalletUrl = SDKContext.wallet_url;
+            SDKContext.wallet_url = getUrl();
+        }
+    }
+
+    @Override
+    protected void after() {
+        if (bindWalletUrl) {
+            SDKContext.wallet_url = previousWalletUrl;
+        }
+        stop();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    public void put(String path, Object value) {
+        data.put("/" + path, value);
+    }
+
+    /**
+     * 按原样返回json响应体
+     */
+    public void putRaw(String path, String json) {
+        raw.put("/" + path, json);
+    }
+
+    public int hits(String path) {
+        AtomicInteger count = hits.get("/" + path);
+        return count == null ? 0 : count.get();
+    }
+
+    public void setDelayMillis(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    public void setStatusCode(int statusCode) {
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * 请求声明支持gzip时压缩响应体
+     */
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    public String getLastAcceptEncoding() {
+        return lastAcceptEncoding;
+    }
+
+    public String getLastRequestBody() {
+        return lastRequestBody;
+    }
+
+    /**
+     * 收到的所有请求体, 按接收顺序
+     */
+    public List<String> getRequestBodies() {
+        return requestBodies;
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        hits.computeIfAbsent(path, k -> new AtomicInteger()).incrementAndGet();
+        lastAcceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        try (InputStream in = exchange.getRequestBody()) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            for (int n; (n = in.read(buf)) > 0; ) {
+                body.write(buf, 0, n);
+            }
+            lastRequestBody = new String(body.toByteArray(), StandardCharsets.UTF_8);
+            requestBodies.add(lastRequestBody);
+        }
+        if (delayMillis > 0) {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        String rawJson = raw.get(path);
+        if (rawJson != null && lastRequestBody.startsWith("[")) {
+            // JSON-RPC批量请求, 对每个调用返回同一个预设响应, id与请求对应
+            List<Map<String, Object>> responses = new ArrayList<>();
+            for (JsonNode call : JSONUtils.getInstance().readTree(lastRequestBody)) {
+                Map<String, Object> response = JSONUtils.json2map(rawJson);
+                response.put("id", call.get("id").asText());
+                responses.add(response);
+            }
+            write(exchange, JSONUtils.obj2ByteArray(responses));
+            return;
+        }
+        if (rawJson != null) {
+            write(exchange, rawJson.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        // 与节点一致, success在data之前输出
+        Map<String, Object> resp = new LinkedHashMap<>();
+        Object value = data.get(path);
+        resp.put("success", value != null);
+        if (value != null) {
+            resp.put("data", value);
+        } else {
+            Map<String, Object> error = new HashMap<>();
+            error.put("code", "err_0015");
+            error.put("msg", "not found");
+            resp.put("data", error);
+        }
+        write(exchange, JSONUtils.obj2ByteArray(resp));
+    }
+
+    private void write(HttpExchange exchange, byte[] bytes) throws IOException {
+        if (gzip && lastAcceptEncoding != null && lastAcceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+                out.write(bytes);
+            }
+            bytes = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+}
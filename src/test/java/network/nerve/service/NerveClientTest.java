@@ -0,0 +1,110 @@
+package network.nerve.service;
+
+import network.nerve.SDKContext;
+import network.nerve.core.basic.Result;
+import network.nerve.core.parse.I18nUtils;
+import network.nerve.kit.model.dto.BlockHeaderDto;
+import network.nerve.kit.util.BalanceCache;
+import network.nerve.kit.util.NerveClient;
+import network.nerve.kit.util.NerveSDKAsyncTool;
+import network.nerve.kit.util.NerveSDKTool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class NerveClientTest {
+
+    private static final String ADDRESS = "NERVEepb61R6tii7FzrXFpagKi2muBxnEcqQpp";
+    private static final String BALANCE_PATH = "api/accountledger/balance/" + ADDRESS;
+
+    private MockWalletNode mainNode;
+    private MockWalletNode testNode;
+    private NerveClient mainClient;
+    private NerveClient testClient;
+
+    @Before
+    public void before() throws Exception {
+        mainNode = new MockWalletNode();
+        testNode = new MockWalletNode();
+        for (MockWalletNode node : new MockWalletNode[]{mainNode, testNode}) {
+            node.putRaw(BALANCE_PATH, "{\"success\":true,\"data\":{\"total\":100,\"available\":\"100\",\"nonce\":\"0000000000000000\",\"nonceType\":1}}");
+            node.putRaw("jsonrpc", "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":{\"value\":true}}");
+        }
+        mainNode.putRaw("api/block/header/newest", "{\"success\":true,\"data\":{\"hash\":\"m\",\"height\":900}}");
+        testNode.putRaw("api/block/header/newest", "{\"success\":true,\"data\":{\"hash\":\"t\",\"height\":500}}");
+        mainClient = new NerveClient(NerveClient.Config.main(mainNode.getUrl()));
+        testClient = new NerveClient(NerveClient.Config.test(testNode.getUrl()));
+    }
+
+    @After
+    public void after() {
+        mainClient.close();
+        testClient.close();
+        mainNode.stop();
+        testNode.stop();
+    }
+
+    private static long bestHeight(NerveClient client) {
+        Result result = client.call(NerveSDKTool::getBestBlockHeader);
+        return ((BlockHeaderDto) result.getData()).getHeight();
+    }
+
+    @Test
+    public void testDefaultConfig() {
+        try (NerveClient client = new NerveClient(NerveClient.Config.main())) {
+            assertEquals("https://api.nerve.network/", client.getWalletUrl());
+            assertNull(client.getWalletNodePool());
+        }
+        assertTrue(I18nUtils.hasLanguage("en"));
+    }
+
+    @Test
+    public void testParallelClients() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                NerveClient client = i % 2 == 0 ? mainClient : testClient;
+                long expected = i % 2 == 0 ? 900 : 500;
+                futures.add(executor.submit(() -> bestHeight(client) == expected));
+            }
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(9, mainClient.call(SDKContext::getMainChainId).intValue());
+        assertEquals(5, testClient.call(SDKContext::getMainChainId).intValue());
+        assertEquals("TNVT", testClient.call(SDKContext::getAddressPrefix));
+        // 未绑定时仍为默认配置
+        assertEquals(SDKContext.main_chain_id, SDKContext.getMainChainId());
+
+        Map tx = (Map) mainClient.call(() -> NerveSDKTool.createTxSimpleTransferOfNvt(ADDRESS, ADDRESS, BigInteger.ONE)).getData();
+        assertTrue(testClient.call(() -> NerveSDKTool.broadcast(tx.get("txHex").toString())).isSuccess());
+        assertTrue(testNode.getLastRequestBody().contains("\"params\":[5,"));
+        assertEquals(0, mainNode.hits("jsonrpc"));
+    }
+
+    @Test
+    public void testAsyncUsesClientCaches() throws Exception {
+        mainClient.getBalanceCache().setEnabled(true);
+        for (int i = 0; i < 2; i++) {
+            // 余额在OkHttp回调线程中写入缓存
+            assertTrue(mainClient.call(() -> NerveSDKAsyncTool.getAccountBalance(ADDRESS, 9, 1)).get(5, TimeUnit.SECONDS).isSuccess());
+            assertTrue(testClient.call(() -> NerveSDKAsyncTool.getAccountBalance(ADDRESS, 9, 1)).get(5, TimeUnit.SECONDS).isSuccess());
+        }
+        assertEquals(1, mainNode.hits(BALANCE_PATH));
+        assertEquals(2, testNode.hits(BALANCE_PATH));
+        assertFalse(BalanceCache.getInstance().isEnabled());
+        assertSame(mainClient.getBalanceCache(), mainClient.call(BalanceCache::getInstance));
+    }
+}
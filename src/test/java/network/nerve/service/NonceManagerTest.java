@@ -0,0 +1,95 @@
+package network.nerve.service;
+
+import network.nerve.SDKContext;
+import network.nerve.base.data.Transaction;
+import network.nerve.core.basic.Result;
+import network.nerve.core.crypto.HexUtil;
+import network.nerve.kit.model.dto.WithdrawalTxDto;
+import network.nerve.kit.util.NerveSDKTool;
+import network.nerve.kit.util.NonceManager;
+import network.nerve.kit.util.TxUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class NonceManagerTest {
+
+    private static final String FROM = "NERVEepb61R6tii7FzrXFpagKi2muBxnEcqQpp";
+    private static final String BALANCE_PATH = "api/accountledger/balance/" + FROM;
+
+    @Rule
+    public MockWalletNode node = MockWalletNode.rule();
+
+    @Before
+    public void before() throws Exception {
+        node.putRaw(BALANCE_PATH, "{\"success\":true,\"data\":{\"total\":100,\"available\":\"100\",\"nonce\":\"0000000000000000\",\"nonceType\":1}}");
+        NonceManager.getInstance().setEnabled(true);
+    }
+
+    @After
+    public void after() {
+        NonceManager.getInstance().setEnabled(false);
+    }
+
+    @Test
+    public void testChainedTxs() throws Exception {
+        Map first = (Map) NerveSDKTool.createTxSimpleTransferOfNvt(FROM, FROM, BigInteger.ONE).getData();
+        Map second = (Map) NerveSDKTool.createTxSimpleTransferOfNvt(FROM, FROM, BigInteger.TEN).getData();
+        assertEquals(1, node.hits(BALANCE_PATH));
+        assertEquals("0000000000000000", nonceOf(first));
+        // 第二笔交易使用第一笔交易hash推出的nonce
+        String expected = HexUtil.encode(TxUtils.getNonce(HexUtil.decode(first.get("hash").toString())));
+        assertEquals(expected, nonceOf(second));
+
+        // 广播失败后重新查询账本
+        node.putRaw("jsonrpc", "{\"jsonrpc\":\"2.0\",\"id\":1,\"error\":{\"code\":\"tx_0013\",\"message\":\"nonce error\"}}");
+        Result broadcast = NerveSDKTool.broadcast(second.get("txHex").toString());
+        assertFalse(broadcast.isSuccess());
+        Map third = (Map) NerveSDKTool.createTxSimpleTransferOfNvt(FROM, FROM, BigInteger.ONE).getData();
+        assertEquals(2, node.hits(BALANCE_PATH));
+        assertEquals("0000000000000000", nonceOf(third));
+    }
+
+    @Test
+    public void testTransferThenWithdrawal() throws Exception {
+        Map transfer = (Map) NerveSDKTool.createTxSimpleTransferOfNvt(FROM, FROM, BigInteger.ONE).getData();
+        // 未传入nonce的提现同样使用上一笔交易推出的nonce
+        Map withdrawal = (Map) NerveSDKTool.createWithdrawalTx(withdrawal(SDKContext.main_chain_id, SDKContext.main_asset_id)).getData();
+        assertEquals(nextNonce(transfer), nonceOf(withdrawal));
+        // 提现其他资产时, 手续费的nonce接在上一笔NVT交易之后
+        Map other = (Map) NerveSDKTool.createWithdrawalTx(withdrawal(SDKContext.main_chain_id, 2)).getData();
+        assertEquals(nextNonce(withdrawal), nonceOf(other, 1));
+        assertEquals(2, node.hits(BALANCE_PATH));
+    }
+
+    private static WithdrawalTxDto withdrawal(int assetChainId, int assetId) {
+        WithdrawalTxDto dto = new WithdrawalTxDto();
+        dto.setAssetChainId(assetChainId);
+        dto.setAssetId(assetId);
+        dto.setHeterogeneousChainId(101);
+        dto.setHeterogeneousAddress("0xc11d9943805e56b630a401d4bd9a29550353efa1");
+        dto.setAmount(BigInteger.TEN);
+        dto.setDistributionFee(BigInteger.valueOf(1000000));
+        dto.setFromAddress(FROM);
+        return dto;
+    }
+
+    private static String nextNonce(Map txResult) {
+        return HexUtil.encode(TxUtils.getNonce(HexUtil.decode(txResult.get("hash").toString())));
+    }
+
+    private static String nonceOf(Map txResult) throws Exception {
+        return nonceOf(txResult, 0);
+    }
+
+    private static String nonceOf(Map txResult, int index) throws Exception {
+        Transaction tx = Transaction.getInstance(HexUtil.decode(txResult.get("txHex").toString()));
+        return HexUtil.encode(tx.getCoinDataInstance().getFrom().get(index).getNonce());
+    }
+}
@@ -0,0 +1,106 @@
+package network.nerve.service;
+
+import network.nerve.core.basic.Result;
+import network.nerve.kit.model.dto.TransactionDto;
+import network.nerve.kit.util.NerveSDKAsyncTool;
+import network.nerve.kit.util.PendingTxTracker;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PendingTxTrackerTest {
+
+    @Rule
+    public MockWalletNode node = MockWalletNode.rule();
+
+    @Before
+    public void before() throws Exception {
+        PendingTxTracker.getInstance().clear();
+        PendingTxTracker.getInstance().setPollIntervalMillis(20).setFallbackBlocks(2);
+    }
+
+    @After
+    public void after() {
+        PendingTxTracker.getInstance().setPollIntervalMillis(2000).setFallbackBlocks(10).setMaxWaitBlocks(300);
+    }
+
+    private void newBlock(long height, String... txHashes) {
+        StringBuilder list = new StringBuilder();
+        for (String hash : txHashes) {
+            list.append(list.length() == 0 ? "" : ",").append('"').append(hash).append('"');
+        }
+        String header = "{\"hash\":\"h" + height + "\",\"height\":" + height + ",\"txHashList\":[" + list + "]}";
+        node.putRaw("api/block/header/height/" + height, "{\"success\":true,\"data\":" + header + "}");
+        node.putRaw("api/block/header/newest", "{\"success\":true,\"data\":" + header + "}");
+    }
+
+    private void waitForHits(String path, int hits) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (node.hits(path) < hits && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testMatchByBlockTxList() throws Exception {
+        newBlock(10);
+        CompletableFuture<Result> a = NerveSDKAsyncTool.waitForConfirmation("a1");
+        CompletableFuture<Result> b = NerveSDKAsyncTool.waitForConfirmation("b1");
+        CompletableFuture<Result> c = NerveSDKAsyncTool.waitForConfirmation("c1");
+        // 开始跟踪时逐笔查询一次
+        waitForHits("api/tx/c1", 1);
+        Thread.sleep(50);
+
+        newBlock(11, "a1", "x", "b1");
+        Result result = a.get(5, TimeUnit.SECONDS);
+        assertEquals(11, ((TransactionDto) result.getData()).getBlockHeight());
+        assertEquals("h11", ((TransactionDto) result.getData()).getBlockHash());
+        assertTrue(b.get(5, TimeUnit.SECONDS).isSuccess());
+        assertEquals(1, node.hits("api/tx/a1"));
+        assertFalse(c.isDone());
+
+        // c1在之前的区块中打包, 等待fallbackBlocks个区块后改为查询交易
+        node.putRaw("api/tx/c1", "{\"success\":true,\"data\":{\"hash\":\"c1\",\"blockHeight\":9}}");
+        newBlock(12);
+        assertEquals(9, ((TransactionDto) c.get(5, TimeUnit.SECONDS).getData()).getBlockHeight());
+        assertEquals(0, PendingTxTracker.getInstance().size());
+    }
+
+    @Test
+    public void testLateTrackQueriedOnce() throws Exception {
+        newBlock(10);
+        NerveSDKAsyncTool.waitForConfirmation("a1");
+        waitForHits("api/tx/a1", 1);
+        Thread.sleep(50);
+
+        // 第一次查询之后登记的交易已在检查过的区块中打包, 不等新区块也查询一次
+        node.putRaw("api/tx/d1", "{\"success\":true,\"data\":{\"hash\":\"d1\",\"blockHeight\":8}}");
+        CompletableFuture<Result> d = NerveSDKAsyncTool.waitForConfirmation("d1");
+        assertEquals(8, ((TransactionDto) d.get(5, TimeUnit.SECONDS).getData()).getBlockHeight());
+        assertEquals(1, node.hits("api/tx/d1"));
+        Thread.sleep(100);
+        assertEquals(1, node.hits("api/tx/a1"));
+    }
+
+    @Test
+    public void testExpireAfterMaxWaitBlocks() throws Exception {
+        PendingTxTracker.getInstance().setMaxWaitBlocks(3);
+        newBlock(10);
+        CompletableFuture<Result> future = NerveSDKAsyncTool.waitForConfirmation("e1");
+        waitForHits("api/tx/e1", 1);
+        Thread.sleep(50);
+        newBlock(12);
+        Thread.sleep(100);
+        assertFalse(future.isDone());
+        newBlock(13);
+        Result result = future.get(5, TimeUnit.SECONDS);
+        assertFalse(result.isSuccess());
+        assertEquals(0, PendingTxTracker.getInstance().size());
+    }
+}
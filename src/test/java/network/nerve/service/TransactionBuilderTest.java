@@ -0,0 +1,161 @@
+package network.nerve.service;
+
+import network.nerve.SDKContext;
+import network.nerve.base.basic.NulsByteBuffer;
+import network.nerve.base.basic.NulsOutputStreamBuffer;
+import network.nerve.base.data.BaseNulsData;
+import network.nerve.base.data.Transaction;
+import network.nerve.core.basic.Result;
+import network.nerve.core.crypto.ECKey;
+import network.nerve.core.crypto.HexUtil;
+import network.nerve.kit.model.Account;
+import network.nerve.kit.model.dto.CoinFromDto;
+import network.nerve.kit.model.dto.CoinToDto;
+import network.nerve.kit.model.dto.TransferDto;
+import network.nerve.kit.service.TransactionService;
+import network.nerve.kit.util.AccountTool;
+import network.nerve.kit.util.NerveSDKTool;
+import network.nerve.kit.util.TransactionBuilder;
+import network.nerve.kit.util.TxPreValidator;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TransactionBuilderTest {
+
+    private static final String NONCE = "0102030405060708";
+
+    @Rule
+    public MockWalletNode node = MockWalletNode.rule();
+    private Account from;
+    private Account to;
+
+    @Before
+    public void before() throws Exception {
+        node.putRaw("jsonrpc", "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":{\"value\":true}}");
+        from = AccountTool.createAccount(SDKContext.main_chain_id);
+        to = AccountTool.createAccount(SDKContext.main_chain_id);
+    }
+
+    private TransactionBuilder builder(long time) {
+        return TransactionBuilder.transfer()
+                .setTime(time)
+                .setRemark("payout")
+                .addFrom(from.getAddress().getBase58(), SDKContext.main_chain_id, SDKContext.main_asset_id, BigInteger.valueOf(300), HexUtil.decode(NONCE))
+                .addTo(to.getAddress().getBase58(), SDKContext.main_chain_id, SDKContext.main_asset_id, BigInteger.valueOf(100))
+                .addTo(from.getAddress().getBase58(), SDKContext.main_chain_id, SDKContext.main_asset_id, BigInteger.valueOf(200), 1000);
+    }
+
+    @Test
+    public void testSameAsCreateTransferTx() throws Exception {
+        CoinFromDto input = new CoinFromDto();
+        input.setAddress(from.getAddress().getBase58());
+        input.setAssetChainId(SDKContext.main_chain_id);
+        input.setAssetId(SDKContext.main_asset_id);
+        input.setAmount(BigInteger.valueOf(300));
+        input.setNonce(NONCE);
+        CoinToDto output1 = new CoinToDto();
+        output1.setAddress(to.getAddress().getBase58());
+        output1.setAssetChainId(SDKContext.main_chain_id);
+        output1.setAssetId(SDKContext.main_asset_id);
+        output1.setAmount(BigInteger.valueOf(100));
+        CoinToDto output2 = new CoinToDto();
+        output2.setAddress(from.getAddress().getBase58());
+        output2.setAssetChainId(SDKContext.main_chain_id);
+        output2.setAssetId(SDKContext.main_asset_id);
+        output2.setAmount(BigInteger.valueOf(200));
+        output2.setLockTime(1000);
+        TransferDto dto = new TransferDto();
+        dto.setInputs(Collections.singletonList(input));
+        dto.setOutputs(Arrays.asList(output1, output2));
+        dto.setRemark("payout");
+        dto.setTime(1600000000);
+
+        Map map = (Map) TransactionService.getInstance().createTransferTx(dto).getData();
+        Transaction tx = builder(1600000000).build();
+        assertEquals(map.get("txHex"), HexUtil.encode(tx.serialize()));
+        assertEquals(map.get("hash"), tx.getHash().toHex());
+    }
+
+    @Test
+    public void testSignAndSerialize() throws Exception {
+        TransactionBuilder builder = builder(System.currentTimeMillis() / 1000);
+        Transaction tx = builder.build(ECKey.fromPrivate(from.getPriKey()));
+        byte[] bytes = tx.serialize();
+        assertTrue(builder.estimateSize(1) >= bytes.length);
+        assertTrue(builder.estimateSize(1) - bytes.length < 10);
+
+        Result result = TxPreValidator.getInstance().validate(HexUtil.encode(bytes));
+        assertTrue(result.getMsg(), result.isSuccess());
+        assertEquals(tx.getHash().toHex(), result.getData());
+
+        // 追加签名保留已有签名
+        Transaction twice = builder.build(ECKey.fromPrivate(from.getPriKey()));
+        TransactionBuilder.sign(twice, ECKey.fromPrivate(to.getPriKey()));
+        assertTrue(twice.serialize().length > bytes.length);
+
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 4);
+        buffer.putInt(7);
+        assertEquals(bytes.length, tx.serialize(buffer));
+        assertArrayEquals(bytes, Arrays.copyOfRange(buffer.array(), 4, buffer.position()));
+
+        ByteBuffer small = ByteBuffer.allocate(bytes.length - 1);
+        try {
+            tx.serialize(small);
+            fail();
+        } catch (BufferOverflowException e) {
+            assertEquals(0, small.position());
+        }
+    }
+
+    @Test
+    public void testSerializeSizeMismatch() {
+        // size()声明8字节, 实际只写入4字节
+        BaseNulsData data = new BaseNulsData() {
+            @Override
+            public int size() {
+                return 8;
+            }
+
+            @Override
+            protected void serializeToStream(NulsOutputStreamBuffer stream) throws IOException {
+                stream.writeUint32(1);
+            }
+
+            @Override
+            public void parse(NulsByteBuffer byteBuffer) {
+            }
+        };
+        try {
+            data.serialize();
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("expected: 8, actual: 4"));
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        try {
+            data.serialize(buffer);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("expected: 8, actual: 4"));
+            assertEquals(0, buffer.position());
+        }
+    }
+
+    @Test
+    public void testBroadcastTransaction() throws Exception {
+        Transaction tx = builder(System.currentTimeMillis() / 1000).build(ECKey.fromPrivate(from.getPriKey()));
+        assertTrue(NerveSDKTool.broadcast(tx).isSuccess());
+        assertTrue(node.getLastRequestBody().contains(HexUtil.encode(tx.serialize())));
+    }
+}
@@ -0,0 +1,137 @@
+package network.nerve.service;
+
+import network.nerve.SDKContext;
+import network.nerve.base.basic.AddressTool;
+import network.nerve.base.data.CoinData;
+import network.nerve.base.data.CoinFrom;
+import network.nerve.base.data.CoinTo;
+import network.nerve.base.data.Transaction;
+import network.nerve.core.basic.Result;
+import network.nerve.core.constant.TxType;
+import network.nerve.core.crypto.HexUtil;
+import network.nerve.core.model.StringUtils;
+import network.nerve.kit.model.Account;
+import network.nerve.kit.service.TransactionService;
+import network.nerve.kit.txdata.Alias;
+import network.nerve.kit.util.AccountTool;
+import network.nerve.kit.util.NerveSDKTool;
+import network.nerve.kit.util.TxPreValidator;
+import network.nerve.kit.util.TxPreValidator.Reason;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TxPreValidatorTest {
+
+    private static final String VALIDATE_PATH = "api/accountledger/transaction/validate";
+
+    @Rule
+    public MockWalletNode node = MockWalletNode.rule();
+    private Account account;
+    private String address;
+
+    @Before
+    public void before() throws Exception {
+        account = AccountTool.createAccount(SDKContext.main_chain_id);
+        address = account.getAddress().getBase58();
+    }
+
+    @After
+    public void after() {
+        TxPreValidator.getInstance().setEnabled(false);
+    }
+
+    private Transaction transfer(BigInteger in, BigInteger out, byte[] to, String remark) throws Exception {
+        Transaction tx = new Transaction(TxType.TRANSFER);
+        tx.setTime(System.currentTimeMillis() / 1000);
+        tx.setRemark(StringUtils.bytes(remark));
+        CoinFrom from = new CoinFrom(account.getAddress().getAddressBytes(), SDKContext.main_chain_id, SDKContext.main_asset_id, in, new byte[8], (byte) 0);
+        CoinTo coinTo = new CoinTo(to, SDKContext.main_chain_id, SDKContext.main_asset_id, out);
+        tx.setCoinData(new CoinData(Collections.singletonList(from), Collections.singletonList(coinTo)).serialize());
+        return tx;
+    }
+
+    private Transaction transfer(BigInteger in, BigInteger out) throws Exception {
+        return transfer(in, out, account.getAddress().getAddressBytes(), "r");
+    }
+
+    private String sign(Transaction tx) throws Exception {
+        Map map = (Map) NerveSDKTool.sign(HexUtil.encode(tx.serialize()), address, HexUtil.encode(account.getPriKey())).getData();
+        return map.get("txHex").toString();
+    }
+
+    private static Reason reason(String txHex) {
+        Result result = TxPreValidator.getInstance().validate(txHex);
+        assertFalse(result.isSuccess());
+        assertEquals(((Reason) result.getData()).getErrorCode(), result.getErrorCode());
+        return (Reason) result.getData();
+    }
+
+    @Test
+    public void testValid() throws Exception {
+        Transaction tx = transfer(BigInteger.TEN, BigInteger.TEN);
+        Result result = TxPreValidator.getInstance().validate(sign(tx));
+        assertTrue(result.getMsg(), result.isSuccess());
+        assertEquals(tx.getHash().toHex(), result.getData());
+    }
+
+    @Test
+    public void testRejected() throws Exception {
+        assertEquals(Reason.MALFORMED, reason("0200"));
+        assertEquals(Reason.MALFORMED, reason(sign(transfer(BigInteger.TEN, BigInteger.TEN)) + "00"));
+        assertEquals(Reason.UNSIGNED, reason(HexUtil.encode(transfer(BigInteger.TEN, BigInteger.TEN).serialize())));
+        assertEquals(Reason.INSUFFICIENT_AMOUNT, reason(sign(transfer(BigInteger.ONE, BigInteger.TEN))));
+        assertEquals(Reason.REMARK_TOO_LONG, reason(sign(transfer(BigInteger.TEN, BigInteger.TEN, account.getAddress().getAddressBytes(), new String(new char[101]).replace('\0', 'a')))));
+        byte[] otherChain = AddressTool.getAddress(account.getPubKey(), 5);
+        assertEquals(Reason.CHAIN_ID_ERROR, reason(sign(transfer(BigInteger.TEN, BigInteger.TEN, otherChain, "r"))));
+
+        // 签名后修改交易内容
+        Transaction signed = Transaction.getInstance(HexUtil.decode(sign(transfer(BigInteger.TEN, BigInteger.TEN))));
+        signed.setRemark(StringUtils.bytes("x"));
+        assertEquals(Reason.SIGNATURE_ERROR, reason(HexUtil.encode(signed.serialize())));
+    }
+
+    @Test
+    public void testTxDataAndFee() throws Exception {
+        Transaction tx = transfer(BigInteger.TEN, BigInteger.TEN);
+        tx.setType(TxType.ACCOUNT_ALIAS);
+        tx.setTxData(new byte[]{1, 2, 3});
+        assertEquals(Reason.TX_DATA_ERROR, reason(sign(tx)));
+
+        tx = transfer(BigInteger.TEN, BigInteger.TEN);
+        tx.setType(TxType.ACCOUNT_ALIAS);
+        tx.setTxData(new Alias(account.getAddress().getAddressBytes(), "alias").serialize());
+        assertEquals(Reason.INSUFFICIENT_FEE, reason(sign(tx)));
+
+        tx = transfer(BigInteger.valueOf(100000).add(BigInteger.TEN), BigInteger.TEN);
+        tx.setType(TxType.ACCOUNT_ALIAS);
+        tx.setTxData(new Alias(account.getAddress().getAddressBytes(), "alias").serialize());
+        assertTrue(TxPreValidator.getInstance().validate(sign(tx)).isSuccess());
+    }
+
+    @Test
+    public void testShortCircuitValidateTx() throws Exception {
+        node.putRaw(VALIDATE_PATH, "{\"success\":true,\"data\":{\"value\":\"hash\"}}");
+        String unsigned = HexUtil.encode(transfer(BigInteger.TEN, BigInteger.TEN).serialize());
+
+        assertTrue(TransactionService.getInstance().validateTx(unsigned).isSuccess());
+        assertEquals(1, node.hits(VALIDATE_PATH));
+
+        TxPreValidator.getInstance().setEnabled(true);
+        Result result = TransactionService.getInstance().validateTx(unsigned);
+        assertFalse(result.isSuccess());
+        assertEquals(Reason.UNSIGNED, result.getData());
+        assertFalse(TransactionService.getInstance().validateTxAsync(unsigned).get().isSuccess());
+        assertEquals(1, node.hits(VALIDATE_PATH));
+
+        assertTrue(TransactionService.getInstance().validateTx(sign(transfer(BigInteger.TEN, BigInteger.TEN))).isSuccess());
+        assertEquals(2, node.hits(VALIDATE_PATH));
+    }
+}
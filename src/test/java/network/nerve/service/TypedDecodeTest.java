@@ -0,0 +1,94 @@
+package network.nerve.service;
+
+import network.nerve.core.basic.Result;
+import network.nerve.kit.model.dto.AccountBalanceDto;
+import network.nerve.kit.model.dto.BlockDto;
+import network.nerve.kit.model.dto.TransactionDto;
+import network.nerve.kit.service.AccountService;
+import network.nerve.kit.util.NerveSDKAsyncTool;
+import network.nerve.kit.util.NerveSDKTool;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TypedDecodeTest {
+
+    private static final String HEADER = "{\"hash\":\"0020aa\",\"preHash\":\"0020bb\",\"merkleHash\":\"0020cc\",\"time\":\"2021-01-01 00:00:00\"," +
+            "\"height\":100,\"txCount\":1,\"blockSignature\":\"ff\",\"size\":300,\"packingAddress\":\"NERVEepb6Cu6CC2uYpS2pAgmaReMFeHJvVH8FB\"," +
+            "\"roundIndex\":\"55\",\"consensusMemberCount\":5,\"roundStartTime\":\"2021-01-01 00:00:00\",\"packingIndexOfRound\":2," +
+            "\"mainVersion\":1,\"blockVersion\":1,\"stateRoot\":\"dd\",\"txHashList\":[\"0020ee\"],\"reward\":\"0\"}";
+
+    private static final String TX = "{\"hash\":\"0020ee\",\"type\":2,\"time\":\"2021-01-01 00:00:00\",\"blockHeight\":100,\"remark\":\"hi\"," +
+            "\"status\":1,\"size\":200,\"inBlockIndex\":0," +
+            "\"from\":[{\"address\":\"NERVEepb6Cu6CC2uYpS2pAgmaReMFeHJvVH8FB\",\"assetsChainId\":9,\"assetsId\":1,\"amount\":\"100100000\",\"nonce\":\"0000000000000000\",\"locked\":0}]," +
+            "\"to\":[{\"address\":\"NERVEepb6Cu6CC2uYpS2pAgmaReMFeHJvVH8FB\",\"assetsChainId\":9,\"assetsId\":1,\"amount\":\"100000000\",\"lockTime\":0}]}";
+
+    @Rule
+    public MockWalletNode node = MockWalletNode.rule();
+
+    @Test
+    public void testBlock() throws Exception {
+        node.putRaw("api/block/height/100", "{\"success\":true,\"data\":{\"header\":" + HEADER + ",\"txs\":[" + TX + "]}}");
+        Result result = NerveSDKTool.getBlock(100);
+        assertTrue(result.isSuccess());
+        BlockDto block = (BlockDto) result.getData();
+        assertEquals(100, block.getHeader().getHeight());
+        assertEquals(55, block.getHeader().getRoundIndex());
+        assertEquals("0020ee", block.getHeader().getTxHashList().get(0));
+        TransactionDto tx = block.getTxs().get(0);
+        assertEquals("100100000", tx.getFrom().get(0).getAmount());
+        assertEquals("100000000", tx.getTo().get(0).getAmount());
+
+        block = (BlockDto) NerveSDKAsyncTool.getBlock(100).get().getData();
+        assertEquals("0020aa", block.getHeader().getHash());
+    }
+
+    @Test
+    public void testTransaction() throws Exception {
+        node.putRaw("api/tx/0020ee", "{\"success\":true,\"data\":" + TX + "}");
+        // data在success之前
+        node.putRaw("api/block/header/height/100", "{\"data\":" + HEADER + ",\"success\":true}");
+        Result result = NerveSDKTool.getTransaction("0020ee");
+        assertTrue(result.isSuccess());
+        TransactionDto tx = (TransactionDto) result.getData();
+        assertEquals(2, tx.getType());
+        assertEquals("0020aa", tx.getBlockHash());
+
+        tx = (TransactionDto) NerveSDKAsyncTool.getTransaction("0020ee").get().getData();
+        assertEquals("0020aa", tx.getBlockHash());
+    }
+
+    @Test
+    public void testSharedTransactionNotMutated() throws Exception {
+        // 缺少from/to时与mapToPojo一致, 为空列表
+        node.putRaw("api/tx/0020ff", "{\"success\":true,\"data\":{\"hash\":\"0020ff\",\"type\":1,\"blockHeight\":100}}");
+        node.putRaw("api/block/header/height/100", "{\"success\":true,\"data\":" + HEADER + "}");
+        TransactionDto shared = (TransactionDto) NerveSDKTool.getTx("0020ff").getData();
+        assertTrue(shared.getFrom().isEmpty());
+        assertTrue(shared.getTo().isEmpty());
+
+        TransactionDto tx = (TransactionDto) NerveSDKTool.getTransaction("0020ff").getData();
+        assertEquals("0020aa", tx.getBlockHash());
+        assertNotSame(shared, tx);
+        assertNull(shared.getBlockHash());
+        tx = (TransactionDto) NerveSDKAsyncTool.getTransaction("0020ff").get().getData();
+        assertEquals("0020aa", tx.getBlockHash());
+        assertNull(shared.getBlockHash());
+    }
+
+    @Test
+    public void testBalanceAndFailure() throws Exception {
+        node.putRaw("api/accountledger/balance/NERVEepb6Cu6CC2uYpS2pAgmaReMFeHJvVH8FB",
+                "{\"success\":true,\"data\":{\"total\":100,\"available\":\"100\",\"nonce\":\"0000000000000000\",\"nonceType\":1}}");
+        Result<AccountBalanceDto> result = AccountService.getInstance().getAccountBalanceDto("NERVEepb6Cu6CC2uYpS2pAgmaReMFeHJvVH8FB", 9, 1);
+        assertTrue(result.isSuccess());
+        assertEquals("100", result.getData().getTotal());
+        assertEquals("0000000000000000", result.getData().getNonce());
+
+        Result failed = NerveSDKTool.getTx("00");
+        assertFalse(failed.isSuccess());
+        assertEquals("err_0015", failed.getErrorCode().getCode());
+        assertEquals("not found", failed.getMsg());
+    }
+}
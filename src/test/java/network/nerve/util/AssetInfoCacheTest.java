@@ -0,0 +1,126 @@
+package network.nerve.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sun.net.httpserver.HttpServer;
+import network.nerve.core.basic.Result;
+import network.nerve.core.parse.JSONUtils;
+import network.nerve.kit.model.NerveToken;
+import network.nerve.kit.util.AssetInfoCache;
+import network.nerve.kit.util.NerveSDKTool;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 本地模拟公共服务, 验证资产信息缓存的fresh/stale行为与批量预取
+ */
+public class AssetInfoCacheTest {
+
+    private HttpServer server;
+    private final AtomicInteger calls = new AtomicInteger();
+    private volatile String price = "1.5";
+
+    @Before
+    public void before() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            String body = IOUtils.toString(exchange.getRequestBody(), StandardCharsets.UTF_8);
+            JsonNode root = JSONUtils.getInstance().readTree(body);
+            Object resp;
+            if (root.isArray()) {
+                List<Object> list = new ArrayList<>();
+                for (JsonNode node : root) {
+                    list.add(response(node));
+                }
+                resp = list;
+            } else {
+                resp = response(root);
+            }
+            byte[] bytes = JSONUtils.obj2ByteArray(resp);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        });
+        server.start();
+        AssetInfoCache.getInstance().setServerUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/").setEnabled(true);
+    }
+
+    private Map<String, Object> response(JsonNode node) {
+        calls.incrementAndGet();
+        Map<String, Object> info = new HashMap<>();
+        info.put("symbol", "NVT");
+        info.put("decimals", 8);
+        info.put("usdPrice", price);
+        info.put("assetId", node.get("params").get(1).asInt());
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("jsonrpc", "2.0");
+        resp.put("id", node.get("id").asText());
+        resp.put("result", info);
+        return resp;
+    }
+
+    @After
+    public void after() {
+        AssetInfoCache.getInstance().setEnabled(false).setFreshMillis(30000).setMaxStaleMillis(600000).setServerUrl("https://public.nerve.network/");
+        server.stop(0);
+    }
+
+    @Test
+    public void testFreshHit() {
+        assertEquals(new BigDecimal("1.5"), NerveSDKTool.getUsdPrice(9, 1));
+        assertEquals(new BigDecimal("1.5"), NerveSDKTool.getUsdPrice(9, 1));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void testStaleWhileRevalidate() throws Exception {
+        AssetInfoCache cache = AssetInfoCache.getInstance().setFreshMillis(50);
+        assertEquals(new BigDecimal("1.5"), NerveSDKTool.getUsdPrice(9, 1));
+        price = "2";
+        Thread.sleep(100);
+        // 过了fresh期先返回旧值, 后台刷新
+        assertEquals(new BigDecimal("1.5"), NerveSDKTool.getUsdPrice(9, 1));
+        long deadline = System.currentTimeMillis() + 3000;
+        while (calls.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        cache.setFreshMillis(30000);
+        deadline = System.currentTimeMillis() + 3000;
+        while (!new BigDecimal("2").equals(NerveSDKTool.getUsdPrice(9, 1)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(new BigDecimal("2"), NerveSDKTool.getUsdPrice(9, 1));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testExpiredBeyondMaxStale() throws Exception {
+        AssetInfoCache.getInstance().setFreshMillis(10).setMaxStaleMillis(20);
+        NerveSDKTool.getUsdPrice(9, 1);
+        price = "3";
+        Thread.sleep(50);
+        assertEquals(new BigDecimal("3"), NerveSDKTool.getUsdPrice(9, 1));
+    }
+
+    @Test
+    public void testPrefetch() {
+        int loaded = AssetInfoCache.getInstance().prefetch(Arrays.asList(new NerveToken(9, 1), new NerveToken(9, 220), new NerveToken(5, 1)));
+        assertEquals(3, loaded);
+        assertEquals(3, calls.get());
+        Result result = NerveSDKTool.getSymbolInfo(9, 220);
+        assertTrue(result.isSuccess());
+        assertEquals(220, ((Map) result.getData()).get("assetId"));
+        assertEquals(3, calls.get());
+    }
+}
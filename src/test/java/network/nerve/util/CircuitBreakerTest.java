@@ -0,0 +1,70 @@
+package network.nerve.util;
+
+import network.nerve.kit.util.CircuitBreaker;
+import network.nerve.kit.util.CircuitBreaker.CircuitOpenException;
+import network.nerve.kit.util.CircuitBreaker.State;
+import network.nerve.kit.util.OkHttpClientUtil;
+import network.nerve.service.MockWalletNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest {
+
+    private MockWalletNode node;
+    private String url;
+
+    @Before
+    public void before() throws Exception {
+        node = new MockWalletNode();
+        node.put("api/info", "ok");
+        url = node.getUrl() + "api/info";
+        CircuitBreaker.getInstance()
+                .setConfig(url, new CircuitBreaker.Config().setFailureThreshold(2).setProbeIntervalMillis(50))
+                .setEnabled(true);
+    }
+
+    @After
+    public void after() {
+        CircuitBreaker.getInstance().setEnabled(false).reset();
+        node.stop();
+    }
+
+    @Test
+    public void testOpenProbeAndClose() throws Exception {
+        node.setStatusCode(500);
+        for (int i = 0; i < 2; i++) {
+            try {
+                OkHttpClientUtil.getInstance().getData(url);
+                fail();
+            } catch (IOException e) {
+                assertFalse(e instanceof CircuitOpenException);
+            }
+        }
+        assertEquals(State.OPEN, CircuitBreaker.getInstance().getState(url));
+
+        // 熔断期间快速失败, 请求不到达节点
+        int hits = node.hits("api/info");
+        try {
+            OkHttpClientUtil.getInstance().getData(url);
+            fail();
+        } catch (CircuitOpenException e) {
+            // expected
+        }
+        assertEquals(hits, node.hits("api/info"));
+
+        // 节点恢复后由后台探测转为HALF_OPEN, 试探请求成功后关闭
+        node.setStatusCode(200);
+        long deadline = System.currentTimeMillis() + 3000;
+        while (CircuitBreaker.getInstance().getState(url) == State.OPEN && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(State.HALF_OPEN, CircuitBreaker.getInstance().getState(url));
+        assertTrue(OkHttpClientUtil.getInstance().getData(url).contains("ok"));
+        assertEquals(State.CLOSED, CircuitBreaker.getInstance().getState(url));
+    }
+}
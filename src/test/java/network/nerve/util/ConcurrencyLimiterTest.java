@@ -0,0 +1,192 @@
+package network.nerve.util;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import network.nerve.kit.util.ConcurrencyLimiter;
+import network.nerve.kit.util.ConcurrencyLimiter.Category;
+import network.nerve.kit.util.ConcurrencyLimiter.Config;
+import network.nerve.kit.util.ConcurrencyLimiter.LimitExceededException;
+import network.nerve.kit.util.ConcurrencyLimiter.Limiter;
+import network.nerve.kit.util.OkHttpClientUtil;
+import network.nerve.kit.util.WalletNodePool.RouteType;
+import org.junit.Test;
+
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ConcurrencyLimiterTest {
+
+    @Test
+    public void testCategory() {
+        assertEquals(Category.BROADCAST, Category.of("jsonrpc", RouteType.WRITE));
+        assertEquals(Category.VALIDATE, Category.of("api/accountledger/transaction/validate", RouteType.READ));
+        assertEquals(Category.READ, Category.of("api/tx/00", RouteType.READ));
+    }
+
+    @Test
+    public void testClientErrorsNotDropped() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter();
+        limiter.setEnabled(true);
+        // 放宽延迟容忍度, 只观察失败对上限的影响
+        limiter.setConfig("http://a/", Category.READ, new Config().setInitialLimit(4).setMaxQueueSize(0).setBackoffRatio(0.5).setLatencyTolerance(1_000_000));
+        Limiter limit = limiter.getLimiter("http://a/", Category.READ);
+        // 请求本身的错误(4xx、解析失败、业务异常)不缩小并发上限
+        Exception[] clientErrors = {
+                new OkHttpClientUtil.HttpStatusException(400, "bad request"),
+                new JsonParseException(null, "bad json"),
+                new IllegalStateException("bad data")
+        };
+        for (Exception e : clientErrors) {
+            CompletableFuture<String> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            limiter.executeAsync("http://a/", Category.READ, () -> failed);
+            try {
+                limiter.execute("http://a/", Category.READ, () -> {
+                    throw e;
+                });
+                fail();
+            } catch (Exception ignored) {
+            }
+        }
+        assertEquals(4, limit.getLimit());
+        assertEquals(0, limit.getInFlight());
+
+        // 5xx与超时视为过载
+        CompletableFuture<String> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new OkHttpClientUtil.HttpStatusException(503, "unavailable"));
+        limiter.executeAsync("http://a/", Category.READ, () -> failed);
+        assertTrue(limit.getLimit() < 4);
+        int shrunk = limit.getLimit();
+        try {
+            limiter.execute("http://a/", Category.READ, () -> {
+                throw new SocketTimeoutException("timeout");
+            });
+            fail();
+        } catch (SocketTimeoutException ignored) {
+        }
+        assertTrue(limit.getLimit() < shrunk);
+    }
+
+    @Test
+    public void testAimd() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter();
+        limiter.setConfig("http://a/", Category.READ, new Config().setInitialLimit(4).setMaxQueueSize(0));
+        Limiter limit = limiter.getLimiter("http://a/", Category.READ);
+        assertEquals(4, limit.getLimit());
+
+        // 并发跑满且延迟稳定时逐步放大
+        for (int round = 0; round < 3; round++) {
+            int n = limit.getLimit();
+            for (int i = 0; i < n; i++) {
+                assertTrue(limit.acquire().isDone());
+            }
+            for (int i = 0; i < n; i++) {
+                limit.release(10_000_000L, false);
+            }
+        }
+        int grown = limit.getLimit();
+        assertTrue(grown > 4);
+
+        // 延迟翻倍以上时收缩
+        limit.acquire();
+        limit.release(50_000_000L, false);
+        assertTrue(limit.getLimit() < grown);
+        int shrunk = limit.getLimit();
+        limit.acquire();
+        limit.release(0, true);
+        assertTrue(limit.getLimit() < shrunk);
+    }
+
+    @Test
+    public void testQueueAndReject() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter();
+        limiter.setConfig("http://a/", Category.BROADCAST, new Config().setInitialLimit(1).setMaxQueueSize(1).setMaxQueueWaitMillis(200));
+        Limiter limit = limiter.getLimiter("http://a/", Category.BROADCAST);
+        // 不同类别互不影响
+        assertNotSame(limit, limiter.getLimiter("http://a/", Category.READ));
+
+        assertTrue(limit.acquire().isDone());
+        CompletableFuture<Void> queued = limit.acquire();
+        assertFalse(queued.isDone());
+        CompletableFuture<Void> rejected = limit.acquire();
+        assertTrue(rejected.isCompletedExceptionally());
+
+        limit.release(1_000_000L, false);
+        assertTrue(queued.isDone() && !queued.isCompletedExceptionally());
+
+        // 上限已增长到2
+        assertEquals(2, limit.getLimit());
+        assertTrue(limit.acquire().isDone());
+        CompletableFuture<Void> timeout = limit.acquire();
+        try {
+            timeout.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof LimitExceededException);
+        }
+        assertEquals(0, limit.getQueueSize());
+    }
+
+    @Test
+    public void testCancelReleasesPermit() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter();
+        limiter.setEnabled(true);
+        limiter.setConfig("http://a/", Category.READ, new Config().setInitialLimit(1).setMaxQueueSize(10).setMaxQueueWaitMillis(5000));
+        Limiter limit = limiter.getLimiter("http://a/", Category.READ);
+
+        CompletableFuture<String> running = new CompletableFuture<>();
+        limiter.executeAsync("http://a/", Category.READ, () -> running);
+        // 排队期间取消, 之后不再占用许可
+        CompletableFuture<String> queued = limiter.executeAsync("http://a/", Category.READ, () -> CompletableFuture.completedFuture("x"));
+        assertEquals(1, limit.getQueueSize());
+        queued.cancel(true);
+        assertEquals(0, limit.getQueueSize());
+        running.complete("a");
+        assertEquals(0, limit.getInFlight());
+
+        // 获得许可后取消, 取消内部请求并归还许可
+        CompletableFuture<String> blocker = new CompletableFuture<>();
+        limiter.executeAsync("http://a/", Category.READ, () -> blocker);
+        CompletableFuture<String> inner = new CompletableFuture<>();
+        CompletableFuture<String> started = limiter.executeAsync("http://a/", Category.READ, () -> inner);
+        blocker.complete("b");
+        assertEquals(1, limit.getInFlight());
+        started.cancel(true);
+        assertTrue(inner.isCancelled());
+        assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    public void testInterruptReleasesPermit() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter();
+        limiter.setEnabled(true);
+        limiter.setConfig("http://a/", Category.READ, new Config().setInitialLimit(1).setMaxQueueSize(10).setMaxQueueWaitMillis(5000));
+        Limiter limit = limiter.getLimiter("http://a/", Category.READ);
+        CompletableFuture<String> running = new CompletableFuture<>();
+        limiter.executeAsync("http://a/", Category.READ, () -> running);
+
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            try {
+                limiter.execute("http://a/", Category.READ, () -> "x");
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            } catch (Exception e) {
+                // ignore
+            }
+        });
+        thread.start();
+        while (limit.getQueueSize() == 0) {
+            Thread.sleep(5);
+        }
+        thread.interrupt();
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(0, limit.getQueueSize());
+        running.complete("a");
+        assertEquals(0, limit.getInFlight());
+    }
+}
@@ -0,0 +1,109 @@
+package network.nerve.util;
+
+import network.nerve.SDKContext;
+import network.nerve.kit.model.dto.RestFulResult;
+import network.nerve.kit.util.HedgingPolicy;
+import network.nerve.kit.util.RestFulUtil;
+import network.nerve.kit.util.WalletNodePool;
+import network.nerve.kit.util.WalletNodePool.RouteType;
+import network.nerve.service.MockWalletNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+public class HedgingPolicyTest {
+
+    private MockWalletNode slow;
+    private MockWalletNode fast;
+    private WalletNodePool pool;
+
+    @Before
+    public void before() throws Exception {
+        slow = new MockWalletNode();
+        fast = new MockWalletNode();
+        slow.setDelayMillis(2000);
+        pool = new WalletNodePool(Arrays.asList(slow.getUrl(), fast.getUrl()));
+        SDKContext.wallet_node_pool = pool;
+        HedgingPolicy.getInstance().reset();
+        HedgingPolicy.getInstance().setEnabled(true).setInitialDelayMillis(50);
+    }
+
+    @After
+    public void after() {
+        HedgingPolicy.getInstance().setEnabled(false).setInitialDelayMillis(200);
+        SDKContext.wallet_node_pool = null;
+        pool.shutdown();
+        slow.stop();
+        fast.stop();
+    }
+
+    @Test
+    public void testHedgeToSecondNode() {
+        slow.put("api/tx/0020ee", "slow");
+        fast.put("api/tx/0020ee", "fast");
+        long start = System.currentTimeMillis();
+        RestFulResult<Map<String, Object>> result = RestFulUtil.get("api/tx/0020ee");
+        assertTrue(result.isSuccess());
+        assertEquals("fast", result.getData());
+        assertTrue(System.currentTimeMillis() - start < 1500);
+        assertEquals(1, HedgingPolicy.getInstance().getHedged());
+        assertEquals(1, HedgingPolicy.getInstance().getHedgeWins());
+    }
+
+    @Test
+    public void testOnlyIdempotentReads() {
+        HedgingPolicy hedging = HedgingPolicy.getInstance();
+        assertTrue(hedging.shouldHedge("api/accountledger/balance/NERVEepb6Cu6CC2uYpS2pAgmaReMFeHJvVH8FB", RouteType.READ));
+        assertFalse(hedging.shouldHedge("jsonrpc", RouteType.WRITE));
+        assertFalse(hedging.shouldHedge("api/tx/0020ee", RouteType.WRITE));
+        assertFalse(hedging.shouldHedge("api/info", RouteType.READ));
+    }
+
+    @Test
+    public void testBothFail() throws Exception {
+        CompletableFuture<String> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException("x"));
+        CompletableFuture<String> result = HedgingPolicy.getInstance().execute(() -> failed, () -> failed);
+        try {
+            result.get();
+            fail();
+        } catch (java.util.concurrent.ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(0, HedgingPolicy.getInstance().getHedged());
+    }
+
+    @Test
+    public void testRecordPrimaryLatency() throws Exception {
+        HedgingPolicy hedging = HedgingPolicy.getInstance();
+        // 首选请求一直不响应, 对冲请求立即成功; 样本应为首选请求的耗时, 不低于对冲延迟
+        for (int i = 0; i < 32; i++) {
+            assertEquals("hedge", hedging.execute(CompletableFuture::new, () -> CompletableFuture.completedFuture("hedge")).get());
+        }
+        assertEquals(32, hedging.getHedgeWins());
+        assertTrue(hedging.getDelayMillis() >= 50);
+    }
+
+    @Test
+    public void testNoHedgeWithSingleNode() {
+        SDKContext.wallet_node_pool = null;
+        String walletUrl = SDKContext.wallet_url;
+        try {
+            SDKContext.wallet_url = slow.getUrl();
+            slow.setDelayMillis(300);
+            slow.put("api/tx/0020ee", "slow");
+            RestFulResult<Map<String, Object>> result = RestFulUtil.get("api/tx/0020ee");
+            assertTrue(result.isSuccess());
+            assertEquals(0, HedgingPolicy.getInstance().getHedged());
+            assertEquals(1, slow.hits("api/tx/0020ee"));
+        } finally {
+            SDKContext.wallet_url = walletUrl;
+        }
+    }
+}
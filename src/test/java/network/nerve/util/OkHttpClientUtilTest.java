@@ -0,0 +1,81 @@
+package network.nerve.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import network.nerve.core.parse.JSONUtils;
+import network.nerve.kit.util.OkHttpClientUtil;
+import network.nerve.service.MockWalletNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class OkHttpClientUtilTest {
+
+    private MockWalletNode node;
+
+    @Before
+    public void before() throws Exception {
+        node = new MockWalletNode();
+        node.put("api/info", "ok");
+    }
+
+    @After
+    public void after() {
+        OkHttpClientUtil.unregister("test");
+        node.stop();
+    }
+
+    @Test
+    public void testNamedInstance() throws Exception {
+        OkHttpClientUtil client = OkHttpClientUtil.register("test", new OkHttpClientUtil.Config()
+                .setMaxRequests(32)
+                .setMaxRequestsPerHost(16)
+                .setMaxIdleConnections(8));
+        assertSame(client, OkHttpClientUtil.getInstance("test"));
+        assertNotSame(client, OkHttpClientUtil.getInstance());
+        assertEquals(32, client.getClient().dispatcher().getMaxRequests());
+        assertEquals(16, client.getClient().dispatcher().getMaxRequestsPerHost());
+        assertTrue(client.getData(node.getUrl() + "api/info").contains("ok"));
+    }
+
+    @Test
+    public void testPerCallTimeout() throws Exception {
+        OkHttpClientUtil client = OkHttpClientUtil.register("test", new OkHttpClientUtil.Config());
+        OkHttpClientUtil fast = client.withTimeouts(1000, 100, 1000, 0);
+        assertSame(client.getClient().connectionPool(), fast.getClient().connectionPool());
+        assertSame(client.getClient().dispatcher(), fast.getClient().dispatcher());
+
+        node.setDelayMillis(500);
+        try {
+            fast.getData(node.getUrl() + "api/info");
+            fail();
+        } catch (InterruptedIOException e) {
+            // 读取超时
+        }
+        assertTrue(client.getData(node.getUrl() + "api/info").contains("ok"));
+    }
+
+    @Test
+    public void testGzipAndStreamedBody() throws Exception {
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            large.append("0123456789");
+        }
+        node.put("api/large", large.toString());
+        node.setGzip(true);
+        Map<String, Object> body = new HashMap<>();
+        body.put("address", "NERVEepb6Cu6CC2uYpS2pAgmaReMFeHJvVH8FB");
+
+        JsonNode result = OkHttpClientUtil.getInstance().postJson(node.getUrl() + "api/large", body, null,
+                responseBody -> JSONUtils.getInstance().readTree(responseBody.byteStream()));
+        // OkHttp自动协商gzip并透明解压
+        assertEquals("gzip", node.getLastAcceptEncoding());
+        assertEquals(large.toString(), result.get("data").asText());
+        assertEquals(body, JSONUtils.json2map(node.getLastRequestBody()));
+    }
+}
@@ -0,0 +1,87 @@
+package network.nerve.util;
+
+import network.nerve.kit.model.dto.RestFulResult;
+import network.nerve.kit.util.RestFulUtil;
+import network.nerve.kit.util.SingleFlight;
+import network.nerve.service.MockWalletNode;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class SingleFlightTest {
+
+    @Rule
+    public MockWalletNode node = MockWalletNode.rule();
+
+    @Before
+    public void before() throws Exception {
+        SingleFlight.getInstance().resetCounters();
+    }
+
+    @Test
+    public void testCoalesce() throws Exception {
+        node.put("api/info", "ok");
+        node.setDelayMillis(300);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<RestFulResult<Map<String, Object>>>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return RestFulUtil.get("api/info");
+            }));
+        }
+        start.countDown();
+        for (Future<RestFulResult<Map<String, Object>>> future : futures) {
+            assertTrue(future.get().isSuccess());
+        }
+        executor.shutdown();
+        assertEquals(1, node.hits("api/info"));
+        assertEquals(1, SingleFlight.getInstance().getMisses());
+        assertEquals(threads - 1, SingleFlight.getInstance().getHits());
+
+        // 完成后不缓存结果
+        RestFulUtil.get("api/info");
+        assertEquals(2, node.hits("api/info"));
+    }
+
+    @Test
+    public void testSharedFailure() throws Exception {
+        SingleFlight singleFlight = new SingleFlight();
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Object> leader = executor.submit(() -> singleFlight.execute("k", () -> {
+            entered.countDown();
+            release.await();
+            throw new IOException("boom");
+        }));
+        entered.await();
+        CompletableFuture<Object> follower = singleFlight.executeAsync("k", () -> CompletableFuture.completedFuture("unused"));
+        release.countDown();
+        try {
+            leader.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        try {
+            follower.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        executor.shutdown();
+        assertEquals(1, singleFlight.getHits());
+        assertEquals(1, singleFlight.getMisses());
+    }
+}
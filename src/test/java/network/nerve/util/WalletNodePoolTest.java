@@ -0,0 +1,86 @@
+package network.nerve.util;
+
+import network.nerve.kit.util.WalletNodePool;
+import network.nerve.kit.util.WalletNodePool.Node;
+import network.nerve.kit.util.WalletNodePool.RouteType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class WalletNodePoolTest {
+
+    private WalletNodePool pool;
+
+    @Before
+    public void before() {
+        pool = new WalletNodePool(Arrays.asList("http://a", "http://b", "http://c"));
+    }
+
+    @After
+    public void after() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testRouteByLatency() {
+        Node a = pool.getNodes().get(0);
+        Node b = pool.getNodes().get(1);
+        Node c = pool.getNodes().get(2);
+        pool.onSuccess(a, 30_000_000L);
+        pool.onSuccess(b, 10_000_000L);
+        pool.onSuccess(c, 20_000_000L);
+        assertSame(b, pool.select(RouteType.READ));
+        // 写请求固定在第一个健康节点
+        assertSame(a, pool.select(RouteType.WRITE));
+
+        for (int i = 0; i < 10; i++) {
+            pool.onSuccess(b, 50_000_000L);
+        }
+        assertSame(c, pool.select(RouteType.READ));
+    }
+
+    @Test
+    public void testEjectAfterFailures() {
+        Node a = pool.getNodes().get(0);
+        Node b = pool.getNodes().get(1);
+        pool.onSuccess(a, 1_000_000L);
+        pool.onSuccess(b, 5_000_000L);
+        pool.onSuccess(pool.getNodes().get(2), 9_000_000L);
+        pool.onFailure(a);
+        pool.onFailure(a);
+        assertFalse(a.isEjected());
+        pool.onFailure(a);
+        assertTrue(a.isEjected());
+        assertSame(b, pool.select(RouteType.READ));
+        assertSame(b, pool.select(RouteType.WRITE));
+    }
+
+    @Test
+    public void testIdleNodeDecay() throws InterruptedException {
+        pool.setEwmaHalfLifeMillis(20);
+        Node a = pool.getNodes().get(0);
+        Node b = pool.getNodes().get(1);
+        Node c = pool.getNodes().get(2);
+        pool.onSuccess(a, 1_000_000L);
+        pool.onSuccess(b, 100_000_000L);
+        pool.onSuccess(c, 100_000_000L);
+        assertSame(a, pool.select(RouteType.READ));
+
+        // 只有a持续有请求, 空闲的b、c的延迟随时间衰减后被重新尝试
+        Thread.sleep(300);
+        pool.onSuccess(a, 1_000_000L);
+        assertSame(b, pool.select(RouteType.READ));
+        // b仍然很慢, 空闲后的新样本直接取代旧值
+        pool.onSuccess(b, 100_000_000L);
+        assertTrue(b.getEwmaMillis() > 90);
+        assertSame(c, pool.select(RouteType.READ));
+        // c已恢复
+        pool.onSuccess(c, 2_000_000L);
+        assertTrue(c.getEwmaMillis() < 3);
+        assertSame(a, pool.select(RouteType.READ));
+    }
+}